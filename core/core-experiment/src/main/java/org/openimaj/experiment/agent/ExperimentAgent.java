@@ -29,8 +29,11 @@
  */
 package org.openimaj.experiment.agent;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.instrument.Instrumentation;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.openimaj.aop.MultiTransformClassFileTransformer;
 import org.openimaj.aop.agent.AgentLoader;
@@ -39,6 +42,19 @@ import org.openimaj.citation.ReferencesClassTransformer;
 
 /**
  * Java instrumentation agent for instrumenting experiments.
+ * <p>
+ * The agent accepts an optional argument string consisting of
+ * semicolon-separated options:
+ * <ul>
+ * <li><code>time=pattern,pattern,...</code>: additionally time all methods
+ * matching the given patterns (see {@link TimeClassTransformer})</li>
+ * <li><code>report=seconds</code>: periodically log the method timings</li>
+ * <li><code>csv=file</code>: periodically append the method timings to the
+ * given CSV file (every 60 seconds unless <code>report</code> is given)</li>
+ * <li><code>jmx</code>: expose the method timings as JMX MXBeans</li>
+ * </ul>
+ * For example:
+ * <code>-javaagent:experiment.jar=time=org.openimaj.image.*#process;report=10;jmx</code>
  *
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  *
@@ -75,10 +91,49 @@ public class ExperimentAgent {
 		instrumentation = inst;
 		instrumentation.addTransformer(new MultiTransformClassFileTransformer(
 				new ReferencesClassTransformer(),
-				new TimeClassTransformer()
+				configure(args)
 				));
 	}
 
+	/**
+	 * Parse the agent arguments, setting up any timing reporting and
+	 * returning the configured {@link TimeClassTransformer}.
+	 */
+	static TimeClassTransformer configure(String args) {
+		final List<String> patterns = new ArrayList<String>();
+		long reportSecs = -1;
+		File csv = null;
+
+		if (args != null) {
+			for (final String opt : args.split(";")) {
+				final String trimmed = opt.trim();
+				final int idx = trimmed.indexOf('=');
+				final String key = idx < 0 ? trimmed : trimmed.substring(0, idx).trim();
+				final String value = idx < 0 ? null : trimmed.substring(idx + 1).trim();
+
+				if (key.equals("time") && value != null) {
+					for (final String p : value.split(","))
+						patterns.add(p);
+				} else if (key.equals("report") && value != null) {
+					reportSecs = Long.parseLong(value);
+				} else if (key.equals("csv") && value != null) {
+					csv = new File(value);
+				} else if (key.equals("jmx")) {
+					TimeTracker.enableJMX();
+				} else if (key.length() > 0) {
+					throw new IllegalArgumentException("Unknown agent option: " + trimmed);
+				}
+			}
+		}
+
+		if (reportSecs > 0 || csv != null) {
+			final long period = (reportSecs > 0 ? reportSecs : 60) * 1000;
+			new TimingReporter(period, csv, reportSecs > 0).start();
+		}
+
+		return new TimeClassTransformer(patterns);
+	}
+
 	/**
 	 * Programmatic hook to dynamically load {@link CitationAgent} at runtime.
 	 *
@@ -0,0 +1,230 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.agent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies (or any other non-negative long values)
+ * with log-linear buckets, in the style of an HDR histogram. Values smaller
+ * than 128 are recorded exactly; larger values are recorded in buckets whose
+ * width is at most 1/64th of their lower bound, so percentiles are accurate to
+ * within about 1.6% over the full range of a long. Recording a value is a
+ * single atomic increment plus (rarely contended) updates of the min and max,
+ * so a histogram can be safely and cheaply shared by many threads.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class LatencyHistogram {
+	/** number of bits of precision of each bucket */
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+	private static final int NUM_BUCKETS = SUB_BUCKET_COUNT + (64 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF;
+
+	private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+	/**
+	 * Record a value. Negative values are recorded as zero.
+	 *
+	 * @param value
+	 *            the value
+	 */
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+
+		counts.incrementAndGet(bucketIndex(value));
+		total.addAndGet(value);
+
+		long current;
+		while (value < (current = min.get()) && !min.compareAndSet(current, value))
+			;
+		while (value > (current = max.get()) && !max.compareAndSet(current, value))
+			;
+	}
+
+	static int bucketIndex(long value) {
+		if (value < SUB_BUCKET_COUNT)
+			return (int) value;
+
+		final int msb = 63 - Long.numberOfLeadingZeros(value);
+		final int shift = msb - SUB_BUCKET_BITS + 1;
+		final int sub = (int) (value >>> shift);
+
+		return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (sub - SUB_BUCKET_HALF);
+	}
+
+	static long bucketLowerBound(int index) {
+		if (index < SUB_BUCKET_COUNT)
+			return index;
+
+		final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+		final long sub = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+
+		return sub << shift;
+	}
+
+	static long bucketUpperBound(int index) {
+		if (index < SUB_BUCKET_COUNT)
+			return index;
+
+		final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+		return bucketLowerBound(index) + (1L << shift) - 1;
+	}
+
+	/**
+	 * @return the number of recorded values
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++)
+			count += counts.get(i);
+		return count;
+	}
+
+	/**
+	 * @return the sum of all the recorded values
+	 */
+	public long getTotal() {
+		return total.get();
+	}
+
+	/**
+	 * @return the mean of the recorded values, or NaN if there are none
+	 */
+	public double getMean() {
+		final long count = getCount();
+		return count == 0 ? Double.NaN : (double) total.get() / count;
+	}
+
+	/**
+	 * @return the smallest recorded value, or 0 if there are none
+	 */
+	public long getMin() {
+		final long v = min.get();
+		return v == Long.MAX_VALUE ? 0 : v;
+	}
+
+	/**
+	 * @return the largest recorded value, or 0 if there are none
+	 */
+	public long getMax() {
+		final long v = max.get();
+		return v == Long.MIN_VALUE ? 0 : v;
+	}
+
+	/**
+	 * Get the value at the given percentile. The result is the midpoint of
+	 * the bucket that contains the percentile (clamped to the recorded min and
+	 * max), so is accurate to within the precision of the histogram.
+	 *
+	 * @param percentile
+	 *            the percentile (0-100)
+	 * @return the value at the percentile, or 0 if nothing has been recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		final long[] snapshot = new long[NUM_BUCKETS];
+		long count = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			count += snapshot[i];
+		}
+
+		if (count == 0)
+			return 0;
+
+		final double p = Math.min(100, Math.max(0, percentile));
+		final long target = Math.max(1, (long) Math.ceil(p / 100.0 * count));
+		if (target >= count)
+			return getMax();
+
+		long cumulative = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			cumulative += snapshot[i];
+
+			if (cumulative >= target) {
+				final long lower = bucketLowerBound(i);
+				final long value = lower + (bucketUpperBound(i) - lower) / 2;
+				return Math.min(getMax(), Math.max(getMin(), value));
+			}
+		}
+
+		return getMax();
+	}
+
+	/**
+	 * Add all the values recorded in the given histogram to this one.
+	 *
+	 * @param other
+	 *            the histogram to add
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			final long c = other.counts.get(i);
+			if (c != 0)
+				counts.addAndGet(i, c);
+		}
+		total.addAndGet(other.total.get());
+
+		long current;
+		final long omin = other.min.get();
+		while (omin < (current = min.get()) && !min.compareAndSet(current, omin))
+			;
+		final long omax = other.max.get();
+		while (omax > (current = max.get()) && !max.compareAndSet(current, omax))
+			;
+	}
+
+	/**
+	 * @return a copy of this histogram
+	 */
+	public LatencyHistogram copy() {
+		final LatencyHistogram copy = new LatencyHistogram();
+		copy.add(this);
+		return copy;
+	}
+
+	/**
+	 * Clear the histogram. Values recorded concurrently with the reset may or
+	 * may not be retained.
+	 */
+	public void reset() {
+		for (int i = 0; i < NUM_BUCKETS; i++)
+			counts.set(i, 0);
+		total.set(0);
+		min.set(Long.MAX_VALUE);
+		max.set(Long.MIN_VALUE);
+	}
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.agent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accumulates the execution times of a single instrumented method into a pair
+ * of {@link LatencyHistogram}s: one for the total (wall-clock) time of each
+ * call, and one for the "self" time, which excludes the time spent in any
+ * other instrumented methods called from within it.
+ * <p>
+ * Instances are obtained through {@link TimeTracker#getTimer(String)} and are
+ * called directly by the code that {@link TimeClassTransformer} weaves into
+ * instrumented methods:
+ *
+ * <pre>
+ * final long start = TimeTracker.enter();
+ * try {
+ * 	// method body
+ * } finally {
+ * 	timer.exit(start);
+ * }
+ * </pre>
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class MethodTimer implements MethodTimerMXBean {
+	private final String identifier;
+	private final boolean summarise;
+	private final LatencyHistogram total = new LatencyHistogram();
+	private final LatencyHistogram self = new LatencyHistogram();
+	private final AtomicLong firstCall = new AtomicLong();
+
+	/**
+	 * Construct with the given identifier
+	 *
+	 * @param identifier
+	 *            the identifier
+	 * @param summarise
+	 *            if true, the total time of each call is also accumulated into
+	 *            the {@link TimeTracker} summary statistics that are reported
+	 *            by experiments.
+	 */
+	MethodTimer(String identifier, boolean summarise) {
+		this.identifier = identifier;
+		this.summarise = summarise;
+	}
+
+	/**
+	 * Record the end of a call to the timed method that started at the given
+	 * time.
+	 *
+	 * @param start
+	 *            the start time of the call, as returned by
+	 *            {@link TimeTracker#enter()}.
+	 */
+	public void exit(long start) {
+		final long duration = System.nanoTime() - start;
+		final long selfDuration = TimeTracker.exit(duration);
+
+		if (firstCall.get() == 0)
+			firstCall.compareAndSet(0, start == 0 ? 1 : start);
+
+		total.record(duration);
+		self.record(selfDuration);
+
+		if (summarise)
+			TimeTracker.accumulate(identifier, duration);
+	}
+
+	/**
+	 * @return the histogram of total call times
+	 */
+	public LatencyHistogram getTotalHistogram() {
+		return total;
+	}
+
+	/**
+	 * @return the histogram of self call times
+	 */
+	public LatencyHistogram getSelfHistogram() {
+		return self;
+	}
+
+	@Override
+	public String getIdentifier() {
+		return identifier;
+	}
+
+	@Override
+	public long getCount() {
+		return total.getCount();
+	}
+
+	@Override
+	public double getThroughput() {
+		final long first = firstCall.get();
+		if (first == 0)
+			return 0;
+
+		final double secs = (System.nanoTime() - first) / 1e9;
+		return secs <= 0 ? 0 : getCount() / secs;
+	}
+
+	@Override
+	public double getMeanTime() {
+		return total.getMean();
+	}
+
+	@Override
+	public long getMaxTime() {
+		return total.getMax();
+	}
+
+	@Override
+	public long getMedianTime() {
+		return total.getValueAtPercentile(50);
+	}
+
+	@Override
+	public long get90thPercentileTime() {
+		return total.getValueAtPercentile(90);
+	}
+
+	@Override
+	public long get99thPercentileTime() {
+		return total.getValueAtPercentile(99);
+	}
+
+	@Override
+	public long get999thPercentileTime() {
+		return total.getValueAtPercentile(99.9);
+	}
+
+	@Override
+	public double getMeanSelfTime() {
+		return self.getMean();
+	}
+
+	@Override
+	public long getMedianSelfTime() {
+		return self.getValueAtPercentile(50);
+	}
+
+	@Override
+	public long get99thPercentileSelfTime() {
+		return self.getValueAtPercentile(99);
+	}
+
+	@Override
+	public void reset() {
+		total.reset();
+		self.reset();
+		firstCall.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: n=%d mean=%s p50=%s p99=%s max=%s self=%s",
+				identifier, getCount(),
+				TimeTracker.formatTime(getMeanTime()),
+				TimeTracker.formatTime(getMedianTime()),
+				TimeTracker.formatTime(get99thPercentileTime()),
+				TimeTracker.formatTime(getMaxTime()),
+				TimeTracker.formatTime(getMeanSelfTime()));
+	}
+}
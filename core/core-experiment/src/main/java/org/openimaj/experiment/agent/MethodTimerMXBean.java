@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.agent;
+
+/**
+ * JMX management interface exposing the timing statistics gathered by a
+ * {@link MethodTimer}. All times are in nanoseconds. "Total" times include
+ * the time spent in any nested timed methods; "self" times exclude it.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public interface MethodTimerMXBean {
+	/**
+	 * @return the identifier of the timed method
+	 */
+	public String getIdentifier();
+
+	/**
+	 * @return the number of completed calls
+	 */
+	public long getCount();
+
+	/**
+	 * @return the mean number of calls per second since the first call
+	 */
+	public double getThroughput();
+
+	/**
+	 * @return the mean total time
+	 */
+	public double getMeanTime();
+
+	/**
+	 * @return the maximum total time
+	 */
+	public long getMaxTime();
+
+	/**
+	 * @return the median total time
+	 */
+	public long getMedianTime();
+
+	/**
+	 * @return the 90th percentile of the total time
+	 */
+	public long get90thPercentileTime();
+
+	/**
+	 * @return the 99th percentile of the total time
+	 */
+	public long get99thPercentileTime();
+
+	/**
+	 * @return the 99.9th percentile of the total time
+	 */
+	public long get999thPercentileTime();
+
+	/**
+	 * @return the mean self time
+	 */
+	public double getMeanSelfTime();
+
+	/**
+	 * @return the median self time
+	 */
+	public long getMedianSelfTime();
+
+	/**
+	 * @return the 99th percentile of the self time
+	 */
+	public long get99thPercentileSelfTime();
+
+	/**
+	 * Clear all the recorded statistics
+	 */
+	public void reset();
+}
@@ -30,12 +30,18 @@
 package org.openimaj.experiment.agent;
 
 import java.lang.instrument.ClassFileTransformer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
 
 import javassist.CannotCompileException;
 import javassist.CtClass;
+import javassist.CtField;
 import javassist.CtMethod;
 import javassist.CtNewMethod;
+import javassist.Modifier;
 import javassist.NotFoundException;
+import javassist.bytecode.AccessFlag;
 
 import org.openimaj.aop.ClassTransformer;
 import org.openimaj.experiment.annotations.Time;
@@ -44,14 +50,78 @@ import org.openimaj.experiment.annotations.Time;
  * {@link ClassFileTransformer} that dynamically augments classes and methods
  * annotated with {@link Time} annotations in order to register and collect the
  * method timing information.
+ * <p>
+ * Methods without annotations can also be timed by providing patterns of the
+ * form <code>package.Class#method</code> (or just <code>package.Class</code>
+ * to time all methods of a class) in which <code>*</code> matches any
+ * sequence of characters; for example <code>org.openimaj.image.*#process*</code>.
+ * <p>
+ * Each timed method gets its own {@link MethodTimer}, which is held in a
+ * static field of the instrumented class so that the per-call overhead is
+ * just a pair of {@link System#nanoTime()} calls and a couple of atomic
+ * histogram updates.
  *
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
 public class TimeClassTransformer implements ClassTransformer {
+	private static final String TIMER_FIELD_PREFIX = "__openimaj$timer";
+
+	private final List<Pattern[]> patterns = new ArrayList<Pattern[]>();
+
+	/**
+	 * Construct a transformer that only instruments methods with {@link Time}
+	 * annotations.
+	 */
+	public TimeClassTransformer() {
+	}
+
+	/**
+	 * Construct a transformer that instruments methods with {@link Time}
+	 * annotations, together with any method matching the given patterns.
+	 *
+	 * @param patterns
+	 *            the patterns of the form <code>package.Class#method</code>
+	 *            or <code>package.Class</code>.
+	 */
+	public TimeClassTransformer(List<String> patterns) {
+		for (final String p : patterns) {
+			final String trimmed = p.trim();
+			if (trimmed.length() == 0)
+				continue;
+
+			final int idx = trimmed.indexOf('#');
+			if (idx < 0) {
+				this.patterns.add(new Pattern[] { compile(trimmed), null });
+			} else {
+				this.patterns.add(new Pattern[] { compile(trimmed.substring(0, idx)),
+						compile(trimmed.substring(idx + 1)) });
+			}
+		}
+	}
+
+	private static Pattern compile(String glob) {
+		final StringBuilder sb = new StringBuilder();
+		final String[] parts = glob.split("\\*", -1);
+
+		for (int i = 0; i < parts.length; i++) {
+			if (i > 0)
+				sb.append(".*");
+			if (parts[i].length() > 0)
+				sb.append(Pattern.quote(parts[i]));
+		}
+
+		return Pattern.compile(sb.toString());
+	}
+
 	@Override
 	public void transform(String className, CtClass ctclz) throws Exception {
+		if (ctclz.isInterface() || ctclz.isAnnotation() || isExcluded(ctclz.getName()))
+			return;
+
+		final List<Pattern> methodPatterns = matchingMethodPatterns(ctclz.getName());
 		final CtMethod[] methods = ctclz.getDeclaredMethods();
 
+		int count = 0;
 		for (final CtMethod m : methods) {
 			final Time ann = (Time) m.getAnnotation(Time.class);
 
@@ -61,18 +131,62 @@ public class TimeClassTransformer implements ClassTransformer {
 				if (timerName == null || timerName.length() == 0)
 					timerName = String.format("%s#%s", className, m.getLongName());
 
-				addTimingInterceptor(ctclz, m, timerName);
+				addTimingInterceptor(ctclz, m, timerName, true, count++);
+			} else if (isInstrumentable(m) && matches(methodPatterns, m.getName())) {
+				final String timerName = String.format("%s#%s", ctclz.getName(), m.getLongName());
+
+				addTimingInterceptor(ctclz, m, timerName, false, count++);
 			}
 		}
 	}
 
+	private static boolean isExcluded(String className) {
+		return className.startsWith("java.") || className.startsWith("javax.") || className.startsWith("sun.")
+				|| className.startsWith("javassist.") || className.startsWith("org.openimaj.experiment.agent.")
+				|| className.startsWith("org.openimaj.aop.");
+	}
+
+	private static boolean isInstrumentable(CtMethod m) {
+		if ((m.getModifiers() & (Modifier.ABSTRACT | Modifier.NATIVE)) != 0)
+			return false;
+
+		final int flags = m.getMethodInfo().getAccessFlags();
+		return (flags & (AccessFlag.SYNTHETIC | AccessFlag.BRIDGE)) == 0;
+	}
+
+	private List<Pattern> matchingMethodPatterns(String className) {
+		final List<Pattern> matching = new ArrayList<Pattern>();
+
+		for (final Pattern[] p : patterns) {
+			if (p[0].matcher(className).matches())
+				matching.add(p[1]);
+		}
+
+		return matching;
+	}
+
+	private static boolean matches(List<Pattern> methodPatterns, String methodName) {
+		for (final Pattern p : methodPatterns) {
+			if (p == null || p.matcher(methodName).matches())
+				return true;
+		}
+		return false;
+	}
+
 	/*
 	 * Inspired by
 	 * http://www.ibm.com/developerworks/java/library/j-dyn0916/index.html
 	 */
-	private static void addTimingInterceptor(CtClass clazz, CtMethod method, String timerName)
-			throws CannotCompileException, NotFoundException
+	private static void addTimingInterceptor(CtClass clazz, CtMethod method, String timerName, boolean summarise,
+			int index) throws CannotCompileException, NotFoundException
 	{
+		final String quotedName = "\"" + timerName.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+		final String fieldName = TIMER_FIELD_PREFIX + index;
+		final CtField field = CtField.make("private static final org.openimaj.experiment.agent.MethodTimer "
+				+ fieldName + " = org.openimaj.experiment.agent.TimeTracker.getTimer(" + quotedName + ", "
+				+ summarise + ");", clazz);
+		clazz.addField(field);
+
 		final String oname = method.getName();
 		final String nname = oname + "$impl";
 		method.setName(nname);
@@ -82,25 +196,21 @@ public class TimeClassTransformer implements ClassTransformer {
 		final StringBuffer body = new StringBuffer();
 		body.append(
 				"{\n" +
-						"org.openimaj.time.NanoTimer timer = org.openimaj.time.NanoTimer.timer();\n"
+						"long start = org.openimaj.experiment.agent.TimeTracker.enter();\n" +
+						"try {\n"
 				);
 
 		if (!"void".equals(type)) {
-			body.append(type + " result = ");
+			body.append("return ");
 		}
 		body.append(nname + "($$);\n");
-
 		body.append(
-				"timer.stop();" +
-						"org.openimaj.experiment.agent.TimeTracker.accumulate(\"" + timerName
-						+ "\", timer.duration());\n"
+				"} finally {\n" +
+						fieldName + ".exit(start);\n" +
+						"}\n" +
+						"}"
 				);
 
-		if (!"void".equals(type)) {
-			body.append("return result;\n");
-		}
-		body.append("}");
-
 		interceptor.setBody(body.toString());
 		clazz.addMethod(interceptor);
 	}
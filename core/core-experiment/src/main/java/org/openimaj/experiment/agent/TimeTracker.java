@@ -29,9 +29,17 @@
  */
 package org.openimaj.experiment.agent;
 
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.apache.commons.math.stat.descriptive.SummaryStatistics;
 import org.openimaj.time.NanoTimer;
@@ -42,11 +50,151 @@ import com.bethecoder.ascii_table.ASCIITable;
 /**
  * A class for tracking various execution times and generating
  * statistics.
+ * <p>
+ * As well as the summary statistics used for reporting experiments, the
+ * tracker maintains a registry of {@link MethodTimer}s which record the full
+ * latency distribution (and self-time) of instrumented methods with very low
+ * overhead. These can optionally be exposed through JMX.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
 public class TimeTracker {
 	private static Map<String, SummaryStatistics> times = new HashMap<String, SummaryStatistics>();
+	private static final ConcurrentHashMap<String, MethodTimer> timers = new ConcurrentHashMap<String, MethodTimer>();
+	private static boolean jmxEnabled = false;
+
+	/**
+	 * Per-thread stack of the time spent in nested timed calls, used to
+	 * compute self times.
+	 */
+	private static final ThreadLocal<CallStack> stack = new ThreadLocal<CallStack>() {
+		@Override
+		protected CallStack initialValue() {
+			return new CallStack();
+		}
+	};
+
+	private static class CallStack {
+		long[] childTime = new long[16];
+		int depth = -1;
+	}
+	
+	/**
+	 * Get the {@link MethodTimer} with the given identifier, creating it if
+	 * necessary. The total times recorded by the timer are also accumulated
+	 * into the summary statistics.
+	 * 
+	 * @param identifier the identifier
+	 * @return the timer
+	 */
+	public static MethodTimer getTimer(String identifier) {
+		return getTimer(identifier, true);
+	}
+
+	/**
+	 * Get the {@link MethodTimer} with the given identifier, creating it if
+	 * necessary.
+	 * 
+	 * @param identifier the identifier
+	 * @param summarise should the times also be accumulated into the summary
+	 * statistics reported by experiments (only applies if the timer is created
+	 * by this call).
+	 * @return the timer
+	 */
+	public static MethodTimer getTimer(String identifier, boolean summarise) {
+		MethodTimer timer = timers.get(identifier);
+		
+		if (timer == null) {
+			final MethodTimer newTimer = new MethodTimer(identifier, summarise);
+			timer = timers.putIfAbsent(identifier, newTimer);
+			
+			if (timer == null) {
+				timer = newTimer;
+				
+				synchronized (TimeTracker.class) {
+					if (jmxEnabled)
+						register(timer);
+				}
+			}
+		}
+		
+		return timer;
+	}
+	
+	/**
+	 * Get all the {@link MethodTimer}s, sorted by identifier.
+	 * 
+	 * @return the timers
+	 */
+	public static Map<String, MethodTimer> getTimers() {
+		return Collections.unmodifiableMap(new TreeMap<String, MethodTimer>(timers));
+	}
+	
+	/**
+	 * Register all current and future {@link MethodTimer}s with the platform
+	 * MBean server under the name
+	 * <code>org.openimaj.experiment:type=MethodTimer,name="identifier"</code>.
+	 */
+	public static synchronized void enableJMX() {
+		if (jmxEnabled)
+			return;
+		
+		jmxEnabled = true;
+		for (final MethodTimer timer : timers.values())
+			register(timer);
+	}
+	
+	private static void register(MethodTimer timer) {
+		try {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName name = new ObjectName("org.openimaj.experiment:type=MethodTimer,name="
+					+ ObjectName.quote(timer.getIdentifier()));
+			
+			if (!server.isRegistered(name))
+				server.registerMBean(timer, name);
+		} catch (final JMException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Mark the entry into a timed method on the current thread. 
+	 * 
+	 * @return the start time in nanoseconds; this must be passed
+	 * to {@link MethodTimer#exit(long)} when the method exits.
+	 */
+	public static long enter() {
+		final CallStack s = stack.get();
+		
+		if (++s.depth == s.childTime.length) {
+			final long[] tmp = new long[s.childTime.length * 2];
+			System.arraycopy(s.childTime, 0, tmp, 0, s.childTime.length);
+			s.childTime = tmp;
+		}
+		s.childTime[s.depth] = 0;
+		
+		return System.nanoTime();
+	}
+	
+	/**
+	 * Mark the exit from a timed method on the current thread, attributing
+	 * its duration to the calling timed method (if any).
+	 * 
+	 * @param duration the total duration of the method
+	 * @return the self time of the method
+	 */
+	static long exit(long duration) {
+		final CallStack s = stack.get();
+		
+		if (s.depth < 0)
+			return duration;
+		
+		final long child = s.childTime[s.depth--];
+		if (s.depth >= 0)
+			s.childTime[s.depth] += duration;
+		
+		return duration - child;
+	}
 	
 	/**
 	 * Accumulate the given duration into the statistics with the given identifier
@@ -149,7 +297,7 @@ public class TimeTracker {
 		return formatTime(ss.getMean(), ss.getStandardDeviation());
 	}
 
-	private static String formatTime(double time) {
+	static String formatTime(double time) {
 		long ns = (long) time;
 		
 		if (ns < 1e3) {
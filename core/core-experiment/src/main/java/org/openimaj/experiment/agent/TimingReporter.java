@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.agent;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Periodically reports the state of all the {@link MethodTimer}s registered
+ * with the {@link TimeTracker}, either to a log, or as rows appended to a CSV
+ * file (or both). Each report includes the throughput over the preceding
+ * interval together with the cumulative latency percentiles.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class TimingReporter implements Runnable {
+	private static final Logger logger = LogManager.getLogger(TimingReporter.class);
+
+	private static final String CSV_HEADER = "timestamp,identifier,count,throughput,mean,p50,p90,p99,max,selfMean,selfP99";
+
+	private final long periodMillis;
+	private final File csvFile;
+	private final boolean log;
+	private final Map<String, Long> lastCounts = new HashMap<String, Long>();
+	private long lastReport;
+	private Thread thread;
+
+	/**
+	 * Construct a reporter.
+	 *
+	 * @param periodMillis
+	 *            the reporting period in milliseconds
+	 * @param csvFile
+	 *            the file to append CSV data to; can be null
+	 * @param log
+	 *            should the reports be written to the log
+	 */
+	public TimingReporter(long periodMillis, File csvFile, boolean log) {
+		if (periodMillis <= 0)
+			throw new IllegalArgumentException("Reporting period must be positive");
+
+		this.periodMillis = periodMillis;
+		this.csvFile = csvFile;
+		this.log = log;
+		this.lastReport = System.nanoTime();
+	}
+
+	/**
+	 * Start reporting on a background daemon thread. A final report is made
+	 * when the JVM shuts down.
+	 *
+	 * @return this reporter
+	 */
+	public synchronized TimingReporter start() {
+		if (thread != null)
+			return this;
+
+		thread = new Thread(this, "openimaj-timing-reporter");
+		thread.setDaemon(true);
+		thread.start();
+
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				report();
+			}
+		});
+
+		return this;
+	}
+
+	/**
+	 * Stop reporting
+	 */
+	public synchronized void stop() {
+		if (thread != null) {
+			thread.interrupt();
+			thread = null;
+		}
+	}
+
+	@Override
+	public void run() {
+		while (!Thread.currentThread().isInterrupted()) {
+			try {
+				Thread.sleep(periodMillis);
+			} catch (final InterruptedException e) {
+				return;
+			}
+
+			report();
+		}
+	}
+
+	/**
+	 * Generate a report immediately
+	 */
+	public synchronized void report() {
+		final Map<String, MethodTimer> timers = TimeTracker.getTimers();
+		if (timers.isEmpty())
+			return;
+
+		final long now = System.nanoTime();
+		final double interval = Math.max(1, now - lastReport) / 1e9;
+		lastReport = now;
+
+		final long timestamp = System.currentTimeMillis();
+		final StringBuilder csv = new StringBuilder();
+		final StringBuilder text = new StringBuilder("Method timings:");
+
+		for (final Entry<String, MethodTimer> e : timers.entrySet()) {
+			final MethodTimer t = e.getValue();
+			final long count = t.getCount();
+			final Long last = lastCounts.put(e.getKey(), count);
+			final double throughput = (count - (last == null ? 0 : last)) / interval;
+
+			csv.append(String.format("%d,\"%s\",%d,%.3f,%.1f,%d,%d,%d,%d,%.1f,%d\n",
+					timestamp, e.getKey().replace("\"", "\"\""), count, throughput,
+					t.getMeanTime(), t.getMedianTime(), t.get90thPercentileTime(), t.get99thPercentileTime(),
+					t.getMaxTime(), t.getMeanSelfTime(), t.get99thPercentileSelfTime()));
+
+			text.append(String.format("\n  %s (%.1f calls/s)", t, throughput));
+		}
+
+		if (log)
+			logger.info(text);
+
+		if (csvFile != null)
+			writeCSV(csv);
+	}
+
+	private void writeCSV(CharSequence rows) {
+		final boolean newFile = !csvFile.exists() || csvFile.length() == 0;
+
+		PrintWriter pw = null;
+		try {
+			pw = new PrintWriter(new FileWriter(csvFile, true));
+			if (newFile)
+				pw.println(CSV_HEADER);
+			pw.print(rows);
+		} catch (final IOException e) {
+			logger.warn("Unable to write timing report to " + csvFile, e);
+		} finally {
+			if (pw != null)
+				pw.close();
+		}
+	}
+}
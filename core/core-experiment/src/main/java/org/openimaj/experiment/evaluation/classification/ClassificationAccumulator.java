@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.evaluation.classification;
+
+import java.util.Set;
+
+import org.openimaj.experiment.evaluation.AnalysisResult;
+
+/**
+ * A {@link ClassificationAccumulator} incrementally accumulates the statistics
+ * required by an {@link IncrementalClassificationAnalyser} one classified
+ * object at a time, without needing to retain the classification results.
+ * Accumulators are not thread-safe, but partial results accumulated in
+ * different threads can be combined with {@link #merge(ClassificationAccumulator)}.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <RESULT> The type of {@link AnalysisResult} produced
+ * @param <CLASS> The type of classes produced by the {@link Classifier}
+ * @param <OBJECT> The type of object classifed by the {@link Classifier}
+ */
+public interface ClassificationAccumulator<RESULT extends AnalysisResult, CLASS, OBJECT> {
+	/**
+	 * Accumulate the result of classifying an object.
+	 * 
+	 * @param object the object
+	 * @param predicted the prediction from the classifier (can be null if the 
+	 * 	classifier failed to produce a result)
+	 * @param actual the ground-truth classes of the object
+	 */
+	public void add(OBJECT object, ClassificationResult<CLASS> predicted, Set<CLASS> actual);
+
+	/**
+	 * Merge the data accumulated by another accumulator created by the
+	 * same analyser into this one.
+	 * 
+	 * @param other the accumulator to merge
+	 */
+	public void merge(ClassificationAccumulator<RESULT, CLASS, OBJECT> other);
+
+	/**
+	 * Compute the result from the accumulated data.
+	 * 
+	 * @return an object representing the analysed results
+	 */
+	public RESULT getResult();
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.evaluation.classification;
+
+import java.util.Set;
+
+import org.openimaj.experiment.evaluation.AnalysisResult;
+
+/**
+ * A {@link ClassificationAnalyser} that is also capable of analysing
+ * classification results incrementally through a
+ * {@link ClassificationAccumulator}, so the results do not need to be held in
+ * memory and can be accumulated in parallel.
+ * 
+ * @see StreamingClassificationEvaluator
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <RESULT> The type of {@link AnalysisResult} produced
+ * @param <CLASS> The type of classes produced by the {@link Classifier}
+ * @param <OBJECT> The type of object classifed by the {@link Classifier}
+ */
+public interface IncrementalClassificationAnalyser<RESULT extends AnalysisResult, CLASS, OBJECT>
+		extends ClassificationAnalyser<RESULT, CLASS, OBJECT>
+{
+	/**
+	 * Create a new (empty) accumulator.
+	 * 
+	 * @param classes the set of all classes that could appear in the ground-truth 
+	 * @return the accumulator
+	 */
+	public ClassificationAccumulator<RESULT, CLASS, OBJECT> createAccumulator(Set<CLASS> classes);
+}
@@ -0,0 +1,408 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.evaluation.classification;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openimaj.data.dataset.GroupedDataset;
+import org.openimaj.data.dataset.ListDataset;
+import org.openimaj.experiment.dataset.util.DatasetAdaptors;
+import org.openimaj.experiment.evaluation.AnalysisResult;
+import org.openimaj.experiment.evaluation.Evaluator;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.partition.FixedSizeChunkPartitioner;
+
+/**
+ * An {@link Evaluator} for classification experiments that classifies the
+ * objects in parallel batches and analyses the results incrementally using
+ * an {@link IncrementalClassificationAnalyser}. Unlike the
+ * {@link ClassificationEvaluator}, the individual
+ * {@link ClassificationResult}s are never stored, so very large test sets can
+ * be evaluated in bounded memory.
+ * <p>
+ * Each batch of objects is classified by a single thread into its own
+ * {@link ClassificationAccumulator}, which is then merged into the overall
+ * result. Progress (the number of objects classified, the throughput, and the
+ * running accuracy with its confidence interval) is periodically logged.
+ * <p>
+ * Optionally, evaluation can be stopped early once the confidence interval on
+ * the accuracy is tighter than a target width. Accuracy is defined as the
+ * proportion of objects for which the set of predicted classes is exactly the
+ * set of ground-truth classes. When early stopping is enabled, the objects are
+ * visited in a random order so that the evaluated subset is an unbiased
+ * sample.
+ * <p>
+ * As objects are classified concurrently, the {@link Classifier} must be
+ * thread-safe (or a single-threaded pool must be used).
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <RESULT>
+ *            Type of analysed data
+ * @param <CLASS>
+ *            Type of classes predicted by the classifier
+ * @param <OBJECT>
+ *            Type of objects classified by the classifier
+ */
+public class StreamingClassificationEvaluator<RESULT extends AnalysisResult, CLASS, OBJECT>
+		implements
+		Evaluator<ClassificationAccumulator<RESULT, CLASS, OBJECT>, RESULT>
+{
+	private static final Logger logger = LogManager.getLogger(StreamingClassificationEvaluator.class);
+
+	/** z-value of the 95% confidence interval */
+	private static final double Z = 1.959963984540054;
+
+	protected Classifier<CLASS, OBJECT> classifier;
+	protected IncrementalClassificationAnalyser<RESULT, CLASS, OBJECT> analyser;
+	protected Map<OBJECT, Set<CLASS>> actual;
+	protected List<OBJECT> objects;
+
+	private int batchSize = 1000;
+	private ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+	private long progressInterval = 10000;
+	private double targetInterval = 0;
+	private int minInstances = 0;
+	private long seed = 0;
+
+	private volatile long numEvaluated;
+	private volatile long numCorrect;
+	private volatile boolean stoppedEarly;
+
+	/**
+	 * Construct a new {@link StreamingClassificationEvaluator} with the given
+	 * classifier, set of objects to classify, ground truth ("actual") data and
+	 * an {@link IncrementalClassificationAnalyser}.
+	 *
+	 * @param classifier
+	 *            the classifier
+	 * @param objects
+	 *            the objects to classify
+	 * @param actual
+	 *            the ground truth
+	 * @param analyser
+	 *            the analyser
+	 */
+	public StreamingClassificationEvaluator(Classifier<CLASS, OBJECT> classifier, Collection<OBJECT> objects,
+			Map<OBJECT, Set<CLASS>> actual, IncrementalClassificationAnalyser<RESULT, CLASS, OBJECT> analyser)
+	{
+		this.classifier = classifier;
+		this.objects = objects instanceof List ? (List<OBJECT>) objects : new ArrayList<OBJECT>(objects);
+		this.actual = actual;
+		this.analyser = analyser;
+	}
+
+	/**
+	 * Construct a new {@link StreamingClassificationEvaluator} with the given
+	 * classifier, ground truth ("actual") data and an
+	 * {@link IncrementalClassificationAnalyser}.
+	 * <p>
+	 * The objects to classify are taken from the {@link Map#keySet()} of the
+	 * ground truth.
+	 *
+	 * @param classifier
+	 *            the classifier
+	 * @param actual
+	 *            the ground truth
+	 * @param analyser
+	 *            the analyser
+	 */
+	public StreamingClassificationEvaluator(Classifier<CLASS, OBJECT> classifier, Map<OBJECT, Set<CLASS>> actual,
+			IncrementalClassificationAnalyser<RESULT, CLASS, OBJECT> analyser)
+	{
+		this(classifier, actual.keySet(), actual, analyser);
+	}
+
+	/**
+	 * Construct a new {@link StreamingClassificationEvaluator} with the given
+	 * classifier, ground truth ("actual") data and an
+	 * {@link IncrementalClassificationAnalyser}.
+	 * <p>
+	 * The ground-truth classes to are taken from the
+	 * {@link GroupedDataset#getGroups()} of the "actual" {@link GroupedDataset}
+	 * , and the objects are assembled by concatenating all of the
+	 * {@link ListDataset}s within the "actual" dataset.
+	 *
+	 * @param classifier
+	 *            the classifier
+	 * @param actual
+	 *            the dataset containing instances and ground truths
+	 * @param analyser
+	 *            the analyser
+	 */
+	public StreamingClassificationEvaluator(Classifier<CLASS, OBJECT> classifier,
+			GroupedDataset<CLASS, ? extends ListDataset<OBJECT>, OBJECT> actual,
+			IncrementalClassificationAnalyser<RESULT, CLASS, OBJECT> analyser)
+	{
+		this.classifier = classifier;
+		this.objects = DatasetAdaptors.asList(actual);
+		this.actual = new HashMap<OBJECT, Set<CLASS>>();
+		for (final CLASS clazz : actual.getGroups()) {
+			final HashSet<CLASS> cset = new HashSet<CLASS>();
+			cset.add(clazz);
+			for (final OBJECT instance : actual.getInstances(clazz)) {
+				this.actual.put(instance, cset);
+			}
+		}
+		this.analyser = analyser;
+	}
+
+	/**
+	 * Set the number of objects classified by each parallel task. Defaults to
+	 * 1000.
+	 *
+	 * @param batchSize
+	 *            the batch size
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize <= 0)
+			throw new IllegalArgumentException("Batch size must be positive");
+
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Set the thread pool used to classify the objects. Defaults to the
+	 * {@link GlobalExecutorPool}.
+	 *
+	 * @param pool
+	 *            the pool
+	 */
+	public void setPool(ThreadPoolExecutor pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Set the minimum interval between progress reports in milliseconds.
+	 * Setting to zero or less disables progress reporting. Defaults to 10
+	 * seconds.
+	 *
+	 * @param progressInterval
+	 *            the reporting interval
+	 */
+	public void setProgressInterval(long progressInterval) {
+		this.progressInterval = progressInterval;
+	}
+
+	/**
+	 * Enable early stopping. Evaluation will stop once at least
+	 * <code>minInstances</code> objects have been evaluated and the width of
+	 * the 95% confidence interval on the accuracy is less than
+	 * <code>targetInterval</code>. The objects will be evaluated in a random
+	 * order determined by the given seed.
+	 *
+	 * @param targetInterval
+	 *            the target width of the confidence interval; set to zero to
+	 *            disable early stopping
+	 * @param minInstances
+	 *            the minimum number of objects to evaluate
+	 * @param seed
+	 *            the seed for randomising the order of the objects
+	 */
+	public void setEarlyStopping(double targetInterval, int minInstances, long seed) {
+		this.targetInterval = targetInterval;
+		this.minInstances = minInstances;
+		this.seed = seed;
+	}
+
+	/**
+	 * Classify the objects and accumulate the results. Any previously
+	 * accumulated results are discarded.
+	 *
+	 * @return the accumulated results.
+	 */
+	@Override
+	public ClassificationAccumulator<RESULT, CLASS, OBJECT> evaluate() {
+		final Set<CLASS> classes = new HashSet<CLASS>();
+		for (final OBJECT o : objects)
+			classes.addAll(actual.get(o));
+
+		final int[] order = createOrder();
+		final int numBatches = (order.length + batchSize - 1) / batchSize;
+		final List<Integer> batches = new ArrayList<Integer>(numBatches);
+		for (int i = 0; i < numBatches; i++)
+			batches.add(i);
+
+		final ClassificationAccumulator<RESULT, CLASS, OBJECT> result = analyser.createAccumulator(classes);
+		final AtomicBoolean stop = new AtomicBoolean(false);
+		final long startTime = System.currentTimeMillis();
+		final long[] lastReport = { startTime };
+
+		numEvaluated = 0;
+		numCorrect = 0;
+		stoppedEarly = false;
+
+		Parallel.forEach(new FixedSizeChunkPartitioner<Integer>(batches, 1), new Operation<Integer>() {
+			@Override
+			public void perform(Integer batch) {
+				if (stop.get())
+					return;
+
+				final ClassificationAccumulator<RESULT, CLASS, OBJECT> acc = analyser.createAccumulator(classes);
+				final int end = Math.min(order.length, (batch + 1) * batchSize);
+				int count = 0;
+				int correct = 0;
+
+				for (int i = batch * batchSize; i < end && !stop.get(); i++) {
+					final OBJECT object = objects.get(order[i]);
+					final ClassificationResult<CLASS> predicted = classifier.classify(object);
+					final Set<CLASS> expected = actual.get(object);
+
+					acc.add(object, predicted, expected);
+
+					count++;
+					if (predicted != null && predicted.getPredictedClasses().equals(expected))
+						correct++;
+				}
+
+				synchronized (result) {
+					if (stoppedEarly)
+						return;
+
+					result.merge(acc);
+					numEvaluated += count;
+					numCorrect += correct;
+
+					final long now = System.currentTimeMillis();
+					if (progressInterval > 0 && now - lastReport[0] >= progressInterval) {
+						lastReport[0] = now;
+						logProgress(now - startTime);
+					}
+
+					if (targetInterval > 0 && numEvaluated >= minInstances && numEvaluated < order.length
+							&& getAccuracyInterval() < targetInterval)
+					{
+						stoppedEarly = true;
+						stop.set(true);
+					}
+				}
+			}
+		}, pool);
+
+		if (progressInterval > 0)
+			logProgress(System.currentTimeMillis() - startTime);
+
+		return result;
+	}
+
+	private int[] createOrder() {
+		final int[] order = new int[objects.size()];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+
+		if (targetInterval > 0) {
+			final Random rng = new Random(seed);
+			for (int i = order.length - 1; i > 0; i--) {
+				final int j = rng.nextInt(i + 1);
+				final int tmp = order[i];
+				order[i] = order[j];
+				order[j] = tmp;
+			}
+		}
+
+		return order;
+	}
+
+	private void logProgress(long elapsed) {
+		final double rate = elapsed > 0 ? numEvaluated * 1000.0 / elapsed : 0;
+
+		logger.info(String.format("Evaluated %d/%d objects (%.1f/s); accuracy %.4f (95%% CI width %.4f)%s",
+				numEvaluated, objects.size(), rate, getAccuracy(), getAccuracyInterval(),
+				stoppedEarly ? "; stopped early" : ""));
+	}
+
+	@Override
+	public RESULT analyse(ClassificationAccumulator<RESULT, CLASS, OBJECT> rawData) {
+		return rawData.getResult();
+	}
+
+	/**
+	 * @return the number of objects evaluated by the last call to
+	 *         {@link #evaluate()}
+	 */
+	public long getNumberEvaluated() {
+		return numEvaluated;
+	}
+
+	/**
+	 * @return true if the last call to {@link #evaluate()} stopped before all
+	 *         the objects were evaluated
+	 */
+	public boolean isStoppedEarly() {
+		return stoppedEarly;
+	}
+
+	/**
+	 * @return the proportion of evaluated objects for which the predicted
+	 *         classes exactly matched the ground-truth
+	 */
+	public double getAccuracy() {
+		return numEvaluated == 0 ? 0 : (double) numCorrect / numEvaluated;
+	}
+
+	/**
+	 * Get the width of the 95% Wilson score confidence interval on the
+	 * accuracy.
+	 *
+	 * @return the width of the confidence interval
+	 */
+	public double getAccuracyInterval() {
+		final double n = numEvaluated;
+		if (n == 0)
+			return 1;
+
+		final double p = numCorrect / n;
+		final double z2 = Z * Z;
+
+		return 2 * Z * Math.sqrt(p * (1 - p) / n + z2 / (4 * n * n)) / (1 + z2 / n);
+	}
+
+	/**
+	 * Get the expected classes for each instance
+	 *
+	 * @return the map of instances to expected classes
+	 */
+	public Map<OBJECT, Set<CLASS>> getExpected() {
+		return actual;
+	}
+}
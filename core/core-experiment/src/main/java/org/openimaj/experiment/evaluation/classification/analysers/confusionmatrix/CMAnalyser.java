@@ -31,21 +31,28 @@ package org.openimaj.experiment.evaluation.classification.analysers.confusionmat
 
 import gov.sandia.cognition.learning.data.DefaultTargetEstimatePair;
 import gov.sandia.cognition.learning.data.TargetEstimatePair;
+import gov.sandia.cognition.learning.performance.categorization.ConfusionMatrix;
 import gov.sandia.cognition.learning.performance.categorization.ConfusionMatrixPerformanceEvaluator;
+import gov.sandia.cognition.learning.performance.categorization.DefaultConfusionMatrix;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.openimaj.experiment.evaluation.classification.ClassificationAccumulator;
 import org.openimaj.experiment.evaluation.classification.ClassificationAnalyser;
 import org.openimaj.experiment.evaluation.classification.ClassificationResult;
 import org.openimaj.experiment.evaluation.classification.Classifier;
+import org.openimaj.experiment.evaluation.classification.IncrementalClassificationAnalyser;
 
 /**
- * A {@link ClassificationAnalyser} that creates Confusion Matrices.
+ * A {@link ClassificationAnalyser} that creates Confusion Matrices. The
+ * confusion matrix can also be built incrementally (and in parallel) through
+ * a {@link ClassificationAccumulator}.
  *
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  *
@@ -55,7 +62,7 @@ import org.openimaj.experiment.evaluation.classification.Classifier;
  *            The type of object classifed by the {@link Classifier}
  */
 public class CMAnalyser<OBJECT, CLASS>
-implements ClassificationAnalyser<
+implements IncrementalClassificationAnalyser<
 CMResult<CLASS>,
 CLASS,
 OBJECT>
@@ -174,4 +181,47 @@ OBJECT>
 
 		return new CMResult<CLASS>(eval.evaluatePerformance(data));
 			}
+
+	@Override
+	public ClassificationAccumulator<CMResult<CLASS>, CLASS, OBJECT> createAccumulator(Set<CLASS> classes) {
+		return new Accumulator();
+	}
+
+	/**
+	 * {@link ClassificationAccumulator} that directly updates the counts in
+	 * a confusion matrix.
+	 */
+	private class Accumulator implements ClassificationAccumulator<CMResult<CLASS>, CLASS, OBJECT> {
+		final DefaultConfusionMatrix<CLASS> matrix = new DefaultConfusionMatrix<CLASS>();
+		final List<TargetEstimatePair<CLASS, CLASS>> data = new ArrayList<TargetEstimatePair<CLASS, CLASS>>();
+
+		@Override
+		public void add(OBJECT object, ClassificationResult<CLASS> predicted, Set<CLASS> actual) {
+			final Set<CLASS> pclasses = predicted == null ? Collections.<CLASS> emptySet() : predicted
+					.getPredictedClasses();
+
+			strategy.add(data, pclasses, actual);
+
+			for (final TargetEstimatePair<CLASS, CLASS> pair : data)
+				matrix.add(pair.getTarget(), pair.getEstimate());
+
+			data.clear();
+		}
+
+		@Override
+		public void merge(ClassificationAccumulator<CMResult<CLASS>, CLASS, OBJECT> other) {
+			final ConfusionMatrix<CLASS> om = ((Accumulator) other).matrix;
+
+			for (final CLASS target : om.getActualCategories()) {
+				for (final CLASS estimate : om.getPredictedCategories(target)) {
+					matrix.add(target, estimate, om.getCount(target, estimate));
+				}
+			}
+		}
+
+		@Override
+		public CMResult<CLASS> getResult() {
+			return new CMResult<CLASS>(matrix);
+		}
+	}
 }
@@ -34,19 +34,28 @@ import gov.sandia.cognition.util.DefaultPair;
 import gov.sandia.cognition.util.Pair;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.openimaj.experiment.evaluation.classification.ClassificationAccumulator;
 import org.openimaj.experiment.evaluation.classification.ClassificationAnalyser;
 import org.openimaj.experiment.evaluation.classification.ClassificationResult;
+import org.openimaj.experiment.evaluation.classification.IncrementalClassificationAnalyser;
 
 /**
  * A {@link ClassificationAnalyser} capable of producing 
  * a Receiver Operating Characteristic curve and associated
  * statistics.  
+ * <p>
+ * The ROC curves can also be computed incrementally through a 
+ * {@link ClassificationAccumulator}; in this case only the score and
+ * ground-truth label for each object and class are retained (in 
+ * primitive arrays) rather than the classification results themselves.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  *
@@ -56,7 +65,7 @@ import org.openimaj.experiment.evaluation.classification.ClassificationResult;
 public class ROCAnalyser< 
 	OBJECT, 
 	CLASS> 
-implements ClassificationAnalyser<
+implements IncrementalClassificationAnalyser<
 	ROCResult<CLASS>, 
 	CLASS, 
 	OBJECT> 
@@ -92,4 +101,94 @@ implements ClassificationAnalyser<
 		return new ROCResult<CLASS>(output);
 	}
 
+	@Override
+	public ClassificationAccumulator<ROCResult<CLASS>, CLASS, OBJECT> createAccumulator(Set<CLASS> classes) {
+		return new Accumulator(classes);
+	}
+	
+	/**
+	 * Growable list of scores with associated binary labels
+	 */
+	private static class ScoreList {
+		double[] scores = new double[16];
+		BitSet labels = new BitSet();
+		int size;
+		
+		void add(boolean label, double score) {
+			if (size == scores.length)
+				scores = Arrays.copyOf(scores, size * 2);
+			
+			if (label)
+				labels.set(size);
+			scores[size++] = score;
+		}
+		
+		void addAll(ScoreList other) {
+			if (size + other.size > scores.length)
+				scores = Arrays.copyOf(scores, Math.max(size + other.size, size * 2));
+			
+			System.arraycopy(other.scores, 0, scores, size, other.size);
+			for (int i = other.labels.nextSetBit(0); i >= 0; i = other.labels.nextSetBit(i + 1))
+				labels.set(size + i);
+			
+			size += other.size;
+		}
+	}
+	
+	/**
+	 * {@link ClassificationAccumulator} that records the scores and labels
+	 * of every object for each class. 
+	 */
+	private class Accumulator implements ClassificationAccumulator<ROCResult<CLASS>, CLASS, OBJECT> {
+		final Map<CLASS, ScoreList> data = new HashMap<CLASS, ScoreList>();
+		
+		Accumulator(Set<CLASS> classes) {
+			for (CLASS clz : classes)
+				data.put(clz, new ScoreList());
+		}
+		
+		@Override
+		public void add(OBJECT object, ClassificationResult<CLASS> predicted, Set<CLASS> actual) {
+			for (Map.Entry<CLASS, ScoreList> e : data.entrySet()) {
+				if (predicted != null) {
+					e.getValue().add(actual.contains(e.getKey()), predicted.getConfidence(e.getKey()));
+				} else {
+					e.getValue().add(false, 1.0);
+				}
+			}
+		}
+
+		@Override
+		public void merge(ClassificationAccumulator<ROCResult<CLASS>, CLASS, OBJECT> other) {
+			for (Map.Entry<CLASS, ScoreList> e : ((Accumulator) other).data.entrySet()) {
+				ScoreList list = data.get(e.getKey());
+				
+				if (list == null) 
+					data.put(e.getKey(), list = new ScoreList());
+				
+				list.addAll(e.getValue());
+			}
+		}
+
+		@Override
+		public ROCResult<CLASS> getResult() {
+			Map<CLASS, ReceiverOperatingCharacteristic> output = new HashMap<CLASS, ReceiverOperatingCharacteristic>();
+			
+			for (Map.Entry<CLASS, ScoreList> e : data.entrySet()) {
+				final ScoreList list = e.getValue();
+				
+				//only classes that actually occurred have a curve
+				if (list.labels.isEmpty())
+					continue;
+				
+				List<Pair<Boolean, Double>> pairs = new ArrayList<Pair<Boolean, Double>>(list.size);
+				for (int i = 0; i < list.size; i++)
+					pairs.add(new DefaultPair<Boolean, Double>(list.labels.get(i), list.scores[i]));
+				
+				output.put(e.getKey(), ReceiverOperatingCharacteristic.createFromTargetEstimatePairs(pairs));
+			}
+			
+			return new ROCResult<CLASS>(output);
+		}
+	}
 }
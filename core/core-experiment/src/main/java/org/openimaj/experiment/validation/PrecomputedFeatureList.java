@@ -0,0 +1,189 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.validation;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.AbstractList;
+import java.util.Arrays;
+
+import org.openimaj.io.IOUtils;
+
+/**
+ * A fixed-size list of features that have been precomputed for the items of a
+ * dataset. The features can either be held in memory, or written to a
+ * temporary file as they are computed so that the memory required is
+ * independent of the size of the dataset; in the latter case each
+ * {@link #get(int)} re-reads the feature from disk.
+ * <p>
+ * Features are added using {@link #set(int, Object)}, which can be safely
+ * called concurrently from multiple threads. Each index can only be set
+ * once.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <FEATURE>
+ *            Type of feature
+ */
+public class PrecomputedFeatureList<FEATURE> extends AbstractList<FEATURE> implements Closeable {
+	private final int size;
+	private final Object[] features;
+	private final File file;
+	private final long[] offsets;
+	private RandomAccessFile raf;
+
+	/**
+	 * Construct an in-memory list of the given size.
+	 *
+	 * @param size
+	 *            the number of features
+	 */
+	public PrecomputedFeatureList(int size) {
+		this.size = size;
+		this.features = new Object[size];
+		this.file = null;
+		this.offsets = null;
+	}
+
+	/**
+	 * Construct a disk-backed list of the given size. The features will be
+	 * stored in the given file, which will be deleted when the list is closed
+	 * (or the JVM exits).
+	 *
+	 * @param size
+	 *            the number of features
+	 * @param file
+	 *            the backing file
+	 * @throws IOException
+	 *             if the file cannot be created
+	 */
+	public PrecomputedFeatureList(int size, File file) throws IOException {
+		this.size = size;
+		this.features = null;
+		this.file = file;
+		this.offsets = new long[size];
+		Arrays.fill(offsets, -1);
+
+		file.deleteOnExit();
+		this.raf = new RandomAccessFile(file, "rw");
+		this.raf.setLength(0);
+	}
+
+	/**
+	 * Construct a disk-backed list of the given size, backed by a temporary
+	 * file.
+	 *
+	 * @param <FEATURE>
+	 *            Type of feature
+	 * @param size
+	 *            the number of features
+	 * @return the list
+	 * @throws IOException
+	 *             if the file cannot be created
+	 */
+	public static <FEATURE> PrecomputedFeatureList<FEATURE> createDiskBacked(int size) throws IOException {
+		return new PrecomputedFeatureList<FEATURE>(size, File.createTempFile("openimaj-features", ".bin"));
+	}
+
+	/**
+	 * @return true if the features are stored on disk; false if they are in
+	 *         memory
+	 */
+	public boolean isDiskBacked() {
+		return file != null;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public FEATURE get(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+		if (features != null)
+			return (FEATURE) features[index];
+
+		synchronized (this) {
+			if (offsets[index] < 0)
+				return null;
+
+			try {
+				raf.seek(offsets[index]);
+				return IOUtils.<FEATURE> read(raf);
+			} catch (final IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	@Override
+	public FEATURE set(int index, FEATURE feature) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+		if (features != null) {
+			@SuppressWarnings("unchecked")
+			final FEATURE old = (FEATURE) features[index];
+			features[index] = feature;
+			return old;
+		}
+
+		synchronized (this) {
+			if (offsets[index] >= 0)
+				throw new IllegalStateException("The feature at index " + index + " has already been set");
+
+			try {
+				final long offset = raf.length();
+				raf.seek(offset);
+				IOUtils.write(feature, raf);
+				offsets[index] = offset;
+			} catch (final IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		return null;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (raf != null) {
+			raf.close();
+			raf = null;
+			file.delete();
+		}
+	}
+}
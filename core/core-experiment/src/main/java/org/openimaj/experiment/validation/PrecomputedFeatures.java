@@ -0,0 +1,236 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.validation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.data.dataset.GroupedDataset;
+import org.openimaj.data.dataset.ListBackedDataset;
+import org.openimaj.data.dataset.ListDataset;
+import org.openimaj.data.dataset.MapBackedDataset;
+import org.openimaj.feature.FeatureExtractor;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+/**
+ * Utility methods for extracting the features of every item in a dataset
+ * exactly once, producing a dataset of features with the same structure as the
+ * original. Cross-validation schemes only depend on the structure of a dataset
+ * (its size and groups), so running the cross-validation over the feature
+ * dataset is equivalent to running it over the original data and extracting
+ * features in each round, but avoids re-extracting the features of each item
+ * in every fold.
+ * <p>
+ * Features can either be held in memory, or written to disk as they are
+ * extracted, depending on the {@link PrecomputedFeatureList} used to store
+ * them.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class PrecomputedFeatures {
+	private PrecomputedFeatures() {
+	}
+
+	/**
+	 * Extract the features of all the items in the given dataset in parallel
+	 * using the {@link GlobalExecutorPool}, storing them in memory.
+	 *
+	 * @param <INSTANCE>
+	 *            Type of instances
+	 * @param <FEATURE>
+	 *            Type of features
+	 * @param dataset
+	 *            the dataset
+	 * @param extractor
+	 *            the feature extractor
+	 * @return a dataset of the features, in the same order as the instances
+	 */
+	public static <INSTANCE, FEATURE> ListDataset<FEATURE> extract(ListDataset<INSTANCE> dataset,
+			FeatureExtractor<FEATURE, ? super INSTANCE> extractor)
+	{
+		return extract(dataset, extractor, new PrecomputedFeatureList<FEATURE>(dataset.size()),
+				GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Extract the features of all the items in the given dataset in parallel
+	 * using the given pool, storing them in the given
+	 * {@link PrecomputedFeatureList}. The caller is responsible for closing
+	 * the storage once the features are no longer required.
+	 *
+	 * @param <INSTANCE>
+	 *            Type of instances
+	 * @param <FEATURE>
+	 *            Type of features
+	 * @param dataset
+	 *            the dataset
+	 * @param extractor
+	 *            the feature extractor
+	 * @param storage
+	 *            the storage for the features; must be the same size as the
+	 *            dataset
+	 * @param pool
+	 *            the thread pool to perform the extraction with
+	 * @return a dataset of the features, in the same order as the instances
+	 */
+	public static <INSTANCE, FEATURE> ListDataset<FEATURE> extract(ListDataset<INSTANCE> dataset,
+			FeatureExtractor<FEATURE, ? super INSTANCE> extractor, PrecomputedFeatureList<FEATURE> storage,
+			ThreadPoolExecutor pool)
+	{
+		checkSize(storage, dataset.size());
+
+		return new ListBackedDataset<FEATURE>(extractInto(dataset, extractor, storage, pool));
+	}
+
+	/**
+	 * Extract the features of all the items in the given grouped dataset in
+	 * parallel using the {@link GlobalExecutorPool}, storing them in memory.
+	 *
+	 * @param <KEY>
+	 *            Type of groups
+	 * @param <INSTANCE>
+	 *            Type of instances
+	 * @param <FEATURE>
+	 *            Type of features
+	 * @param dataset
+	 *            the dataset
+	 * @param extractor
+	 *            the feature extractor
+	 * @return a grouped dataset of the features, with the same groups as the
+	 *         original and the features in the same order as the instances
+	 */
+	public static <KEY, INSTANCE, FEATURE> GroupedDataset<KEY, ListDataset<FEATURE>, FEATURE> extract(
+			GroupedDataset<KEY, ? extends ListDataset<INSTANCE>, INSTANCE> dataset,
+			FeatureExtractor<FEATURE, ? super INSTANCE> extractor)
+	{
+		return extract(dataset, extractor, new PrecomputedFeatureList<FEATURE>(dataset.numInstances()),
+				GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Extract the features of all the items in the given grouped dataset in
+	 * parallel using the given pool, storing them in the given
+	 * {@link PrecomputedFeatureList}. All the groups share the same underlying
+	 * storage. The caller is responsible for closing the storage once the
+	 * features are no longer required.
+	 *
+	 * @param <KEY>
+	 *            Type of groups
+	 * @param <INSTANCE>
+	 *            Type of instances
+	 * @param <FEATURE>
+	 *            Type of features
+	 * @param dataset
+	 *            the dataset
+	 * @param extractor
+	 *            the feature extractor
+	 * @param storage
+	 *            the storage for the features; must be the same size as the
+	 *            total number of instances in the dataset
+	 * @param pool
+	 *            the thread pool to perform the extraction with
+	 * @return a grouped dataset of the features, with the same groups as the
+	 *         original and the features in the same order as the instances
+	 */
+	public static <KEY, INSTANCE, FEATURE> GroupedDataset<KEY, ListDataset<FEATURE>, FEATURE> extract(
+			GroupedDataset<KEY, ? extends ListDataset<INSTANCE>, INSTANCE> dataset,
+			final FeatureExtractor<FEATURE, ? super INSTANCE> extractor, final PrecomputedFeatureList<FEATURE> storage,
+			ThreadPoolExecutor pool)
+	{
+		checkSize(storage, dataset.numInstances());
+
+		final MapBackedDataset<KEY, ListDataset<FEATURE>, FEATURE> features = new MapBackedDataset<KEY, ListDataset<FEATURE>, FEATURE>();
+
+		// lay the groups out contiguously in the storage, and extract all
+		// the features in a single parallel loop
+		final int numGroups = dataset.size();
+		final List<ListDataset<INSTANCE>> groups = new ArrayList<ListDataset<INSTANCE>>(numGroups);
+		final int[] starts = new int[numGroups + 1];
+
+		int g = 0;
+		for (final Entry<KEY, ? extends ListDataset<INSTANCE>> e : dataset.entrySet()) {
+			final ListDataset<INSTANCE> instances = e.getValue();
+			groups.add(instances);
+			starts[g + 1] = starts[g] + instances.size();
+
+			features.put(e.getKey(), new ListBackedDataset<FEATURE>(storage.subList(starts[g], starts[g + 1])));
+			g++;
+		}
+
+		if (starts[numGroups] == 0)
+			return features;
+
+		Parallel.forRange(0, starts[numGroups], 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				int group = Arrays.binarySearch(starts, range.start);
+				if (group < 0)
+					group = -group - 2;
+
+				for (int i = range.start; i < range.stop; i += range.incr) {
+					while (i >= starts[group + 1])
+						group++;
+
+					storage.set(i, extractor.extractFeature(groups.get(group).getInstance(i - starts[group])));
+				}
+			}
+		}, pool);
+
+		return features;
+	}
+
+	private static void checkSize(PrecomputedFeatureList<?> storage, int size) {
+		if (storage.size() != size)
+			throw new IllegalArgumentException("The feature storage must have the same size as the dataset");
+	}
+
+	private static <INSTANCE, FEATURE, LIST extends List<FEATURE>> LIST extractInto(final ListDataset<INSTANCE> dataset,
+			final FeatureExtractor<FEATURE, ? super INSTANCE> extractor, final LIST storage, ThreadPoolExecutor pool)
+	{
+		if (dataset.size() == 0)
+			return storage;
+
+		Parallel.forRange(0, dataset.size(), 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				for (int i = range.start; i < range.stop; i += range.incr)
+					storage.set(i, extractor.extractFeature(dataset.getInstance(i)));
+			}
+		}, pool);
+
+		return storage;
+	}
+}
@@ -29,14 +29,20 @@
  */
 package org.openimaj.experiment.validation;
 
+import java.io.IOException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.data.dataset.Dataset;
+import org.openimaj.data.dataset.GroupedDataset;
+import org.openimaj.data.dataset.ListDataset;
 import org.openimaj.experiment.evaluation.AnalysisResult;
 import org.openimaj.experiment.evaluation.ResultAggregator;
 import org.openimaj.experiment.validation.cross.CrossValidator;
+import org.openimaj.feature.FeatureExtractor;
 import org.openimaj.util.function.Operation;
 import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.GlobalExecutorPool.DaemonThreadFactory;
 import org.openimaj.util.parallel.Parallel;
 import org.openimaj.util.parallel.partition.FixedSizeChunkPartitioner;
 
@@ -123,4 +129,149 @@ public class ValidationRunner {
 		
 		return aggregator.getAggregatedResult();
 	}
+	
+	/**
+	 * Perform cross validation using the given cross validation scheme
+	 * on the given data. The results of operation from each round
+	 * are aggregated by the given results aggregator.
+	 * <p>
+	 * At most <code>foldThreads</code> rounds of the validation are performed
+	 * concurrently, using a dedicated pool of threads that is shut down on
+	 * completion. Because the rounds do not occupy the threads of the
+	 * {@link GlobalExecutorPool}, operations can safely make use of it
+	 * for their own parallel processing; to avoid oversubscribing the
+	 * available processors, <code>foldThreads</code> should be reduced 
+	 * accordingly (e.g. to 1 if each round is itself fully parallel).
+	 * 
+	 * @param <DATASET> The type of the dataset
+	 * @param <ANALYSIS_RESULT> The type of the analysis result from each round
+	 * @param <AGGREGATE_ANALYSIS_RESULT> The type of the aggregated analysis result 
+	 * @param aggregator the results aggregator
+	 * @param dataset the dataset
+	 * @param cv the cross-validation scheme
+	 * @param round the operation to perform in each round
+	 * @param foldThreads the maximum number of rounds to perform concurrently
+	 * @return the aggregated analysis result from all rounds
+	 */
+	public static <DATASET extends Dataset<?>,
+			ANALYSIS_RESULT,
+			AGGREGATE_ANALYSIS_RESULT extends AnalysisResult
+			>
+		AGGREGATE_ANALYSIS_RESULT 
+		run(
+				final ResultAggregator<ANALYSIS_RESULT, AGGREGATE_ANALYSIS_RESULT> aggregator, 
+				final DATASET dataset,
+				final CrossValidator<DATASET> cv, 
+				final ValidationOperation<DATASET, ANALYSIS_RESULT> round,
+				int foldThreads) 
+	{
+		if (foldThreads <= 0)
+			throw new IllegalArgumentException("The number of fold threads must be at least one");
+		
+		final ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(foldThreads, new DaemonThreadFactory());
+		try {
+			return run(aggregator, dataset, cv, round, pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Perform cross validation using the given cross validation scheme
+	 * on the features extracted from the given data. The features of each
+	 * item are extracted exactly once, in parallel, before the validation
+	 * starts (see {@link PrecomputedFeatures}); the rounds of the validation
+	 * are then performed over the precomputed features with at most 
+	 * <code>foldThreads</code> rounds running concurrently.
+	 * 
+	 * @param <INSTANCE> The type of instances in the dataset
+	 * @param <FEATURE> The type of the extracted features
+	 * @param <ANALYSIS_RESULT> The type of the analysis result from each round
+	 * @param <AGGREGATE_ANALYSIS_RESULT> The type of the aggregated analysis result 
+	 * @param aggregator the results aggregator
+	 * @param dataset the dataset
+	 * @param extractor the feature extractor
+	 * @param diskBacked should the features be stored on disk rather than in memory
+	 * @param cv the cross-validation scheme
+	 * @param round the operation to perform in each round
+	 * @param foldThreads the maximum number of rounds to perform concurrently
+	 * @return the aggregated analysis result from all rounds
+	 * @throws IOException if the disk-backed feature storage cannot be created 
+	 */
+	public static <INSTANCE, FEATURE,
+			ANALYSIS_RESULT,
+			AGGREGATE_ANALYSIS_RESULT extends AnalysisResult
+			>
+		AGGREGATE_ANALYSIS_RESULT 
+		runWithPrecomputedFeatures(
+				final ResultAggregator<ANALYSIS_RESULT, AGGREGATE_ANALYSIS_RESULT> aggregator, 
+				final ListDataset<INSTANCE> dataset,
+				final FeatureExtractor<FEATURE, ? super INSTANCE> extractor,
+				final boolean diskBacked,
+				final CrossValidator<ListDataset<FEATURE>> cv, 
+				final ValidationOperation<ListDataset<FEATURE>, ANALYSIS_RESULT> round,
+				int foldThreads) throws IOException
+	{
+		final PrecomputedFeatureList<FEATURE> storage = diskBacked ? 
+				PrecomputedFeatureList.<FEATURE>createDiskBacked(dataset.size()) : 
+				new PrecomputedFeatureList<FEATURE>(dataset.size());
+		
+		try {
+			final ListDataset<FEATURE> features = PrecomputedFeatures.extract(dataset, extractor, storage, GlobalExecutorPool.getPool());
+			
+			return run(aggregator, features, cv, round, foldThreads);
+		} finally {
+			storage.close();
+		}
+	}
+	
+	/**
+	 * Perform cross validation using the given cross validation scheme
+	 * on the features extracted from the given grouped data. The features of each
+	 * item are extracted exactly once, in parallel, before the validation
+	 * starts (see {@link PrecomputedFeatures}); the rounds of the validation
+	 * are then performed over the precomputed features with at most 
+	 * <code>foldThreads</code> rounds running concurrently.
+	 * 
+	 * @param <KEY> The type of groups in the dataset
+	 * @param <INSTANCE> The type of instances in the dataset
+	 * @param <FEATURE> The type of the extracted features
+	 * @param <ANALYSIS_RESULT> The type of the analysis result from each round
+	 * @param <AGGREGATE_ANALYSIS_RESULT> The type of the aggregated analysis result 
+	 * @param aggregator the results aggregator
+	 * @param dataset the dataset
+	 * @param extractor the feature extractor
+	 * @param diskBacked should the features be stored on disk rather than in memory
+	 * @param cv the cross-validation scheme
+	 * @param round the operation to perform in each round
+	 * @param foldThreads the maximum number of rounds to perform concurrently
+	 * @return the aggregated analysis result from all rounds
+	 * @throws IOException if the disk-backed feature storage cannot be created 
+	 */
+	public static <KEY, INSTANCE, FEATURE,
+			ANALYSIS_RESULT,
+			AGGREGATE_ANALYSIS_RESULT extends AnalysisResult
+			>
+		AGGREGATE_ANALYSIS_RESULT 
+		runWithPrecomputedFeatures(
+				final ResultAggregator<ANALYSIS_RESULT, AGGREGATE_ANALYSIS_RESULT> aggregator, 
+				final GroupedDataset<KEY, ? extends ListDataset<INSTANCE>, INSTANCE> dataset,
+				final FeatureExtractor<FEATURE, ? super INSTANCE> extractor,
+				final boolean diskBacked,
+				final CrossValidator<GroupedDataset<KEY, ListDataset<FEATURE>, FEATURE>> cv, 
+				final ValidationOperation<GroupedDataset<KEY, ListDataset<FEATURE>, FEATURE>, ANALYSIS_RESULT> round,
+				int foldThreads) throws IOException
+	{
+		final PrecomputedFeatureList<FEATURE> storage = diskBacked ? 
+				PrecomputedFeatureList.<FEATURE>createDiskBacked(dataset.numInstances()) : 
+				new PrecomputedFeatureList<FEATURE>(dataset.numInstances());
+		
+		try {
+			final GroupedDataset<KEY, ListDataset<FEATURE>, FEATURE> features = PrecomputedFeatures.extract(dataset, extractor, storage, GlobalExecutorPool.getPool());
+			
+			return run(aggregator, features, cv, round, foldThreads);
+		} finally {
+			storage.close();
+		}
+	}
 }
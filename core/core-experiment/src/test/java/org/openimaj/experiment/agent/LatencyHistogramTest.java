@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.agent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link LatencyHistogram}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class LatencyHistogramTest {
+	/**
+	 * Small values should be recorded exactly
+	 */
+	@Test
+	public void testExactSmallValues() {
+		final LatencyHistogram h = new LatencyHistogram();
+		for (int i = 0; i < 100; i++)
+			h.record(i);
+
+		assertEquals(100, h.getCount());
+		assertEquals(0, h.getMin());
+		assertEquals(99, h.getMax());
+		assertEquals(49, h.getValueAtPercentile(50));
+		assertEquals(89, h.getValueAtPercentile(90));
+		assertEquals(99, h.getValueAtPercentile(100));
+		assertEquals(49.5, h.getMean(), 1e-10);
+	}
+
+	/**
+	 * Bucket indices should be monotonic and the bounds should contain the
+	 * values
+	 */
+	@Test
+	public void testBuckets() {
+		final Random rng = new Random(0);
+		for (int i = 0; i < 10000; i++) {
+			final long v = rng.nextLong() >>> (1 + rng.nextInt(63));
+			final int idx = LatencyHistogram.bucketIndex(v);
+
+			assertTrue(LatencyHistogram.bucketLowerBound(idx) <= v);
+			assertTrue(LatencyHistogram.bucketUpperBound(idx) >= v);
+			assertTrue(LatencyHistogram.bucketIndex(v + 1) >= idx);
+		}
+	}
+
+	/**
+	 * Percentiles of large values should be within the precision of the
+	 * histogram
+	 */
+	@Test
+	public void testPercentiles() {
+		final Random rng = new Random(1);
+		final LatencyHistogram h = new LatencyHistogram();
+		final long[] values = new long[10000];
+
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (long) (Math.abs(rng.nextGaussian()) * 1e6);
+			h.record(values[i]);
+		}
+		Arrays.sort(values);
+
+		for (final double p : new double[] { 10, 50, 90, 99, 99.9 }) {
+			final long expected = values[(int) Math.ceil(p / 100 * values.length) - 1];
+			assertEquals(expected, h.getValueAtPercentile(p), expected / 64.0);
+		}
+		assertEquals(values[values.length - 1], h.getMax());
+	}
+
+	/**
+	 * Test adding histograms together
+	 */
+	@Test
+	public void testAdd() {
+		final LatencyHistogram h1 = new LatencyHistogram();
+		final LatencyHistogram h2 = new LatencyHistogram();
+		h1.record(10);
+		h2.record(1000000);
+
+		final LatencyHistogram sum = h1.copy();
+		sum.add(h2);
+
+		assertEquals(2, sum.getCount());
+		assertEquals(10, sum.getMin());
+		assertEquals(1000000, sum.getMax());
+		assertEquals(1000010, sum.getTotal());
+		assertEquals(1, h1.getCount());
+	}
+}
@@ -0,0 +1,303 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.agent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.Map;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.Loader;
+import javassist.LoaderClassPath;
+
+import org.junit.Test;
+import org.openimaj.experiment.annotations.Time;
+
+/**
+ * Tests for {@link TimeClassTransformer}, the self-time accounting of
+ * {@link TimeTracker} and the argument parsing of {@link ExperimentAgent}.
+ * <p>
+ * The {@link Nested} class is instrumented under a new name for each test
+ * (classes in the agent package are never instrumented, and the timers are
+ * global), and loaded through a javassist {@link Loader} that delegates the
+ * agent classes so the instrumented code records into the same
+ * {@link TimeTracker} as the test.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class TimeClassTransformerTest {
+	private static final long SLEEP = 2;
+	private static int count = 0;
+
+	/**
+	 * The class that is instrumented
+	 */
+	public static class Nested {
+		/**
+		 * Calls {@link #inner()} twice
+		 */
+		public void outer() {
+			inner();
+			inner();
+		}
+
+		/**
+		 * Sleeps
+		 */
+		public void inner() {
+			try {
+				Thread.sleep(SLEEP);
+			} catch (final InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * Calls {@link #inner()} and then fails
+		 */
+		public void fails() {
+			inner();
+			throw new IllegalStateException();
+		}
+
+		/**
+		 * Calls {@link #inner()}
+		 */
+		@Time(identifier = "TimeClassTransformerTest.annotated")
+		public void annotated() {
+			inner();
+		}
+
+		/**
+		 * @param x
+		 * @return x + 1
+		 */
+		@Time
+		public int increment(int x) {
+			return x + 1;
+		}
+
+		/**
+		 * Does nothing
+		 */
+		public void untimed() {
+		}
+	}
+
+	private static synchronized String nextName() {
+		return "org.openimaj.timed.Nested" + (count++);
+	}
+
+	private static Class<?> instrument(TimeClassTransformer transformer, String name) throws Exception {
+		final ClassPool pool = new ClassPool(true);
+		pool.appendClassPath(new LoaderClassPath(TimeClassTransformerTest.class.getClassLoader()));
+
+		final CtClass ctclz = pool.getAndRename(Nested.class.getName(), name);
+		transformer.transform(name, ctclz);
+
+		final Loader loader = new Loader(TimeClassTransformerTest.class.getClassLoader(), pool);
+		loader.delegateLoadingOf("org.openimaj.experiment.");
+		loader.delegateLoadingOf("org.junit.");
+
+		return loader.loadClass(name);
+	}
+
+	private static Object call(Object obj, String method) throws Throwable {
+		try {
+			return obj.getClass().getMethod(method).invoke(obj);
+		} catch (final InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static String timerName(String className, String method) {
+		return className + "#" + className + "." + method;
+	}
+
+	private static MethodTimer timer(String className, String method) {
+		final MethodTimer timer = TimeTracker.getTimers().get(timerName(className, method));
+		assertTrue("no timer for " + method, timer != null);
+		return timer;
+	}
+
+	/**
+	 * The self time of the outer of a pair of nested calls must exclude the
+	 * time of the inner call
+	 *
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testEnterExit() throws InterruptedException {
+		final MethodTimer outer = TimeTracker.getTimer("TimeClassTransformerTest.outer", false);
+		final MethodTimer inner = TimeTracker.getTimer("TimeClassTransformerTest.inner", false);
+		outer.reset();
+		inner.reset();
+
+		final long outerStart = TimeTracker.enter();
+		Thread.sleep(SLEEP);
+		for (int i = 0; i < 3; i++) {
+			final long innerStart = TimeTracker.enter();
+			Thread.sleep(SLEEP);
+			inner.exit(innerStart);
+		}
+		outer.exit(outerStart);
+
+		assertEquals(1, outer.getCount());
+		assertEquals(3, inner.getCount());
+		assertEquals(inner.getTotalHistogram().getTotal(), inner.getSelfHistogram().getTotal());
+		assertEquals(outer.getTotalHistogram().getTotal() - inner.getTotalHistogram().getTotal(),
+				outer.getSelfHistogram().getTotal());
+		assertTrue(outer.getSelfHistogram().getTotal() >= SLEEP * 1000000);
+	}
+
+	/**
+	 * Instrumented methods must record their total and self times, including
+	 * when they throw
+	 *
+	 * @throws Throwable
+	 */
+	@Test
+	public void testInstrumentation() throws Throwable {
+		final String name = nextName();
+		final TimeClassTransformer transformer = new TimeClassTransformer(Arrays.asList(
+				name + "#outer", name + "#inner", name + "#fails"));
+		final Object obj = instrument(transformer, name).newInstance();
+
+		// timers are created when the class is initialised
+		final Map<String, MethodTimer> timers = TimeTracker.getTimers();
+		assertTrue(timers.containsKey(timerName(name, "outer()")));
+		assertTrue(timers.containsKey(timerName(name, "inner()")));
+		assertTrue(timers.containsKey(timerName(name, "fails()")));
+		assertTrue(timers.containsKey(timerName(name, "increment(int)")));
+		assertTrue(timers.containsKey("TimeClassTransformerTest.annotated"));
+		assertFalse(timers.containsKey(timerName(name, "untimed()")));
+
+		call(obj, "outer");
+		try {
+			call(obj, "fails");
+			fail("expected IllegalStateException");
+		} catch (final IllegalStateException e) {
+			// expected
+		}
+		call(obj, "outer");
+		assertEquals(42, obj.getClass().getMethod("increment", int.class).invoke(obj, 41));
+
+		final MethodTimer outer = timer(name, "outer()");
+		final MethodTimer inner = timer(name, "inner()");
+		final MethodTimer fails = timer(name, "fails()");
+
+		assertEquals(2, outer.getCount());
+		assertEquals(5, inner.getCount());
+		assertEquals(1, fails.getCount());
+		assertEquals(1, timer(name, "increment(int)").getCount());
+
+		// inner doesn't call anything timed
+		assertEquals(inner.getTotalHistogram().getTotal(), inner.getSelfHistogram().getTotal());
+		assertTrue(inner.getTotalHistogram().getMin() >= SLEEP * 1000000);
+
+		// the calls to inner are attributed to their callers (including the
+		// one that threw), and nothing else is
+		final long callerTotal = outer.getTotalHistogram().getTotal() + fails.getTotalHistogram().getTotal();
+		final long callerSelf = outer.getSelfHistogram().getTotal() + fails.getSelfHistogram().getTotal();
+		assertEquals(inner.getTotalHistogram().getTotal(), callerTotal - callerSelf);
+		assertTrue(outer.getSelfHistogram().getMax() < outer.getTotalHistogram().getMin());
+	}
+
+	/**
+	 * Only annotated methods are timed without patterns, and the class and
+	 * method parts of the patterns are globs
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testPatterns() throws Exception {
+		final String none = nextName();
+		instrument(new TimeClassTransformer(), none).newInstance();
+		assertFalse(TimeTracker.getTimers().containsKey(timerName(none, "outer()")));
+		assertTrue(TimeTracker.getTimers().containsKey(timerName(none, "increment(int)")));
+
+		final String cls = nextName();
+		instrument(new TimeClassTransformer(Arrays.asList(cls)), cls).newInstance();
+		for (final String m : new String[] { "outer()", "inner()", "fails()", "untimed()", "increment(int)" })
+			assertTrue(TimeTracker.getTimers().containsKey(timerName(cls, m)));
+
+		final String glob = nextName();
+		instrument(new TimeClassTransformer(Arrays.asList("org.*.timed.*#*er", " ", "com.example.*#untimed")), glob)
+				.newInstance();
+		assertTrue(TimeTracker.getTimers().containsKey(timerName(glob, "outer()")));
+		assertTrue(TimeTracker.getTimers().containsKey(timerName(glob, "inner()")));
+		assertFalse(TimeTracker.getTimers().containsKey(timerName(glob, "fails()")));
+		assertFalse(TimeTracker.getTimers().containsKey(timerName(glob, "untimed()")));
+
+		// the patterns must match the whole name
+		final String partial = nextName();
+		instrument(new TimeClassTransformer(Arrays.asList("timed.*#out", "org.openimaj.timed#*")), partial)
+				.newInstance();
+		assertFalse(TimeTracker.getTimers().containsKey(timerName(partial, "outer()")));
+		assertFalse(TimeTracker.getTimers().containsKey(timerName(partial, "inner()")));
+	}
+
+	/**
+	 * The agent arguments must be parsed into patterns, and unknown options
+	 * rejected
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testAgentArguments() throws Exception {
+		final String name = nextName();
+		final TimeClassTransformer transformer = ExperimentAgent.configure(" time = " + name + "#outer, "
+				+ name + "#untimed ;");
+		instrument(transformer, name).newInstance();
+
+		assertTrue(TimeTracker.getTimers().containsKey(timerName(name, "outer()")));
+		assertTrue(TimeTracker.getTimers().containsKey(timerName(name, "untimed()")));
+		assertFalse(TimeTracker.getTimers().containsKey(timerName(name, "inner()")));
+
+		final String empty = nextName();
+		instrument(ExperimentAgent.configure(null), empty).newInstance();
+		assertFalse(TimeTracker.getTimers().containsKey(timerName(empty, "outer()")));
+
+		for (final String args : new String[] { "bogus", "time=a.B;bogus=1", "report=soon" }) {
+			try {
+				ExperimentAgent.configure(args);
+				fail("expected IllegalArgumentException");
+			} catch (final IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.evaluation.classification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.experiment.evaluation.classification.analysers.confusionmatrix.CMAnalyser;
+import org.openimaj.experiment.evaluation.classification.analysers.confusionmatrix.CMResult;
+
+/**
+ * Tests for the {@link StreamingClassificationEvaluator}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class StreamingClassificationEvaluatorTest {
+	private Map<Integer, Set<String>> actual;
+	private Classifier<String, Integer> classifier;
+	private CMAnalyser<Integer, String> analyser;
+
+	/**
+	 * Setup the ground truth and a simple classifier
+	 */
+	@Before
+	public void setup() {
+		actual = new HashMap<Integer, Set<String>>();
+		for (int i = 0; i < 10000; i++) {
+			final Set<String> classes = new HashSet<String>();
+			classes.add(i % 3 == 0 ? "A" : "B");
+			actual.put(i, classes);
+		}
+
+		classifier = new Classifier<String, Integer>() {
+			@Override
+			public ClassificationResult<String> classify(Integer object) {
+				final BasicClassificationResult<String> result = new BasicClassificationResult<String>();
+				result.put(object % 5 == 0 ? "A" : "B", 1.0);
+				return result;
+			}
+		};
+
+		analyser = new CMAnalyser<Integer, String>(CMAnalyser.Strategy.SINGLE);
+	}
+
+	/**
+	 * The streaming evaluation should give the same confusion matrix as the
+	 * standard evaluator
+	 */
+	@Test
+	public void testSameAsBatch() {
+		final ClassificationEvaluator<CMResult<String>, String, Integer> batch = new ClassificationEvaluator<CMResult<String>, String, Integer>(
+				classifier, actual, analyser);
+		final CMResult<String> expected = batch.analyse(batch.evaluate());
+
+		final StreamingClassificationEvaluator<CMResult<String>, String, Integer> streaming = new StreamingClassificationEvaluator<CMResult<String>, String, Integer>(
+				classifier, actual, analyser);
+		streaming.setBatchSize(123);
+		streaming.setProgressInterval(0);
+		final CMResult<String> result = streaming.analyse(streaming.evaluate());
+
+		assertFalse(streaming.isStoppedEarly());
+		assertEquals(actual.size(), streaming.getNumberEvaluated());
+		assertEquals(expected.getMatrix().getTotalCount(), result.getMatrix().getTotalCount(), 0);
+		for (final String t : new String[] { "A", "B" })
+			for (final String e : new String[] { "A", "B" })
+				assertEquals(expected.getMatrix().getCount(t, e), result.getMatrix().getCount(t, e), 0);
+		assertEquals(expected.getMatrix().getAccuracy(), streaming.getAccuracy(), 1e-10);
+	}
+
+	/**
+	 * Test that evaluation stops once the confidence interval is tight enough
+	 */
+	@Test
+	public void testEarlyStopping() {
+		final StreamingClassificationEvaluator<CMResult<String>, String, Integer> streaming = new StreamingClassificationEvaluator<CMResult<String>, String, Integer>(
+				classifier, actual, analyser);
+		streaming.setBatchSize(100);
+		streaming.setProgressInterval(0);
+		streaming.setEarlyStopping(0.05, 500, 42);
+
+		final CMResult<String> result = streaming.analyse(streaming.evaluate());
+
+		assertTrue(streaming.isStoppedEarly());
+		assertTrue(streaming.getNumberEvaluated() < actual.size());
+		assertTrue(streaming.getAccuracyInterval() < 0.05);
+		assertEquals(streaming.getNumberEvaluated(), result.getMatrix().getTotalCount(), 0);
+		assertEquals(0.6, streaming.getAccuracy(), 0.05);
+	}
+}
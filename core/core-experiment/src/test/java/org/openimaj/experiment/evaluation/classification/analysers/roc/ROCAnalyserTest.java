@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.evaluation.classification.analysers.roc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import gov.sandia.cognition.statistics.method.ReceiverOperatingCharacteristic;
+import gov.sandia.cognition.statistics.method.ReceiverOperatingCharacteristic.DataPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.experiment.evaluation.classification.BasicClassificationResult;
+import org.openimaj.experiment.evaluation.classification.ClassificationAccumulator;
+import org.openimaj.experiment.evaluation.classification.ClassificationResult;
+
+/**
+ * Tests for the {@link ROCAnalyser}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ROCAnalyserTest {
+	private static final String[] CLASSES = { "A", "B", "C", "D" };
+
+	private Map<Integer, ClassificationResult<String>> predicted;
+	private Map<Integer, Set<String>> actual;
+	private ROCAnalyser<Integer, String> analyser;
+
+	/**
+	 * Create random results for 1000 objects. Class "D" is never the true
+	 * class, and some objects have no result.
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(42);
+
+		predicted = new LinkedHashMap<Integer, ClassificationResult<String>>();
+		actual = new LinkedHashMap<Integer, Set<String>>();
+		for (int i = 0; i < 1000; i++) {
+			final Set<String> classes = new HashSet<String>();
+			classes.add(CLASSES[rng.nextInt(3)]);
+			if (rng.nextInt(10) == 0)
+				classes.add(CLASSES[rng.nextInt(3)]);
+			actual.put(i, classes);
+
+			if (rng.nextInt(20) == 0) {
+				predicted.put(i, null);
+			} else {
+				final BasicClassificationResult<String> result = new BasicClassificationResult<String>();
+				for (final String clz : CLASSES)
+					result.put(clz, classes.contains(clz) ? 0.3 + 0.7 * rng.nextDouble() : 0.7 * rng.nextDouble());
+				predicted.put(i, result);
+			}
+		}
+
+		analyser = new ROCAnalyser<Integer, String>();
+	}
+
+	/**
+	 * Accumulating the results in several partitions (including empty ones)
+	 * and merging them must give the same curves as the batch analysis
+	 */
+	@Test
+	public void testAccumulator() {
+		final ROCResult<String> expected = analyser.analyse(predicted, actual);
+		assertEquals(new HashSet<String>(Arrays.asList("A", "B", "C")), expected.getROCData().keySet());
+
+		final int[] splits = { 0, 0, 7, 8, 300, 999, 1000, 1000 };
+		final List<ClassificationAccumulator<ROCResult<String>, String, Integer>> partitions = new ArrayList<ClassificationAccumulator<ROCResult<String>, String, Integer>>();
+		final List<Integer> objects = new ArrayList<Integer>(predicted.keySet());
+		for (int p = 0; p < splits.length - 1; p++) {
+			final ClassificationAccumulator<ROCResult<String>, String, Integer> acc = analyser
+					.createAccumulator(new HashSet<String>(Arrays.asList(CLASSES)));
+
+			for (final Integer o : objects.subList(splits[p], splits[p + 1]))
+				acc.add(o, predicted.get(o), actual.get(o));
+
+			partitions.add(acc);
+		}
+
+		final ClassificationAccumulator<ROCResult<String>, String, Integer> merged = partitions.get(0);
+		for (int p = 1; p < partitions.size(); p++)
+			merged.merge(partitions.get(p));
+
+		assertSameCurves(expected, merged.getResult());
+	}
+
+	/**
+	 * A single accumulator must give the same curves as the batch analysis
+	 */
+	@Test
+	public void testSingleAccumulator() {
+		final ClassificationAccumulator<ROCResult<String>, String, Integer> acc = analyser
+				.createAccumulator(new HashSet<String>(Arrays.asList(CLASSES)));
+		for (final Integer o : predicted.keySet())
+			acc.add(o, predicted.get(o), actual.get(o));
+
+		assertSameCurves(analyser.analyse(predicted, actual), acc.getResult());
+	}
+
+	private void assertSameCurves(ROCResult<String> expected, ROCResult<String> result) {
+		assertEquals(expected.getROCData().keySet(), result.getROCData().keySet());
+
+		for (final String clz : expected.getROCData().keySet()) {
+			final ReceiverOperatingCharacteristic e = expected.getROCData().get(clz);
+			final ReceiverOperatingCharacteristic r = result.getROCData().get(clz);
+
+			final List<DataPoint> ep = e.getSortedROCData();
+			final List<DataPoint> rp = r.getSortedROCData();
+			assertFalse(ep.isEmpty());
+			assertEquals(ep.size(), rp.size());
+			for (int i = 0; i < ep.size(); i++) {
+				assertEquals(ep.get(i).getFalsePositiveRate(), rp.get(i).getFalsePositiveRate(), 0);
+				assertEquals(ep.get(i).getTruePositiveRate(), rp.get(i).getTruePositiveRate(), 0);
+			}
+
+			assertEquals(e.computeStatistics().getAreaUnderCurve(), r.computeStatistics().getAreaUnderCurve(), 0);
+		}
+	}
+}
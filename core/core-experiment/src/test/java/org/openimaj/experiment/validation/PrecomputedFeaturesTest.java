@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.validation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.data.dataset.GroupedDataset;
+import org.openimaj.data.dataset.ListBackedDataset;
+import org.openimaj.data.dataset.ListDataset;
+import org.openimaj.data.dataset.MapBackedDataset;
+import org.openimaj.feature.FeatureExtractor;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for {@link PrecomputedFeatures} and {@link PrecomputedFeatureList}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class PrecomputedFeaturesTest {
+	private ListBackedDataset<Integer> listDataset;
+	private MapBackedDataset<String, ListDataset<Integer>, Integer> groupedDataset;
+	private FeatureExtractor<String, Integer> extractor;
+
+	/**
+	 * Create datasets for testing
+	 */
+	@Before
+	public void setup() {
+		listDataset = new ListBackedDataset<Integer>();
+		for (int i = 0; i < 100; i++)
+			listDataset.add(i);
+
+		groupedDataset = new MapBackedDataset<String, ListDataset<Integer>, Integer>();
+		int n = 0;
+		for (final String group : new String[] { "A", "B", "C", "D" }) {
+			final ListBackedDataset<Integer> instances = new ListBackedDataset<Integer>();
+			for (int i = 0; i < n; i++)
+				instances.add(i);
+			groupedDataset.put(group, instances);
+			n += 7;
+		}
+
+		extractor = new FeatureExtractor<String, Integer>() {
+			@Override
+			public String extractFeature(Integer object) {
+				return "f" + object;
+			}
+		};
+	}
+
+	/**
+	 * Test extraction into memory
+	 */
+	@Test
+	public void testListInMemory() {
+		final ListDataset<String> features = PrecomputedFeatures.extract(listDataset, extractor);
+
+		assertEquals(listDataset.size(), features.size());
+		for (int i = 0; i < listDataset.size(); i++)
+			assertEquals("f" + i, features.getInstance(i));
+	}
+
+	/**
+	 * Test extraction to disk
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testListOnDisk() throws IOException {
+		final PrecomputedFeatureList<String> storage = PrecomputedFeatureList.createDiskBacked(listDataset.size());
+
+		try {
+			final ListDataset<String> features = PrecomputedFeatures.extract(listDataset, extractor, storage,
+					GlobalExecutorPool.getPool());
+
+			for (int i = 0; i < listDataset.size(); i++)
+				assertEquals("f" + i, features.getInstance(i));
+		} finally {
+			storage.close();
+		}
+	}
+
+	/**
+	 * Test extraction of a grouped dataset, including an empty group
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testGrouped() throws IOException {
+		final PrecomputedFeatureList<String> storage = PrecomputedFeatureList.createDiskBacked(groupedDataset
+				.numInstances());
+
+		try {
+			final GroupedDataset<String, ListDataset<String>, String> features = PrecomputedFeatures.extract(
+					groupedDataset, extractor, storage, GlobalExecutorPool.getPool());
+
+			assertEquals(groupedDataset.getGroups(), features.getGroups());
+			for (final String group : groupedDataset.getGroups()) {
+				final ListDataset<Integer> instances = groupedDataset.getInstances(group);
+
+				assertEquals(instances.size(), features.getInstances(group).size());
+				for (int i = 0; i < instances.size(); i++)
+					assertEquals("f" + instances.getInstance(i), features.getInstances(group).getInstance(i));
+			}
+		} finally {
+			storage.close();
+		}
+	}
+}
@@ -0,0 +1,291 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperPrint;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.data.dataset.GroupedDataset;
+import org.openimaj.data.dataset.ListBackedDataset;
+import org.openimaj.data.dataset.ListDataset;
+import org.openimaj.data.dataset.MapBackedDataset;
+import org.openimaj.experiment.evaluation.AnalysisResult;
+import org.openimaj.experiment.evaluation.ResultAggregator;
+import org.openimaj.experiment.validation.cross.GroupedLeaveOneOut;
+import org.openimaj.experiment.validation.cross.LeaveOneOut;
+import org.openimaj.feature.FeatureExtractor;
+
+/**
+ * Tests for {@link ValidationRunner}. Each round of the validation produces
+ * a description of its training and validation data, so the rounds of
+ * different runs can be compared.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ValidationRunnerTest {
+	/**
+	 * Collects the results of each round
+	 */
+	static class FoldResults implements ResultAggregator<String, FoldResults>, AnalysisResult {
+		List<String> results = new ArrayList<String>();
+
+		@Override
+		public void add(String result) {
+			results.add(result);
+		}
+
+		@Override
+		public FoldResults getAggregatedResult() {
+			return this;
+		}
+
+		/**
+		 * @return the results of the rounds, in sorted order
+		 */
+		List<String> sorted() {
+			final List<String> sorted = new ArrayList<String>(results);
+			Collections.sort(sorted);
+			return sorted;
+		}
+
+		@Override
+		public JasperPrint getSummaryReport(String title, String info) throws JRException {
+			return null;
+		}
+
+		@Override
+		public JasperPrint getDetailReport(String title, String info) throws JRException {
+			return null;
+		}
+
+		@Override
+		public String getSummaryReport() {
+			return results.toString();
+		}
+
+		@Override
+		public String getDetailReport() {
+			return results.toString();
+		}
+	}
+
+	private ListBackedDataset<Integer> listDataset;
+	private MapBackedDataset<String, ListDataset<Integer>, Integer> groupedDataset;
+	private AtomicInteger extractions;
+	private FeatureExtractor<String, Integer> extractor;
+
+	/**
+	 * Create datasets for testing
+	 */
+	@Before
+	public void setup() {
+		listDataset = new ListBackedDataset<Integer>();
+		for (int i = 0; i < 30; i++)
+			listDataset.add(i);
+
+		groupedDataset = new MapBackedDataset<String, ListDataset<Integer>, Integer>();
+		int n = 0;
+		for (final String group : new String[] { "A", "B", "C", "D" }) {
+			final ListBackedDataset<Integer> instances = new ListBackedDataset<Integer>();
+			for (int i = 0; i < 5 + group.charAt(0) - 'A'; i++)
+				instances.add(n++);
+			groupedDataset.put(group, instances);
+		}
+
+		extractions = new AtomicInteger();
+		extractor = new FeatureExtractor<String, Integer>() {
+			@Override
+			public String extractFeature(Integer object) {
+				extractions.incrementAndGet();
+				return "f" + object;
+			}
+		};
+	}
+
+	private static String describe(Iterable<?> items) {
+		final List<String> sorted = new ArrayList<String>();
+		for (final Object o : items)
+			sorted.add(o.toString());
+		Collections.sort(sorted);
+
+		return sorted.toString();
+	}
+
+	private static String describe(GroupedDataset<String, ? extends ListDataset<String>, String> dataset) {
+		final List<String> groups = new ArrayList<String>(dataset.getGroups());
+		Collections.sort(groups);
+
+		final StringBuilder sb = new StringBuilder();
+		for (final String group : groups)
+			sb.append(group + "=" + describe(dataset.getInstances(group)) + " ");
+
+		return sb.toString();
+	}
+
+	private ListDataset<String> extract(ListDataset<Integer> dataset) {
+		final ListBackedDataset<String> features = new ListBackedDataset<String>();
+		for (final Integer i : dataset)
+			features.add(extractor.extractFeature(i));
+		return features;
+	}
+
+	private GroupedDataset<String, ListDataset<String>, String> extract(
+			GroupedDataset<String, ListDataset<Integer>, Integer> dataset)
+	{
+		final MapBackedDataset<String, ListDataset<String>, String> features = new MapBackedDataset<String, ListDataset<String>, String>();
+		for (final String group : dataset.getGroups())
+			features.put(group, extract(dataset.getInstances(group)));
+		return features;
+	}
+
+	/**
+	 * Round that extracts the features itself
+	 */
+	private final ValidationOperation<ListDataset<Integer>, String> listRound = new ValidationOperation<ListDataset<Integer>, String>() {
+		@Override
+		public String evaluate(ListDataset<Integer> training, ListDataset<Integer> validation) {
+			return describe(extract(training)) + " | " + describe(extract(validation));
+		}
+	};
+
+	/**
+	 * Round over the precomputed features
+	 */
+	private final ValidationOperation<ListDataset<String>, String> featureListRound = new ValidationOperation<ListDataset<String>, String>() {
+		@Override
+		public String evaluate(ListDataset<String> training, ListDataset<String> validation) {
+			return describe(training) + " | " + describe(validation);
+		}
+	};
+
+	/**
+	 * Running the rounds with fold threads or on the global pool must give
+	 * the same rounds as running them one at a time
+	 */
+	@Test
+	public void testFoldThreads() {
+		final List<String> expected = ValidationRunner.run(new FoldResults(), listDataset,
+				new LeaveOneOut<Integer>(), listRound, 1).sorted();
+		assertEquals(listDataset.size(), expected.size());
+
+		for (final int threads : new int[] { 2, 4, 64 }) {
+			assertEquals(expected, ValidationRunner.run(new FoldResults(), listDataset,
+					new LeaveOneOut<Integer>(), listRound, threads).sorted());
+		}
+
+		assertEquals(expected, ValidationRunner.run(new FoldResults(), listDataset,
+				new LeaveOneOut<Integer>(), listRound).sorted());
+
+		try {
+			ValidationRunner.run(new FoldResults(), listDataset, new LeaveOneOut<Integer>(), listRound, 0);
+			fail("expected IllegalArgumentException");
+		} catch (final IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Validating over precomputed features must give the same rounds as
+	 * extracting the features in each round, but only extract the feature of
+	 * each object once
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testPrecomputedList() throws IOException {
+		final List<String> expected = ValidationRunner.run(new FoldResults(), listDataset,
+				new LeaveOneOut<Integer>(), listRound, 1).sorted();
+		assertEquals(listDataset.size() * listDataset.size(), extractions.get());
+
+		for (final boolean diskBacked : new boolean[] { false, true }) {
+			extractions.set(0);
+
+			final List<String> actual = ValidationRunner.runWithPrecomputedFeatures(new FoldResults(), listDataset,
+					extractor, diskBacked, new LeaveOneOut<String>(), featureListRound, 4).sorted();
+
+			assertEquals(expected, actual);
+			assertEquals(listDataset.size(), extractions.get());
+		}
+	}
+
+	/**
+	 * Validating over precomputed features of a grouped dataset must give the
+	 * same rounds as extracting the features in each round, but only extract
+	 * the feature of each object once
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testPrecomputedGrouped() throws IOException {
+		final ValidationOperation<GroupedDataset<String, ListDataset<Integer>, Integer>, String> round = new ValidationOperation<GroupedDataset<String, ListDataset<Integer>, Integer>, String>() {
+			@Override
+			public String evaluate(GroupedDataset<String, ListDataset<Integer>, Integer> training,
+					GroupedDataset<String, ListDataset<Integer>, Integer> validation)
+			{
+				return describe(extract(training)) + " | " + describe(extract(validation));
+			}
+		};
+
+		final ValidationOperation<GroupedDataset<String, ListDataset<String>, String>, String> featureRound = new ValidationOperation<GroupedDataset<String, ListDataset<String>, String>, String>() {
+			@Override
+			public String evaluate(GroupedDataset<String, ListDataset<String>, String> training,
+					GroupedDataset<String, ListDataset<String>, String> validation)
+			{
+				return describe(training) + " | " + describe(validation);
+			}
+		};
+
+		final List<String> expected = ValidationRunner.run(new FoldResults(), groupedDataset,
+				new GroupedLeaveOneOut<String, Integer>(), round, 1).sorted();
+		assertEquals(groupedDataset.numInstances(), expected.size());
+
+		for (final boolean diskBacked : new boolean[] { false, true }) {
+			extractions.set(0);
+
+			final List<String> actual = ValidationRunner.runWithPrecomputedFeatures(new FoldResults(),
+					groupedDataset, extractor, diskBacked, new GroupedLeaveOneOut<String, String>(), featureRound, 4)
+					.sorted();
+
+			assertEquals(expected, actual);
+			assertEquals(groupedDataset.numInstances(), extractions.get());
+		}
+	}
+}
@@ -193,6 +193,186 @@ class ExtendedImageIO {
 		return bi;
 	}
 
+	/**
+	 * Decode an image from the given <code>InputStream</code> at reduced
+	 * resolution. The image is decoded using the source subsampling support of
+	 * the same <code>ImageReader</code> that {@link #read(InputStream)} would
+	 * use (so CMYK jpegs are decoded by the TwelveMonkeys reader if it is
+	 * available), with the largest integer subsampling factor that keeps the
+	 * longest side of the decoded image at least <code>maxSize</code> pixels.
+	 * Only the sampled pixels are ever colour converted and stored, so this is
+	 * much cheaper in both time and memory than decoding the full image and
+	 * then resizing.
+	 * <p>
+	 * If the reader fails, or the full decode would use JAI (which can't
+	 * subsample), this falls back to {@link #read(InputStream)} and the image
+	 * is returned at full resolution.
+	 * <p>
+	 * This method <em>does not</em> close the provided <code>InputStream</code>.
+	 *
+	 * @param input
+	 *            an <code>InputStream</code> to read from.
+	 * @param maxSize
+	 *            the target size of the longest side of the image
+	 * @return a <code>BufferedImage</code> containing the decoded contents of
+	 *         the input
+	 * @exception IOException
+	 *                if an error occurs during reading.
+	 */
+	public static BufferedImage read(InputStream input, int maxSize) throws IOException {
+		if (input == null) {
+			throw new IllegalArgumentException("input == null!");
+		}
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize must be positive");
+		}
+
+		final NonClosableInputStream buffer = new NonClosableInputStream(input);
+		buffer.mark(100 * 1024 * 1024);
+
+		BufferedImage bi;
+		try {
+			bi = readSubsampled(buffer, maxSize);
+		} catch (final Exception e) {
+			bi = null;
+		}
+
+		if (bi == null) {
+			buffer.reset();
+			bi = read(buffer);
+		}
+
+		return bi;
+	}
+
+	/**
+	 * Decode an image from the given <code>File</code> at reduced resolution.
+	 *
+	 * @see #read(InputStream, int)
+	 *
+	 * @param input
+	 *            a <code>File</code> to read from.
+	 * @param maxSize
+	 *            the target size of the longest side of the image
+	 * @return a <code>BufferedImage</code> containing the decoded contents of
+	 *         the input
+	 * @exception IOException
+	 *                if an error occurs during reading.
+	 */
+	public static BufferedImage read(File input, int maxSize) throws IOException {
+		if (input == null) {
+			throw new IllegalArgumentException("input == null!");
+		}
+		if (!input.canRead()) {
+			throw new IIOException("Can't read input file!");
+		}
+		InputStream stream = null;
+		try {
+			stream = new FileInputStream(input);
+			return read(stream, maxSize);
+		} finally {
+			try {
+				stream.close();
+			} catch (final IOException e) {
+			}
+		}
+	}
+
+	/**
+	 * Decode at reduced resolution, choosing the reader in the same way as
+	 * {@link #readInternal(BufferedInputStream)} so that the colours match
+	 * those of a full decode: CMYK jpegs and (if JAI isn't usable) other
+	 * jpegs are decoded with the TwelveMonkeys reader, and everything else
+	 * with the first registered reader. If JAI would be used for the full
+	 * decode, <code>null</code> is returned as JAI can't subsample.
+	 */
+	private static BufferedImage readSubsampled(BufferedInputStream binput, int maxSize) throws IOException {
+		ImageInfo info;
+		try {
+			info = Sanselan.getImageInfo(binput, null);
+		} catch (final ImageReadException ire) {
+			info = null;
+		} finally {
+			binput.reset();
+		}
+
+		if (info != null && info.getFormat() == ImageFormat.IMAGE_FORMAT_JPEG) {
+			if (info.getColorType() != ImageInfo.COLOR_TYPE_CMYK && isJAIUsable())
+				return null;
+
+			final ImageReader reader = getMonkeyReader();
+			if (reader != null) {
+				try {
+					return readSubsampled(reader, binput, maxSize);
+				} catch (final Exception e) {
+					if (info.getColorType() == ImageInfo.COLOR_TYPE_CMYK)
+						throw new IIOException("Unable to read CMYK jpeg", e);
+
+					// fallback to the ImageIO reader as readInternal does
+					binput.reset();
+				}
+			}
+		}
+
+		return readSubsampled(null, binput, maxSize);
+	}
+
+	/**
+	 * Decode the first image in the stream with the given reader (or the first
+	 * registered reader that accepts the stream if <code>null</code>), using
+	 * the largest integer source subsampling factor that keeps the longest side
+	 * at least <code>maxSize</code> pixels.
+	 */
+	private static BufferedImage readSubsampled(ImageReader reader, BufferedInputStream binput, int maxSize)
+			throws IOException
+	{
+		final ImageInputStream stream = ImageIO.createImageInputStream(binput);
+		if (stream == null)
+			return null;
+
+		try {
+			if (reader == null) {
+				final Iterator<ImageReader> iter = ImageIO.getImageReaders(stream);
+				if (!iter.hasNext())
+					return null;
+
+				reader = iter.next();
+			}
+
+			reader.setInput(stream, true, true);
+
+			final int size = Math.max(reader.getWidth(0), reader.getHeight(0));
+			final int factor = Math.max(1, size / maxSize);
+
+			final ImageReadParam param = reader.getDefaultReadParam();
+			if (factor > 1)
+				param.setSourceSubsampling(factor, factor, 0, 0);
+
+			return reader.read(0, param);
+		} finally {
+			if (reader != null)
+				reader.dispose();
+
+			// closing the ImageInputStream doesn't close binput, so the
+			// caller can still reset it and fall back to a full decode
+			stream.close();
+		}
+	}
+
+	/**
+	 * OpenJDK7 doesn't work properly with JAI as some of the classes are
+	 * missing; {@link #readInternal(BufferedInputStream)} only uses JAI if
+	 * they are present.
+	 */
+	private static boolean isJAIUsable() {
+		try {
+			Class.forName("com.sun.image.codec.jpeg.ImageFormatException");
+			return true;
+		} catch (final ClassNotFoundException e) {
+			return false;
+		}
+	}
+
 	/**
 	 * Returns a <code>BufferedImage</code> as the result of decoding a supplied
 	 * <code>URL</code> with an <code>ImageReader</code> chosen automatically
@@ -281,6 +281,9 @@ public class ImageUtilities {
 	 * @return an FImage representation of the input image
 	 */
 	public static FImage createFImage(final BufferedImage image) {
+		if (isInterleavedByteRGB(image))
+			return createFImageFromBytes(image);
+
 		final BufferedImage bimg = ImageUtilities.createWorkingImage(image);
 		final int[] data = bimg.getRGB(0, 0, bimg.getWidth(), bimg.getHeight(), null, 0, bimg.getWidth());
 
@@ -297,12 +300,106 @@ public class ImageUtilities {
 	 * @return an MBFImage representation of the input image
 	 */
 	public static MBFImage createMBFImage(final BufferedImage image, final boolean alpha) {
+		if (isInterleavedByteRGB(image))
+			return createMBFImageFromBytes(image, alpha);
+
 		final BufferedImage bimg = ImageUtilities.createWorkingImage(image);
 		final int[] data = bimg.getRGB(0, 0, bimg.getWidth(), bimg.getHeight(), null, 0, bimg.getWidth());
 
 		return new MBFImage(data, bimg.getWidth(), bimg.getHeight(), alpha);
 	}
 
+	/**
+	 * Test if the image is stored as interleaved bytes in BGR or ABGR order
+	 * (which is what the standard jpeg and png readers produce), in which case
+	 * the samples can be read straight from the raster.
+	 */
+	private static boolean isInterleavedByteRGB(final BufferedImage image) {
+		final int type = image.getType();
+		if (type != BufferedImage.TYPE_3BYTE_BGR && type != BufferedImage.TYPE_4BYTE_ABGR)
+			return false;
+
+		return image.getRaster().getSampleModel() instanceof ComponentSampleModel
+				&& image.getRaster().getDataBuffer() instanceof DataBufferByte;
+	}
+
+	/**
+	 * Convert a {@link BufferedImage#TYPE_3BYTE_BGR} or
+	 * {@link BufferedImage#TYPE_4BYTE_ABGR} image to an {@link FImage} without
+	 * going through an intermediate ARGB image. The result is identical to
+	 * {@link FImage#internalAssign(int[], int, int)}.
+	 */
+	private static FImage createFImageFromBytes(final BufferedImage image) {
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final WritableRaster raster = image.getRaster();
+		final ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+		final byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+		final int scanlineStride = sm.getScanlineStride();
+		final int pixelStride = sm.getPixelStride();
+		final int[] offsets = sm.getBandOffsets();
+		final int base = raster.getDataBuffer().getOffset()
+				- raster.getSampleModelTranslateY() * scanlineStride
+				- raster.getSampleModelTranslateX() * pixelStride;
+
+		final FImage out = new FImage(width, height);
+		for (int y = 0; y < height; y++) {
+			final float[] row = out.pixels[y];
+			int idx = base + y * scanlineStride;
+			for (int x = 0; x < width; x++, idx += pixelStride) {
+				final int red = data[idx + offsets[0]] & 0xff;
+				final int green = data[idx + offsets[1]] & 0xff;
+				final int blue = data[idx + offsets[2]] & 0xff;
+
+				final float fpix = 0.299f * red + 0.587f * green + 0.114f * blue;
+				row[x] = BYTE_TO_FLOAT_LUT[(int) fpix];
+			}
+		}
+
+		return out;
+	}
+
+	/**
+	 * Convert a {@link BufferedImage#TYPE_3BYTE_BGR} or
+	 * {@link BufferedImage#TYPE_4BYTE_ABGR} image to an {@link MBFImage}
+	 * without going through an intermediate ARGB image. The result is
+	 * identical to {@link MBFImage#internalAssign(int[], int, int)}.
+	 */
+	private static MBFImage createMBFImageFromBytes(final BufferedImage image, final boolean alpha) {
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final WritableRaster raster = image.getRaster();
+		final ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+		final byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+		final int scanlineStride = sm.getScanlineStride();
+		final int pixelStride = sm.getPixelStride();
+		final int[] offsets = sm.getBandOffsets();
+		final boolean hasAlpha = offsets.length > 3;
+		final int base = raster.getDataBuffer().getOffset()
+				- raster.getSampleModelTranslateY() * scanlineStride
+				- raster.getSampleModelTranslateX() * pixelStride;
+
+		final MBFImage out = new MBFImage(width, height, alpha ? ColourSpace.RGBA : ColourSpace.RGB);
+		final float[][] br = out.getBand(0).pixels;
+		final float[][] bg = out.getBand(1).pixels;
+		final float[][] bb = out.getBand(2).pixels;
+		final float[][] ba = alpha ? out.getBand(3).pixels : null;
+
+		for (int y = 0; y < height; y++) {
+			int idx = base + y * scanlineStride;
+			for (int x = 0; x < width; x++, idx += pixelStride) {
+				br[y][x] = BYTE_TO_FLOAT_LUT[data[idx + offsets[0]] & 0xff];
+				bg[y][x] = BYTE_TO_FLOAT_LUT[data[idx + offsets[1]] & 0xff];
+				bb[y][x] = BYTE_TO_FLOAT_LUT[data[idx + offsets[2]] & 0xff];
+
+				if (ba != null)
+					ba[y][x] = hasAlpha ? BYTE_TO_FLOAT_LUT[data[idx + offsets[3]] & 0xff] : 1f;
+			}
+		}
+
+		return out;
+	}
+
 	/**
 	 * Reads an {@link FImage} from the given file.
 	 * 
@@ -381,6 +478,82 @@ public class ImageUtilities {
 		return ImageUtilities.createMBFImage(ExtendedImageIO.read(input), false);
 	}
 
+	/**
+	 * Reads an {@link FImage} from the given file, decoding at reduced
+	 * resolution. The image is subsampled by the largest integer factor that
+	 * keeps its longest side at least <code>maxSize</code> pixels, so the
+	 * result will be between <code>maxSize</code> and
+	 * <code>2 * maxSize</code> pixels on its longest side (unless the image
+	 * was already smaller). This is much faster than reading the full image
+	 * and resizing it; if an exact size is required the (much smaller) result
+	 * can be resized afterwards.
+	 * 
+	 * @param input
+	 *            The file to read the {@link FImage} from.
+	 * @param maxSize
+	 *            the target size of the longest side
+	 * @return An {@link FImage}
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static FImage readF(final File input, final int maxSize) throws IOException {
+		return ImageUtilities.createFImage(ExtendedImageIO.read(input, maxSize));
+	}
+
+	/**
+	 * Reads an {@link FImage} from the given input stream, decoding at reduced
+	 * resolution.
+	 * 
+	 * @see #readF(File, int)
+	 * 
+	 * @param input
+	 *            The input stream to read the {@link FImage} from.
+	 * @param maxSize
+	 *            the target size of the longest side
+	 * @return An {@link FImage}
+	 * @throws IOException
+	 *             if the stream cannot be read
+	 */
+	public static FImage readF(final InputStream input, final int maxSize) throws IOException {
+		return ImageUtilities.createFImage(ExtendedImageIO.read(input, maxSize));
+	}
+
+	/**
+	 * Reads an {@link MBFImage} from the given file, decoding at reduced
+	 * resolution.
+	 * 
+	 * @see #readF(File, int)
+	 * 
+	 * @param input
+	 *            The file to read the {@link MBFImage} from.
+	 * @param maxSize
+	 *            the target size of the longest side
+	 * @return An {@link MBFImage}
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static MBFImage readMBF(final File input, final int maxSize) throws IOException {
+		return ImageUtilities.createMBFImage(ExtendedImageIO.read(input, maxSize), false);
+	}
+
+	/**
+	 * Reads an {@link MBFImage} from the given input stream, decoding at
+	 * reduced resolution.
+	 * 
+	 * @see #readF(File, int)
+	 * 
+	 * @param input
+	 *            The input stream to read the {@link MBFImage} from.
+	 * @param maxSize
+	 *            the target size of the longest side
+	 * @return An {@link MBFImage}
+	 * @throws IOException
+	 *             if the stream cannot be read
+	 */
+	public static MBFImage readMBF(final InputStream input, final int maxSize) throws IOException {
+		return ImageUtilities.createMBFImage(ExtendedImageIO.read(input, maxSize), false);
+	}
+
 	/**
 	 * Reads an {@link MBFImage} from the given file. The resultant MBImage will
 	 * contain an alpha channel
@@ -0,0 +1,432 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Random;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.sanselan.ImageInfo;
+import org.apache.sanselan.ImageReadException;
+import org.apache.sanselan.Sanselan;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for reading images at reduced resolution (
+ * {@link ExtendedImageIO#read(InputStream, int)} and the corresponding
+ * {@link ImageUtilities} methods) and for the direct conversion of byte
+ * rasters to {@link FImage}s and {@link MBFImage}s.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ReducedResolutionReadTest {
+	private static final String[] IMAGES = {
+			"/org/openimaj/image/data/cat.jpg",
+			"/org/openimaj/image/data/sinaface.jpg",
+			"/org/openimaj/image/data/bird.png",
+			"/org/openimaj/image/data/alphaimage.png"
+	};
+
+	private static final float JPEG_TOLERANCE = 3f / 255f;
+
+	/** Temporary folder for the ImageIO cache */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private byte[] load(String name) throws IOException {
+		final InputStream is = this.getClass().getResourceAsStream(name);
+		try {
+			return IOUtils.toByteArray(is);
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * Resize an image by taking every <code>factor</code>-th pixel, which is
+	 * what subsampling during decoding should be equivalent to.
+	 */
+	private static FImage subsample(FImage image, int factor) {
+		final FImage out = new FImage((image.width + factor - 1) / factor, (image.height + factor - 1) / factor);
+		for (int y = 0; y < out.height; y++)
+			for (int x = 0; x < out.width; x++)
+				out.pixels[y][x] = image.pixels[y * factor][x * factor];
+		return out;
+	}
+
+	private static MBFImage subsample(MBFImage image, int factor) {
+		final FImage[] bands = new FImage[image.numBands()];
+		for (int i = 0; i < bands.length; i++)
+			bands[i] = subsample(image.getBand(i), factor);
+		return new MBFImage(image.getColourSpace(), bands);
+	}
+
+	private static void assertImageEquals(FImage expected, FImage actual, float delta) {
+		assertEquals(expected.width, actual.width);
+		assertEquals(expected.height, actual.height);
+		for (int y = 0; y < expected.height; y++)
+			assertArrayEquals(expected.pixels[y], actual.pixels[y], delta);
+	}
+
+	private static void assertImageEquals(MBFImage expected, MBFImage actual, float delta) {
+		assertEquals(expected.numBands(), actual.numBands());
+		for (int i = 0; i < expected.numBands(); i++)
+			assertImageEquals(expected.getBand(i), actual.getBand(i), delta);
+	}
+
+	/**
+	 * Test that decoding at reduced resolution gives the same pixels as a full
+	 * decode that is then resized by the same factor.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testReducedMatchesResizedFull() throws IOException {
+		for (final String name : IMAGES) {
+			final byte[] data = load(name);
+
+			final FImage fullF = ImageUtilities.readF(new ByteArrayInputStream(data));
+			final MBFImage fullMBF = ImageUtilities.readMBF(new ByteArrayInputStream(data));
+			final int size = Math.max(fullF.width, fullF.height);
+
+			for (final int maxSize : new int[] { size, size / 2, size / 3, 50 }) {
+				final int factor = Math.max(1, size / maxSize);
+
+				final FImage reducedF = ImageUtilities.readF(new ByteArrayInputStream(data), maxSize);
+				final MBFImage reducedMBF = ImageUtilities.readMBF(new ByteArrayInputStream(data), maxSize);
+
+				final int reducedSize = Math.max(reducedF.width, reducedF.height);
+				assertTrue(reducedSize >= maxSize);
+				assertTrue(reducedSize <= 2 * maxSize || factor == 1);
+
+				// the full decode of a jpeg might use a different decoder
+				// (i.e. JAI), so allow for small differences in the IDCT
+				assertImageEquals(subsample(fullF, factor), reducedF, JPEG_TOLERANCE);
+				assertImageEquals(subsample(fullMBF, factor), reducedMBF, JPEG_TOLERANCE);
+			}
+		}
+	}
+
+	/**
+	 * Test that the file versions give the same result as the stream versions
+	 * and don't leave any temporary ImageIO cache files behind.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testReadFileAndCleanup() throws IOException {
+		final File cache = folder.newFolder("cache");
+		final File image = folder.newFile("image.jpg");
+		final byte[] data = load(IMAGES[0]);
+		FileUtils.writeByteArrayToFile(image, data);
+
+		final boolean useCache = ImageIO.getUseCache();
+		final File cacheDir = ImageIO.getCacheDirectory();
+		try {
+			ImageIO.setUseCache(true);
+			ImageIO.setCacheDirectory(cache);
+
+			final FImage fromStream = ImageUtilities.readF(new ByteArrayInputStream(data), 100);
+			final FImage fromFile = ImageUtilities.readF(image, 100);
+			assertImageEquals(fromStream, fromFile, 0f);
+
+			assertImageEquals(ImageUtilities.readMBF(new ByteArrayInputStream(data), 100),
+					ImageUtilities.readMBF(image, 100), 0f);
+
+			assertEquals(0, cache.list().length);
+		} finally {
+			ImageIO.setUseCache(useCache);
+			ImageIO.setCacheDirectory(cacheDir);
+		}
+	}
+
+	/**
+	 * Test that images whose reader can't subsample are still read (at full
+	 * resolution).
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testFallbackToFullDecode() throws IOException {
+		final Random rng = new Random(42);
+		final int width = 97;
+		final int height = 61;
+		final byte[] pixels = new byte[width * height * 3];
+		rng.nextBytes(pixels);
+
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final DataOutputStream dos = new DataOutputStream(baos);
+		dos.write(NoSubsamplingReaderSpi.MAGIC);
+		dos.writeInt(width);
+		dos.writeInt(height);
+		dos.write(pixels);
+		dos.close();
+		final byte[] data = baos.toByteArray();
+
+		final NoSubsamplingReaderSpi spi = new NoSubsamplingReaderSpi();
+		IIORegistry.getDefaultInstance().registerServiceProvider(spi);
+		try {
+			final BufferedImage full = ExtendedImageIO.read(new ByteArrayInputStream(data));
+			final BufferedImage fallback = ExtendedImageIO.read(new ByteArrayInputStream(data), 20);
+
+			assertEquals(width, fallback.getWidth());
+			assertEquals(height, fallback.getHeight());
+			for (int y = 0; y < height; y++)
+				for (int x = 0; x < width; x++)
+					assertEquals(full.getRGB(x, y), fallback.getRGB(x, y));
+
+			assertImageEquals(ImageUtilities.readMBF(new ByteArrayInputStream(data)),
+					ImageUtilities.readMBF(new ByteArrayInputStream(data), 20), 0f);
+		} finally {
+			IIORegistry.getDefaultInstance().deregisterServiceProvider(spi);
+		}
+	}
+
+	/**
+	 * Test that CMYK jpegs are decoded at reduced resolution by the same reader
+	 * as the full decode, so the colours are the same.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testCMYKJpeg() throws IOException {
+		final int width = 240;
+		final int height = 180;
+		final WritableRaster raster = Raster.createBandedRaster(DataBuffer.TYPE_BYTE, width, height, 4, null);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				raster.setSample(x, y, 0, x);
+				raster.setSample(x, y, 1, y);
+				raster.setSample(x, y, 2, (x + y) / 2);
+				raster.setSample(x, y, 3, 40);
+			}
+		}
+
+		// a four channel raster is written as a CMYK jpeg
+		final ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final ImageOutputStream ios = ImageIO.createImageOutputStream(baos);
+		try {
+			writer.setOutput(ios);
+			writer.write(null, new IIOImage(raster, null, null), writer.getDefaultWriteParam());
+		} finally {
+			ios.close();
+			writer.dispose();
+		}
+		final byte[] data = baos.toByteArray();
+
+		try {
+			assertEquals(ImageInfo.COLOR_TYPE_CMYK, Sanselan.getImageInfo(data).getColorType());
+		} catch (final ImageReadException e) {
+			throw new IOException(e);
+		}
+
+		final MBFImage full = ImageUtilities.readMBF(new ByteArrayInputStream(data));
+		final MBFImage reduced = ImageUtilities.readMBF(new ByteArrayInputStream(data), 60);
+
+		assertEquals(width / 4, reduced.getWidth());
+		assertEquals(height / 4, reduced.getHeight());
+		assertImageEquals(subsample(full, 4), reduced, JPEG_TOLERANCE);
+	}
+
+	/**
+	 * Test that the direct conversion of byte rasters gives the same result as
+	 * the conversion through packed ARGB ints, including for sub-images whose
+	 * raster doesn't start at the beginning of the data buffer.
+	 */
+	@Test
+	public void testByteRasterConversion() {
+		final Random rng = new Random(1);
+
+		for (final int type : new int[] { BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR }) {
+			final BufferedImage image = new BufferedImage(53, 37, type);
+			for (int y = 0; y < image.getHeight(); y++)
+				for (int x = 0; x < image.getWidth(); x++)
+					image.setRGB(x, y, rng.nextInt());
+
+			final BufferedImage[] tests = { image, image.getSubimage(7, 5, 31, 20) };
+			for (final BufferedImage bi : tests) {
+				final int w = bi.getWidth();
+				final int h = bi.getHeight();
+				final int[] argb = bi.getRGB(0, 0, w, h, null, 0, w);
+
+				assertImageEquals(new FImage(argb, w, h), ImageUtilities.createFImage(bi), 0f);
+				assertImageEquals(new MBFImage(argb, w, h, false), ImageUtilities.createMBFImage(bi, false), 0f);
+				assertImageEquals(new MBFImage(argb, w, h, true), ImageUtilities.createMBFImage(bi, true), 0f);
+			}
+		}
+	}
+
+	/**
+	 * A trivial raw RGB format whose reader refuses subsampled reads
+	 */
+	static class NoSubsamplingReaderSpi extends ImageReaderSpi {
+		static final byte[] MAGIC = { 'O', 'I', 'R', 'A', 'W', 'R', 'G', 'B' };
+
+		NoSubsamplingReaderSpi() {
+			super("OpenIMAJ", "1.0", new String[] { "oiraw" }, new String[] { "oiraw" }, null,
+					NoSubsamplingReader.class.getName(), new Class<?>[] { ImageInputStream.class }, null,
+					false, null, null, null, null, false, null, null, null, null);
+		}
+
+		@Override
+		public boolean canDecodeInput(Object source) throws IOException {
+			if (!(source instanceof ImageInputStream))
+				return false;
+
+			final ImageInputStream stream = (ImageInputStream) source;
+			final byte[] header = new byte[MAGIC.length];
+			stream.mark();
+			try {
+				stream.readFully(header);
+			} catch (final IOException e) {
+				return false;
+			} finally {
+				stream.reset();
+			}
+			return Arrays.equals(MAGIC, header);
+		}
+
+		@Override
+		public ImageReader createReaderInstance(Object extension) {
+			return new NoSubsamplingReader(this);
+		}
+
+		@Override
+		public String getDescription(Locale locale) {
+			return "Raw RGB test format";
+		}
+	}
+
+	static class NoSubsamplingReader extends ImageReader {
+		private int width = -1;
+		private int height;
+
+		NoSubsamplingReader(ImageReaderSpi spi) {
+			super(spi);
+		}
+
+		private ImageInputStream stream() {
+			return (ImageInputStream) this.getInput();
+		}
+
+		private void readHeader() throws IOException {
+			if (width >= 0)
+				return;
+
+			stream().seek(NoSubsamplingReaderSpi.MAGIC.length);
+			width = stream().readInt();
+			height = stream().readInt();
+		}
+
+		@Override
+		public int getNumImages(boolean allowSearch) {
+			return 1;
+		}
+
+		@Override
+		public int getWidth(int imageIndex) throws IOException {
+			readHeader();
+			return width;
+		}
+
+		@Override
+		public int getHeight(int imageIndex) throws IOException {
+			readHeader();
+			return height;
+		}
+
+		@Override
+		public Iterator<ImageTypeSpecifier> getImageTypes(int imageIndex) {
+			return Arrays.asList(ImageTypeSpecifier.createFromBufferedImageType(BufferedImage.TYPE_3BYTE_BGR))
+					.iterator();
+		}
+
+		@Override
+		public IIOMetadata getStreamMetadata() {
+			return null;
+		}
+
+		@Override
+		public IIOMetadata getImageMetadata(int imageIndex) {
+			return null;
+		}
+
+		@Override
+		public BufferedImage read(int imageIndex, ImageReadParam param) throws IOException {
+			if (param != null && (param.getSourceXSubsampling() != 1 || param.getSourceYSubsampling() != 1))
+				throw new IIOException("Subsampling is not supported");
+
+			readHeader();
+			final byte[] rgb = new byte[width * height * 3];
+			stream().readFully(rgb);
+
+			final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			for (int y = 0, i = 0; y < height; y++) {
+				for (int x = 0; x < width; x++, i += 3) {
+					image.setRGB(x, y, (rgb[i] & 0xff) << 16 | (rgb[i + 1] & 0xff) << 8 | (rgb[i + 2] & 0xff));
+				}
+			}
+			return image;
+		}
+	}
+}
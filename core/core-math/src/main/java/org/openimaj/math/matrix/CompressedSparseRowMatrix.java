@@ -0,0 +1,833 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.matrix;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+import ch.akuhn.matrix.DenseVector;
+import ch.akuhn.matrix.Matrix;
+import ch.akuhn.matrix.SparseMatrix;
+import ch.akuhn.matrix.SparseVector;
+import ch.akuhn.matrix.Vector;
+import ch.akuhn.matrix.Vector.Entry;
+
+/**
+ * A sparse matrix in compressed sparse row (CSR) format. The column indices
+ * and values of the non-zero elements are held row by row in two flat
+ * arrays, with a third array giving the offset of the start of each row. This
+ * is much more compact than a {@link SparseMatrix} (which has a separate
+ * vector object per row), and the matrix-vector products used by the
+ * eigen-solvers (see {@link #mult(Vector)}) stream through memory
+ * sequentially and are performed in parallel over blocks of rows with
+ * roughly equal numbers of non-zeros.
+ * <p>
+ * The structure of the matrix (the positions of the non-zero elements) is
+ * fixed on construction, but the values can be changed in place, for example
+ * by {@link #scaleInplace(double[], double[])}. Matrices can be built in
+ * memory, or streamed row by row to a file with a {@link Writer} and then
+ * memory-mapped with {@link #map(File, MapMode)}, so graphs with more edges
+ * than can fit in the heap can still be used. Internally the non-zeros are
+ * held in segments of 2<sup>27</sup> elements, so the total number of
+ * non-zeros is only limited by the address space.
+ * <p>
+ * The column indices within each row must be in ascending order.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class CompressedSparseRowMatrix extends Matrix {
+	private static final int MAGIC = 0x4353524D; // "CSRM"
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 24;
+
+	private static final int SEGMENT_SHIFT = 27;
+	private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+	private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+	private final int rows;
+	private final int columns;
+	private final long[] rowPtr;
+	private final IntBuffer[] indices;
+	private final DoubleBuffer[] values;
+
+	private ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+	private int[] blocks;
+
+	/**
+	 * Construct from the given CSR arrays. The arrays are used directly
+	 * rather than being copied.
+	 * 
+	 * @param rows
+	 *            the number of rows
+	 * @param columns
+	 *            the number of columns
+	 * @param rowPtr
+	 *            the offset of the start of each row in the indices and values
+	 *            arrays; must have length <code>rows + 1</code>, with the last
+	 *            element being the number of non-zeros
+	 * @param indices
+	 *            the column index of each non-zero, in ascending order within
+	 *            each row
+	 * @param values
+	 *            the value of each non-zero
+	 */
+	public CompressedSparseRowMatrix(int rows, int columns, long[] rowPtr, int[] indices, double[] values) {
+		if (rowPtr.length != rows + 1)
+			throw new IllegalArgumentException("rowPtr must have rows + 1 elements");
+		if (indices.length != values.length || rowPtr[rows] != indices.length)
+			throw new IllegalArgumentException("indices and values must both have rowPtr[rows] elements");
+
+		this.rows = rows;
+		this.columns = columns;
+		this.rowPtr = rowPtr;
+
+		final int nSegments = numSegments(indices.length);
+		this.indices = new IntBuffer[nSegments];
+		this.values = new DoubleBuffer[nSegments];
+		for (int s = 0; s < nSegments; s++) {
+			final int offset = s * SEGMENT_SIZE;
+			final int length = Math.min(SEGMENT_SIZE, indices.length - offset);
+			this.indices[s] = IntBuffer.wrap(indices, offset, length).slice();
+			this.values[s] = DoubleBuffer.wrap(values, offset, length).slice();
+		}
+	}
+
+	/**
+	 * Construct by copying the non-zero elements of another matrix.
+	 * 
+	 * @param matrix
+	 *            the matrix to copy
+	 */
+	public CompressedSparseRowMatrix(Matrix matrix) {
+		this(copy(matrix));
+	}
+
+	private CompressedSparseRowMatrix(CompressedSparseRowMatrix other) {
+		this.rows = other.rows;
+		this.columns = other.columns;
+		this.rowPtr = other.rowPtr;
+		this.indices = other.indices;
+		this.values = other.values;
+	}
+
+	private CompressedSparseRowMatrix(int rows, int columns, long[] rowPtr, IntBuffer[] indices,
+			DoubleBuffer[] values)
+	{
+		this.rows = rows;
+		this.columns = columns;
+		this.rowPtr = rowPtr;
+		this.indices = indices;
+		this.values = values;
+	}
+
+	private static CompressedSparseRowMatrix copy(Matrix matrix) {
+		final int rows = matrix.rowCount();
+		final long[] rowPtr = new long[rows + 1];
+
+		int nnz = 0;
+		int r = 0;
+		for (final Vector row : matrix.rows()) {
+			for (final Entry e : row.entries())
+				if (e.value != 0)
+					nnz++;
+			rowPtr[++r] = nnz;
+		}
+
+		final int[] indices = new int[nnz];
+		final double[] values = new double[nnz];
+		int k = 0;
+		for (final Vector row : matrix.rows()) {
+			for (final Entry e : row.entries()) {
+				if (e.value != 0) {
+					indices[k] = e.index;
+					values[k++] = e.value;
+				}
+			}
+		}
+
+		return new CompressedSparseRowMatrix(rows, matrix.columnCount(), rowPtr, indices, values);
+	}
+
+	private static int numSegments(long nnz) {
+		return (int) ((nnz + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+	}
+
+	/**
+	 * Set the thread pool used for the parallel operations. If null, the
+	 * operations are performed in the calling thread.
+	 * 
+	 * @param pool
+	 *            the thread pool
+	 */
+	public void setThreadPool(ThreadPoolExecutor pool) {
+		this.pool = pool;
+		this.blocks = null;
+	}
+
+	@Override
+	public int rowCount() {
+		return rows;
+	}
+
+	@Override
+	public int columnCount() {
+		return columns;
+	}
+
+	/**
+	 * Get the number of non-zero elements. Unlike {@link #used()} this cannot
+	 * overflow.
+	 * 
+	 * @return the number of non-zero elements
+	 */
+	public long nonZeroCount() {
+		return rowPtr[rows];
+	}
+
+	@Override
+	public int used() {
+		return (int) Math.min(Integer.MAX_VALUE, nonZeroCount());
+	}
+
+	@Override
+	public double density() {
+		return (double) nonZeroCount() / ((double) rows * columns);
+	}
+
+	/**
+	 * Find the position of the given element in the flattened arrays
+	 * 
+	 * @return the position, or -1 if the element is zero
+	 */
+	private long find(int row, int column) {
+		long lo = rowPtr[row];
+		long hi = rowPtr[row + 1] - 1;
+
+		while (lo <= hi) {
+			final long mid = (lo + hi) >>> 1;
+			final int c = index(mid);
+
+			if (c < column)
+				lo = mid + 1;
+			else if (c > column)
+				hi = mid - 1;
+			else
+				return mid;
+		}
+
+		return -1;
+	}
+
+	private int index(long pos) {
+		return indices[(int) (pos >>> SEGMENT_SHIFT)].get((int) (pos & SEGMENT_MASK));
+	}
+
+	private double value(long pos) {
+		return values[(int) (pos >>> SEGMENT_SHIFT)].get((int) (pos & SEGMENT_MASK));
+	}
+
+	@Override
+	public double get(int row, int column) {
+		final long pos = find(row, column);
+		return pos < 0 ? 0 : value(pos);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Only existing non-zero elements can be changed; attempting to set any
+	 * other element to a non-zero value throws an
+	 * {@link UnsupportedOperationException}, as the structure of the matrix
+	 * is fixed.
+	 */
+	@Override
+	public double put(int row, int column, double value) {
+		final long pos = find(row, column);
+
+		if (pos < 0) {
+			if (value == 0)
+				return 0;
+			throw new UnsupportedOperationException("Cannot add elements to a CompressedSparseRowMatrix");
+		}
+
+		values[(int) (pos >>> SEGMENT_SHIFT)].put((int) (pos & SEGMENT_MASK), value);
+		return value;
+	}
+
+	@Override
+	public Vector row(int row) {
+		final long start = rowPtr[row];
+		final int length = (int) (rowPtr[row + 1] - start);
+		final SparseVector vec = new SparseVector(columns, Math.max(length, 1));
+
+		for (int k = 0; k < length; k++)
+			vec.put(index(start + k), value(start + k));
+
+		return vec;
+	}
+
+	@Override
+	public Iterable<Vector> rows() {
+		return new Iterable<Vector>() {
+			@Override
+			public java.util.Iterator<Vector> iterator() {
+				return new java.util.Iterator<Vector>() {
+					int row = 0;
+
+					@Override
+					public boolean hasNext() {
+						return row < rows;
+					}
+
+					@Override
+					public Vector next() {
+						return row(row++);
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	@Override
+	public Matrix newInstance(int rows, int cols) {
+		return new SparseMatrix(rows, cols);
+	}
+
+	/**
+	 * Get the row boundaries of the blocks processed by each thread; each
+	 * block has roughly the same number of non-zeros.
+	 */
+	private int[] blocks() {
+		if (blocks == null) {
+			final int nBlocks = pool == null ? 1 : Math.max(1, Math.min(rows, pool.getMaximumPoolSize()));
+			final int[] b = new int[nBlocks + 1];
+			final long nnz = nonZeroCount();
+
+			for (int i = 1; i < nBlocks; i++) {
+				final long target = (nnz * i) / nBlocks;
+				int pos = Arrays.binarySearch(rowPtr, target);
+				if (pos < 0)
+					pos = -pos - 1;
+
+				b[i] = Math.max(b[i - 1], Math.min(rows, pos));
+			}
+			b[nBlocks] = rows;
+			blocks = b;
+		}
+		return blocks;
+	}
+
+	/**
+	 * An operation on a range of rows
+	 */
+	private static interface RowOperation {
+		void perform(int start, int stop);
+	}
+
+	/**
+	 * Apply the given operation to each block of rows, in parallel
+	 */
+	private void forEachBlock(final RowOperation rowOp) {
+		final int[] b = blocks();
+
+		if (pool == null || b.length == 2) {
+			for (int i = 0; i < b.length - 1; i++)
+				rowOp.perform(b[i], b[i + 1]);
+		} else {
+			Parallel.forRangeCallerRuns(0, b.length - 1, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					for (int i = range.start; i < range.stop; i += range.incr)
+						rowOp.perform(b[i], b[i + 1]);
+				}
+			}, pool);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The product is computed in parallel over blocks of rows.
+	 */
+	@Override
+	public Vector mult(Vector x) {
+		final double[] y = new double[rows];
+		mult(toArray(x), y);
+		return Vector.wrap(y);
+	}
+
+	/**
+	 * Compute <code>y = Ax</code> in parallel over blocks of rows.
+	 * 
+	 * @param x
+	 *            the vector to multiply (of length {@link #columnCount()})
+	 * @param y
+	 *            the output vector (of length {@link #rowCount()})
+	 */
+	public void mult(final double[] x, final double[] y) {
+		forEachBlock(new RowOperation() {
+			@Override
+			public void perform(int start, int stop) {
+				for (int r = start; r < stop; r++) {
+					long p = rowPtr[r];
+					final long end = rowPtr[r + 1];
+					double sum = 0;
+
+					while (p < end) {
+						final int seg = (int) (p >>> SEGMENT_SHIFT);
+						final int off = (int) (p & SEGMENT_MASK);
+						final int last = off + (int) Math.min(end - p, SEGMENT_SIZE - off);
+						final IntBuffer idx = indices[seg];
+						final DoubleBuffer val = values[seg];
+
+						for (int k = off; k < last; k++)
+							sum += val.get(k) * x[idx.get(k)];
+
+						p += last - off;
+					}
+
+					y[r] = sum;
+				}
+			}
+		});
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This is computed sequentially; for symmetric matrices use
+	 * {@link #mult(Vector)} instead.
+	 */
+	@Override
+	public Vector transposeMultiply(Vector x) {
+		final double[] xa = toArray(x);
+		final double[] y = new double[columns];
+
+		for (int r = 0; r < rows; r++) {
+			final double xr = xa[r];
+			if (xr == 0)
+				continue;
+
+			for (long p = rowPtr[r]; p < rowPtr[r + 1]; p++)
+				y[index(p)] += value(p) * xr;
+		}
+
+		return Vector.wrap(y);
+	}
+
+	private static double[] toArray(Vector x) {
+		if (x instanceof DenseVector)
+			return ((DenseVector) x).unwrap();
+
+		final double[] xa = new double[x.size()];
+		x.storeOn(xa, 0);
+		return xa;
+	}
+
+	/**
+	 * Compute the sum of each row in parallel. For the adjacency matrix of a
+	 * graph this is the degree of each vertex.
+	 * 
+	 * @return the row sums
+	 */
+	public double[] rowSums() {
+		final double[] sums = new double[rows];
+
+		forEachBlock(new RowOperation() {
+			@Override
+			public void perform(int start, int stop) {
+				for (int r = start; r < stop; r++) {
+					double sum = 0;
+					for (long p = rowPtr[r]; p < rowPtr[r + 1]; p++)
+						sum += value(p);
+					sums[r] = sum;
+				}
+			}
+		});
+
+		return sums;
+	}
+
+	/**
+	 * Scale each element in place, such that
+	 * <code>a<sub>ij</sub> = rowScale<sub>i</sub> a<sub>ij</sub> colScale<sub>j</sub></code>
+	 * (in matrix terms <code>A = diag(rowScale) A diag(colScale)</code>). This
+	 * is performed in parallel over blocks of rows.
+	 * 
+	 * @param rowScale
+	 *            the scale of each row; if null the rows are not scaled
+	 * @param colScale
+	 *            the scale of each column; if null the columns are not
+	 *            scaled
+	 * @return this matrix
+	 */
+	public CompressedSparseRowMatrix scaleInplace(final double[] rowScale, final double[] colScale) {
+		forEachBlock(new RowOperation() {
+			@Override
+			public void perform(int start, int stop) {
+				for (int r = start; r < stop; r++) {
+					final double rs = rowScale == null ? 1 : rowScale[r];
+
+					for (long p = rowPtr[r]; p < rowPtr[r + 1]; p++) {
+						final int seg = (int) (p >>> SEGMENT_SHIFT);
+						final int off = (int) (p & SEGMENT_MASK);
+						final double cs = colScale == null ? 1 : colScale[indices[seg].get(off)];
+
+						values[seg].put(off, values[seg].get(off) * rs * cs);
+					}
+				}
+			}
+		});
+
+		return this;
+	}
+
+	/**
+	 * Multiply every element by the given scalar in place.
+	 * 
+	 * @param scalar
+	 *            the scalar
+	 * @return this matrix
+	 */
+	public CompressedSparseRowMatrix timesInplace(final double scalar) {
+		forEachBlock(new RowOperation() {
+			@Override
+			public void perform(int start, int stop) {
+				for (long p = rowPtr[start]; p < rowPtr[stop]; p++) {
+					final int seg = (int) (p >>> SEGMENT_SHIFT);
+					final int off = (int) (p & SEGMENT_MASK);
+					values[seg].put(off, values[seg].get(off) * scalar);
+				}
+			}
+		});
+
+		return this;
+	}
+
+	/**
+	 * Add the given values to the diagonal of this matrix. If every diagonal
+	 * element is already part of the structure of the matrix, the addition is
+	 * performed in place and this matrix is returned; otherwise a new
+	 * in-memory matrix with the diagonal elements inserted is returned.
+	 * 
+	 * @param diagonal
+	 *            the values to add to the diagonal
+	 * @return the result; either this matrix or a new one
+	 */
+	public CompressedSparseRowMatrix plusDiagonal(double[] diagonal) {
+		final int n = Math.min(rows, columns);
+		final long[] diagPos = new long[n];
+		int missing = 0;
+
+		for (int i = 0; i < n; i++) {
+			diagPos[i] = find(i, i);
+			if (diagPos[i] < 0 && diagonal[i] != 0)
+				missing++;
+		}
+
+		if (missing == 0) {
+			for (int i = 0; i < n; i++) {
+				if (diagPos[i] >= 0) {
+					final long p = diagPos[i];
+					values[(int) (p >>> SEGMENT_SHIFT)].put((int) (p & SEGMENT_MASK), value(p) + diagonal[i]);
+				}
+			}
+			return this;
+		}
+
+		final long nnz = nonZeroCount() + missing;
+		if (nnz > Integer.MAX_VALUE - 8)
+			throw new UnsupportedOperationException("Matrix is too large to copy into memory");
+
+		final long[] newRowPtr = new long[rows + 1];
+		final int[] newIndices = new int[(int) nnz];
+		final double[] newValues = new double[(int) nnz];
+		int k = 0;
+		for (int r = 0; r < rows; r++) {
+			final boolean insert = r < n && diagPos[r] < 0 && diagonal[r] != 0;
+			boolean inserted = false;
+
+			for (long p = rowPtr[r]; p < rowPtr[r + 1]; p++) {
+				final int c = index(p);
+				if (insert && !inserted && c > r) {
+					newIndices[k] = r;
+					newValues[k++] = diagonal[r];
+					inserted = true;
+				}
+
+				newIndices[k] = c;
+				newValues[k++] = value(p) + (c == r && r < n ? diagonal[r] : 0);
+			}
+
+			if (insert && !inserted) {
+				newIndices[k] = r;
+				newValues[k++] = diagonal[r];
+			}
+
+			newRowPtr[r + 1] = k;
+		}
+
+		final CompressedSparseRowMatrix result = new CompressedSparseRowMatrix(rows, columns, newRowPtr, newIndices,
+				newValues);
+		result.pool = pool;
+		return result;
+	}
+
+	/**
+	 * Write this matrix to a file in a form that can be memory-mapped by
+	 * {@link #map(File, MapMode)}.
+	 * 
+	 * @param file
+	 *            the file to write
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+
+		try {
+			writeHeader(dos, rows, columns, rowPtr);
+
+			for (long p = 0; p < nonZeroCount(); p++)
+				dos.writeInt(index(p));
+
+			if ((nonZeroCount() & 1) != 0)
+				dos.writeInt(0);
+
+			for (long p = 0; p < nonZeroCount(); p++)
+				dos.writeDouble(value(p));
+		} finally {
+			dos.close();
+		}
+	}
+
+	private static void writeHeader(DataOutputStream dos, int rows, int columns, long[] rowPtr) throws IOException {
+		dos.writeInt(MAGIC);
+		dos.writeInt(VERSION);
+		dos.writeInt(rows);
+		dos.writeInt(columns);
+		dos.writeLong(rowPtr[rows]);
+
+		for (int i = 0; i <= rows; i++)
+			dos.writeLong(rowPtr[i]);
+	}
+
+	/**
+	 * Memory-map a matrix that was written with {@link #write(File)} or a
+	 * {@link Writer}. Only the row offsets are read into the heap; the column
+	 * indices and values are paged in by the operating system as they are
+	 * used.
+	 * <p>
+	 * With {@link MapMode#READ_ONLY} the values cannot be modified, so the
+	 * in-place operations such as {@link #scaleInplace(double[], double[])}
+	 * will fail. {@link MapMode#PRIVATE} allows them, without the changes
+	 * being written to the file (the file must be writable however), and
+	 * {@link MapMode#READ_WRITE} writes the changes through to the file.
+	 * 
+	 * @param file
+	 *            the file
+	 * @param mode
+	 *            the mapping mode
+	 * @return the mapped matrix
+	 * @throws IOException
+	 */
+	public static CompressedSparseRowMatrix map(File file, MapMode mode) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, mode == MapMode.READ_ONLY ? "r" : "rw");
+
+		try {
+			final FileChannel channel = raf.getChannel();
+
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			channel.read(header, 0);
+			header.flip();
+			if (header.getInt() != MAGIC || header.getInt() != VERSION)
+				throw new IOException("Not a CompressedSparseRowMatrix file: " + file);
+
+			final int rows = header.getInt();
+			final int columns = header.getInt();
+			final long nnz = header.getLong();
+
+			final long rowPtrBytes = 8L * (rows + 1);
+			final long[] rowPtr = new long[rows + 1];
+			final LongBuffer rowPtrBuffer = channel.map(MapMode.READ_ONLY, HEADER_BYTES, rowPtrBytes).asLongBuffer();
+			rowPtrBuffer.get(rowPtr);
+
+			final long indicesStart = HEADER_BYTES + rowPtrBytes;
+			final long valuesStart = indicesStart + 4L * (nnz + (nnz & 1));
+			final int nSegments = numSegments(nnz);
+			final IntBuffer[] indices = new IntBuffer[nSegments];
+			final DoubleBuffer[] values = new DoubleBuffer[nSegments];
+
+			for (int s = 0; s < nSegments; s++) {
+				final long offset = (long) s * SEGMENT_SIZE;
+				final long length = Math.min(SEGMENT_SIZE, nnz - offset);
+
+				indices[s] = channel.map(mode, indicesStart + 4 * offset, 4 * length).asIntBuffer();
+				values[s] = channel.map(mode, valuesStart + 8 * offset, 8 * length).asDoubleBuffer();
+			}
+
+			return new CompressedSparseRowMatrix(rows, columns, rowPtr, indices, values);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Streaming writer for {@link CompressedSparseRowMatrix} files, for
+	 * building matrices that are too large to hold in memory. Rows are added
+	 * in order; the column indices and values are spooled to temporary files
+	 * next to the output, which are combined when the writer is closed. The
+	 * result can be loaded with {@link CompressedSparseRowMatrix#map(File, MapMode)}.
+	 * 
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class Writer implements Closeable {
+		private final File file;
+		private final int rows;
+		private final int columns;
+		private final long[] rowPtr;
+		private final File indicesFile;
+		private final File valuesFile;
+		private final DataOutputStream indicesOut;
+		private final DataOutputStream valuesOut;
+		private int currentRow = 0;
+
+		/**
+		 * Construct a writer for a matrix of the given size.
+		 * 
+		 * @param file
+		 *            the output file
+		 * @param rows
+		 *            the number of rows
+		 * @param columns
+		 *            the number of columns
+		 * @throws IOException
+		 */
+		public Writer(File file, int rows, int columns) throws IOException {
+			this.file = file;
+			this.rows = rows;
+			this.columns = columns;
+			this.rowPtr = new long[rows + 1];
+
+			final File dir = file.getAbsoluteFile().getParentFile();
+			this.indicesFile = File.createTempFile("csr", ".idx", dir);
+			this.valuesFile = File.createTempFile("csr", ".val", dir);
+			this.indicesOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indicesFile), 1 << 16));
+			this.valuesOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(valuesFile), 1 << 16));
+		}
+
+		/**
+		 * Add the next row.
+		 * 
+		 * @param indices
+		 *            the column indices of the non-zeros, in ascending order
+		 * @param values
+		 *            the values of the non-zeros
+		 * @param length
+		 *            the number of non-zeros in the row
+		 * @throws IOException
+		 */
+		public void addRow(int[] indices, double[] values, int length) throws IOException {
+			if (currentRow >= rows)
+				throw new IllegalStateException("All rows have already been written");
+
+			for (int i = 0; i < length; i++) {
+				if (indices[i] < 0 || indices[i] >= columns || (i > 0 && indices[i] <= indices[i - 1]))
+					throw new IllegalArgumentException("Column indices must be ascending and within bounds");
+
+				indicesOut.writeInt(indices[i]);
+				valuesOut.writeDouble(values[i]);
+			}
+
+			rowPtr[currentRow + 1] = rowPtr[currentRow] + length;
+			currentRow++;
+		}
+
+		/**
+		 * Write the matrix file. Any rows that have not been added are empty.
+		 */
+		@Override
+		public void close() throws IOException {
+			indicesOut.close();
+			valuesOut.close();
+
+			for (int r = currentRow; r < rows; r++)
+				rowPtr[r + 1] = rowPtr[r];
+
+			try {
+				final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+				writeHeader(dos, rows, columns, rowPtr);
+				copy(indicesFile, dos);
+				if ((rowPtr[rows] & 1) != 0)
+					dos.writeInt(0);
+				copy(valuesFile, dos);
+				dos.close();
+			} finally {
+				indicesFile.delete();
+				valuesFile.delete();
+			}
+		}
+
+		private static void copy(File from, DataOutputStream to) throws IOException {
+			final FileInputStream fis = new FileInputStream(from);
+			try {
+				final byte[] buffer = new byte[1 << 16];
+				int n;
+				while ((n = fis.read(buffer)) > 0)
+					to.write(buffer, 0, n);
+			} finally {
+				fis.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,611 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.matrix;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.citation.annotation.Reference;
+import org.openimaj.citation.annotation.ReferenceType;
+import org.openimaj.data.DataSource;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+import Jama.Matrix;
+import Jama.QRDecomposition;
+import Jama.SingularValueDecomposition;
+
+/**
+ * Truncated SVD computed with a randomised range finder. A random subspace
+ * of slightly larger dimension than required (the number of dimensions plus
+ * an oversampling amount) is refined with a few power (subspace) iterations
+ * so that it captures the dominant right singular vectors, and the small
+ * projected problem is then solved exactly. The accuracy can be traded
+ * against time with the oversampling and the number of power iterations.
+ * <p>
+ * The data is only accessed a block of rows at a time, with each pass
+ * computing the product of the data with an <code>n &times; l</code> matrix
+ * (where <code>n</code> is the number of columns and <code>l</code> the
+ * dimension of the subspace). Each block is processed in parallel, and
+ * nothing proportional to the number of rows is held in memory unless the
+ * left singular vectors are requested, so the data can be streamed from a
+ * {@link DataSource} that doesn't fit in memory. The final pass uses a
+ * streaming (tall-skinny) QR decomposition, so the squaring of the singular
+ * values in the power iterations does not affect the accuracy of the result.
+ * The number of passes over the data is the number of power iterations plus
+ * two, or three if the left singular vectors are computed from a
+ * {@link DataSource}.
+ * <p>
+ * Unlike {@link ThinSingularValueDecomposition}, which has to serialise all
+ * decompositions in the JVM as ARPACK is not thread-safe, this class has no
+ * global state and any number of decompositions can be performed
+ * concurrently.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+@Reference(
+		type = ReferenceType.Article,
+		author = { "Halko, N.", "Martinsson, P. G.", "Tropp, J. A." },
+		title = "Finding Structure with Randomness: Probabilistic Algorithms for Constructing Approximate Matrix Decompositions",
+		year = "2011",
+		journal = "SIAM Review",
+		pages = { "217", "288" },
+		volume = "53",
+		number = "2")
+public class RandomizedSingularValueDecomposition {
+	/** The default number of extra dimensions sampled */
+	public static final int DEFAULT_OVERSAMPLING = 10;
+
+	/** The default number of power iterations */
+	public static final int DEFAULT_POWER_ITERATIONS = 2;
+
+	private static final int BLOCK_SIZE = 4096;
+
+	/** The U matrix; null if the left singular vectors were not computed */
+	public Matrix U;
+	/** The singular values */
+	public double[] S;
+	/** The transpose of the V matrix */
+	public Matrix Vt;
+
+	/**
+	 * Access to blocks of rows of the data
+	 */
+	private static abstract class RowReader {
+		final int rows;
+		final int columns;
+
+		RowReader(int rows, int columns) {
+			this.rows = rows;
+			this.columns = columns;
+		}
+
+		/**
+		 * Fill the buffer with the given rows. The buffer rows may be
+		 * replaced, but must not be modified.
+		 */
+		abstract void read(int start, int stop, double[][] buffer);
+
+		/**
+		 * Whether the rows can be read concurrently
+		 */
+		boolean isRandomAccess() {
+			return false;
+		}
+	}
+
+	/**
+	 * Perform randomised SVD on the matrix, calculating at most ndims
+	 * dimensions with the default oversampling and power iterations.
+	 * 
+	 * @param matrix
+	 *            the matrix
+	 * @param ndims
+	 *            the number of singular values/vectors to calculate; actual
+	 *            number may be less.
+	 */
+	public RandomizedSingularValueDecomposition(Matrix matrix, int ndims) {
+		this(matrix, ndims, DEFAULT_OVERSAMPLING, DEFAULT_POWER_ITERATIONS);
+	}
+
+	/**
+	 * Perform randomised SVD on the matrix, calculating at most ndims
+	 * dimensions.
+	 * 
+	 * @param matrix
+	 *            the matrix
+	 * @param ndims
+	 *            the number of singular values/vectors to calculate; actual
+	 *            number may be less.
+	 * @param oversampling
+	 *            the number of extra dimensions to sample; more gives a more
+	 *            accurate result
+	 * @param powerIterations
+	 *            the number of power iterations; more gives a more accurate
+	 *            result, particularly when the singular values decay slowly,
+	 *            at the cost of an extra pass over the data each
+	 */
+	public RandomizedSingularValueDecomposition(Matrix matrix, int ndims, int oversampling, int powerIterations) {
+		this(reader(matrix), null, ndims, oversampling, powerIterations, true, new Random(),
+				GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Perform randomised SVD on the matrix, calculating at most ndims
+	 * dimensions with the default oversampling and power iterations.
+	 * 
+	 * @param matrix
+	 *            the matrix
+	 * @param ndims
+	 *            the number of singular values/vectors to calculate; actual
+	 *            number may be less.
+	 */
+	public RandomizedSingularValueDecomposition(ch.akuhn.matrix.Matrix matrix, int ndims) {
+		this(matrix, ndims, DEFAULT_OVERSAMPLING, DEFAULT_POWER_ITERATIONS);
+	}
+
+	/**
+	 * Perform randomised SVD on the matrix, calculating at most ndims
+	 * dimensions.
+	 * 
+	 * @param matrix
+	 *            the matrix
+	 * @param ndims
+	 *            the number of singular values/vectors to calculate; actual
+	 *            number may be less.
+	 * @param oversampling
+	 *            the number of extra dimensions to sample; more gives a more
+	 *            accurate result
+	 * @param powerIterations
+	 *            the number of power iterations; more gives a more accurate
+	 *            result, particularly when the singular values decay slowly,
+	 *            at the cost of an extra pass over the data each
+	 */
+	public RandomizedSingularValueDecomposition(ch.akuhn.matrix.Matrix matrix, int ndims, int oversampling,
+			int powerIterations)
+	{
+		this(reader(matrix), null, ndims, oversampling, powerIterations, true, new Random(),
+				GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Perform randomised SVD on the matrix, optionally subtracting a mean
+	 * vector from every row first. The mean is subtracted implicitly, so the
+	 * matrix is not copied.
+	 * 
+	 * @param matrix
+	 *            the matrix
+	 * @param mean
+	 *            the vector to subtract from each row (can be null)
+	 * @param ndims
+	 *            the number of singular values/vectors to calculate; actual
+	 *            number may be less.
+	 * @param oversampling
+	 *            the number of extra dimensions to sample; more gives a more
+	 *            accurate result
+	 * @param powerIterations
+	 *            the number of power iterations; more gives a more accurate
+	 *            result, particularly when the singular values decay slowly,
+	 *            at the cost of an extra pass over the data each
+	 * @param computeU
+	 *            if true the left singular vectors are computed; otherwise
+	 *            {@link #U} is null.
+	 * @param rng
+	 *            the source of randomness
+	 */
+	public RandomizedSingularValueDecomposition(Matrix matrix, double[] mean, int ndims, int oversampling,
+			int powerIterations, boolean computeU, Random rng)
+	{
+		this(reader(matrix), mean, ndims, oversampling, powerIterations, computeU, rng, GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Perform randomised SVD on the data provided by a {@link DataSource}
+	 * (one row per item), optionally subtracting a mean vector from every row
+	 * first. The data source is read a block of rows at a time, in order, so
+	 * it need not be held in memory.
+	 * 
+	 * @param data
+	 *            the data
+	 * @param mean
+	 *            the vector to subtract from each row (can be null)
+	 * @param ndims
+	 *            the number of singular values/vectors to calculate; actual
+	 *            number may be less.
+	 * @param oversampling
+	 *            the number of extra dimensions to sample; more gives a more
+	 *            accurate result
+	 * @param powerIterations
+	 *            the number of power iterations; more gives a more accurate
+	 *            result, particularly when the singular values decay slowly,
+	 *            at the cost of an extra pass over the data each
+	 * @param computeU
+	 *            if true the left singular vectors (which have as many rows
+	 *            as the data) are computed; otherwise {@link #U} is null.
+	 * @param rng
+	 *            the source of randomness
+	 */
+	public RandomizedSingularValueDecomposition(DataSource<double[]> data, double[] mean, int ndims, int oversampling,
+			int powerIterations, boolean computeU, Random rng)
+	{
+		this(reader(data), mean, ndims, oversampling, powerIterations, computeU, rng, GlobalExecutorPool.getPool());
+	}
+
+	private RandomizedSingularValueDecomposition(RowReader reader, double[] mean, int ndims, int oversampling,
+			int powerIterations, boolean computeU, Random rng, ThreadPoolExecutor pool)
+	{
+		if (reader.rows == 0 || reader.columns == 0)
+			throw new IllegalArgumentException("Cannot decompose an empty matrix");
+
+		final int n = reader.columns;
+		final int l = Math.min(ndims + oversampling, Math.min(reader.rows, n));
+		final Pass pass = new Pass(reader, mean, pool);
+
+		// random starting subspace
+		double[][] q = new double[n][l];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < l; j++)
+				q[i][j] = rng.nextGaussian();
+		q = orthonormalise(q);
+
+		// subspace iteration on A^T A
+		for (int i = 0; i <= powerIterations; i++)
+			q = orthonormalise(pass.gramProduct(q));
+
+		// QR of AQ, then the SVD of the small R factor
+		final double[][] aq = computeU && reader.isRandomAccess() ? new double[reader.rows][] : null;
+		final Matrix r = pass.tsqr(q, aq);
+		final SingularValueDecomposition svd = new SingularValueDecomposition(r);
+
+		final int k = Math.min(ndims, l);
+		S = Arrays.copyOf(svd.getSingularValues(), k);
+
+		final Matrix vr = svd.getV().getMatrix(0, l - 1, 0, k - 1);
+		Vt = new Matrix(q).times(vr).transpose();
+
+		if (computeU) {
+			final Matrix scale = vr.copy();
+			for (int j = 0; j < k; j++) {
+				final double inv = S[j] > 0 ? 1 / S[j] : 0;
+				for (int i = 0; i < l; i++)
+					scale.set(i, j, scale.get(i, j) * inv);
+			}
+
+			if (aq != null)
+				U = new Matrix(aq).times(scale);
+			else
+				U = new Matrix(pass.project(new Matrix(q).times(scale).getArray()));
+		}
+	}
+
+	/**
+	 * Orthonormalise the columns of the given (tall) matrix
+	 */
+	private static double[][] orthonormalise(double[][] m) {
+		return new QRDecomposition(new Matrix(m)).getQ().getArray();
+	}
+
+	/**
+	 * The passes over the data. Each block of rows is read sequentially and
+	 * then split between the threads, each of which accumulates its own
+	 * partial result.
+	 */
+	private static class Pass {
+		final RowReader reader;
+		final double[] mean;
+		final ThreadPoolExecutor pool;
+		final int nThreads;
+		final double[][] buffer;
+
+		Pass(RowReader reader, double[] mean, ThreadPoolExecutor pool) {
+			this.reader = reader;
+			this.mean = mean;
+			this.pool = pool;
+			this.nThreads = pool == null ? 1 : Math.max(1, pool.getMaximumPoolSize());
+			this.buffer = new double[Math.min(BLOCK_SIZE, reader.rows)][];
+		}
+
+		/**
+		 * The operation performed by each thread on its rows of a block
+		 */
+		abstract class RowsOperation {
+			abstract void perform(int thread, int blockStart, double[][] rows, int start, int stop);
+		}
+
+		void forEachBlock(final RowsOperation op) {
+			for (int blockStart = 0; blockStart < reader.rows; blockStart += buffer.length) {
+				final int bs = blockStart;
+				final int len = Math.min(buffer.length, reader.rows - blockStart);
+				reader.read(blockStart, blockStart + len, buffer);
+
+				final int chunk = (len + nThreads - 1) / nThreads;
+				if (pool == null || nThreads == 1) {
+					op.perform(0, bs, buffer, 0, len);
+				} else {
+					Parallel.forRangeCallerRuns(0, nThreads, 1, new Operation<IntRange>() {
+						@Override
+						public void perform(IntRange range) {
+							for (int t = range.start; t < range.stop; t += range.incr) {
+								final int start = t * chunk;
+								final int stop = Math.min(len, start + chunk);
+								if (start < stop)
+									op.perform(t, bs, buffer, start, stop);
+							}
+						}
+					}, pool);
+				}
+			}
+		}
+
+		/**
+		 * Compute <code>t = (a - mean) Q</code> for a row
+		 */
+		void project(double[] a, double[][] q, double[] meanQ, double[] t) {
+			System.arraycopy(meanQ, 0, t, 0, t.length);
+			for (int d = 0; d < a.length; d++) {
+				final double ad = a[d];
+				if (ad == 0)
+					continue;
+
+				final double[] qd = q[d];
+				for (int j = 0; j < t.length; j++)
+					t[j] += ad * qd[j];
+			}
+		}
+
+		/**
+		 * Compute <code>-mean Q</code>
+		 */
+		double[] negMeanQ(double[][] q) {
+			final double[] mq = new double[q[0].length];
+			if (mean != null) {
+				for (int d = 0; d < mean.length; d++)
+					for (int j = 0; j < mq.length; j++)
+						mq[j] -= mean[d] * q[d][j];
+			}
+			return mq;
+		}
+
+		/**
+		 * Compute <code>A<sup>T</sup> A Q</code>, where <code>A</code> is the
+		 * (mean-centred) data
+		 */
+		double[][] gramProduct(final double[][] q) {
+			final int n = q.length;
+			final int l = q[0].length;
+			final double[] meanQ = negMeanQ(q);
+			final double[][][] z = new double[nThreads][n][l];
+			final double[][] tsum = new double[nThreads][l];
+
+			forEachBlock(new RowsOperation() {
+				@Override
+				void perform(int thread, int blockStart, double[][] rows, int start, int stop) {
+					final double[][] zt = z[thread];
+					final double[] t = new double[l];
+
+					for (int i = start; i < stop; i++) {
+						final double[] a = rows[i];
+						project(a, q, meanQ, t);
+
+						for (int d = 0; d < n; d++) {
+							final double ad = a[d];
+							if (ad == 0)
+								continue;
+
+							final double[] zd = zt[d];
+							for (int j = 0; j < l; j++)
+								zd[j] += ad * t[j];
+						}
+
+						for (int j = 0; j < l; j++)
+							tsum[thread][j] += t[j];
+					}
+				}
+			});
+
+			// combine the partial sums, then subtract mean * sum(t)
+			final double[][] result = z[0];
+			for (int th = 1; th < nThreads; th++) {
+				for (int d = 0; d < n; d++)
+					for (int j = 0; j < l; j++)
+						result[d][j] += z[th][d][j];
+				for (int j = 0; j < l; j++)
+					tsum[0][j] += tsum[th][j];
+			}
+
+			if (mean != null) {
+				for (int d = 0; d < n; d++)
+					for (int j = 0; j < l; j++)
+						result[d][j] -= mean[d] * tsum[0][j];
+			}
+
+			return result;
+		}
+
+		/**
+		 * Compute the R factor of the QR decomposition of <code>AQ</code>,
+		 * optionally storing the rows of <code>AQ</code>.
+		 */
+		Matrix tsqr(final double[][] q, final double[][] aq) {
+			final int l = q[0].length;
+			final double[] meanQ = negMeanQ(q);
+			final Matrix[] r = new Matrix[nThreads];
+
+			forEachBlock(new RowsOperation() {
+				@Override
+				void perform(int thread, int blockStart, double[][] rows, int start, int stop) {
+					final int offset = r[thread] == null ? 0 : l;
+					final double[][] stack = new double[offset + stop - start][];
+
+					for (int i = 0; i < offset; i++)
+						stack[i] = r[thread].getArray()[i];
+
+					for (int i = start; i < stop; i++) {
+						final double[] t = new double[l];
+						project(rows[i], q, meanQ, t);
+						stack[offset + i - start] = t;
+
+						if (aq != null)
+							aq[blockStart + i] = t;
+					}
+
+					r[thread] = reduce(stack, l);
+				}
+			});
+
+			int count = 0;
+			for (final Matrix rt : r)
+				if (rt != null)
+					count++;
+
+			final double[][] stack = new double[count * l][];
+			int k = 0;
+			for (final Matrix rt : r)
+				if (rt != null)
+					for (final double[] row : rt.getArray())
+						stack[k++] = row;
+
+			return reduce(stack, l);
+		}
+
+		/**
+		 * Get the R factor of the QR decomposition of the given rows (padded
+		 * with zero rows if there are fewer rows than columns)
+		 */
+		private Matrix reduce(double[][] stack, int l) {
+			if (stack.length < l) {
+				final double[][] padded = new double[l][];
+				for (int i = 0; i < l; i++)
+					padded[i] = i < stack.length ? stack[i] : new double[l];
+				stack = padded;
+			}
+
+			return new QRDecomposition(new Matrix(stack)).getR();
+		}
+
+		/**
+		 * Compute <code>A W</code> row by row
+		 */
+		double[][] project(final double[][] w) {
+			final double[] meanW = negMeanQ(w);
+			final double[][] result = new double[reader.rows][];
+
+			forEachBlock(new RowsOperation() {
+				@Override
+				void perform(int thread, int blockStart, double[][] rows, int start, int stop) {
+					for (int i = start; i < stop; i++) {
+						final double[] t = new double[w[0].length];
+						project(rows[i], w, meanW, t);
+						result[blockStart + i] = t;
+					}
+				}
+			});
+
+			return result;
+		}
+	}
+
+	private static RowReader reader(Matrix matrix) {
+		final double[][] data = matrix.getArray();
+
+		return new RowReader(matrix.getRowDimension(), matrix.getColumnDimension()) {
+			@Override
+			void read(int start, int stop, double[][] buffer) {
+				for (int i = start; i < stop; i++)
+					buffer[i - start] = data[i];
+			}
+
+			@Override
+			boolean isRandomAccess() {
+				return true;
+			}
+		};
+	}
+
+	private static RowReader reader(final ch.akuhn.matrix.Matrix matrix) {
+		return new RowReader(matrix.rowCount(), matrix.columnCount()) {
+			@Override
+			void read(int start, int stop, double[][] buffer) {
+				for (int i = start; i < stop; i++) {
+					final double[] row = new double[columns];
+					matrix.row(i).storeOn(row, 0);
+					buffer[i - start] = row;
+				}
+			}
+
+			@Override
+			boolean isRandomAccess() {
+				return true;
+			}
+		};
+	}
+
+	private static RowReader reader(final DataSource<double[]> data) {
+		return new RowReader(data.size(), data.numDimensions()) {
+			double[][] tmp;
+
+			@Override
+			void read(int start, int stop, double[][] buffer) {
+				if (tmp == null || tmp.length < stop - start)
+					tmp = data.createTemporaryArray(buffer.length);
+
+				data.getData(start, stop, tmp);
+				System.arraycopy(tmp, 0, buffer, 0, stop - start);
+			}
+		};
+	}
+
+	/**
+	 * @return The S matrix
+	 */
+	public Matrix getSmatrix() {
+		final Matrix Smat = new Matrix(S.length, S.length);
+
+		for (int r = 0; r < S.length; r++)
+			Smat.set(r, r, S[r]);
+
+		return Smat;
+	}
+
+	/**
+	 * @return The sqrt of the singular vals as a matrix.
+	 */
+	public Matrix getSmatrixSqrt() {
+		final Matrix Smat = new Matrix(S.length, S.length);
+
+		for (int r = 0; r < S.length; r++)
+			Smat.set(r, r, Math.sqrt(S[r]));
+
+		return Smat;
+	}
+}
@@ -42,7 +42,9 @@ import ch.akuhn.matrix.eigenvalues.SingularValues;
  * have been made in this implementation to synchronize the call to
  * {@link SingularValues#decompose()} against the
  * {@link ThinSingularValueDecomposition} class. Care must be taken if you are
- * using JARPACK outside this class in a multi-threaded application.
+ * using JARPACK outside this class in a multi-threaded application. If many
+ * decompositions need to be performed concurrently, consider using a
+ * {@link RandomizedSingularValueDecomposition} instead.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * 
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.matrix.algorithm.pca;
+
+import java.util.Random;
+
+import org.openimaj.data.DataSource;
+import org.openimaj.math.matrix.RandomizedSingularValueDecomposition;
+
+import Jama.Matrix;
+
+/**
+ * Compute the PCA using a randomised SVD to extract the best-n principal
+ * components directly. This is typically much faster than a
+ * {@link ThinSvdPrincipalComponentAnalysis} for large data, and can be run
+ * concurrently from multiple threads. The data is centred implicitly rather
+ * than by making a centred copy, and the basis can also be learnt from a
+ * {@link DataSource} that doesn't fit in memory with
+ * {@link #learnBasis(DataSource)}.
+ * 
+ * @see RandomizedSingularValueDecomposition
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class RandomizedSvdPrincipalComponentAnalysis extends PrincipalComponentAnalysis {
+	int ndims;
+	int oversampling;
+	int powerIterations;
+	Random rng = new Random();
+
+	/**
+	 * Construct a {@link RandomizedSvdPrincipalComponentAnalysis} that will
+	 * extract the n best eigenvectors using the default oversampling and
+	 * number of power iterations.
+	 * 
+	 * @param ndims
+	 *            the number of eigenvectors to select.
+	 */
+	public RandomizedSvdPrincipalComponentAnalysis(int ndims) {
+		this(ndims, RandomizedSingularValueDecomposition.DEFAULT_OVERSAMPLING,
+				RandomizedSingularValueDecomposition.DEFAULT_POWER_ITERATIONS);
+	}
+
+	/**
+	 * Construct a {@link RandomizedSvdPrincipalComponentAnalysis} that will
+	 * extract the n best eigenvectors.
+	 * 
+	 * @param ndims
+	 *            the number of eigenvectors to select.
+	 * @param oversampling
+	 *            the number of extra dimensions to sample
+	 * @param powerIterations
+	 *            the number of power iterations
+	 */
+	public RandomizedSvdPrincipalComponentAnalysis(int ndims, int oversampling, int powerIterations) {
+		this.ndims = ndims;
+		this.oversampling = oversampling;
+		this.powerIterations = powerIterations;
+	}
+
+	@Override
+	public void learnBasis(Matrix data) {
+		final double[][] arr = data.getArray();
+
+		mean = new double[data.getColumnDimension()];
+		for (int j = 0; j < arr.length; j++)
+			for (int i = 0; i < mean.length; i++)
+				mean[i] += arr[j][i];
+
+		for (int i = 0; i < mean.length; i++)
+			mean[i] /= arr.length;
+
+		setBasis(new RandomizedSingularValueDecomposition(data, mean, ndims, oversampling, powerIterations, false,
+				rng), arr.length);
+	}
+
+	/**
+	 * Learn the principal components of the data provided by the given
+	 * {@link DataSource}. The data is read sequentially in blocks, and is
+	 * passed over a small number of times (the number of power iterations
+	 * plus three).
+	 * 
+	 * @param data
+	 *            the data
+	 */
+	public void learnBasis(DataSource<double[]> data) {
+		final int rows = data.size();
+		final double[][] tmp = data.createTemporaryArray(Math.min(rows, 1024));
+
+		mean = new double[data.numDimensions()];
+		for (int start = 0; start < rows; start += tmp.length) {
+			final int stop = Math.min(rows, start + tmp.length);
+			data.getData(start, stop, tmp);
+
+			for (int j = 0; j < stop - start; j++)
+				for (int i = 0; i < mean.length; i++)
+					mean[i] += tmp[j][i];
+		}
+
+		for (int i = 0; i < mean.length; i++)
+			mean[i] /= rows;
+
+		setBasis(new RandomizedSingularValueDecomposition(data, mean, ndims, oversampling, powerIterations, false,
+				rng), rows);
+	}
+
+	@Override
+	protected void learnBasisNorm(Matrix norm) {
+		setBasis(new RandomizedSingularValueDecomposition(norm, null, ndims, oversampling, powerIterations, false,
+				rng), norm.getRowDimension());
+	}
+
+	private void setBasis(RandomizedSingularValueDecomposition svd, int rows) {
+		basis = svd.Vt.transpose();
+
+		eigenvalues = svd.S;
+		final double normEig = 1.0 / (rows - 1);
+		for (int i = 0; i < eigenvalues.length; i++)
+			eigenvalues[i] = eigenvalues[i] * eigenvalues[i] * normEig;
+	}
+}
@@ -0,0 +1,455 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.matrix.algorithm.pca;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.data.DataSource;
+import org.openimaj.math.matrix.MatrixUtils;
+import org.openimaj.util.array.ArrayUtils;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+import org.openimaj.util.stream.Stream;
+
+import Jama.EigenvalueDecomposition;
+import Jama.Matrix;
+
+/**
+ * Principal Component Analysis learnt from the mean and covariance of the
+ * data, which are accumulated in a single pass. Unlike the other
+ * {@link PrincipalComponentAnalysis} implementations, the data never needs to
+ * be held in memory at once; it can be read from a {@link DataSource} or a
+ * {@link Stream}, or fed in incrementally with {@link #update(double[])}
+ * (followed by a call to {@link #computeBasis()}). The memory required is
+ * proportional to the square of the number of dimensions, independent of the
+ * number of observations.
+ * <p>
+ * The accumulated {@link Statistics} can be computed independently for
+ * different partitions of the data (for example on different machines) and
+ * then combined exactly with {@link #update(Statistics)}. Blocks of data are
+ * split between the threads of the pool in the same way.
+ * <p>
+ * The basis is computed with a full eigen decomposition of the covariance
+ * matrix, which is only as large as the dimensionality of the data, and then
+ * truncated to the number of required dimensions. The result is therefore
+ * exact and deterministic.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class StreamingPrincipalComponentAnalysis extends PrincipalComponentAnalysis {
+	private static final int BLOCK_SIZE = 1024;
+
+	/**
+	 * The number of observations, mean and (unnormalised) covariance of a set
+	 * of data. Statistics are updated one observation at a time using
+	 * Welford's method, and two sets of statistics can be merged exactly using
+	 * the pairwise update of Chan et al.
+	 * 
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class Statistics {
+		long count;
+		double[] mean;
+		double[][] comoment;
+		private double[] delta;
+
+		/**
+		 * Construct empty statistics for data with the given dimensionality
+		 * 
+		 * @param ndims
+		 *            the dimensionality of the data
+		 */
+		public Statistics(int ndims) {
+			this.mean = new double[ndims];
+			this.comoment = new double[ndims][ndims];
+			this.delta = new double[ndims];
+		}
+
+		/**
+		 * Add an observation
+		 * 
+		 * @param x
+		 *            the observation
+		 */
+		public void update(double[] x) {
+			final int ndims = mean.length;
+			count++;
+
+			for (int i = 0; i < ndims; i++) {
+				delta[i] = x[i] - mean[i];
+				mean[i] += delta[i] / count;
+			}
+
+			// only the upper triangle is accumulated
+			for (int i = 0; i < ndims; i++) {
+				final double di = delta[i];
+				if (di == 0)
+					continue;
+
+				final double[] ci = comoment[i];
+				for (int j = i; j < ndims; j++)
+					ci[j] += di * (x[j] - mean[j]);
+			}
+		}
+
+		/**
+		 * Merge the given statistics into these ones. The result is the same
+		 * as if all the observations that were added to the other statistics
+		 * had been added to these.
+		 * 
+		 * @param other
+		 *            the statistics to merge
+		 */
+		public void merge(Statistics other) {
+			if (other.mean.length != mean.length)
+				throw new IllegalArgumentException("Statistics have different dimensionality");
+
+			if (other.count == 0)
+				return;
+
+			final int ndims = mean.length;
+			final long n = count + other.count;
+			final double scale = (double) count * other.count / n;
+
+			for (int i = 0; i < ndims; i++) {
+				delta[i] = other.mean[i] - mean[i];
+				mean[i] += delta[i] * other.count / n;
+			}
+
+			for (int i = 0; i < ndims; i++)
+				for (int j = i; j < ndims; j++)
+					comoment[i][j] += other.comoment[i][j] + delta[i] * delta[j] * scale;
+
+			count = n;
+		}
+
+		/**
+		 * @return the number of observations
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the mean of the observations
+		 */
+		public double[] getMean() {
+			return mean.clone();
+		}
+
+		/**
+		 * Get the (unbiased) sample covariance of the observations
+		 * 
+		 * @return the covariance matrix
+		 */
+		public Matrix getCovariance() {
+			final int ndims = mean.length;
+			final Matrix covar = new Matrix(ndims, ndims);
+			final double[][] c = covar.getArray();
+			final double norm = count > 1 ? 1.0 / (count - 1) : 0;
+
+			for (int i = 0; i < ndims; i++) {
+				for (int j = i; j < ndims; j++) {
+					c[i][j] = comoment[i][j] * norm;
+					c[j][i] = c[i][j];
+				}
+			}
+
+			return covar;
+		}
+	}
+
+	protected ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+	int ndims;
+	Statistics statistics;
+
+	/**
+	 * Construct a {@link StreamingPrincipalComponentAnalysis} that will
+	 * extract all the eigenvectors.
+	 */
+	public StreamingPrincipalComponentAnalysis() {
+		this(-1);
+	}
+
+	/**
+	 * Construct a {@link StreamingPrincipalComponentAnalysis} that will
+	 * extract the n best eigenvectors.
+	 * 
+	 * @param ndims
+	 *            the number of eigenvectors to select.
+	 */
+	public StreamingPrincipalComponentAnalysis(int ndims) {
+		this.ndims = ndims;
+	}
+
+	/**
+	 * Set the thread pool used to process blocks of data. If the pool is null,
+	 * data is processed in the calling thread.
+	 * 
+	 * @param pool
+	 *            the pool
+	 */
+	public void setThreadPool(ThreadPoolExecutor pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Get the statistics accumulated so far. These can be merged with the
+	 * statistics of another {@link StreamingPrincipalComponentAnalysis} using
+	 * {@link #update(Statistics)}.
+	 * 
+	 * @return the statistics; null if no data has been seen
+	 */
+	public Statistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Discard all the accumulated statistics
+	 */
+	public void reset() {
+		statistics = null;
+	}
+
+	@Override
+	public void learnBasis(Matrix data) {
+		reset();
+		update(data.getArray());
+		computeBasis();
+	}
+
+	/**
+	 * Learn the principal components of the data provided by the given
+	 * {@link DataSource} in a single pass.
+	 * 
+	 * @param data
+	 *            the data
+	 */
+	public void learnBasis(DataSource<double[]> data) {
+		reset();
+		update(data);
+		computeBasis();
+	}
+
+	/**
+	 * Learn the principal components of all the remaining items in the given
+	 * {@link Stream} (which must be finite).
+	 * 
+	 * @param data
+	 *            the data
+	 */
+	public void learnBasis(Stream<double[]> data) {
+		reset();
+		update(data);
+		computeBasis();
+	}
+
+	/**
+	 * Add an observation to the accumulated statistics. The basis is not
+	 * updated until {@link #computeBasis()} is called.
+	 * 
+	 * @param vector
+	 *            the observation
+	 */
+	public void update(double[] vector) {
+		getStatistics(vector.length).update(vector);
+	}
+
+	/**
+	 * Add the rows of the given array to the accumulated statistics. The basis
+	 * is not updated until {@link #computeBasis()} is called.
+	 * 
+	 * @param data
+	 *            the observations
+	 */
+	public void update(double[][] data) {
+		final Accumulator acc = new Accumulator();
+		for (int start = 0; start < data.length; start += BLOCK_SIZE)
+			acc.accumulate(data, start, Math.min(data.length, start + BLOCK_SIZE));
+		acc.finish();
+	}
+
+	/**
+	 * Add the data provided by the given {@link DataSource} to the accumulated
+	 * statistics. The data source is read sequentially a block at a time. The
+	 * basis is not updated until {@link #computeBasis()} is called.
+	 * 
+	 * @param data
+	 *            the observations
+	 */
+	public void update(DataSource<double[]> data) {
+		final int rows = data.size();
+		final double[][] buffer = data.createTemporaryArray(Math.min(rows, BLOCK_SIZE));
+		final Accumulator acc = new Accumulator();
+
+		for (int start = 0; start < rows; start += buffer.length) {
+			final int stop = Math.min(rows, start + buffer.length);
+			data.getData(start, stop, buffer);
+			acc.accumulate(buffer, 0, stop - start);
+		}
+		acc.finish();
+	}
+
+	/**
+	 * Add all the remaining items of the given {@link Stream} (which must be
+	 * finite) to the accumulated statistics. The basis is not updated until
+	 * {@link #computeBasis()} is called.
+	 * 
+	 * @param data
+	 *            the observations
+	 */
+	public void update(Stream<double[]> data) {
+		final Iterator<double[]> iter = data.iterator();
+		final double[][] buffer = new double[BLOCK_SIZE][];
+		final Accumulator acc = new Accumulator();
+
+		while (iter.hasNext()) {
+			int n = 0;
+			while (n < buffer.length && iter.hasNext())
+				buffer[n++] = iter.next();
+
+			acc.accumulate(buffer, 0, n);
+		}
+		acc.finish();
+	}
+
+	/**
+	 * Merge statistics computed elsewhere (for example on another partition
+	 * of the data) into the accumulated statistics. The basis is not updated
+	 * until {@link #computeBasis()} is called.
+	 * 
+	 * @param other
+	 *            the statistics to merge
+	 */
+	public void update(Statistics other) {
+		getStatistics(other.mean.length).merge(other);
+	}
+
+	private Statistics getStatistics(int dims) {
+		if (statistics == null)
+			statistics = new Statistics(dims);
+		else if (statistics.mean.length != dims)
+			throw new IllegalArgumentException("Data has different dimensionality to previous observations");
+
+		return statistics;
+	}
+
+	/**
+	 * Accumulates blocks of rows by splitting each one between the threads.
+	 * Each thread keeps its own partial statistics, which are merged into the
+	 * overall statistics when all the blocks have been processed.
+	 */
+	private class Accumulator {
+		final int nThreads = pool == null ? 1 : Math.max(1, pool.getMaximumPoolSize());
+		final Statistics[] partial = new Statistics[nThreads];
+
+		void accumulate(final double[][] data, final int start, final int stop) {
+			if (start >= stop)
+				return;
+
+			final int dims = data[start].length;
+			getStatistics(dims);
+
+			if (nThreads == 1) {
+				accumulate(0, dims, data, start, stop);
+				return;
+			}
+
+			final int chunk = (stop - start + nThreads - 1) / nThreads;
+			Parallel.forRangeCallerRuns(0, nThreads, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					for (int t = range.start; t < range.stop; t += range.incr)
+						accumulate(t, dims, data, start + t * chunk, Math.min(stop, start + (t + 1) * chunk));
+				}
+			}, pool);
+		}
+
+		void accumulate(int thread, int dims, double[][] data, int start, int stop) {
+			if (start >= stop)
+				return;
+
+			if (partial[thread] == null)
+				partial[thread] = new Statistics(dims);
+
+			for (int i = start; i < stop; i++)
+				partial[thread].update(data[i]);
+		}
+
+		void finish() {
+			for (final Statistics s : partial)
+				if (s != null)
+					statistics.merge(s);
+		}
+	}
+
+	/**
+	 * Compute the basis, eigenvalues and mean from the statistics accumulated
+	 * so far.
+	 */
+	public void computeBasis() {
+		if (statistics == null || statistics.count == 0)
+			throw new IllegalStateException("No data has been seen");
+
+		mean = statistics.getMean();
+		computeBasis(statistics.getCovariance());
+	}
+
+	private void computeBasis(Matrix covar) {
+		final int dims = covar.getRowDimension();
+
+		final EigenvalueDecomposition eig = covar.eig();
+		basis = eig.getV();
+		eigenvalues = eig.getRealEigenvalues();
+
+		// note eigenvalues are in increasing order, so last vec is first
+		// pc
+		MatrixUtils.reverseColumnsInplace(basis);
+		ArrayUtils.reverse(eigenvalues);
+
+		if (ndims > 0 && ndims < dims) {
+			basis = basis.getMatrix(0, dims - 1, 0, ndims - 1);
+			eigenvalues = Arrays.copyOf(eigenvalues, ndims);
+		}
+	}
+
+	@Override
+	protected void learnBasisNorm(Matrix norm) {
+		final Statistics stats = new Statistics(norm.getColumnDimension());
+		for (final double[] row : norm.getArray())
+			stats.update(row);
+
+		computeBasis(stats.getCovariance());
+	}
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.matrix;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.akuhn.matrix.SparseMatrix;
+import ch.akuhn.matrix.Vector;
+
+/**
+ * Tests for {@link CompressedSparseRowMatrix}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class CompressedSparseRowMatrixTest {
+	/**
+	 * Temporary folder for the mapped files
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private SparseMatrix sparse;
+	private double[] x;
+	private double[] y;
+
+	/**
+	 * Create a random sparse matrix (with some empty rows)
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(42);
+		sparse = new SparseMatrix(200, 150);
+		for (int r = 0; r < 200; r++) {
+			if (r % 17 == 0)
+				continue;
+
+			for (int c = 0; c < 150; c++)
+				if (rng.nextDouble() < 0.05)
+					sparse.put(r, c, rng.nextGaussian());
+		}
+
+		x = new double[150];
+		for (int i = 0; i < x.length; i++)
+			x[i] = rng.nextGaussian();
+
+		y = new double[200];
+		for (int i = 0; i < y.length; i++)
+			y[i] = rng.nextGaussian();
+	}
+
+	/**
+	 * Test element access
+	 */
+	@Test
+	public void testGetPut() {
+		final CompressedSparseRowMatrix csr = new CompressedSparseRowMatrix(sparse);
+
+		assertEquals(200, csr.rowCount());
+		assertEquals(150, csr.columnCount());
+		assertEquals(sparse.used(), csr.used());
+		assertArrayEquals(sparse.asArray()[3], csr.asArray()[3], 0);
+		final double[] row = new double[150];
+		csr.row(3).storeOn(row, 0);
+		assertArrayEquals(sparse.asArray()[3], row, 0);
+
+		for (int c = 0; c < 150; c++) {
+			if (csr.get(5, c) != 0) {
+				csr.put(5, c, 7);
+				assertEquals(7, csr.get(5, c), 0);
+			}
+		}
+	}
+
+	/**
+	 * Test that elements can't be added
+	 */
+	@Test(expected = UnsupportedOperationException.class)
+	public void testPutStructure() {
+		new CompressedSparseRowMatrix(sparse).put(0, 0, 1);
+	}
+
+	/**
+	 * Test that the sequential and parallel products match those of the
+	 * {@link SparseMatrix}
+	 */
+	@Test
+	public void testMult() {
+		final double[] expected = sparse.mult(Vector.wrap(x.clone())).unwrap();
+		final double[] expectedT = sparse.transposeMultiply(Vector.wrap(y.clone())).unwrap();
+
+		final CompressedSparseRowMatrix csr = new CompressedSparseRowMatrix(sparse);
+		assertArrayEquals(expected, csr.mult(Vector.wrap(x)).unwrap(), 1e-12);
+		assertArrayEquals(expectedT, csr.transposeMultiply(Vector.wrap(y)).unwrap(), 1e-12);
+
+		csr.setThreadPool(null);
+		assertArrayEquals(expected, csr.mult(Vector.wrap(x)).unwrap(), 1e-12);
+	}
+
+	/**
+	 * Test in-place scaling and diagonal addition
+	 */
+	@Test
+	public void testInplace() {
+		final double[][] dense = sparse.asArray();
+		final double[] rs = new double[200];
+		final double[] cs = new double[150];
+		for (int i = 0; i < rs.length; i++)
+			rs[i] = i + 1;
+		for (int i = 0; i < cs.length; i++)
+			cs[i] = 1.0 / (i + 1);
+
+		final CompressedSparseRowMatrix csr = new CompressedSparseRowMatrix(sparse);
+		csr.scaleInplace(rs, cs).timesInplace(-2);
+
+		final double[] diag = new double[150];
+		for (int i = 0; i < diag.length; i++)
+			diag[i] = 1;
+		final CompressedSparseRowMatrix withDiag = csr.plusDiagonal(diag);
+
+		for (int r = 0; r < 200; r++) {
+			for (int c = 0; c < 150; c++) {
+				final double expected = -2 * rs[r] * dense[r][c] * cs[c] + (r == c ? 1 : 0);
+				assertEquals(expected, withDiag.get(r, c), 1e-12);
+			}
+		}
+
+		assertSame(withDiag, withDiag.plusDiagonal(diag));
+		assertEquals(2, withDiag.get(0, 0), 1e-12);
+	}
+
+	/**
+	 * Test writing and mapping a matrix, both directly and with a
+	 * {@link CompressedSparseRowMatrix.Writer}
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testMap() throws IOException {
+		final CompressedSparseRowMatrix csr = new CompressedSparseRowMatrix(sparse);
+		final double[] expected = csr.mult(Vector.wrap(x)).unwrap();
+
+		final File file = folder.newFile("direct.csr");
+		csr.write(file);
+		final CompressedSparseRowMatrix mapped = CompressedSparseRowMatrix.map(file, MapMode.PRIVATE);
+		assertEquals(csr.nonZeroCount(), mapped.nonZeroCount());
+		assertArrayEquals(expected, mapped.mult(Vector.wrap(x)).unwrap(), 0);
+
+		final File streamed = folder.newFile("streamed.csr");
+		final CompressedSparseRowMatrix.Writer writer = new CompressedSparseRowMatrix.Writer(streamed, 200, 150);
+		final int[] idx = new int[150];
+		final double[] val = new double[150];
+		for (int r = 0; r < 199; r++) {
+			int n = 0;
+			for (int c = 0; c < 150; c++) {
+				if (sparse.get(r, c) != 0) {
+					idx[n] = c;
+					val[n++] = sparse.get(r, c);
+				}
+			}
+			writer.addRow(idx, val, n);
+		}
+		writer.close();
+
+		final CompressedSparseRowMatrix mapped2 = CompressedSparseRowMatrix.map(streamed, MapMode.READ_ONLY);
+		assertEquals(0, mapped2.row(199).used());
+		for (int r = 0; r < 199; r++)
+			assertArrayEquals(sparse.asArray()[r], mapped2.asArray()[r], 0);
+
+		mapped.scaleInplace(null, null).timesInplace(0.5);
+		assertEquals(csr.get(1, csr.row(1).entries().iterator().next().index) * 0.5,
+				mapped.get(1, csr.row(1).entries().iterator().next().index), 0);
+	}
+}
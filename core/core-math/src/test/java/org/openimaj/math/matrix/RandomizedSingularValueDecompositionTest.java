@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.matrix;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.data.DoubleArrayBackedDataSource;
+import org.openimaj.math.matrix.algorithm.pca.RandomizedSvdPrincipalComponentAnalysis;
+
+import Jama.Matrix;
+import Jama.SingularValueDecomposition;
+
+/**
+ * Tests for {@link RandomizedSingularValueDecomposition}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class RandomizedSingularValueDecompositionTest {
+	private static final double EPS = 1e-6;
+
+	/**
+	 * Make a random matrix of the given rank with a known spectrum
+	 */
+	private Matrix makeLowRank(Random rng, int rows, int cols, int rank) {
+		final Matrix a = new Matrix(rows, rank);
+		final Matrix b = new Matrix(rank, cols);
+
+		for (int i = 0; i < rows; i++)
+			for (int j = 0; j < rank; j++)
+				a.set(i, j, rng.nextGaussian() * (rank - j));
+
+		for (int i = 0; i < rank; i++)
+			for (int j = 0; j < cols; j++)
+				b.set(i, j, rng.nextGaussian());
+
+		return a.times(b);
+	}
+
+	/**
+	 * Check the decomposition against the full SVD of a low rank matrix
+	 */
+	@Test
+	public void testLowRank() {
+		final Random rng = new Random(0);
+		final Matrix m = makeLowRank(rng, 500, 60, 8);
+
+		final SingularValueDecomposition full = new SingularValueDecomposition(m);
+		final RandomizedSingularValueDecomposition svd = new RandomizedSingularValueDecomposition(m, 5);
+
+		assertEquals(5, svd.S.length);
+		for (int i = 0; i < 5; i++)
+			assertEquals(full.getSingularValues()[i], svd.S[i], EPS * full.getSingularValues()[0]);
+
+		assertEquals(5, svd.Vt.getRowDimension());
+		assertEquals(60, svd.Vt.getColumnDimension());
+		assertEquals(500, svd.U.getRowDimension());
+		assertEquals(5, svd.U.getColumnDimension());
+
+		// the singular vectors are only defined up to sign
+		for (int i = 0; i < 5; i++) {
+			double dot = 0;
+			for (int j = 0; j < 60; j++)
+				dot += svd.Vt.get(i, j) * full.getV().get(j, i);
+			assertEquals(1, Math.abs(dot), EPS);
+		}
+
+		// with all the dimensions the reconstruction should be exact
+		final RandomizedSingularValueDecomposition all = new RandomizedSingularValueDecomposition(m, 8);
+		final Matrix recon = all.U.times(all.getSmatrix()).times(all.Vt);
+		assertEquals(0, recon.minus(m).normF() / m.normF(), EPS);
+	}
+
+	/**
+	 * Check that the {@link ch.akuhn.matrix.Matrix} and {@link Matrix} inputs
+	 * give the same result
+	 */
+	@Test
+	public void testSparseInput() {
+		final Random rng = new Random(1);
+		final Matrix m = makeLowRank(rng, 200, 40, 4);
+
+		final ch.akuhn.matrix.Matrix sm = new ch.akuhn.matrix.SparseMatrix(200, 40);
+		for (int i = 0; i < 200; i++)
+			for (int j = 0; j < 40; j++)
+				sm.put(i, j, m.get(i, j));
+
+		final RandomizedSingularValueDecomposition dense = new RandomizedSingularValueDecomposition(m, 4);
+		final RandomizedSingularValueDecomposition sparse = new RandomizedSingularValueDecomposition(sm, 4);
+
+		assertArrayEquals(dense.S, sparse.S, EPS * dense.S[0]);
+	}
+
+	/**
+	 * Check that a streamed, implicitly centred, decomposition gives the same
+	 * eigenvalues as the full SVD of explicitly centred data
+	 */
+	@Test
+	public void testDataSourcePCA() {
+		final Random rng = new Random(2);
+		final Matrix m = makeLowRank(rng, 3000, 30, 6);
+		for (int i = 0; i < m.getRowDimension(); i++)
+			for (int j = 0; j < m.getColumnDimension(); j++)
+				m.set(i, j, m.get(i, j) + j);
+
+		final double[] mean = new double[30];
+		for (int i = 0; i < m.getRowDimension(); i++)
+			for (int j = 0; j < 30; j++)
+				mean[j] += m.get(i, j) / m.getRowDimension();
+
+		final Matrix centred = m.copy();
+		for (int i = 0; i < m.getRowDimension(); i++)
+			for (int j = 0; j < 30; j++)
+				centred.set(i, j, m.get(i, j) - mean[j]);
+
+		final double[] expected = new SingularValueDecomposition(centred).getSingularValues();
+		for (int i = 0; i < expected.length; i++)
+			expected[i] = expected[i] * expected[i] / (m.getRowDimension() - 1);
+
+		final RandomizedSvdPrincipalComponentAnalysis pca = new RandomizedSvdPrincipalComponentAnalysis(4);
+		pca.learnBasis(new DoubleArrayBackedDataSource(m.getArrayCopy()));
+
+		assertArrayEquals(mean, pca.getMean(), EPS);
+		for (int i = 0; i < 4; i++)
+			assertEquals(expected[i], pca.getEigenValue(i), EPS * expected[0]);
+
+		final RandomizedSvdPrincipalComponentAnalysis inMemory = new RandomizedSvdPrincipalComponentAnalysis(4);
+		inMemory.learnBasis(m);
+		assertArrayEquals(pca.getEigenValues(), inMemory.getEigenValues(), EPS * expected[0]);
+
+		final RandomizedSingularValueDecomposition svd = new RandomizedSingularValueDecomposition(
+				new DoubleArrayBackedDataSource(m.getArrayCopy()), pca.getMean(), 4, 10, 2, true, rng);
+		assertEquals(3000, svd.U.getRowDimension());
+		final Matrix utu = svd.U.transpose().times(svd.U);
+		assertEquals(0, utu.minus(Matrix.identity(4, 4)).normF(), EPS);
+	}
+}
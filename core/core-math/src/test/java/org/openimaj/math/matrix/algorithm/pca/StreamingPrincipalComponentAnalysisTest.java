@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.matrix.algorithm.pca;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.data.DoubleArrayBackedDataSource;
+import org.openimaj.math.matrix.algorithm.pca.StreamingPrincipalComponentAnalysis.Statistics;
+import org.openimaj.util.stream.CollectionStream;
+
+import Jama.Matrix;
+
+/**
+ * Tests for {@link StreamingPrincipalComponentAnalysis}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ */
+public class StreamingPrincipalComponentAnalysisTest extends PrincipalComponentAnalysisTest {
+	private static final double EPS = 1e-8;
+
+	@Override
+	protected PrincipalComponentAnalysis createPCA() {
+		return new StreamingPrincipalComponentAnalysis();
+	}
+
+	private double[][] makeData(Random rng, int rows, int cols) {
+		final double[][] data = new double[rows][cols];
+		for (int i = 0; i < rows; i++)
+			for (int j = 0; j < cols; j++)
+				data[i][j] = 100 + rng.nextGaussian() * (j + 1) + (j > 0 ? data[i][j - 1] : 0);
+		return data;
+	}
+
+	private Matrix centredCovariance(double[][] data) {
+		final Matrix m = new Matrix(data);
+		final Matrix norm = new CovarPrincipalComponentAnalysis().buildNormalisedDataMatrix(m);
+		return norm.transpose().times(norm).times(1.0 / (data.length - 1));
+	}
+
+	/**
+	 * Test that statistics accumulated over partitions of the data merge to
+	 * the same result as a single pass
+	 */
+	@Test
+	public void testMerge() {
+		final Random rng = new Random(0);
+		final double[][] data = makeData(rng, 1000, 5);
+
+		final Statistics all = new Statistics(5);
+		for (final double[] row : data)
+			all.update(row);
+
+		final Statistics merged = new Statistics(5);
+		for (int start = 0; start < data.length; start += 137) {
+			final Statistics part = new Statistics(5);
+			for (int i = start; i < Math.min(data.length, start + 137); i++)
+				part.update(data[i]);
+			merged.merge(part);
+		}
+
+		assertEquals(all.getCount(), merged.getCount());
+		assertArrayEquals(all.getMean(), merged.getMean(), EPS);
+
+		final Matrix expected = centredCovariance(data);
+		for (int i = 0; i < 5; i++) {
+			assertArrayEquals(expected.getArray()[i], all.getCovariance().getArray()[i], EPS);
+			assertArrayEquals(expected.getArray()[i], merged.getCovariance().getArray()[i], EPS);
+		}
+	}
+
+	/**
+	 * Test that learning from a data source, a stream, or incrementally
+	 * gives the same result as learning from a matrix
+	 */
+	@Test
+	public void testSources() {
+		final Random rng = new Random(1);
+		final double[][] data = makeData(rng, 5000, 8);
+
+		final CovarPrincipalComponentAnalysis expected = new CovarPrincipalComponentAnalysis();
+		expected.learnBasis(data);
+
+		final StreamingPrincipalComponentAnalysis fromSource = new StreamingPrincipalComponentAnalysis();
+		fromSource.learnBasis(new DoubleArrayBackedDataSource(data));
+		assertArrayEquals(expected.getMean(), fromSource.getMean(), EPS);
+		assertArrayEquals(expected.getEigenValues(), fromSource.getEigenValues(), EPS * expected.getEigenValue(0));
+
+		final StreamingPrincipalComponentAnalysis fromStream = new StreamingPrincipalComponentAnalysis();
+		fromStream.learnBasis(new CollectionStream<double[]>(Arrays.asList(data)));
+		assertArrayEquals(expected.getEigenValues(), fromStream.getEigenValues(), EPS * expected.getEigenValue(0));
+
+		final StreamingPrincipalComponentAnalysis incremental = new StreamingPrincipalComponentAnalysis();
+		incremental.setThreadPool(null);
+		incremental.update(Arrays.copyOfRange(data, 0, 2500));
+		for (int i = 2500; i < data.length; i++)
+			incremental.update(data[i]);
+		incremental.computeBasis();
+		assertArrayEquals(expected.getEigenValues(), incremental.getEigenValues(), EPS * expected.getEigenValue(0));
+
+		final StreamingPrincipalComponentAnalysis truncated = new StreamingPrincipalComponentAnalysis(3);
+		truncated.learnBasis(data);
+		assertEquals(3, truncated.getEigenValues().length);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(expected.getEigenValue(i), truncated.getEigenValue(i), 1e-6 * expected.getEigenValue(0));
+
+			double dot = 0;
+			for (int j = 0; j < 8; j++)
+				dot += expected.getBasis().get(j, i) * truncated.getBasis().get(j, i);
+			assertEquals(1, Math.abs(dot), 1e-6);
+		}
+
+		// the truncated basis is exactly the leading part of the full basis
+		final StreamingPrincipalComponentAnalysis full = new StreamingPrincipalComponentAnalysis();
+		full.learnBasis(data);
+		assertArrayEquals(Arrays.copyOf(full.getEigenValues(), 3), truncated.getEigenValues(), 0);
+		for (int j = 0; j < 8; j++)
+			for (int i = 0; i < 3; i++)
+				assertEquals(full.getBasis().get(j, i), truncated.getBasis().get(j, i), 0);
+	}
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.apache.commons.math3.special.Gamma;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MathUtils}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class MathUtilsTest {
+	private static final double EULER_MASCHERONI = 0.57721566490153286061;
+
+	private static void assertRelativeEquals(double expected, double actual, double tol) {
+		assertEquals(expected, actual, tol * Math.max(1, Math.abs(expected)));
+	}
+
+	/**
+	 * Test the digamma function against known values (it is documented to
+	 * be accurate to about 1e-11)
+	 */
+	@Test
+	public void testDigammaKnownValues() {
+		assertRelativeEquals(-EULER_MASCHERONI, MathUtils.digamma(1), 1e-10);
+		assertRelativeEquals(1 - EULER_MASCHERONI, MathUtils.digamma(2), 1e-10);
+		assertRelativeEquals(-EULER_MASCHERONI - 2 * Math.log(2), MathUtils.digamma(0.5), 1e-10);
+		assertRelativeEquals(2 - EULER_MASCHERONI - 2 * Math.log(2), MathUtils.digamma(1.5), 1e-10);
+		assertRelativeEquals(-EULER_MASCHERONI - Math.PI / 2 - 3 * Math.log(2), MathUtils.digamma(0.25), 1e-10);
+
+		// from the harmonic numbers: psi(n) = H(n-1) - gamma
+		double harmonic = 0;
+		for (int n = 1; n <= 100; n++) {
+			assertRelativeEquals(harmonic - EULER_MASCHERONI, MathUtils.digamma(n), 1e-10);
+			harmonic += 1.0 / n;
+		}
+
+		// negative arguments (computed by reflection), from the recurrence
+		// psi(x + 1) = psi(x) + 1/x
+		assertRelativeEquals(2 - EULER_MASCHERONI - 2 * Math.log(2), MathUtils.digamma(-0.5), 1e-10);
+		assertRelativeEquals(2 + 2.0 / 3 - EULER_MASCHERONI - 2 * Math.log(2), MathUtils.digamma(-1.5), 1e-10);
+		assertRelativeEquals(-EULER_MASCHERONI - Math.PI / 2 - 3 * Math.log(2) + 4.0 / 3 + 4.0 / 7 + 4.0 / 11,
+				MathUtils.digamma(-2.75), 1e-10);
+
+		// small arguments: psi(x) ~ -1/x - gamma
+		assertRelativeEquals(-1e8 - EULER_MASCHERONI, MathUtils.digamma(1e-8), 1e-10);
+
+		// large arguments: psi(x) ~ log(x) - 1/(2x)
+		assertRelativeEquals(Math.log(1e10) - 0.5e-10, MathUtils.digamma(1e10), 1e-10);
+	}
+
+	/**
+	 * Test the digamma function at its poles
+	 */
+	@Test
+	public void testDigammaPoles() {
+		assertTrue(Double.isNaN(MathUtils.digamma(0)));
+		assertTrue(Double.isNaN(MathUtils.digamma(-1)));
+		assertTrue(Double.isNaN(MathUtils.digamma(-7)));
+		assertTrue(Double.isNaN(MathUtils.digamma(Double.NaN)));
+	}
+
+	/**
+	 * Test the digamma function against the commons-math implementation for
+	 * small, moderate, large and negative arguments
+	 */
+	@Test
+	public void testDigammaCommonsMath() {
+		final Random rng = new Random(42);
+
+		for (int i = 0; i < 10000; i++) {
+			final double small = rng.nextDouble() * 1e-3 + 1e-12;
+			final double moderate = rng.nextDouble() * 60;
+			final double large = Math.exp(rng.nextDouble() * 40);
+			final double negative = -rng.nextDouble() * 20;
+
+			// commons-math is accurate to a few parts in 1e9
+			assertRelativeEquals(Gamma.digamma(small), MathUtils.digamma(small), 1e-8);
+			assertRelativeEquals(Gamma.digamma(moderate), MathUtils.digamma(moderate), 1e-8);
+			assertRelativeEquals(Gamma.digamma(large), MathUtils.digamma(large), 1e-8);
+
+			if (negative != Math.floor(negative)) {
+				// commons-math uses the recurrence for negative arguments,
+				// which loses some accuracy near the poles
+				assertRelativeEquals(Gamma.digamma(negative), MathUtils.digamma(negative), 1e-6);
+			}
+		}
+	}
+
+	/**
+	 * Test the array form of the digamma function
+	 */
+	@Test
+	public void testDigammaArray() {
+		final double[] x = { 1e-6, 0.1, 0.5, 1, 2.5, 6, 7.3, 50, 1e5, -0.5, -3.7 };
+
+		final double[] out = MathUtils.digamma(x, new double[x.length]);
+		for (int i = 0; i < x.length; i++)
+			assertEquals(MathUtils.digamma(x[i]), out[i], 0);
+
+		// in place
+		final double[] inplace = x.clone();
+		assertSame(inplace, MathUtils.digamma(inplace, inplace));
+		for (int i = 0; i < x.length; i++)
+			assertEquals(out[i], inplace[i], 0);
+	}
+}
@@ -0,0 +1,650 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.openimaj.citation.annotation.Reference;
+import org.openimaj.citation.annotation.ReferenceType;
+
+/**
+ * A bounded, lock-free {@linkplain BlockingDroppingQueue blocking dropping
+ * queue} backed by a ring buffer, designed for multiple producers feeding one
+ * or more consumers from a live data source.
+ * <p>
+ * Elements are ordered FIFO. Producers and consumers claim slots of the ring
+ * with a single compare-and-swap on a shared position counter, and each slot
+ * carries a sequence number that publishes its state to the other side, so
+ * neither insertion nor removal ever takes a lock. The only lock is used to
+ * park consumers that are waiting on an empty queue; producers touch it only
+ * when they can see that a consumer is actually waiting.
+ * <p>
+ * What happens when an element arrives at a full queue is controlled by the
+ * {@link DropPolicy}. Under {@link DropPolicy#DROP_OLDEST} (the behaviour of
+ * {@link ArrayBlockingDroppingQueue#put(Object)}) the oldest element is
+ * discarded to make room; under {@link DropPolicy#DROP_NEWEST} the arriving
+ * element is discarded; under {@link DropPolicy#SAMPLE} only every
+ * <i>n</i>-th arrival is admitted (by discarding the oldest element), which
+ * keeps a temporally spread sample of a burst rather than just its beginning
+ * or end. The policy applies to both {@link #offer(Object)} and
+ * {@link #put(Object)}, and every discarded element is counted, so
+ * {@link #offerCount()}, {@link #insertCount()}, {@link #dropCount()},
+ * {@link #consumeCount()} and {@link #size()} together describe exactly what
+ * has happened to the stream (whilst producers and consumers are active the
+ * counters are each read independently, so may be momentarily inconsistent
+ * with each other).
+ * <p>
+ * Consumers can remove elements in batches with
+ * {@link #drainTo(Collection, int)}, which claims all of the ready elements
+ * with a single compare-and-swap, or with
+ * {@link #drainTo(Collection, int, long, TimeUnit)}, which additionally waits
+ * for the first element to arrive.
+ * <p>
+ * Iteration works on a weakly consistent snapshot of the queue, and the
+ * iterator does not support removal; consequently {@link #remove(Object)} is
+ * not supported.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <E>
+ *            the type of elements held in this collection
+ */
+@Reference(
+		type = ReferenceType.Misc,
+		author = { "Dmitry Vyukov" },
+		title = "Bounded MPMC queue",
+		year = "2010",
+		url = "http://www.1024cores.net/home/lock-free-algorithms/queues/bounded-mpmc-queue")
+public class RingBufferDroppingQueue<E> extends AbstractQueue<E> implements BlockingDroppingQueue<E> {
+	/**
+	 * Policies for dealing with an element that arrives when the queue is full.
+	 * 
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static enum DropPolicy {
+		/**
+		 * Drop the oldest element in the queue to make room for the new one
+		 */
+		DROP_OLDEST,
+		/**
+		 * Drop the new element
+		 */
+		DROP_NEWEST,
+		/**
+		 * Admit every <i>n</i>-th element that arrives whilst the queue is full
+		 * by dropping the oldest element; drop the others.
+		 */
+		SAMPLE
+	}
+
+	private final Object[] items;
+	private final AtomicLongArray sequences;
+	private final int capacity;
+
+	private final AtomicLong enqueuePos = new AtomicLong();
+	private final AtomicLong dequeuePos = new AtomicLong();
+
+	private final DropPolicy policy;
+	private final int sampleRate;
+	private final AtomicLong sampleCounter = new AtomicLong();
+
+	private final AtomicLong evictCount = new AtomicLong();
+	private final AtomicLong rejectCount = new AtomicLong();
+
+	private final AtomicInteger waiters = new AtomicInteger();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+
+	/**
+	 * Construct with the given capacity, dropping the oldest element when the
+	 * queue is full.
+	 * 
+	 * @param capacity
+	 *            the capacity of this queue
+	 * @throws IllegalArgumentException
+	 *             if <tt>capacity</tt> is less than 1
+	 */
+	public RingBufferDroppingQueue(int capacity) {
+		this(capacity, DropPolicy.DROP_OLDEST);
+	}
+
+	/**
+	 * Construct with the given capacity and drop policy. If the policy is
+	 * {@link DropPolicy#SAMPLE}, every second element arriving at a full queue
+	 * is admitted.
+	 * 
+	 * @param capacity
+	 *            the capacity of this queue
+	 * @param policy
+	 *            the drop policy
+	 * @throws IllegalArgumentException
+	 *             if <tt>capacity</tt> is less than 1
+	 */
+	public RingBufferDroppingQueue(int capacity, DropPolicy policy) {
+		this(capacity, policy, 2);
+	}
+
+	/**
+	 * Construct with the given capacity, drop policy and sampling rate.
+	 * 
+	 * @param capacity
+	 *            the capacity of this queue
+	 * @param policy
+	 *            the drop policy
+	 * @param sampleRate
+	 *            if the policy is {@link DropPolicy#SAMPLE}, one in every
+	 *            <tt>sampleRate</tt> elements arriving at a full queue is
+	 *            admitted; ignored for the other policies.
+	 * @throws IllegalArgumentException
+	 *             if <tt>capacity</tt> or <tt>sampleRate</tt> is less than 1
+	 */
+	public RingBufferDroppingQueue(int capacity, DropPolicy policy, int sampleRate) {
+		if (capacity <= 0 || sampleRate <= 0)
+			throw new IllegalArgumentException();
+		if (policy == null)
+			throw new NullPointerException();
+
+		this.capacity = capacity;
+		this.policy = policy;
+		this.sampleRate = sampleRate;
+		this.items = new Object[capacity];
+		this.sequences = new AtomicLongArray(capacity);
+
+		for (int i = 0; i < capacity; i++)
+			sequences.set(i, i);
+	}
+
+	/**
+	 * @return the drop policy of this queue
+	 */
+	public DropPolicy getDropPolicy() {
+		return policy;
+	}
+
+	/**
+	 * @return the capacity of this queue
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	private int index(long pos) {
+		return (int) (pos % capacity);
+	}
+
+	/**
+	 * Attempt to add the element at the tail; fails only if the queue is full.
+	 */
+	private boolean tryEnqueue(E e) {
+		long pos = enqueuePos.get();
+
+		for (;;) {
+			final int idx = index(pos);
+			final long dif = sequences.get(idx) - pos;
+
+			if (dif == 0) {
+				if (enqueuePos.compareAndSet(pos, pos + 1)) {
+					items[idx] = e;
+					sequences.set(idx, pos + 1);
+					return true;
+				}
+				pos = enqueuePos.get();
+			} else if (dif < 0) {
+				return false;
+			} else {
+				pos = enqueuePos.get();
+			}
+		}
+	}
+
+	/**
+	 * Attempt to remove the element at the head; returns null if there is no
+	 * published element.
+	 */
+	@SuppressWarnings("unchecked")
+	private E tryDequeue() {
+		long pos = dequeuePos.get();
+
+		for (;;) {
+			final int idx = index(pos);
+			final long dif = sequences.get(idx) - (pos + 1);
+
+			if (dif == 0) {
+				if (dequeuePos.compareAndSet(pos, pos + 1)) {
+					final E e = (E) items[idx];
+					items[idx] = null;
+					sequences.set(idx, pos + capacity);
+					return e;
+				}
+				pos = dequeuePos.get();
+			} else if (dif < 0) {
+				return null;
+			} else {
+				pos = dequeuePos.get();
+			}
+		}
+	}
+
+	/**
+	 * Should an element arriving at a full queue be admitted?
+	 */
+	private boolean admitWhenFull() {
+		switch (policy) {
+		case DROP_OLDEST:
+			return true;
+		case SAMPLE:
+			return sampleCounter.incrementAndGet() % sampleRate == 0;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Insert the element by evicting from the head until there is space.
+	 * Returns the last evicted element.
+	 */
+	private E evictAndEnqueue(E e) {
+		E dropped = null;
+
+		for (;;) {
+			final E old = tryDequeue();
+			if (old != null) {
+				evictCount.incrementAndGet();
+				dropped = old;
+			}
+
+			if (tryEnqueue(e)) {
+				signalNotEmpty();
+				return dropped;
+			}
+		}
+	}
+
+	/**
+	 * Wake a waiting consumer if there is one. The read of the waiter count
+	 * follows the volatile publication of the slot, so a consumer that
+	 * registered before failing to see the element is always signalled.
+	 */
+	private void signalNotEmpty() {
+		if (waiters.get() > 0) {
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+			try {
+				notEmpty.signal();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Inserts the specified element at the tail of this queue. If the queue is
+	 * full the {@link DropPolicy} decides whether the oldest element or the
+	 * specified element is dropped.
+	 * 
+	 * @param e
+	 *            the element to add
+	 * @return <tt>true</tt> if the element was added to this queue, or
+	 *         <tt>false</tt> if it was dropped
+	 * @throws NullPointerException
+	 *             if the specified element is null
+	 */
+	@Override
+	public boolean offer(E e) {
+		if (e == null)
+			throw new NullPointerException();
+
+		if (tryEnqueue(e)) {
+			signalNotEmpty();
+			return true;
+		}
+
+		if (admitWhenFull()) {
+			evictAndEnqueue(e);
+			return true;
+		}
+
+		rejectCount.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * Inserts the specified element at the tail of this queue. If the queue is
+	 * full the {@link DropPolicy} decides whether the oldest element or the
+	 * specified element is dropped. This method never blocks.
+	 * 
+	 * @param e
+	 *            the element to add
+	 * @return the element that was dropped (which is <tt>e</tt> itself if the
+	 *         specified element was not added), or null if no element was
+	 *         dropped
+	 * @throws NullPointerException
+	 *             if the specified element is null
+	 */
+	@Override
+	public E put(E e) {
+		if (e == null)
+			throw new NullPointerException();
+
+		if (tryEnqueue(e)) {
+			signalNotEmpty();
+			return null;
+		}
+
+		if (admitWhenFull())
+			return evictAndEnqueue(e);
+
+		rejectCount.incrementAndGet();
+		return e;
+	}
+
+	@Override
+	public E poll() {
+		return tryDequeue();
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		E e = tryDequeue();
+		if (e != null)
+			return e;
+
+		final ReentrantLock lock = this.lock;
+		lock.lockInterruptibly();
+		try {
+			waiters.incrementAndGet();
+			try {
+				while ((e = tryDequeue()) == null)
+					notEmpty.await();
+			} catch (final InterruptedException ie) {
+				notEmpty.signal(); // propagate to non-interrupted thread
+				throw ie;
+			} finally {
+				waiters.decrementAndGet();
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		// another element may have been published whilst we were waking
+		if (size() > 0)
+			signalNotEmpty();
+
+		return e;
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		E e = tryDequeue();
+		if (e != null)
+			return e;
+
+		long nanos = unit.toNanos(timeout);
+		final ReentrantLock lock = this.lock;
+		lock.lockInterruptibly();
+		try {
+			waiters.incrementAndGet();
+			try {
+				while ((e = tryDequeue()) == null) {
+					if (nanos <= 0)
+						return null;
+					nanos = notEmpty.awaitNanos(nanos);
+				}
+			} catch (final InterruptedException ie) {
+				notEmpty.signal(); // propagate to non-interrupted thread
+				throw ie;
+			} finally {
+				waiters.decrementAndGet();
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		if (size() > 0)
+			signalNotEmpty();
+
+		return e;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public E peek() {
+		for (;;) {
+			final long pos = dequeuePos.get();
+			final int idx = index(pos);
+
+			if (sequences.get(idx) != pos + 1)
+				return null;
+
+			final E e = (E) items[idx];
+			if (e != null && dequeuePos.get() == pos)
+				return e;
+		}
+	}
+
+	@Override
+	public int size() {
+		final long head = dequeuePos.get();
+		final long tail = enqueuePos.get();
+		final long size = tail - head;
+
+		if (size < 0)
+			return 0;
+		if (size > capacity)
+			return capacity;
+		return (int) size;
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return capacity - size();
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * All of the contiguous elements that are ready at the head of the queue
+	 * (up to <tt>maxElements</tt>) are claimed together with a single atomic
+	 * operation, so a batched drain costs little more than a single
+	 * {@link #poll()}. Elements are added to the collection after their slots
+	 * have been released to the producers.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public int drainTo(Collection<? super E> c, int maxElements) {
+		if (c == null)
+			throw new NullPointerException();
+		if (c == this)
+			throw new IllegalArgumentException();
+
+		int n = 0;
+		while (n < maxElements) {
+			final long pos = dequeuePos.get();
+			final int limit = Math.min(maxElements - n, capacity);
+
+			int ready = 0;
+			while (ready < limit && sequences.get(index(pos + ready)) == pos + ready + 1)
+				ready++;
+
+			if (ready == 0)
+				break;
+
+			if (!dequeuePos.compareAndSet(pos, pos + ready))
+				continue;
+
+			final Object[] batch = new Object[ready];
+			for (int i = 0; i < ready; i++) {
+				final int idx = index(pos + i);
+				batch[i] = items[idx];
+				items[idx] = null;
+				sequences.set(idx, pos + i + capacity);
+			}
+
+			for (int i = 0; i < ready; i++)
+				c.add((E) batch[i]);
+
+			n += ready;
+		}
+
+		return n;
+	}
+
+	/**
+	 * Removes at most the given number of available elements from this queue
+	 * and adds them to the given collection, waiting up to the specified time
+	 * for at least one element to become available.
+	 * 
+	 * @param c
+	 *            the collection to transfer elements into
+	 * @param maxElements
+	 *            the maximum number of elements to transfer
+	 * @param timeout
+	 *            how long to wait for the first element before giving up, in
+	 *            units of <tt>unit</tt>
+	 * @param unit
+	 *            a <tt>TimeUnit</tt> determining how to interpret the
+	 *            <tt>timeout</tt> parameter
+	 * @return the number of elements transferred
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 * @see #drainTo(Collection, int)
+	 */
+	public int drainTo(Collection<? super E> c, int maxElements, long timeout, TimeUnit unit)
+			throws InterruptedException
+	{
+		if (c == null)
+			throw new NullPointerException();
+		if (c == this)
+			throw new IllegalArgumentException();
+		if (maxElements <= 0)
+			return 0;
+
+		final E first = poll(timeout, unit);
+		if (first == null)
+			return 0;
+
+		c.add(first);
+		return 1 + drainTo(c, maxElements - 1);
+	}
+
+	/**
+	 * Returns a weakly consistent iterator over a snapshot of the elements in
+	 * this queue. The iterator does not support removal.
+	 * 
+	 * @return an iterator over the elements in this queue
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public Iterator<E> iterator() {
+		final List<E> snapshot = new ArrayList<E>(size());
+		final long head = dequeuePos.get();
+		final long tail = Math.min(enqueuePos.get(), head + capacity);
+
+		for (long pos = head; pos < tail; pos++) {
+			final int idx = index(pos);
+			final Object e = items[idx];
+
+			if (sequences.get(idx) == pos + 1 && e != null)
+				snapshot.add((E) e);
+		}
+
+		return Collections.unmodifiableList(snapshot).iterator();
+	}
+
+	/**
+	 * Removal of arbitrary elements is not supported by this queue.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             always
+	 */
+	@Override
+	public boolean remove(Object o) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Get the total number of elements that have been offered to this queue
+	 * through {@link #add(Object)}, {@link #offer(Object)} or
+	 * {@link #put(Object)}, whether or not they were admitted.
+	 * 
+	 * @return the number of elements offered
+	 */
+	public long offerCount() {
+		return insertCount() + rejectCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Elements that were admitted and later evicted by the
+	 * {@link DropPolicy} are included.
+	 */
+	@Override
+	public long insertCount() {
+		return enqueuePos.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This is the sum of the elements evicted from the head of the queue and
+	 * the elements that were refused on arrival.
+	 */
+	@Override
+	public long dropCount() {
+		return evictCount.get() + rejectCount.get();
+	}
+
+	/**
+	 * Get the total number of elements that have been removed from this queue
+	 * by consumers (i.e. not dropped by the {@link DropPolicy}).
+	 * 
+	 * @return the number of elements consumed
+	 */
+	public long consumeCount() {
+		return dequeuePos.get() - evictCount.get();
+	}
+}
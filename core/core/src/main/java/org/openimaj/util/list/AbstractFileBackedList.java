@@ -48,7 +48,12 @@ import org.openimaj.io.Readable;
 
 /**
  * A (currently) read-only list that iterates over a file. Both ascii and binary
- * files are supported. Binary files are required to have fixed length records.
+ * files are supported. By default binary files are assumed to have fixed
+ * length records following a header. Subclasses with variable length records
+ * (for example those with an index of record offsets) must override
+ * {@link #recordOffset(int)} to locate each record, and
+ * {@link #newInstance(int, boolean, int, int, File)} will then be given the
+ * offset of a record rather than a multiple of the record length.
  * 
  * @author Jonathon Hare
  * 
@@ -122,6 +127,32 @@ public abstract class AbstractFileBackedList<T extends Readable> extends Abstrac
 		return element;
 	}
 
+	/**
+	 * Skip over the next ascii record. By default this reads and discards the
+	 * record; override this if your records can be skipped without being
+	 * parsed (i.e. if each record occupies a single line).
+	 * 
+	 * @param br
+	 *            the scanner positioned at the start of the record
+	 * @throws IOException
+	 */
+	protected void skipRecordASCII(Scanner br) throws IOException {
+		readRecordASCII(br);
+	}
+
+	/**
+	 * Get the byte offset of the given binary record in the file. By default
+	 * the records are assumed to have a fixed length; override this for
+	 * variable length records.
+	 * 
+	 * @param index
+	 *            the index of the record
+	 * @return the offset of the start of the record
+	 */
+	protected long recordOffset(int index) {
+		return headerLength + ((long) index * recordLength);
+	}
+
 	@Override
 	public int size() {
 		return size;
@@ -205,9 +236,13 @@ public abstract class AbstractFileBackedList<T extends Readable> extends Abstrac
 
 		FLAsciiIterator() {
 			reset();
-			for (int i = 0; i < ascii_offset; i++)
-				next();
-			count = 0;
+			try {
+				for (int i = 0; i < ascii_offset; i++)
+					skipRecordASCII(br);
+			} catch (final IOException e) {
+				close();
+				throw new RuntimeException(e);
+			}
 		}
 
 		protected void reset() {
@@ -302,13 +337,19 @@ public abstract class AbstractFileBackedList<T extends Readable> extends Abstrac
 			throw new IllegalArgumentException("Index out of bounds");
 
 		if (!isBinary) {
-			int count = 0;
-			for (final T k : this) {
-				if (count++ == index)
-					return k;
+			final FLAsciiIterator itr = new FLAsciiIterator();
+			try {
+				for (int i = 0; i < index; i++)
+					skipRecordASCII(itr.br);
+
+				return readRecordASCII(itr.br);
+			} catch (final IOException e) {
+				throw new RuntimeException(e);
+			} finally {
+				itr.close();
 			}
 		} else {
-			final long offset = (index * recordLength) + headerLength;
+			final long offset = recordOffset(index);
 			RandomAccessFile raf = null;
 			try {
 				raf = new RandomAccessFile(file, "r");
@@ -324,7 +365,6 @@ public abstract class AbstractFileBackedList<T extends Readable> extends Abstrac
 					}
 			}
 		}
-		return null;
 	}
 
 	@Override
@@ -374,7 +414,7 @@ public abstract class AbstractFileBackedList<T extends Readable> extends Abstrac
 			fkl.ascii_offset = ascii_offset + fromIndex;
 			return fkl;
 		} else {
-			final int newHeaderLength = headerLength + (fromIndex * recordLength);
+			final int newHeaderLength = (int) recordOffset(fromIndex);
 			final int newSize = toIndex - fromIndex;
 
 			final AbstractFileBackedList<T> fkl = newInstance(newSize, isBinary, newHeaderLength, recordLength, file);
@@ -418,7 +458,7 @@ public abstract class AbstractFileBackedList<T extends Readable> extends Abstrac
 						return null;
 
 					final int idx = indices[count];
-					raf.seek(headerLength + (idx * recordLength));
+					raf.seek(recordOffset(idx));
 
 					final T k = readRecord(raf);
 					count++;
@@ -446,7 +486,7 @@ public abstract class AbstractFileBackedList<T extends Readable> extends Abstrac
 					}
 
 					for (int i = 0; i < offset - 1; i++) {
-						readRecordASCII(br);
+						skipRecordASCII(br);
 					}
 
 					final T k = readRecordASCII(br);
@@ -488,6 +528,16 @@ public abstract class AbstractFileBackedList<T extends Readable> extends Abstrac
 			return AbstractFileBackedList.this.readRecordASCII(br);
 		}
 
+		@Override
+		protected void skipRecordASCII(Scanner br) throws IOException {
+			AbstractFileBackedList.this.skipRecordASCII(br);
+		}
+
+		@Override
+		protected long recordOffset(int index) {
+			return AbstractFileBackedList.this.recordOffset(index);
+		}
+
 		@Override
 		protected AbstractFileBackedList<T> newInstance(int newSize, boolean isBinary, int newHeaderLength,
 				int recordLength, File file)
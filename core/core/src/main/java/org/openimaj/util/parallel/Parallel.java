@@ -35,6 +35,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.openimaj.util.function.Operation;
 import org.openimaj.util.parallel.partition.FixedSizeChunkPartitioner;
@@ -282,6 +283,106 @@ public class Parallel {
 		}
 	}
 
+	/**
+	 * Parallel integer for loop in which the calling thread also performs
+	 * chunks of the range, and only waits for the chunks that have been
+	 * started by the pool. Unlike
+	 * {@link #forRange(int, int, int, Operation, ThreadPoolExecutor)}, this is
+	 * safe to call from tasks that are themselves running on the (fixed size)
+	 * pool, such as from within another parallel loop: if no pool threads are
+	 * free, the calling thread will simply perform all the work itself rather
+	 * than waiting forever. Exceptions thrown by the operation are re-thrown in
+	 * the calling thread once all started chunks have completed.
+	 *
+	 * @param start
+	 *            starting value
+	 * @param stop
+	 *            stopping value
+	 * @param incr
+	 *            increment amount
+	 * @param op
+	 *            operation to perform
+	 * @param pool
+	 *            the thread pool.
+	 */
+	public static void forRangeCallerRuns(final int start, final int stop, final int incr,
+			final Operation<IntRange> op, final ThreadPoolExecutor pool)
+	{
+		final int ops = (stop - start + incr - 1) / incr;
+		final int chunks = Math.min(pool.getMaximumPoolSize(), ops);
+
+		if (chunks <= 1) {
+			if (ops > 0)
+				op.perform(new IntRange(start, stop, incr));
+			return;
+		}
+
+		final int chunksize = (ops + chunks - 1) / chunks;
+		final AtomicInteger next = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch(chunks);
+		final Throwable[] exception = new Throwable[1];
+
+		final Runnable worker = new Runnable() {
+			@Override
+			public void run() {
+				int chunk;
+				while ((chunk = next.getAndIncrement()) < chunks) {
+					try {
+						final int lo = start + chunk * chunksize * incr;
+						final int hi = Math.min(stop, lo + chunksize * incr);
+
+						if (lo < hi)
+							op.perform(new IntRange(lo, hi, incr));
+					} catch (final Throwable t) {
+						exception[0] = t;
+					} finally {
+						latch.countDown();
+					}
+				}
+			}
+		};
+
+		for (int i = 1; i < chunks; i++)
+			pool.execute(worker);
+		worker.run();
+
+		try {
+			latch.await();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+
+		if (exception[0] instanceof Error)
+			throw (Error) exception[0];
+		if (exception[0] instanceof RuntimeException)
+			throw (RuntimeException) exception[0];
+		if (exception[0] != null)
+			throw new RuntimeException(exception[0]);
+	}
+
+	/**
+	 * Parallel integer for loop in which the calling thread also performs
+	 * chunks of the range. Uses the default global thread pool.
+	 *
+	 * @see #forRangeCallerRuns(int, int, int, Operation, ThreadPoolExecutor)
+	 * @see GlobalExecutorPool#getPool()
+	 *
+	 * @param start
+	 *            starting value
+	 * @param stop
+	 *            stopping value
+	 * @param incr
+	 *            increment amount
+	 * @param op
+	 *            operation to perform
+	 */
+	public static void forRangeCallerRuns(final int start, final int stop, final int incr,
+			final Operation<IntRange> op)
+	{
+		forRangeCallerRuns(start, stop, incr, op, GlobalExecutorPool.getPool());
+	}
+
 	/**
 	 * Parallel ForEach loop over {@link Iterable} data. The data is
 	 * automatically partitioned; if the data is a {@link List}, then a
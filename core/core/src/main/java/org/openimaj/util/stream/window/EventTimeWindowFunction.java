@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.stream.window;
+
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+import org.openimaj.util.function.Function;
+import org.openimaj.util.stream.AbstractStream;
+import org.openimaj.util.stream.Stream;
+
+/**
+ * Base class for functions that group the items of a stream into windows of
+ * <em>event-time</em> (the time at which each item was produced, as given by a
+ * timestamp extractor, rather than the time at which it happens to be
+ * consumed) and produce a stream of incrementally computed aggregates of those
+ * windows. Each output is a {@link MetaPayload} of the aggregate and the
+ * {@link TimeWindow} it covers; windows that contain no items are not
+ * produced.
+ * <p>
+ * Items may arrive out of order. Progress in event-time is tracked with a
+ * <em>watermark</em> that trails the largest timestamp seen so far by a fixed
+ * allowed out-of-orderness; a window is produced once the watermark passes its
+ * end, and items that arrive after all of the windows they belong to have been
+ * produced are dropped and counted (see {@link #getLateCount()}). When the
+ * input stream ends all of the remaining windows are produced.
+ * <p>
+ * Because the aggregation is incremental (see {@link IncrementalAggregator}),
+ * memory use depends on the number of open windows rather than on the number
+ * of items they contain.
+ * 
+ * @see SlidingEventTimeWindowFunction
+ * @see TumblingEventTimeWindowFunction
+ * @see SessionEventTimeWindowFunction
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <IN>
+ *            the type of items in the input stream
+ * @param <ACC>
+ *            the type of the aggregation accumulator
+ * @param <OUT>
+ *            the type of the aggregation result
+ */
+public abstract class EventTimeWindowFunction<IN, ACC, OUT>
+		implements
+			Function<Stream<IN>, Stream<MetaPayload<OUT, TimeWindow>>>
+{
+	/**
+	 * The state of the open windows of a single stream
+	 */
+	protected abstract class WindowState {
+		/**
+		 * Add an item to the windows it belongs to.
+		 * 
+		 * @param timestamp
+		 *            the timestamp of the item
+		 * @param item
+		 *            the item
+		 * @param watermark
+		 *            the current watermark
+		 * @return false if the item was late and has not been added to any
+		 *         window; true otherwise
+		 */
+		protected abstract boolean add(long timestamp, IN item, long watermark);
+
+		/**
+		 * Produce (and forget) all the windows that end at or before the
+		 * watermark.
+		 * 
+		 * @param watermark
+		 *            the watermark
+		 * @param output
+		 *            the queue to add the produced windows to, in order
+		 */
+		protected abstract void fire(long watermark, Queue<MetaPayload<OUT, TimeWindow>> output);
+	}
+
+	protected Function<IN, Long> timestampExtractor;
+	protected IncrementalAggregator<IN, ACC, OUT> aggregator;
+	protected long maxOutOfOrderness;
+	private long lateCount;
+
+	/**
+	 * Construct with the given timestamp extractor, aggregator and allowed
+	 * out-of-orderness.
+	 * 
+	 * @param timestampExtractor
+	 *            function to extract the timestamp of each item
+	 * @param aggregator
+	 *            the aggregator used to summarise each window
+	 * @param maxOutOfOrderness
+	 *            the amount of time by which an item may lag behind the latest
+	 *            timestamp seen and still be added to its windows
+	 */
+	public EventTimeWindowFunction(Function<IN, Long> timestampExtractor, IncrementalAggregator<IN, ACC, OUT> aggregator,
+			long maxOutOfOrderness)
+	{
+		if (maxOutOfOrderness < 0)
+			throw new IllegalArgumentException("maxOutOfOrderness must be non-negative");
+
+		this.timestampExtractor = timestampExtractor;
+		this.aggregator = aggregator;
+		this.maxOutOfOrderness = maxOutOfOrderness;
+	}
+
+	/**
+	 * Create the state for the windows of a new stream.
+	 * 
+	 * @return the new state
+	 */
+	protected abstract WindowState createState();
+
+	/**
+	 * Get the number of items that have been dropped because they arrived after
+	 * all of the windows they belong to had been produced.
+	 * 
+	 * @return the number of late items
+	 */
+	public long getLateCount() {
+		return lateCount;
+	}
+
+	@Override
+	public Stream<MetaPayload<OUT, TimeWindow>> apply(final Stream<IN> inner) {
+		return new AbstractStream<MetaPayload<OUT, TimeWindow>>() {
+			final WindowState state = createState();
+			final Queue<MetaPayload<OUT, TimeWindow>> ready = new ArrayDeque<MetaPayload<OUT, TimeWindow>>();
+			long watermark = Long.MIN_VALUE;
+			boolean flushed = false;
+
+			@Override
+			public boolean hasNext() {
+				while (ready.isEmpty()) {
+					if (inner.hasNext()) {
+						process(inner.next());
+					} else {
+						if (!flushed) {
+							state.fire(Long.MAX_VALUE, ready);
+							flushed = true;
+						}
+						break;
+					}
+				}
+				return !ready.isEmpty();
+			}
+
+			private void process(IN item) {
+				final long timestamp = timestampExtractor.apply(item);
+
+				if (!state.add(timestamp, item, watermark))
+					lateCount++;
+
+				if (timestamp - maxOutOfOrderness > watermark) {
+					watermark = timestamp - maxOutOfOrderness;
+					state.fire(watermark, ready);
+				}
+			}
+
+			@Override
+			public MetaPayload<OUT, TimeWindow> next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+
+				return ready.poll();
+			}
+		};
+	}
+}
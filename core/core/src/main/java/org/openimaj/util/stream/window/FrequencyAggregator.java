@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.stream.window;
+
+import gnu.trove.iterator.TObjectLongIterator;
+import gnu.trove.map.hash.TObjectLongHashMap;
+
+import org.openimaj.util.function.Function;
+
+/**
+ * An {@link IncrementalAggregator} that builds a histogram of the number of
+ * occurrences of the keys extracted from each item (for example the terms or
+ * hash-tags of a stream of messages).
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <IN>
+ *            the type of item being aggregated
+ * @param <K>
+ *            the type of key being counted
+ */
+public class FrequencyAggregator<IN, K>
+		implements
+			IncrementalAggregator<IN, TObjectLongHashMap<K>, TObjectLongHashMap<K>>
+{
+	private Function<IN, ? extends Iterable<K>> extractor;
+
+	/**
+	 * Construct with the function that extracts the keys to count from each
+	 * item.
+	 * 
+	 * @param extractor
+	 *            the key extractor
+	 */
+	public FrequencyAggregator(Function<IN, ? extends Iterable<K>> extractor) {
+		this.extractor = extractor;
+	}
+
+	@Override
+	public TObjectLongHashMap<K> create() {
+		return new TObjectLongHashMap<K>();
+	}
+
+	@Override
+	public TObjectLongHashMap<K> add(TObjectLongHashMap<K> accumulator, IN item) {
+		for (final K key : extractor.apply(item))
+			accumulator.adjustOrPutValue(key, 1, 1);
+
+		return accumulator;
+	}
+
+	@Override
+	public TObjectLongHashMap<K> merge(TObjectLongHashMap<K> accumulator, TObjectLongHashMap<K> other) {
+		final TObjectLongIterator<K> iter = other.iterator();
+		while (iter.hasNext()) {
+			iter.advance();
+			accumulator.adjustOrPutValue(iter.key(), iter.value(), iter.value());
+		}
+
+		return accumulator;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The result is a copy of the accumulator.
+	 */
+	@Override
+	public TObjectLongHashMap<K> result(TObjectLongHashMap<K> accumulator) {
+		return new TObjectLongHashMap<K>(accumulator);
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.stream.window;
+
+/**
+ * An aggregation function that can be computed incrementally over a window of
+ * items without the items themselves being stored. The state of the
+ * aggregation is held in an accumulator which is created empty, updated with
+ * each item in turn, and finally turned into a result. Two accumulators built
+ * over disjoint sets of items can be merged, which allows partial aggregates
+ * to be shared between overlapping windows.
+ * <p>
+ * Accumulators may be mutable: {@link #add(Object, Object)} and
+ * {@link #merge(Object, Object)} are free to modify and return their first
+ * argument, but must never modify the second argument of
+ * {@link #merge(Object, Object)}, nor an accumulator passed to
+ * {@link #result(Object)}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <IN>
+ *            the type of item being aggregated
+ * @param <ACC>
+ *            the type of the accumulator
+ * @param <OUT>
+ *            the type of the result
+ */
+public interface IncrementalAggregator<IN, ACC, OUT> {
+	/**
+	 * Create a new accumulator representing an empty set of items.
+	 * 
+	 * @return a new accumulator
+	 */
+	public ACC create();
+
+	/**
+	 * Add an item to an accumulator.
+	 * 
+	 * @param accumulator
+	 *            the accumulator (which may be modified)
+	 * @param item
+	 *            the item to add
+	 * @return the updated accumulator
+	 */
+	public ACC add(ACC accumulator, IN item);
+
+	/**
+	 * Merge two accumulators.
+	 * 
+	 * @param accumulator
+	 *            the accumulator to merge into (which may be modified)
+	 * @param other
+	 *            the accumulator to merge from (which must not be modified)
+	 * @return the merged accumulator
+	 */
+	public ACC merge(ACC accumulator, ACC other);
+
+	/**
+	 * Compute the result of the aggregation from an accumulator.
+	 * 
+	 * @param accumulator
+	 *            the accumulator (which must not be modified)
+	 * @return the result
+	 */
+	public OUT result(ACC accumulator);
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.stream.window;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * An {@link IncrementalAggregator} that computes the per-key average of a set
+ * of key-value maps. This is the incremental equivalent of
+ * {@link WindowAverage}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class MapAverageAggregator
+		implements
+			IncrementalAggregator<Map<String, Double>, Map<String, double[]>, Map<String, Double>>
+{
+	@Override
+	public Map<String, double[]> create() {
+		return new HashMap<String, double[]>();
+	}
+
+	@Override
+	public Map<String, double[]> add(Map<String, double[]> accumulator, Map<String, Double> item) {
+		for (final Entry<String, Double> e : item.entrySet()) {
+			double[] sumCount = accumulator.get(e.getKey());
+			if (sumCount == null)
+				accumulator.put(e.getKey(), sumCount = new double[2]);
+
+			sumCount[0] += e.getValue();
+			sumCount[1]++;
+		}
+		return accumulator;
+	}
+
+	@Override
+	public Map<String, double[]> merge(Map<String, double[]> accumulator, Map<String, double[]> other) {
+		for (final Entry<String, double[]> e : other.entrySet()) {
+			final double[] sumCount = accumulator.get(e.getKey());
+			if (sumCount == null) {
+				accumulator.put(e.getKey(), e.getValue().clone());
+			} else {
+				sumCount[0] += e.getValue()[0];
+				sumCount[1] += e.getValue()[1];
+			}
+		}
+		return accumulator;
+	}
+
+	@Override
+	public Map<String, Double> result(Map<String, double[]> accumulator) {
+		final Map<String, Double> ret = new HashMap<String, Double>();
+		for (final Entry<String, double[]> e : accumulator.entrySet())
+			ret.put(e.getKey(), e.getValue()[0] / e.getValue()[1]);
+		return ret;
+	}
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.stream.window;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.TreeMap;
+
+import org.openimaj.util.function.Function;
+
+/**
+ * An {@link EventTimeWindowFunction} producing <em>session</em> windows:
+ * windows of activity separated by gaps of at least a fixed length during
+ * which no items occur. Each item opens a session that lasts for the gap
+ * after its timestamp, and sessions that overlap are merged (together with
+ * their accumulators). The {@link TimeWindow} of a session runs from its first
+ * item to the gap after its last item.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <IN>
+ *            the type of items in the input stream
+ * @param <ACC>
+ *            the type of the aggregation accumulator
+ * @param <OUT>
+ *            the type of the aggregation result
+ */
+public class SessionEventTimeWindowFunction<IN, ACC, OUT> extends EventTimeWindowFunction<IN, ACC, OUT> {
+	protected long gap;
+
+	/**
+	 * Construct with the given session gap, timestamp extractor, aggregator
+	 * and allowed out-of-orderness.
+	 * 
+	 * @param gap
+	 *            the minimum period of inactivity between sessions
+	 * @param timestampExtractor
+	 *            function to extract the timestamp of each item
+	 * @param aggregator
+	 *            the aggregator used to summarise each session
+	 * @param maxOutOfOrderness
+	 *            the amount of time by which an item may lag behind the latest
+	 *            timestamp seen and still be added to its session
+	 */
+	public SessionEventTimeWindowFunction(long gap, Function<IN, Long> timestampExtractor,
+			IncrementalAggregator<IN, ACC, OUT> aggregator, long maxOutOfOrderness)
+	{
+		super(timestampExtractor, aggregator, maxOutOfOrderness);
+
+		if (gap <= 0)
+			throw new IllegalArgumentException("gap must be positive");
+
+		this.gap = gap;
+	}
+
+	private class Session {
+		long start;
+		long end;
+		ACC accumulator;
+	}
+
+	@Override
+	protected WindowState createState() {
+		return new WindowState() {
+			// open sessions by start time; they never overlap, so are also
+			// ordered by end time
+			final TreeMap<Long, Session> sessions = new TreeMap<Long, Session>();
+
+			@Override
+			protected boolean add(long timestamp, IN item, long watermark) {
+				final Session session = new Session();
+				session.start = timestamp;
+				session.end = timestamp + gap;
+
+				// the session would already have been produced
+				if (session.end <= watermark)
+					return false;
+
+				session.accumulator = aggregator.add(aggregator.create(), item);
+
+				final Iterator<Entry<Long, Session>> iter = sessions.headMap(session.end, false).descendingMap()
+						.entrySet().iterator();
+				while (iter.hasNext()) {
+					final Session other = iter.next().getValue();
+					if (other.end <= session.start)
+						break;
+
+					session.start = Math.min(session.start, other.start);
+					session.end = Math.max(session.end, other.end);
+					session.accumulator = aggregator.merge(session.accumulator, other.accumulator);
+					iter.remove();
+				}
+
+				sessions.put(session.start, session);
+				return true;
+			}
+
+			@Override
+			protected void fire(long watermark, Queue<MetaPayload<OUT, TimeWindow>> output) {
+				while (!sessions.isEmpty() && sessions.firstEntry().getValue().end <= watermark) {
+					final Session session = sessions.pollFirstEntry().getValue();
+
+					output.add(MetaPayload.create(aggregator.result(session.accumulator),
+							new TimeWindow(session.start, session.end)));
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.stream.window;
+
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.TreeMap;
+
+import org.openimaj.citation.annotation.Reference;
+import org.openimaj.citation.annotation.ReferenceType;
+import org.openimaj.util.function.Function;
+
+/**
+ * An {@link EventTimeWindowFunction} producing windows of a fixed size that
+ * start at every multiple of a fixed slide; if the slide is smaller than the
+ * size the windows overlap, and each item belongs to several windows.
+ * <p>
+ * Rather than aggregating each window separately, the time-line is cut into
+ * <em>panes</em> whose length is the greatest common divisor of the size and
+ * the slide. Each item is added to the accumulator of exactly one pane, and
+ * each window is computed by merging the accumulators of the panes it
+ * contains; a pane is discarded as soon as the last window containing it has
+ * been produced.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <IN>
+ *            the type of items in the input stream
+ * @param <ACC>
+ *            the type of the aggregation accumulator
+ * @param <OUT>
+ *            the type of the aggregation result
+ */
+@Reference(
+		type = ReferenceType.Article,
+		author = { "Jin Li", "David Maier", "Kristin Tufte", "Vassilis Papadimos", "Peter A. Tucker" },
+		title = "No Pane, No Gain: Efficient Evaluation of Sliding-window Aggregates over Data Streams",
+		year = "2005",
+		journal = "SIGMOD Record",
+		pages = { "39", "44" },
+		volume = "34",
+		number = "1")
+public class SlidingEventTimeWindowFunction<IN, ACC, OUT> extends EventTimeWindowFunction<IN, ACC, OUT> {
+	protected long size;
+	protected long slide;
+	protected long paneSize;
+
+	/**
+	 * Construct with the given window size and slide, timestamp extractor,
+	 * aggregator and allowed out-of-orderness.
+	 * 
+	 * @param size
+	 *            the length of each window
+	 * @param slide
+	 *            the interval between the starts of consecutive windows
+	 * @param timestampExtractor
+	 *            function to extract the timestamp of each item
+	 * @param aggregator
+	 *            the aggregator used to summarise each window
+	 * @param maxOutOfOrderness
+	 *            the amount of time by which an item may lag behind the latest
+	 *            timestamp seen and still be added to its windows
+	 */
+	public SlidingEventTimeWindowFunction(long size, long slide, Function<IN, Long> timestampExtractor,
+			IncrementalAggregator<IN, ACC, OUT> aggregator, long maxOutOfOrderness)
+	{
+		super(timestampExtractor, aggregator, maxOutOfOrderness);
+
+		if (size <= 0 || slide <= 0)
+			throw new IllegalArgumentException("size and slide must be positive");
+
+		this.size = size;
+		this.slide = slide;
+		this.paneSize = gcd(size, slide);
+	}
+
+	private static long gcd(long a, long b) {
+		while (b != 0) {
+			final long t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+
+	/**
+	 * Round down to a multiple of the given interval
+	 */
+	private static long floor(long value, long interval) {
+		final long r = value % interval;
+		return r < 0 ? value - r - interval : value - r;
+	}
+
+	@Override
+	protected WindowState createState() {
+		return new WindowState() {
+			final TreeMap<Long, ACC> panes = new TreeMap<Long, ACC>();
+			long nextStart;
+			boolean started = false;
+
+			@Override
+			protected boolean add(long timestamp, IN item, long watermark) {
+				final long pane = floor(timestamp, paneSize);
+
+				// all windows containing the pane have been produced
+				if (started && pane < nextStart)
+					return false;
+
+				ACC acc = panes.get(pane);
+				if (acc == null)
+					acc = aggregator.create();
+				panes.put(pane, aggregator.add(acc, item));
+
+				return true;
+			}
+
+			@Override
+			protected void fire(long watermark, Queue<MetaPayload<OUT, TimeWindow>> output) {
+				while (!panes.isEmpty()) {
+					final long first = panes.firstKey();
+
+					// skip to the first window containing the earliest pane
+					if (!started || nextStart + size <= first) {
+						nextStart = floor(first - size, slide) + slide;
+						started = true;
+					}
+
+					final long end = nextStart + size;
+					if (end > watermark)
+						break;
+
+					ACC acc = aggregator.create();
+					for (final Entry<Long, ACC> e : panes.subMap(nextStart, end).entrySet())
+						acc = aggregator.merge(acc, e.getValue());
+
+					output.add(MetaPayload.create(aggregator.result(acc), new TimeWindow(nextStart, end)));
+
+					nextStart += slide;
+					panes.headMap(nextStart).clear();
+				}
+			}
+		};
+	}
+}
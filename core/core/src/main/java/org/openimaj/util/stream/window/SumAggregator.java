@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.stream.window;
+
+import org.openimaj.util.function.Function;
+
+/**
+ * An {@link IncrementalAggregator} that sums a numeric value extracted from
+ * each item.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <IN>
+ *            the type of item being aggregated
+ */
+public class SumAggregator<IN> implements IncrementalAggregator<IN, double[], Double> {
+	private Function<IN, ? extends Number> extractor;
+
+	/**
+	 * Construct with the function that extracts the value to sum from each
+	 * item.
+	 * 
+	 * @param extractor
+	 *            the value extractor
+	 */
+	public SumAggregator(Function<IN, ? extends Number> extractor) {
+		this.extractor = extractor;
+	}
+
+	@Override
+	public double[] create() {
+		return new double[1];
+	}
+
+	@Override
+	public double[] add(double[] accumulator, IN item) {
+		accumulator[0] += extractor.apply(item).doubleValue();
+		return accumulator;
+	}
+
+	@Override
+	public double[] merge(double[] accumulator, double[] other) {
+		accumulator[0] += other[0];
+		return accumulator;
+	}
+
+	@Override
+	public Double result(double[] accumulator) {
+		return accumulator[0];
+	}
+}
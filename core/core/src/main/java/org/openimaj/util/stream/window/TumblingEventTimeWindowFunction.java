@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.stream.window;
+
+import org.openimaj.util.function.Function;
+
+/**
+ * An {@link EventTimeWindowFunction} producing consecutive, non-overlapping
+ * windows of a fixed size.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <IN>
+ *            the type of items in the input stream
+ * @param <ACC>
+ *            the type of the aggregation accumulator
+ * @param <OUT>
+ *            the type of the aggregation result
+ */
+public class TumblingEventTimeWindowFunction<IN, ACC, OUT> extends SlidingEventTimeWindowFunction<IN, ACC, OUT> {
+	/**
+	 * Construct with the given window size, timestamp extractor, aggregator
+	 * and allowed out-of-orderness.
+	 * 
+	 * @param size
+	 *            the length of each window
+	 * @param timestampExtractor
+	 *            function to extract the timestamp of each item
+	 * @param aggregator
+	 *            the aggregator used to summarise each window
+	 * @param maxOutOfOrderness
+	 *            the amount of time by which an item may lag behind the latest
+	 *            timestamp seen and still be added to its window
+	 */
+	public TumblingEventTimeWindowFunction(long size, Function<IN, Long> timestampExtractor,
+			IncrementalAggregator<IN, ACC, OUT> aggregator, long maxOutOfOrderness)
+	{
+		super(size, size, timestampExtractor, aggregator, maxOutOfOrderness);
+	}
+}
@@ -0,0 +1,236 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.openimaj.util.concurrent.RingBufferDroppingQueue.DropPolicy;
+
+/**
+ * Tests for the {@link RingBufferDroppingQueue}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ */
+public class RingBufferDroppingQueueTest {
+	/**
+	 * Test FIFO ordering and wrapping around the ring
+	 */
+	@Test
+	public void testFIFO() {
+		final RingBufferDroppingQueue<Integer> queue = new RingBufferDroppingQueue<Integer>(3);
+
+		for (int i = 0; i < 10; i++) {
+			assertTrue(queue.offer(i));
+			assertTrue(queue.offer(i + 100));
+			assertEquals(2, queue.size());
+			assertEquals(new Integer(i), queue.peek());
+			assertEquals(new Integer(i), queue.poll());
+			assertEquals(new Integer(i + 100), queue.poll());
+			assertNull(queue.poll());
+		}
+
+		assertEquals(20, queue.consumeCount());
+		assertEquals(0, queue.dropCount());
+	}
+
+	/**
+	 * Test dropping the oldest element
+	 */
+	@Test
+	public void testDropOldest() {
+		final RingBufferDroppingQueue<Integer> queue = new RingBufferDroppingQueue<Integer>(3, DropPolicy.DROP_OLDEST);
+
+		assertNull(queue.put(0));
+		assertNull(queue.put(1));
+		assertNull(queue.put(2));
+		assertEquals(0, queue.remainingCapacity());
+		assertEquals(new Integer(0), queue.put(3));
+		assertTrue(queue.offer(4));
+
+		assertEquals(5, queue.offerCount());
+		assertEquals(5, queue.insertCount());
+		assertEquals(2, queue.dropCount());
+
+		assertEquals(new Integer(2), queue.poll());
+		assertEquals(new Integer(3), queue.poll());
+		assertEquals(new Integer(4), queue.poll());
+		assertEquals(3, queue.consumeCount());
+	}
+
+	/**
+	 * Test dropping the newest element
+	 */
+	@Test
+	public void testDropNewest() {
+		final RingBufferDroppingQueue<Integer> queue = new RingBufferDroppingQueue<Integer>(2, DropPolicy.DROP_NEWEST);
+
+		assertTrue(queue.offer(0));
+		assertTrue(queue.offer(1));
+		assertFalse(queue.offer(2));
+		assertEquals(new Integer(3), queue.put(3));
+
+		assertEquals(4, queue.offerCount());
+		assertEquals(2, queue.insertCount());
+		assertEquals(2, queue.dropCount());
+
+		assertEquals(new Integer(0), queue.poll());
+		assertEquals(new Integer(1), queue.poll());
+	}
+
+	/**
+	 * Test sampling of a burst
+	 */
+	@Test
+	public void testSample() {
+		final RingBufferDroppingQueue<Integer> queue = new RingBufferDroppingQueue<Integer>(2, DropPolicy.SAMPLE, 3);
+
+		for (int i = 0; i < 11; i++)
+			queue.offer(i);
+
+		// 0 and 1 fill the queue; of the other 9, 4, 7 and 10 are admitted
+		assertEquals(new Integer(7), queue.poll());
+		assertEquals(new Integer(10), queue.poll());
+		assertEquals(11, queue.offerCount());
+		assertEquals(5, queue.insertCount());
+		assertEquals(9, queue.dropCount());
+	}
+
+	/**
+	 * Test batched draining
+	 */
+	@Test
+	public void testDrain() throws InterruptedException {
+		final RingBufferDroppingQueue<Integer> queue = new RingBufferDroppingQueue<Integer>(5);
+		for (int i = 0; i < 7; i++)
+			queue.put(i);
+
+		final List<Integer> out = new ArrayList<Integer>();
+		assertEquals(3, queue.drainTo(out, 3));
+		assertEquals(2, queue.drainTo(out));
+		assertEquals(0, queue.drainTo(out, 5, 10, TimeUnit.MILLISECONDS));
+
+		for (int i = 0; i < 5; i++)
+			assertEquals(new Integer(i + 2), out.get(i));
+		assertEquals(5, queue.consumeCount());
+		assertEquals(0, queue.size());
+	}
+
+	/**
+	 * Test that blocked consumers are woken by producers
+	 */
+	@Test(timeout = 10000)
+	public void testBlockingTake() throws InterruptedException {
+		final RingBufferDroppingQueue<Integer> queue = new RingBufferDroppingQueue<Integer>(4);
+		final int nConsumers = 3;
+		final int nItems = 10000;
+		final AtomicLong sum = new AtomicLong();
+		final CountDownLatch done = new CountDownLatch(nConsumers);
+
+		for (int i = 0; i < nConsumers; i++) {
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						Integer item;
+						while ((item = queue.take()) >= 0)
+							sum.addAndGet(item);
+					} catch (final InterruptedException e) {
+						// ignore
+					}
+					done.countDown();
+				}
+			}.start();
+		}
+
+		long expected = 0;
+		for (int i = 1; i <= nItems; i++) {
+			// wait for space so that nothing is dropped
+			while (queue.remainingCapacity() == 0)
+				Thread.yield();
+			queue.put(i);
+			expected += i;
+		}
+		for (int i = 0; i < nConsumers; i++) {
+			while (queue.remainingCapacity() == 0)
+				Thread.yield();
+			queue.put(-1);
+		}
+
+		done.await();
+		assertEquals(0, queue.dropCount());
+		assertEquals(expected, sum.get());
+	}
+
+	/**
+	 * Test that the counters balance with many producers and a consumer
+	 */
+	@Test(timeout = 30000)
+	public void testMultipleProducers() throws InterruptedException {
+		for (final DropPolicy policy : DropPolicy.values()) {
+			final RingBufferDroppingQueue<Integer> queue = new RingBufferDroppingQueue<Integer>(16, policy);
+			final int nProducers = 4;
+			final int nItems = 50000;
+			final CountDownLatch done = new CountDownLatch(nProducers);
+
+			for (int p = 0; p < nProducers; p++) {
+				new Thread() {
+					@Override
+					public void run() {
+						for (int i = 0; i < nItems; i++)
+							queue.offer(i);
+						done.countDown();
+					}
+				}.start();
+			}
+
+			final List<Integer> out = new ArrayList<Integer>();
+			long consumed = 0;
+			while (done.getCount() > 0 || queue.size() > 0) {
+				out.clear();
+				consumed += queue.drainTo(out, 8, 1, TimeUnit.MILLISECONDS);
+			}
+
+			assertEquals(nProducers * nItems, queue.offerCount());
+			assertEquals(consumed, queue.consumeCount());
+			assertEquals(queue.offerCount(), queue.consumeCount() + queue.dropCount());
+		}
+	}
+}
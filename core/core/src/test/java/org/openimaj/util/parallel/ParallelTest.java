@@ -36,9 +36,11 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import org.junit.Test;
 import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel.IntRange;
 import org.openimaj.util.parallel.partition.GrowingChunkPartitioner;
 import org.openimaj.util.parallel.partition.RangePartitioner;
 
@@ -96,4 +98,31 @@ public class ParallelTest {
 
 		assertEquals(intsList.size(), out.size());
 	}
+
+	/**
+	 * Test that nested caller-runs loops on the global pool visit every index
+	 * exactly once (and don't deadlock)
+	 */
+	@Test(timeout = 60000)
+	public void testForRangeCallerRunsNested() {
+		final int outer = 4 * GlobalExecutorPool.getPool().getMaximumPoolSize();
+		final int inner = 1000;
+		final AtomicIntegerArray counts = new AtomicIntegerArray(outer * inner);
+
+		Parallel.forIndex(0, outer, 1, new Operation<Integer>() {
+			@Override
+			public void perform(final Integer i) {
+				Parallel.forRangeCallerRuns(0, inner, 3, new Operation<IntRange>() {
+					@Override
+					public void perform(IntRange range) {
+						for (int j = range.start; j < range.stop; j += range.incr)
+							counts.incrementAndGet(i * inner + j);
+					}
+				});
+			}
+		});
+
+		for (int i = 0; i < outer * inner; i++)
+			assertEquals((i % inner) % 3 == 0 ? 1 : 0, counts.get(i));
+	}
 }
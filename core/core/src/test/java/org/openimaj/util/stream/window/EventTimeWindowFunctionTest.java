@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.stream.window;
+
+import static org.junit.Assert.assertEquals;
+import gnu.trove.map.hash.TObjectLongHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.util.function.Function;
+import org.openimaj.util.stream.CollectionStream;
+import org.openimaj.util.stream.Stream;
+
+/**
+ * Tests for the {@link EventTimeWindowFunction}s.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ */
+public class EventTimeWindowFunctionTest {
+	private static final Function<Long, Long> IDENTITY = new Function<Long, Long>() {
+		@Override
+		public Long apply(Long in) {
+			return in;
+		}
+	};
+
+	private static <OUT> List<MetaPayload<OUT, TimeWindow>> run(EventTimeWindowFunction<Long, ?, OUT> fcn,
+			Long... timestamps)
+	{
+		final Stream<MetaPayload<OUT, TimeWindow>> stream = fcn.apply(new CollectionStream<Long>(Arrays
+				.asList(timestamps)));
+
+		final List<MetaPayload<OUT, TimeWindow>> windows = new ArrayList<MetaPayload<OUT, TimeWindow>>();
+		while (stream.hasNext())
+			windows.add(stream.next());
+
+		return windows;
+	}
+
+	private static void assertWindow(MetaPayload<Long, TimeWindow> window, long start, long end, long count) {
+		assertEquals(new TimeWindow(start, end), window.getMeta());
+		assertEquals(new Long(count), window.getPayload());
+	}
+
+	/**
+	 * Test tumbling windows
+	 */
+	@Test
+	public void testTumbling() {
+		final List<MetaPayload<Long, TimeWindow>> windows = run(new TumblingEventTimeWindowFunction<Long, long[], Long>(
+				10, IDENTITY, new CountAggregator<Long>(), 0), 1L, 2L, 3L, 11L, 12L, 45L);
+
+		assertEquals(3, windows.size());
+		assertWindow(windows.get(0), 0, 10, 3);
+		assertWindow(windows.get(1), 10, 20, 2);
+		assertWindow(windows.get(2), 40, 50, 1);
+	}
+
+	/**
+	 * Test overlapping sliding windows
+	 */
+	@Test
+	public void testSliding() {
+		final List<MetaPayload<Long, TimeWindow>> windows = run(new SlidingEventTimeWindowFunction<Long, long[], Long>(
+				10, 5, IDENTITY, new CountAggregator<Long>(), 0), 1L, 6L, 11L);
+
+		assertEquals(4, windows.size());
+		assertWindow(windows.get(0), -5, 5, 1);
+		assertWindow(windows.get(1), 0, 10, 2);
+		assertWindow(windows.get(2), 5, 15, 2);
+		assertWindow(windows.get(3), 10, 20, 1);
+	}
+
+	/**
+	 * Test out-of-order and late items
+	 */
+	@Test
+	public void testLateness() {
+		final TumblingEventTimeWindowFunction<Long, long[], Long> fcn = new TumblingEventTimeWindowFunction<Long, long[], Long>(
+				10, IDENTITY, new CountAggregator<Long>(), 5);
+		final List<MetaPayload<Long, TimeWindow>> windows = run(fcn, 1L, 12L, 3L, 30L, 4L);
+
+		assertEquals(3, windows.size());
+		assertWindow(windows.get(0), 0, 10, 2);
+		assertWindow(windows.get(1), 10, 20, 1);
+		assertWindow(windows.get(2), 30, 40, 1);
+		assertEquals(1, fcn.getLateCount());
+	}
+
+	/**
+	 * Test session windows
+	 */
+	@Test
+	public void testSession() {
+		List<MetaPayload<Long, TimeWindow>> windows = run(new SessionEventTimeWindowFunction<Long, long[], Long>(5,
+				IDENTITY, new CountAggregator<Long>(), 0), 1L, 3L, 10L, 20L, 22L);
+
+		assertEquals(3, windows.size());
+		assertWindow(windows.get(0), 1, 8, 2);
+		assertWindow(windows.get(1), 10, 15, 1);
+		assertWindow(windows.get(2), 20, 27, 2);
+
+		// an out-of-order item bridging two sessions
+		windows = run(new SessionEventTimeWindowFunction<Long, long[], Long>(5, IDENTITY, new CountAggregator<Long>(),
+				100), 1L, 8L, 4L);
+
+		assertEquals(1, windows.size());
+		assertWindow(windows.get(0), 1, 13, 3);
+	}
+
+	/**
+	 * Test that pane-based sliding aggregates match a brute-force computation
+	 */
+	@Test
+	public void testSlidingFrequencies() {
+		final Random rng = new Random(0);
+		final Long[] timestamps = new Long[1000];
+		for (int i = 0; i < timestamps.length; i++)
+			timestamps[i] = i * 3L + rng.nextInt(20);
+
+		final Function<Long, List<Long>> keys = new Function<Long, List<Long>>() {
+			@Override
+			public List<Long> apply(Long in) {
+				return Arrays.asList(in % 7, in % 3);
+			}
+		};
+
+		final long size = 60;
+		final long slide = 45;
+		final List<MetaPayload<TObjectLongHashMap<Long>, TimeWindow>> windows = run(
+				new SlidingEventTimeWindowFunction<Long, TObjectLongHashMap<Long>, TObjectLongHashMap<Long>>(size, slide,
+						IDENTITY, new FrequencyAggregator<Long, Long>(keys), 20), timestamps);
+
+		long expectedStart = -slide;
+		for (final MetaPayload<TObjectLongHashMap<Long>, TimeWindow> window : windows) {
+			final TimeWindow tw = window.getMeta();
+			assertEquals(expectedStart, tw.getStart());
+			assertEquals(size, tw.getEnd() - tw.getStart());
+			expectedStart += slide;
+
+			final TObjectLongHashMap<Long> expected = new TObjectLongHashMap<Long>();
+			for (final Long t : timestamps)
+				if (t >= tw.getStart() && t < tw.getEnd())
+					for (final Long k : keys.apply(t))
+						expected.adjustOrPutValue(k, 1, 1);
+
+			assertEquals(expected, window.getPayload());
+		}
+		assertEquals(timestamps[timestamps.length - 1] / slide + 2, windows.size());
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2012, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.demos.sandbox.image;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+
+import org.openimaj.image.ImageUtilities;
+import org.openimaj.image.MBFImage;
+import org.openimaj.image.processing.resize.ResizeProcessor;
+import org.openimaj.time.Timer;
+
+/**
+ * Decode throughput benchmark comparing reading full-resolution images with
+ * {@link ImageUtilities#readMBF(File)} followed by a resize to a maximum size,
+ * against decoding directly at reduced resolution with
+ * {@link ImageUtilities#readMBF(File, int)} (followed by the same resize so
+ * that both produce images of the same size).
+ * <p>
+ * Usage: ReducedResolutionDecodeBenchmark directory-of-jpegs [maxSize]
+ * [repeats]
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ReducedResolutionDecodeBenchmark {
+	/**
+	 * Main method
+	 *
+	 * @param args
+	 *            the directory of images, and optionally the maximum size and
+	 *            number of repeats
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		final File[] files = new File(args[0]).listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				final String lc = name.toLowerCase();
+				return lc.endsWith(".jpg") || lc.endsWith(".jpeg");
+			}
+		});
+		final int maxSize = args.length > 1 ? Integer.parseInt(args[1]) : 640;
+		final int repeats = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+		System.out.println("Found " + files.length + " images; target size " + maxSize);
+
+		for (int r = 0; r < repeats; r++) {
+			System.out.format("readMBF + resizeMax: %8.2f images/s\n", fullDecode(files, maxSize));
+			System.out.format("readMBF(maxSize):    %8.2f images/s\n", reducedDecode(files, maxSize));
+		}
+	}
+
+	private static double fullDecode(File[] files, int maxSize) throws IOException {
+		final ResizeProcessor resize = new ResizeProcessor(maxSize);
+
+		final Timer t = Timer.timer();
+		for (final File f : files) {
+			final MBFImage img = ImageUtilities.readMBF(f);
+			img.processInplace(resize);
+		}
+
+		return files.length * 1000.0 / Math.max(1, t.duration());
+	}
+
+	private static double reducedDecode(File[] files, int maxSize) throws IOException {
+		final ResizeProcessor resize = new ResizeProcessor(maxSize);
+
+		final Timer t = Timer.timer();
+		for (final File f : files) {
+			final MBFImage img = ImageUtilities.readMBF(f, maxSize);
+			img.processInplace(resize);
+		}
+
+		return files.length * 1000.0 / Math.max(1, t.duration());
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2012, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.demos.sandbox.image;
+
+import java.util.Random;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.MBFImage;
+import org.openimaj.image.processing.resize.ResizeFilterFunction;
+import org.openimaj.image.processing.resize.ResizeProcessor;
+import org.openimaj.image.processing.resize.filters.Lanczos3Filter;
+import org.openimaj.image.processing.resize.filters.MitchellFilter;
+import org.openimaj.image.processing.resize.filters.TriangleFilter;
+import org.openimaj.time.Timer;
+
+/**
+ * Benchmark of {@link ResizeProcessor} with common filters: resizing of
+ * single-band images, multi-band images in one pass vs. band-by-band, and
+ * integer-factor downsampling.
+ * <p>
+ * Usage: ResizeBenchmark [width] [height] [repeats]
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ResizeBenchmark {
+	private static final ResizeFilterFunction[] FILTERS = { TriangleFilter.INSTANCE, Lanczos3Filter.INSTANCE,
+			MitchellFilter.INSTANCE };
+
+	/**
+	 * Main method
+	 *
+	 * @param args
+	 *            optionally the source width and height and the number of
+	 *            repeats
+	 */
+	public static void main(String[] args) {
+		final int width = args.length > 0 ? Integer.parseInt(args[0]) : 2048;
+		final int height = args.length > 1 ? Integer.parseInt(args[1]) : 1536;
+		final int repeats = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+		final Random rng = new Random(0);
+		final MBFImage image = new MBFImage(width, height, 3);
+		for (final FImage band : image.bands)
+			for (int y = 0; y < height; y++)
+				for (int x = 0; x < width; x++)
+					band.pixels[y][x] = rng.nextFloat();
+
+		final int[][] targets = { { width / 2, height / 2 }, { 640, 480 }, { 150, 150 * height / width } };
+
+		System.out.println("filter          target     single-band  multi-band  band-by-band");
+		for (final ResizeFilterFunction filter : FILTERS) {
+			for (final int[] target : targets) {
+				final FImage grey = image.getBand(0);
+				final FImage out = new FImage(target[0], target[1]);
+				final MBFImage mbfOut = new MBFImage(target[0], target[1], 3);
+
+				// warm up (and fill the contribution cache)
+				ResizeProcessor.zoom(grey, out, filter);
+
+				Timer t = Timer.timer();
+				for (int i = 0; i < repeats; i++)
+					ResizeProcessor.zoom(grey, out, filter);
+				final double single = (double) t.duration() / repeats;
+
+				t = Timer.timer();
+				for (int i = 0; i < repeats; i++)
+					ResizeProcessor.zoom(image, mbfOut, filter);
+				final double multi = (double) t.duration() / repeats;
+
+				t = Timer.timer();
+				for (int i = 0; i < repeats; i++)
+					for (int b = 0; b < image.numBands(); b++)
+						ResizeProcessor.zoom(image.getBand(b), mbfOut.getBand(b), filter);
+				final double bands = (double) t.duration() / repeats;
+
+				System.out.format("%-15s %4dx%-4d  %9.2fms  %8.2fms  %10.2fms\n", filter.getClass().getSimpleName(),
+						target[0], target[1], single, multi, bands);
+			}
+		}
+
+		final FImage grey = image.getBand(0);
+		Timer t = Timer.timer();
+		for (int i = 0; i < repeats; i++)
+			ResizeProcessor.downsample(grey, 2);
+		System.out.format("downsample(2): %.2fms\n", (double) t.duration() / repeats);
+
+		t = Timer.timer();
+		for (int i = 0; i < repeats; i++)
+			ResizeProcessor.zoom(grey, new FImage(width / 2, height / 2), TriangleFilter.INSTANCE);
+		System.out.format("zoom to half size (triangle): %.2fms\n", (double) t.duration() / repeats);
+	}
+}
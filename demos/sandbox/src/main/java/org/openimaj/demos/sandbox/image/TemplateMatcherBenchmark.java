@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2012, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.demos.sandbox.image;
+
+import java.util.Random;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.analysis.algorithm.AdaptiveTemplateMatcher;
+import org.openimaj.image.analysis.algorithm.AdaptiveTemplateMatcher.Method;
+import org.openimaj.image.analysis.algorithm.FourierTemplateMatcher;
+import org.openimaj.image.analysis.algorithm.TemplateMatcher;
+import org.openimaj.image.analysis.algorithm.TemplateMatcher.Mode;
+import org.openimaj.time.Timer;
+
+/**
+ * Benchmark of the template matchers across a range of template sizes:
+ * compares the spatial {@link TemplateMatcher} and the
+ * {@link FourierTemplateMatcher} with the {@link AdaptiveTemplateMatcher}
+ * using each correlation method, and repeated matching with a cached template
+ * spectrum.
+ * <p>
+ * Usage: TemplateMatcherBenchmark [searchWidth] [searchHeight] [repeats]
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class TemplateMatcherBenchmark {
+	private static final int[] TEMPLATE_SIZES = { 8, 16, 32, 64, 128 };
+
+	/**
+	 * Main method
+	 *
+	 * @param args
+	 *            optionally the width and height of the search region and the
+	 *            number of repeats
+	 */
+	public static void main(String[] args) {
+		final int searchWidth = args.length > 0 ? Integer.parseInt(args[0]) : 320;
+		final int searchHeight = args.length > 1 ? Integer.parseInt(args[1]) : 240;
+		final int repeats = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		final Mode mode = Mode.NORM_CORRELATION_COEFFICIENT;
+		final Random rng = new Random(0);
+
+		System.out.println("template  TemplateMatcher  FourierTemplateMatcher  SPATIAL  FOURIER  AUTO (method)");
+		for (final int size : TEMPLATE_SIZES) {
+			final FImage image = new FImage(searchWidth + size - 1, searchHeight + size - 1);
+			for (int y = 0; y < image.height; y++)
+				for (int x = 0; x < image.width; x++)
+					image.pixels[y][x] = rng.nextFloat();
+			final FImage template = image.extractROI(searchWidth / 2, searchHeight / 2, size, size);
+
+			final double basic = time(new TemplateMatcher(template, mode), null, image, repeats);
+			final double fourier = time(new FourierTemplateMatcher(template,
+					FourierTemplateMatcher.Mode.valueOf(mode.name())), null, image, repeats);
+			final double spatial = time(new AdaptiveTemplateMatcher(template, mode), Method.SPATIAL, image, repeats);
+			final double fft = time(new AdaptiveTemplateMatcher(template, mode), Method.FOURIER, image, repeats);
+
+			final AdaptiveTemplateMatcher auto = new AdaptiveTemplateMatcher(template, mode);
+			final double autoTime = time(auto, Method.AUTO, image, repeats);
+
+			System.out.format("%8d  %13.2fms  %20.2fms  %5.2fms  %5.2fms  %5.2fms (%s)\n", size, basic, fourier,
+					spatial, fft, autoTime, auto.getLastMethod());
+		}
+	}
+
+	private static double time(Object matcher, Method method, FImage image, int repeats) {
+		if (matcher instanceof AdaptiveTemplateMatcher)
+			((AdaptiveTemplateMatcher) matcher).setMethod(method);
+
+		// warm up, and fill any caches
+		analyse(matcher, image);
+
+		final Timer t = Timer.timer();
+		for (int i = 0; i < repeats; i++)
+			analyse(matcher, image);
+
+		return (double) t.duration() / repeats;
+	}
+
+	private static void analyse(Object matcher, FImage image) {
+		if (matcher instanceof TemplateMatcher)
+			((TemplateMatcher) matcher).analyseImage(image);
+		else if (matcher instanceof FourierTemplateMatcher)
+			((FourierTemplateMatcher) matcher).analyseImage(image);
+		else
+			((AdaptiveTemplateMatcher) matcher).analyseImage(image);
+	}
+}
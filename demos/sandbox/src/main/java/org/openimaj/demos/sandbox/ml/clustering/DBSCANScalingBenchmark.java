@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.demos.sandbox.ml.clustering;
+
+import java.util.Random;
+
+import org.openimaj.knn.DoubleNearestNeighbours;
+import org.openimaj.knn.DoubleNearestNeighboursExact;
+import org.openimaj.knn.DoubleNearestNeighboursExactKDTree;
+import org.openimaj.knn.DoubleNearestNeighboursGrid;
+import org.openimaj.knn.NearestNeighboursFactory;
+import org.openimaj.ml.clustering.dbscan.DoubleNNDBSCAN;
+
+/**
+ * Scaling benchmark of {@link DoubleNNDBSCAN} with region queries answered by
+ * a linear scan ({@link DoubleNearestNeighboursExact}), an exact KD-Tree
+ * ({@link DoubleNearestNeighboursExactKDTree}) and a uniform grid
+ * ({@link DoubleNearestNeighboursGrid}). The data is a set of 2D gaussian
+ * blobs (like clusters of geotagged photos) with uniform background noise;
+ * the number of points is doubled until the linear scan becomes too slow to
+ * be worth running.
+ * <p>
+ * Usage: DBSCANScalingBenchmark [maxPoints]
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class DBSCANScalingBenchmark {
+	private static final double EPS = 0.25; // squared distance
+	private static final int MIN_PTS = 5;
+	private static final int MAX_EXACT = 32000;
+
+	/**
+	 * Main method
+	 * 
+	 * @param args
+	 *            optionally the maximum number of points
+	 */
+	public static void main(String[] args) {
+		final int maxPoints = args.length > 0 ? Integer.parseInt(args[0]) : 512000;
+
+		// warm up
+		final double[][] warm = createData(4000, 0);
+		run(new DoubleNearestNeighboursExact.Factory(), warm);
+		run(new DoubleNearestNeighboursExactKDTree.Factory(), warm);
+		run(new DoubleNearestNeighboursGrid.Factory(Math.sqrt(EPS)), warm);
+
+		System.out.println("points     exact(ms)  kdtree(ms)  grid(ms)  clusters");
+		for (int n = 1000; n <= maxPoints; n *= 2) {
+			final double[][] data = createData(n, n);
+
+			final long exact = n <= MAX_EXACT ? run(new DoubleNearestNeighboursExact.Factory(), data) : -1;
+			final long kdtree = run(new DoubleNearestNeighboursExactKDTree.Factory(), data);
+			final long grid = run(new DoubleNearestNeighboursGrid.Factory(Math.sqrt(EPS)), data);
+			final int nClusters = new DoubleNNDBSCAN(EPS, MIN_PTS,
+					new DoubleNearestNeighboursGrid.Factory(Math.sqrt(EPS))).cluster(data).clusters().length;
+
+			System.out.format("%-10d %-10s %-11d %-9d %d\n", n, exact < 0 ? "-" : Long.toString(exact), kdtree, grid,
+					nClusters);
+		}
+	}
+
+	private static long run(NearestNeighboursFactory<? extends DoubleNearestNeighbours, double[]> factory,
+			double[][] data)
+	{
+		final DoubleNNDBSCAN dbscan = new DoubleNNDBSCAN(EPS, MIN_PTS, factory);
+
+		final long t0 = System.currentTimeMillis();
+		dbscan.cluster(data);
+		return System.currentTimeMillis() - t0;
+	}
+
+	private static double[][] createData(int n, long seed) {
+		final Random rng = new Random(seed);
+		final int nBlobs = Math.max(1, n / 500);
+		final double extent = Math.sqrt(n) * 2;
+
+		final double[][] centres = new double[nBlobs][2];
+		for (final double[] c : centres) {
+			c[0] = rng.nextDouble() * extent;
+			c[1] = rng.nextDouble() * extent;
+		}
+
+		final double[][] data = new double[n][2];
+		for (int i = 0; i < n; i++) {
+			if (rng.nextDouble() < 0.1) {
+				data[i][0] = rng.nextDouble() * extent;
+				data[i][1] = rng.nextDouble() * extent;
+			} else {
+				final double[] c = centres[rng.nextInt(nBlobs)];
+				data[i][0] = c[0] + rng.nextGaussian() * 2;
+				data[i][1] = c[1] + rng.nextGaussian() * 2;
+			}
+		}
+
+		return data;
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.demos.sandbox.ml.clustering;
+
+import java.util.Random;
+
+import org.openimaj.feature.IntFVComparison;
+import org.openimaj.knn.lsh.LSHNearestNeighbours;
+import org.openimaj.lsh.functions.IntGaussianFactory;
+import org.openimaj.ml.clustering.rac.IntRAC;
+import org.openimaj.util.comparator.DistanceComparator;
+import org.openimaj.util.hash.HashFunction;
+import org.openimaj.util.hash.HashFunctionFactory;
+import org.openimaj.util.hash.composition.SimpleComposition;
+
+import cern.jet.random.engine.MersenneTwister;
+
+/**
+ * Throughput benchmark of {@link IntRAC} as the size of the codebook grows.
+ * The data is a set of 128 dimensional SIFT-like byte vectors drawn around
+ * a large number of centres; the threshold is decreased to produce
+ * increasingly large codebooks. Each configuration is run with a linear scan
+ * in a single thread, a linear scan with the global thread pool, and with an
+ * LSH index suggesting candidate centroids.
+ * <p>
+ * Usage: RACThroughputBenchmark [nPoints]
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class RACThroughputBenchmark {
+	private static final int NDIMS = 128;
+
+	/**
+	 * Main method
+	 * 
+	 * @param args
+	 *            optionally the number of points
+	 */
+	public static void main(String[] args) {
+		final int nPoints = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+		final int[][] data = createData(nPoints, 0);
+
+		// warm up
+		final int[][] warm = createData(4000, 1);
+		run(warm, NDIMS * 40 * 40, false, false);
+		run(warm, NDIMS * 40 * 40, true, false);
+		run(warm, NDIMS * 40 * 40, true, true);
+
+		System.out.println("threshold  codebook  seq(pts/s)  par(pts/s)  par+lsh(pts/s)");
+		for (double threshold = NDIMS * 60 * 60; threshold >= NDIMS * 20 * 20; threshold *= 0.8) {
+			final IntRAC rac = new IntRAC(threshold);
+			final double seq = run(data, threshold, false, false);
+			final double par = run(data, threshold, true, false);
+			final double lsh = run(data, threshold, true, true);
+			rac.setThreadPool(null);
+			final int size = rac.cluster(data).numClusters();
+
+			System.out.format("%-10.0f %-9d %-11.0f %-11.0f %.0f\n", threshold, size, seq, par, lsh);
+		}
+	}
+
+	private static double run(int[][] data, double threshold, boolean parallel, boolean index) {
+		final IntRAC rac = new IntRAC(threshold);
+
+		if (!parallel)
+			rac.setThreadPool(null);
+		if (index)
+			rac.setIndex(createIndex(threshold));
+
+		final long t0 = System.nanoTime();
+		rac.cluster(data);
+		return data.length / ((System.nanoTime() - t0) / 1e9);
+	}
+
+	private static LSHNearestNeighbours<int[]> createIndex(double threshold) {
+		final IntGaussianFactory gauss = new IntGaussianFactory(NDIMS, new MersenneTwister(), Math.sqrt(threshold));
+		final HashFunctionFactory<int[]> factory = new HashFunctionFactory<int[]>() {
+			@Override
+			public HashFunction<int[]> create() {
+				return new SimpleComposition<int[]>(gauss, 4);
+			}
+		};
+
+		return new LSHNearestNeighbours<int[]>(factory, 8, new DistanceComparator<int[]>() {
+			@Override
+			public double compare(int[] o1, int[] o2) {
+				return IntFVComparison.EUCLIDEAN.compare(o1, o2);
+			}
+
+			@Override
+			public boolean isDistance() {
+				return true;
+			}
+		});
+	}
+
+	private static int[][] createData(int n, long seed) {
+		final Random rng = new Random(seed);
+		final int nCentres = Math.max(1, n / 20);
+
+		final int[][] centres = new int[nCentres][NDIMS];
+		for (final int[] c : centres)
+			for (int i = 0; i < NDIMS; i++)
+				c[i] = rng.nextInt(256);
+
+		final int[][] data = new int[n][NDIMS];
+		for (final int[] d : data) {
+			final int[] c = centres[rng.nextInt(nCentres)];
+			for (int i = 0; i < NDIMS; i++)
+				d[i] = Math.max(0, Math.min(255, c[i] + (int) (rng.nextGaussian() * 20)));
+		}
+
+		return data;
+	}
+}
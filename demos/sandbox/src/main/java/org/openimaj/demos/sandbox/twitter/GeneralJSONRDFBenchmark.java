@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2012, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.demos.sandbox.twitter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.List;
+
+import org.openimaj.rdf.serialize.StreamingRDFSerializer;
+import org.openimaj.time.Timer;
+import org.openimaj.twitter.GeneralJSONRDF;
+import org.openimaj.twitter.GeneralJSONTwitter;
+import org.openimaj.twitter.USMFStatus;
+import org.openimaj.twitter.collection.FileTwitterStatusList;
+import org.openimaj.twitter.collection.MemoryTwitterStatusList;
+import org.openrdf.rio.ntriples.NTriplesWriter;
+
+/**
+ * Throughput benchmark for producing RDF from tweets: compares the SPARQL
+ * update based {@link GeneralJSONRDF} conversion with streaming the statuses
+ * through a {@link StreamingRDFSerializer}. The output is discarded, so only
+ * the cost of producing the N-Triples is measured.
+ * <p>
+ * Usage: GeneralJSONRDFBenchmark tweets.json [repeats]
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class GeneralJSONRDFBenchmark {
+	private static final OutputStream NULL_OUTPUT = new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	};
+
+	/**
+	 * Main method
+	 *
+	 * @param args
+	 *            the file of twitter json and (optionally) the number of
+	 *            repeats
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		final List<USMFStatus> statuses = new MemoryTwitterStatusList<USMFStatus>(
+				FileTwitterStatusList.readUSMF(new File(args[0]), "UTF-8", GeneralJSONTwitter.class));
+		final int repeats = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		System.out.println("Read " + statuses.size() + " statuses");
+
+		for (int r = 0; r < repeats; r++) {
+			System.out.format("GeneralJSONRDF:         %10.1f statuses/s\n", generalJSONRDF(statuses));
+			System.out.format("StreamingRDFSerializer: %10.1f statuses/s\n", streaming(statuses));
+		}
+	}
+
+	private static double generalJSONRDF(List<USMFStatus> statuses) throws IOException {
+		final PrintWriter pw = new PrintWriter(new OutputStreamWriter(NULL_OUTPUT, "UTF-8"));
+
+		final Timer t = Timer.timer();
+		for (final USMFStatus status : statuses) {
+			final GeneralJSONRDF rdf = new GeneralJSONRDF();
+			rdf.fromUSMF(status);
+			rdf.writeASCII(pw);
+		}
+		pw.flush();
+
+		return statuses.size() * 1000.0 / Math.max(1, t.duration());
+	}
+
+	private static double streaming(List<USMFStatus> statuses) throws IOException {
+		final StreamingRDFSerializer serializer = new StreamingRDFSerializer(
+				new NTriplesWriter(new OutputStreamWriter(NULL_OUTPUT, "UTF-8")), true);
+
+		final Timer t = Timer.timer();
+		for (final USMFStatus status : statuses)
+			serializer.serialize(status, "http://www.trendminer.eu/tm/" + status.service + "/" + status.id);
+		serializer.close();
+
+		return statuses.size() * 1000.0 / Math.max(1, t.duration());
+	}
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.demos.sandbox.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openimaj.util.concurrent.ArrayBlockingDroppingQueue;
+import org.openimaj.util.concurrent.BlockingDroppingQueue;
+import org.openimaj.util.concurrent.RingBufferDroppingQueue;
+import org.openimaj.util.concurrent.RingBufferDroppingQueue.DropPolicy;
+
+/**
+ * Multi-producer throughput benchmark of {@link ArrayBlockingDroppingQueue}
+ * against {@link RingBufferDroppingQueue}. A number of producer threads offer
+ * items as fast as they can (as a firehose stream would) whilst a single
+ * consumer takes them, either one at a time or in batches. Reported are the
+ * offered and consumed rates and the fraction of items dropped.
+ * <p>
+ * Usage: DroppingQueueBenchmark [maxProducers] [itemsPerProducer] [capacity]
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class DroppingQueueBenchmark {
+	private static final Integer ITEM = 42;
+	private static final int BATCH = 64;
+
+	/**
+	 * Main method
+	 * 
+	 * @param args
+	 *            optionally the maximum number of producers, the number of
+	 *            items each producer offers, and the queue capacity
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		final int maxProducers = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		final int nItems = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+		final int capacity = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+
+		// warm up
+		for (int i = 0; i < 3; i++) {
+			run(new ArrayBlockingDroppingQueue<Integer>(capacity), 2, nItems / 10, false);
+			run(new RingBufferDroppingQueue<Integer>(capacity), 2, nItems / 10, false);
+			run(new RingBufferDroppingQueue<Integer>(capacity), 2, nItems / 10, true);
+		}
+
+		System.out.println("queue                       producers  offered/s    consumed/s   dropped");
+		for (int producers = 1; producers <= maxProducers; producers *= 2) {
+			report("ArrayBlockingDroppingQueue", producers,
+					run(new ArrayBlockingDroppingQueue<Integer>(capacity), producers, nItems, false));
+			for (final DropPolicy policy : DropPolicy.values()) {
+				report("Ring " + policy, producers,
+						run(new RingBufferDroppingQueue<Integer>(capacity, policy), producers, nItems, false));
+			}
+			report("Ring DROP_OLDEST (batched)", producers,
+					run(new RingBufferDroppingQueue<Integer>(capacity), producers, nItems, true));
+		}
+	}
+
+	private static void report(String name, int producers, double[] result) {
+		System.out.format("%-28s %9d  %11.0f  %11.0f  %6.1f%%\n", name, producers, result[0], result[1],
+				100 * result[2]);
+	}
+
+	/**
+	 * Run the producers and consumer; returns offered/s, consumed/s and the
+	 * fraction dropped.
+	 */
+	private static double[] run(final BlockingDroppingQueue<Integer> queue, final int producers, final int nItems,
+			final boolean batched) throws InterruptedException
+	{
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(producers);
+
+		for (int p = 0; p < producers; p++) {
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < nItems; i++)
+							queue.put(ITEM);
+					} catch (final InterruptedException e) {
+						// ignore
+					}
+					done.countDown();
+				}
+			}.start();
+		}
+
+		final long t0 = System.nanoTime();
+		start.countDown();
+
+		long consumed = 0;
+		final List<Integer> batch = new ArrayList<Integer>(BATCH);
+		while (done.getCount() > 0 || !queue.isEmpty()) {
+			if (batched) {
+				batch.clear();
+				consumed += ((RingBufferDroppingQueue<Integer>) queue).drainTo(batch, BATCH, 1, TimeUnit.MILLISECONDS);
+			} else if (queue.poll(1, TimeUnit.MILLISECONDS) != null) {
+				consumed++;
+			}
+		}
+
+		final double seconds = (System.nanoTime() - t0) / 1e9;
+		final double offered = (double) producers * nItems;
+		return new double[] { offered / seconds, consumed / seconds, 1 - consumed / offered };
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2012, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.demos.sandbox.video;
+
+import org.openimaj.image.MBFImage;
+import org.openimaj.image.processing.face.tracking.clm.CLMFaceTracker;
+import org.openimaj.time.Timer;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.video.xuggle.XuggleVideo;
+
+/**
+ * Measures the frame rate of the {@link CLMFaceTracker} on a recorded video,
+ * with the patch responses of the landmarks computed sequentially and in
+ * parallel.
+ * <p>
+ * Usage: CLMTrackerBenchmark video-file [maxFrames]
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class CLMTrackerBenchmark {
+	/**
+	 * Main method
+	 *
+	 * @param args
+	 *            the video file and optionally the maximum number of frames
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("Usage: CLMTrackerBenchmark video-file [maxFrames]");
+			return;
+		}
+
+		final int maxFrames = args.length > 1 ? Integer.parseInt(args[1]) : Integer.MAX_VALUE;
+
+		// warm up
+		run(args[0], Math.min(maxFrames, 50), true);
+
+		final double sequential = run(args[0], maxFrames, false);
+		final double parallel = run(args[0], maxFrames, true);
+
+		System.out.format("sequential: %.2f fps\n", sequential);
+		System.out.format("parallel:   %.2f fps (%d threads)\n", parallel,
+				GlobalExecutorPool.getPool().getMaximumPoolSize());
+	}
+
+	private static double run(String file, int maxFrames, boolean parallel) {
+		final XuggleVideo video = new XuggleVideo(file);
+		final CLMFaceTracker tracker = new CLMFaceTracker();
+
+		if (!parallel)
+			tracker.getInitialVars().clm.setThreadPool(null);
+
+		int frames = 0;
+		long time = 0;
+		for (final MBFImage frame : video) {
+			if (frames >= maxFrames)
+				break;
+
+			final Timer t = Timer.timer();
+			tracker.track(frame);
+			time += t.duration();
+			frames++;
+		}
+		video.close();
+
+		return frames / (time / 1000.0);
+	}
+}
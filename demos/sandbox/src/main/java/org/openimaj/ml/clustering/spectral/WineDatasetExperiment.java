@@ -49,6 +49,7 @@ import org.openimaj.ml.dataset.WineDataset;
 import org.openimaj.util.function.Function;
 import org.openimaj.util.pair.DoubleObjectPair;
 
+import ch.akuhn.matrix.Matrix;
 import ch.akuhn.matrix.SparseMatrix;
 import ch.akuhn.matrix.Vector;
 import ch.akuhn.matrix.eigenvalues.AllEigenvalues;
@@ -101,7 +102,7 @@ public class WineDatasetExperiment {
 		conf.eigenChooser = new EigenChooser() {
 			
 			@Override
-			public Eigenvalues prepare(SparseMatrix laplacian) {
+			public Eigenvalues prepare(Matrix laplacian) {
 				Eigenvalues eig = new AllEigenvalues(laplacian);
 				return eig;
 			}
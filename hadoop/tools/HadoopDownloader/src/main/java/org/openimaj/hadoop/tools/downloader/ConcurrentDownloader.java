@@ -0,0 +1,406 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.tools.downloader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.apache.log4j.Logger;
+import org.openimaj.io.HttpUtils;
+import org.openimaj.util.parallel.GlobalExecutorPool.DaemonThreadFactory;
+
+/**
+ * A downloader that keeps a number of requests in flight at once. Records
+ * (a key together with a list of candidate {@link URL}s, the first of which
+ * that can be successfully downloaded is used) are submitted with
+ * {@link #submit(Object, List)}, which blocks whilst the maximum number of
+ * records are being downloaded, and the {@link Result}s are retrieved in
+ * completion order with {@link #poll()} or {@link #take()}. Results of
+ * completed records are queued until they are retrieved.
+ * <p>
+ * Connections are pooled and kept alive between requests to the same host,
+ * and the number of concurrent connections to each host is limited. An
+ * optional politeness delay sets the minimum time between the starts of
+ * requests to the same host. Requests that fail with an I/O error (including
+ * timeouts), a 5xx or a 429 response are retried with exponential backoff;
+ * other non-2xx responses are treated as missing content and the next
+ * candidate URL is tried.
+ * <p>
+ * Submission and retrieval of results should be performed by a single thread.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <K>
+ *            type of the record keys
+ */
+public class ConcurrentDownloader<K> implements Closeable {
+	private static Logger logger = Logger.getLogger(ConcurrentDownloader.class);
+
+	/**
+	 * The result of downloading a record
+	 *
+	 * @param <K>
+	 *            type of the record key
+	 */
+	public static class Result<K> {
+		/**
+		 * The record key
+		 */
+		public final K key;
+
+		/**
+		 * The URL that was successfully downloaded, or null if all the
+		 * candidates failed
+		 */
+		public final URL url;
+
+		/**
+		 * The downloaded data, or null if all the candidates failed
+		 */
+		public final byte[] data;
+
+		/**
+		 * The total time taken for the record in milliseconds, including
+		 * retries and politeness delays
+		 */
+		public final long latency;
+
+		/**
+		 * The number of retries that were made
+		 */
+		public final int retries;
+
+		Result(K key, URL url, byte[] data, long latency, int retries) {
+			this.key = key;
+			this.url = url;
+			this.data = data;
+			this.latency = latency;
+			this.retries = retries;
+		}
+
+		/**
+		 * @return true if one of the candidate URLs was downloaded
+		 */
+		public boolean isSuccessful() {
+			return data != null;
+		}
+	}
+
+	/**
+	 * An error that is worth retrying
+	 */
+	private static class TransientHttpException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		TransientHttpException(String message) {
+			super(message);
+		}
+	}
+
+	private final CloseableHttpClient client;
+	private final ExecutorService workers;
+	private final CompletionService<Result<K>> completion;
+	private final Semaphore permits;
+	private final Map<String, Long> nextRequestTime = new HashMap<String, Long>();
+	private final long politenessDelay;
+	private final int maxRetries;
+	private final long backoff;
+	private int pending = 0;
+
+	/**
+	 * Construct the downloader.
+	 *
+	 * @param maxInFlight
+	 *            the maximum number of records being downloaded at once
+	 * @param maxPerHost
+	 *            the maximum number of concurrent connections to a single
+	 *            host
+	 * @param politenessDelay
+	 *            the minimum time in milliseconds between the starts of
+	 *            requests to the same host; 0 for no delay
+	 * @param timeout
+	 *            the connect and read timeouts in milliseconds
+	 * @param maxRetries
+	 *            the number of times to retry a URL after a transient failure
+	 * @param backoff
+	 *            the delay in milliseconds before the first retry; the delay
+	 *            doubles on each subsequent retry
+	 * @param followRedirects
+	 *            should redirects (including meta-refresh redirects) be
+	 *            followed?
+	 */
+	public ConcurrentDownloader(int maxInFlight, int maxPerHost, long politenessDelay, int timeout, int maxRetries,
+			long backoff, boolean followRedirects)
+	{
+		this.politenessDelay = politenessDelay;
+		this.maxRetries = maxRetries;
+		this.backoff = backoff;
+
+		final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(maxInFlight);
+		connectionManager.setDefaultMaxPerRoute(maxPerHost);
+
+		final RequestConfig config = RequestConfig.custom()
+				.setConnectTimeout(timeout)
+				.setSocketTimeout(timeout)
+				.setRedirectsEnabled(followRedirects)
+				.build();
+
+		final HttpClientBuilder builder = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(config)
+				.setUserAgent(HttpUtils.DEFAULT_USERAGENT)
+				.disableAutomaticRetries();
+
+		if (followRedirects)
+			builder.setRedirectStrategy(new HttpUtils.MetaRefreshRedirectStrategy());
+		else
+			builder.disableRedirectHandling();
+
+		client = builder.build();
+
+		workers = Executors.newFixedThreadPool(maxInFlight, new DaemonThreadFactory());
+		completion = new ExecutorCompletionService<Result<K>>(workers);
+		permits = new Semaphore(maxInFlight);
+	}
+
+	/**
+	 * Submit a record for downloading. Blocks until one of the downloads
+	 * finishes if the maximum number of records are already being downloaded.
+	 * Completed records don't count towards the maximum, so this doesn't
+	 * depend on results being retrieved by the calling thread.
+	 *
+	 * @param key
+	 *            the record key
+	 * @param urls
+	 *            the candidate URLs, in order of preference
+	 * @throws InterruptedException
+	 *             if interrupted whilst waiting
+	 */
+	public void submit(final K key, final List<URL> urls) throws InterruptedException {
+		permits.acquire();
+		pending++;
+
+		completion.submit(new Callable<Result<K>>() {
+			@Override
+			public Result<K> call() {
+				try {
+					return download(key, urls);
+				} finally {
+					permits.release();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Get the next completed result if there is one.
+	 *
+	 * @return the next completed result, or null if none are currently
+	 *         available
+	 */
+	public Result<K> poll() {
+		return retrieve(completion.poll());
+	}
+
+	/**
+	 * Wait for the next completed result.
+	 *
+	 * @return the next completed result, or null if there are no records in
+	 *         flight
+	 * @throws InterruptedException
+	 *             if interrupted whilst waiting
+	 */
+	public Result<K> take() throws InterruptedException {
+		if (pending == 0)
+			return null;
+
+		return retrieve(completion.take());
+	}
+
+	/**
+	 * @return the number of records that have been submitted but whose results
+	 *         have not yet been retrieved
+	 */
+	public int getPending() {
+		return pending;
+	}
+
+	private Result<K> retrieve(Future<Result<K>> future) {
+		if (future == null)
+			return null;
+
+		pending--;
+
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			// the future is complete, so this can't happen
+			throw new RuntimeException(e);
+		} catch (final ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	private Result<K> download(K key, List<URL> urls) {
+		final long start = System.currentTimeMillis();
+		int retries = 0;
+
+		for (final URL url : urls) {
+			for (int attempt = 0;; attempt++) {
+				try {
+					final byte[] data = fetch(url);
+
+					if (data != null)
+						return new Result<K>(key, url, data, System.currentTimeMillis() - start, retries);
+
+					break;
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return new Result<K>(key, null, null, System.currentTimeMillis() - start, retries);
+				} catch (final UnknownHostException e) {
+					logger.trace(e);
+					break;
+				} catch (final IOException e) {
+					logger.trace(e);
+
+					if (attempt >= maxRetries)
+						break;
+
+					retries++;
+					try {
+						Thread.sleep(backoff << attempt);
+					} catch (final InterruptedException ie) {
+						Thread.currentThread().interrupt();
+						return new Result<K>(key, null, null, System.currentTimeMillis() - start, retries);
+					}
+				}
+			}
+
+			logger.trace("Not found; trying next");
+		}
+
+		return new Result<K>(key, null, null, System.currentTimeMillis() - start, retries);
+	}
+
+	private byte[] fetch(URL url) throws IOException, InterruptedException {
+		final HttpGet get;
+		try {
+			get = new HttpGet(url.toURI());
+		} catch (final URISyntaxException e) {
+			// not worth retrying
+			logger.trace(e);
+			return null;
+		}
+
+		waitForHost(url.getHost());
+
+		final CloseableHttpResponse response = client.execute(get);
+		try {
+			final int status = response.getStatusLine().getStatusCode();
+			final HttpEntity entity = response.getEntity();
+
+			if (status < 200 || status >= 300) {
+				// consume the content so the connection can be reused
+				EntityUtils.consume(entity);
+
+				if (status >= 500 || status == 429)
+					throw new TransientHttpException("HTTP " + status + " for " + url);
+
+				return null;
+			}
+
+			if (entity == null)
+				return null;
+
+			return EntityUtils.toByteArray(entity);
+		} finally {
+			response.close();
+		}
+	}
+
+	private void waitForHost(String host) throws InterruptedException {
+		if (politenessDelay <= 0)
+			return;
+
+		final long wait;
+		synchronized (nextRequestTime) {
+			final long now = System.currentTimeMillis();
+			final Long next = nextRequestTime.get(host);
+			final long slot = next == null ? now : Math.max(now, next);
+
+			nextRequestTime.put(host, slot + politenessDelay);
+			wait = slot - now;
+		}
+
+		if (wait > 0)
+			Thread.sleep(wait);
+	}
+
+	/**
+	 * Shutdown the downloader, waiting for any in-flight requests to complete
+	 * and closing all pooled connections.
+	 */
+	@Override
+	public void close() throws IOException {
+		workers.shutdown();
+		try {
+			workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		client.close();
+	}
+}
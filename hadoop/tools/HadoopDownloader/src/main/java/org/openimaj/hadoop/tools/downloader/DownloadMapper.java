@@ -41,6 +41,7 @@ import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.log4j.Logger;
+import org.openimaj.hadoop.tools.downloader.ConcurrentDownloader.Result;
 import org.openimaj.hadoop.tools.downloader.InputMode.Parser;
 import org.openimaj.io.HttpUtils;
 import org.openimaj.util.pair.IndependentPair;
@@ -58,11 +59,20 @@ public class DownloadMapper extends Mapper<LongWritable, Text, Text, BytesWritab
 	private long sleep;
 	private boolean followRedirects;
 	private static FSDataOutputStream failureWriter = null;
+	private ConcurrentDownloader<IndependentPair<String, String>> downloader;
 
 	protected enum Counters {
 		DOWNLOADED,
 		FAILED,
-		PARSE_ERROR
+		PARSE_ERROR,
+		BYTES,
+		RETRIES,
+		TOTAL_LATENCY_MS,
+		LATENCY_UNDER_100MS,
+		LATENCY_UNDER_500MS,
+		LATENCY_UNDER_1S,
+		LATENCY_UNDER_5S,
+		LATENCY_OVER_5S
 	}
 
 	@Override
@@ -75,6 +85,12 @@ public class DownloadMapper extends Mapper<LongWritable, Text, Text, BytesWritab
 		sleep = options.getSleep();
 		followRedirects = options.followRedirects();
 
+		if (options.getMaxInFlight() > 0) {
+			downloader = new ConcurrentDownloader<IndependentPair<String, String>>(options.getMaxInFlight(),
+					options.getMaxPerHost(), sleep, options.getTimeout(), options.getRetries(),
+					options.getRetryBackoff(), followRedirects);
+		}
+
 		synchronized (DownloadMapper.class) {
 			if (options.writeFailures() && failureWriter != null) {
 				final String[] taskId = context.getConfiguration().get("mapred.task.id").split("_");
@@ -87,6 +103,15 @@ public class DownloadMapper extends Mapper<LongWritable, Text, Text, BytesWritab
 
 	@Override
 	protected void cleanup(Context context) throws IOException, InterruptedException {
+		if (downloader != null) {
+			Result<IndependentPair<String, String>> result;
+			while ((result = downloader.take()) != null)
+				handleResult(result, context);
+
+			downloader.close();
+			downloader = null;
+		}
+
 		if (failureWriter != null) {
 			failureWriter.close();
 			failureWriter = null;
@@ -96,7 +121,12 @@ public class DownloadMapper extends Mapper<LongWritable, Text, Text, BytesWritab
 	}
 
 	@Override
-	public void map(LongWritable index, Text urlLine, Context context) {
+	public void map(LongWritable index, Text urlLine, Context context) throws IOException, InterruptedException {
+		if (downloader != null) {
+			mapAsync(urlLine, context);
+			return;
+		}
+
 		logger.info("Attempting to download: " + urlLine);
 
 		try {
@@ -144,6 +174,62 @@ public class DownloadMapper extends Mapper<LongWritable, Text, Text, BytesWritab
 		}
 	}
 
+	private void mapAsync(Text urlLine, Context context) throws IOException, InterruptedException {
+		final String line = urlLine.toString();
+
+		try {
+			final IndependentPair<String, List<URL>> urlData = parser.parse(line);
+
+			if (urlData == null) {
+				logger.trace("parser returned null; record skipped.");
+			} else {
+				logger.trace("Queueing: " + line);
+				downloader.submit(IndependentPair.pair(urlData.firstObject(), line), urlData.secondObject());
+			}
+		} catch (final InterruptedException e) {
+			throw e;
+		} catch (final Exception e) {
+			logger.info("Error parsing: " + urlLine);
+			logger.trace(e);
+			context.getCounter(Counters.PARSE_ERROR).increment(1);
+			writeFailure(urlLine, context);
+		}
+
+		// write out anything that has completed
+		Result<IndependentPair<String, String>> result;
+		while ((result = downloader.poll()) != null)
+			handleResult(result, context);
+	}
+
+	private void handleResult(Result<IndependentPair<String, String>> result, Context context) throws IOException,
+			InterruptedException
+	{
+		if (result.isSuccessful()) {
+			logger.info("Dowloaded: " + result.url);
+			context.write(new Text(result.key.firstObject()), new BytesWritable(result.data));
+			context.getCounter(Counters.DOWNLOADED).increment(1);
+			context.getCounter(Counters.BYTES).increment(result.data.length);
+		} else {
+			logger.info("Failed to download: " + result.key.secondObject());
+			context.getCounter(Counters.FAILED).increment(1);
+			writeFailure(new Text(result.key.secondObject()), context);
+		}
+
+		context.getCounter(Counters.RETRIES).increment(result.retries);
+		context.getCounter(Counters.TOTAL_LATENCY_MS).increment(result.latency);
+
+		if (result.latency < 100)
+			context.getCounter(Counters.LATENCY_UNDER_100MS).increment(1);
+		else if (result.latency < 500)
+			context.getCounter(Counters.LATENCY_UNDER_500MS).increment(1);
+		else if (result.latency < 1000)
+			context.getCounter(Counters.LATENCY_UNDER_1S).increment(1);
+		else if (result.latency < 5000)
+			context.getCounter(Counters.LATENCY_UNDER_5S).increment(1);
+		else
+			context.getCounter(Counters.LATENCY_OVER_5S).increment(1);
+	}
+
 	private synchronized static void writeFailure(Text urlLine, Context context) {
 		if (failureWriter != null) {
 			try {
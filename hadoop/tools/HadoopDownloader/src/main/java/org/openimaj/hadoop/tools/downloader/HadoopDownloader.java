@@ -66,7 +66,7 @@ public class HadoopDownloader extends Configured implements Tool {
 		job.setOutputKeyClass(Text.class);
 		job.setOutputValueClass(BytesWritable.class);
 
-		if (options.getNumberOfThreads() <= 1) {
+		if (options.getNumberOfThreads() <= 1 || options.getMaxInFlight() > 0) {
 			job.setMapperClass(DownloadMapper.class);
 		} else {
 			job.setMapperClass(MultithreadedMapper.class);
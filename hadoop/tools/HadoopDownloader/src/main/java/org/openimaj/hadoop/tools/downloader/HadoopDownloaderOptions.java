@@ -96,6 +96,47 @@ public class HadoopDownloaderOptions {
 			metaVar = "LONG")
 	private long sleep = 0;
 
+	@Option(
+			name = "--max-in-flight",
+			aliases = "-mif",
+			required = false,
+			usage = "Maximum number of concurrent downloads per mapper. If > 0, downloads are performed asynchronously "
+					+ "and the sleep time is used as the minimum delay between requests to the same host.",
+			metaVar = "INT")
+	private int maxInFlight = 0;
+
+	@Option(
+			name = "--max-per-host",
+			aliases = "-mph",
+			required = false,
+			usage = "Maximum number of concurrent connections to a single host when downloading asynchronously.",
+			metaVar = "INT")
+	private int maxPerHost = 2;
+
+	@Option(
+			name = "--timeout",
+			aliases = "-to",
+			required = false,
+			usage = "Connect and read timeout in milliseconds when downloading asynchronously.",
+			metaVar = "INT")
+	private int timeout = 15000;
+
+	@Option(
+			name = "--retries",
+			aliases = "-r",
+			required = false,
+			usage = "Number of times to retry a URL after a transient failure when downloading asynchronously.",
+			metaVar = "INT")
+	private int retries = 2;
+
+	@Option(
+			name = "--retry-backoff",
+			aliases = "-rb",
+			required = false,
+			usage = "Time in milliseconds to wait before the first retry; doubles with each subsequent retry.",
+			metaVar = "LONG")
+	private long retryBackoff = 1000;
+
 	@Option(name = "--follow-redirects", aliases = "-f", usage = "Follow URL redirections", required = false)
 	private boolean followRedirects = false;
 
@@ -185,6 +226,42 @@ public class HadoopDownloaderOptions {
 		return sleep;
 	}
 
+	/**
+	 * @return the maximum number of concurrent downloads per mapper; if 0
+	 *         downloads are performed synchronously
+	 */
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * @return the maximum number of concurrent connections to a single host
+	 */
+	public int getMaxPerHost() {
+		return maxPerHost;
+	}
+
+	/**
+	 * @return the connect and read timeout in milliseconds
+	 */
+	public int getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * @return the number of times to retry a URL after a transient failure
+	 */
+	public int getRetries() {
+		return retries;
+	}
+
+	/**
+	 * @return the time in milliseconds to wait before the first retry
+	 */
+	public long getRetryBackoff() {
+		return retryBackoff;
+	}
+
 	/**
 	 * @return true if redirects should be followed; false otherwise
 	 */
@@ -0,0 +1,271 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.tools.downloader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.hadoop.tools.downloader.ConcurrentDownloader.Result;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests for the {@link ConcurrentDownloader} against a local HTTP server.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ConcurrentDownloaderTest {
+	private HttpServer server;
+	private String base;
+	private final AtomicInteger flakyRequests = new AtomicInteger();
+
+	/**
+	 * Start the server
+	 *
+	 * @throws IOException
+	 */
+	@Before
+	public void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/data", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				final String path = exchange.getRequestURI().getPath();
+				final int delay = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+
+				try {
+					Thread.sleep(delay);
+				} catch (final InterruptedException e) {
+				}
+
+				respond(exchange, 200, path.getBytes("UTF-8"));
+			}
+		});
+		server.createContext("/missing", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, 404, "not found".getBytes("UTF-8"));
+			}
+		});
+		server.createContext("/flaky", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				if (flakyRequests.getAndIncrement() < 2)
+					respond(exchange, 503, "busy".getBytes("UTF-8"));
+				else
+					respond(exchange, 200, "ok".getBytes("UTF-8"));
+			}
+		});
+		server.setExecutor(java.util.concurrent.Executors.newFixedThreadPool(8));
+		server.start();
+
+		base = "http://localhost:" + server.getAddress().getPort();
+	}
+
+	private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+		exchange.sendResponseHeaders(status, body.length);
+		final OutputStream os = exchange.getResponseBody();
+		os.write(body);
+		os.close();
+	}
+
+	/**
+	 * Stop the server
+	 */
+	@After
+	public void teardown() {
+		server.stop(0);
+	}
+
+	/**
+	 * Test that records are downloaded concurrently and returned in completion
+	 * order
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testConcurrentCompletionOrder() throws Exception {
+		final ConcurrentDownloader<String> downloader = new ConcurrentDownloader<String>(4, 4, 0, 5000, 0, 0, false);
+
+		final long start = System.currentTimeMillis();
+		downloader.submit("slow", Arrays.asList(new URL(base + "/data/400")));
+		downloader.submit("medium", Arrays.asList(new URL(base + "/data/200")));
+		downloader.submit("fast", Arrays.asList(new URL(base + "/data/0")));
+
+		assertEquals("fast", downloader.take().key);
+		assertEquals("medium", downloader.take().key);
+
+		final Result<String> last = downloader.take();
+		assertEquals("slow", last.key);
+		assertArrayEquals("/data/400".getBytes("UTF-8"), last.data);
+		assertNull(downloader.take());
+
+		// all three were in flight at once
+		assertTrue(System.currentTimeMillis() - start < 550);
+
+		downloader.close();
+	}
+
+	/**
+	 * Test that missing content falls back to the next candidate URL, and that
+	 * a record with no valid candidates fails
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFallbackAndFailure() throws Exception {
+		final ConcurrentDownloader<String> downloader = new ConcurrentDownloader<String>(2, 2, 0, 5000, 2, 10, false);
+
+		downloader.submit("fallback", Arrays.asList(new URL(base + "/missing"), new URL(base + "/data/0")));
+		Result<String> result = downloader.take();
+		assertTrue(result.isSuccessful());
+		assertEquals(new URL(base + "/data/0"), result.url);
+		assertEquals(0, result.retries);
+
+		downloader.submit("failed", Arrays.asList(new URL(base + "/missing")));
+		result = downloader.take();
+		assertFalse(result.isSuccessful());
+		assertNull(result.data);
+
+		downloader.close();
+	}
+
+	/**
+	 * Test that transient errors are retried
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testRetry() throws Exception {
+		final ConcurrentDownloader<String> downloader = new ConcurrentDownloader<String>(2, 2, 0, 5000, 3, 10, false);
+
+		downloader.submit("flaky", Arrays.asList(new URL(base + "/flaky")));
+		final Result<String> result = downloader.take();
+
+		assertTrue(result.isSuccessful());
+		assertArrayEquals("ok".getBytes("UTF-8"), result.data);
+		assertEquals(2, result.retries);
+
+		downloader.close();
+	}
+
+	/**
+	 * Test that the politeness delay spaces out requests to the same host
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testPoliteness() throws Exception {
+		final ConcurrentDownloader<Integer> downloader = new ConcurrentDownloader<Integer>(4, 4, 100, 5000, 0, 0, false);
+
+		final long start = System.currentTimeMillis();
+		for (int i = 0; i < 4; i++)
+			downloader.submit(i, Arrays.asList(new URL(base + "/data/0")));
+
+		int count = 0;
+		Result<Integer> result;
+		while ((result = downloader.take()) != null) {
+			assertTrue(result.isSuccessful());
+			count++;
+		}
+
+		assertEquals(4, count);
+		// the fourth request can't start until 300ms after the first
+		assertTrue(System.currentTimeMillis() - start >= 300);
+
+		downloader.close();
+	}
+
+	/**
+	 * Test that many more records than the in-flight limit can be submitted
+	 * from the thread that retrieves the results (as the DownloadMapper does)
+	 * without waiting for the results to be retrieved first
+	 *
+	 * @throws Exception
+	 */
+	@Test(timeout = 20000)
+	public void testSubmitMoreThanMaxInFlight() throws Exception {
+		final int maxInFlight = 3;
+		final int nrecords = 4 * maxInFlight;
+		final ConcurrentDownloader<Integer> downloader = new ConcurrentDownloader<Integer>(maxInFlight, maxInFlight, 0,
+				5000, 0, 0, false);
+
+		// submit everything before retrieving anything
+		final long start = System.currentTimeMillis();
+		for (int i = 0; i < nrecords; i++)
+			downloader.submit(i, Arrays.asList(new URL(base + "/data/100")));
+		assertEquals(nrecords, downloader.getPending());
+
+		// at most maxInFlight downloads ran at once
+		assertTrue(System.currentTimeMillis() - start >= 100 * (nrecords / maxInFlight - 1));
+
+		final boolean[] seen = new boolean[nrecords];
+		Result<Integer> result;
+		while ((result = downloader.take()) != null) {
+			assertTrue(result.isSuccessful());
+			assertFalse(seen[result.key]);
+			seen[result.key] = true;
+		}
+
+		for (final boolean s : seen)
+			assertTrue(s);
+		assertEquals(0, downloader.getPending());
+
+		// interleave submission with polling, like DownloadMapper.mapAsync
+		int count = 0;
+		for (int i = 0; i < nrecords; i++) {
+			downloader.submit(i, Arrays.asList(new URL(base + "/data/50")));
+
+			while (downloader.poll() != null)
+				count++;
+		}
+		while (downloader.take() != null)
+			count++;
+
+		assertEquals(nrecords, count);
+
+		downloader.close();
+	}
+}
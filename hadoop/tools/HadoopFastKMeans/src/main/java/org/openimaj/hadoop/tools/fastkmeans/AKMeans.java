@@ -37,6 +37,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -45,6 +47,7 @@ import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.map.MultithreadedMapper;
 import org.openimaj.hadoop.sequencefile.ExtractionState;
 import org.openimaj.hadoop.sequencefile.KeyValueDump;
 import org.openimaj.hadoop.sequencefile.NamingStrategy;
@@ -55,7 +58,11 @@ import org.openimaj.ml.clustering.assignment.HardAssigner;
 import org.openimaj.ml.clustering.assignment.hard.ExactByteAssigner;
 import org.openimaj.ml.clustering.assignment.hard.KDTreeByteEuclideanAssigner;
 import org.openimaj.ml.clustering.kmeans.ByteKMeans;
+import org.openimaj.util.function.Operation;
 import org.openimaj.util.pair.IntFloatPair;
+import org.openimaj.util.parallel.GlobalExecutorPool.DaemonThreadFactory;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 /**
  * Approximate KMeans mapreduce implementation
@@ -91,11 +98,13 @@ public class AKMeans {
 	 */
 	public static class Map extends Mapper<Text, BytesWritable, IntWritable, BytesWritable> {
 		private static Path centroidsPath = null;
-		private static int k = -1;
-		private static HardAssigner<byte[], float[], IntFloatPair> assigner = null;
-		private static double randomFallbackChance;
+		protected static int k = -1;
+		protected static HardAssigner<byte[], float[], IntFloatPair> assigner = null;
+		protected static double randomFallbackChance;
 		private static boolean exact;
 
+		protected final Random random = new Random();
+
 		@Override
 		protected void setup(Mapper<Text, BytesWritable, IntWritable, BytesWritable>.Context context) throws IOException,
 		InterruptedException
@@ -144,12 +153,130 @@ public class AKMeans {
 
 			context.write(new IntWritable(cluster), new BytesWritable(points));
 
-			if (new Random().nextDouble() < randomFallbackChance) {
+			if (random.nextDouble() < randomFallbackChance) {
 				context.write(new IntWritable(k + 1), new BytesWritable(points));
 			}
 		}
 	}
 
+	/**
+	 * A map for approximate kmeans that aggregates in the mapper. Rather than
+	 * emitting every feature keyed by its centroid (and relying on the
+	 * {@link Combine} to sum them after they have been spilled), the sum and
+	 * count of the features assigned to each centroid are accumulated over the
+	 * whole map task and only the partial sums are emitted in the cleanup, in
+	 * the same format as the {@link Combine} produces. Features are buffered
+	 * and assigned in batches using multiple threads, so this mapper should
+	 * not be wrapped in a {@link MultithreadedMapper}.
+	 * <p>
+	 * The sums for a centroid are only allocated when the first feature is
+	 * assigned to it, so the memory required is proportional to the number of
+	 * centroids that the features of a single map task hit.
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class AggregatingMap extends Map {
+		/**
+		 * Config option for the number of threads used for assignment
+		 */
+		public static final String THREADS = "uk.ac.soton.ecs.jsh2.clusterquantiser.AggregatingMapThreads";
+
+		private static final int BATCH_SIZE = 10000;
+
+		private ThreadPoolExecutor pool;
+		private byte[][] batch;
+		private int batchCount;
+		private int[] assignments;
+		private int[][] sums;
+		private int[] counts;
+
+		@Override
+		protected void setup(Mapper<Text, BytesWritable, IntWritable, BytesWritable>.Context context)
+				throws IOException, InterruptedException
+		{
+			super.setup(context);
+
+			final int threads = context.getConfiguration().getInt(THREADS, Runtime.getRuntime().availableProcessors());
+			pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(threads, new DaemonThreadFactory());
+
+			batch = new byte[BATCH_SIZE][];
+			assignments = new int[BATCH_SIZE];
+			batchCount = 0;
+			sums = new int[k][];
+			counts = new int[k];
+		}
+
+		@Override
+		public void map(Text key, BytesWritable value, Context context) throws IOException, InterruptedException {
+			final byte[] points = new byte[value.getLength()];
+			System.arraycopy(value.getBytes(), 0, points, 0, points.length);
+
+			batch[batchCount++] = points;
+			if (batchCount == BATCH_SIZE)
+				flush();
+
+			if (random.nextDouble() < randomFallbackChance) {
+				context.write(new IntWritable(k + 1), new BytesWritable(points));
+			}
+		}
+
+		private void flush() throws IOException {
+			final int n = batchCount;
+
+			Parallel.forRange(0, n, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					final byte[][] chunk = new byte[range.stop - range.start][];
+					System.arraycopy(batch, range.start, chunk, 0, chunk.length);
+
+					final int[] chunkAssignments = assigner.assign(chunk);
+					System.arraycopy(chunkAssignments, 0, assignments, range.start, chunk.length);
+				}
+			}, pool);
+
+			for (int i = 0; i < n; i++) {
+				final int cluster = assignments[i];
+
+				if (sums[cluster] == null)
+					sums[cluster] = new int[batch[i].length];
+
+				counts[cluster] += accumulateFromFeature(sums[cluster], batch[i]);
+				batch[i] = null;
+			}
+
+			batchCount = 0;
+		}
+
+		@Override
+		protected void cleanup(Mapper<Text, BytesWritable, IntWritable, BytesWritable>.Context context)
+				throws IOException, InterruptedException
+		{
+			try {
+				if (batchCount > 0)
+					flush();
+
+				final IntWritable outKey = new IntWritable();
+				for (int i = 0; i < k; i++) {
+					if (counts[i] == 0)
+						continue;
+
+					final ByteArrayOutputStream bos = new ByteArrayOutputStream(4 * (sums[i].length + 1));
+					final DataOutputStream dos = new DataOutputStream(bos);
+					dos.writeInt(counts[i]);
+					for (final int v : sums[i]) {
+						dos.writeInt(v);
+					}
+
+					outKey.set(i);
+					context.write(outKey, new BytesWritable(bos.toByteArray()));
+					sums[i] = null;
+				}
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+
 	private static int accumulateFromFeature(int[] sum, byte[] assigned) throws IOException {
 		if (assigned.length != sum.length)
 			throw new IOException("Inconsistency in sum and feature length");
@@ -129,9 +129,14 @@ public class HadoopFastKMeans extends Configured implements Tool {
 			final Job job = TextBytesJobUtil.createJob(new Path(selected), new Path(newOutPath),
 					new HashMap<String, String>(), this.getConf());
 			job.setJarByClass(this.getClass());
-			job.setMapperClass(MultithreadedMapper.class);
-			MultithreadedMapper.setNumberOfThreads(job, options.concurrency);
-			MultithreadedMapper.setMapperClass(job, AKMeans.Map.class);
+			if (options.inMapperAggregation) {
+				job.setMapperClass(AKMeans.AggregatingMap.class);
+				job.getConfiguration().setInt(AKMeans.AggregatingMap.THREADS, options.concurrency);
+			} else {
+				job.setMapperClass(MultithreadedMapper.class);
+				MultithreadedMapper.setNumberOfThreads(job, options.concurrency);
+				MultithreadedMapper.setMapperClass(job, AKMeans.Map.class);
+			}
 
 			job.setCombinerClass(AKMeans.Combine.class);
 			job.setReducerClass(AKMeans.Reduce.class);
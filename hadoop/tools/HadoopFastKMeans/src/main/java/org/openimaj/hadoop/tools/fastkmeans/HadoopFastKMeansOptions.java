@@ -91,6 +91,13 @@ public class HadoopFastKMeansOptions {
 			usage = "How many times should the Kmeans iterate")
 	public int iter = 3;
 
+	@Option(
+			name = "--in-mapper-aggregation",
+			aliases = "-ima",
+			required = false,
+			usage = "Sum the features assigned to each centroid within the mapper and only emit the partial sums.")
+	public boolean inMapperAggregation = false;
+
 	@Option(name = "--samples-only", aliases = "-so", required = false, usage = "Extract samples only.")
 	public boolean samplesOnly = false;
 
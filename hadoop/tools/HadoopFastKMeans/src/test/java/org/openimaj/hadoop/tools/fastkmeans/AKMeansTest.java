@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.tools.fastkmeans;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.SequenceFile.CompressionType;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openimaj.hadoop.mapreduce.TextBytesJobUtil;
+import org.openimaj.hadoop.sequencefile.TextBytesSequenceFileUtility;
+import org.openimaj.io.IOUtils;
+import org.openimaj.ml.clustering.ByteCentroidsResult;
+import org.openimaj.ml.clustering.assignment.hard.ExactByteAssigner;
+
+/**
+ * Tests for the {@link AKMeans} mappers and combiner. The in-mapper
+ * aggregation must produce exactly the same centroid sums and counts as
+ * emitting every feature and combining them.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class AKMeansTest {
+	private static final int K = 10;
+	private static final int DIMS = 128;
+	private static final int NFEATURES = 25000;
+
+	/**
+	 * Working dir
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File featuresFile;
+	private File centroidsFile;
+	private ByteCentroidsResult centroids;
+	private byte[][] features;
+
+	/**
+	 * Create a random feature set and initial centroids
+	 *
+	 * @throws IOException
+	 */
+	@Before
+	public void setup() throws IOException {
+		final Random rng = new Random(42);
+
+		centroids = new ByteCentroidsResult();
+		centroids.centroids = new byte[K][DIMS];
+		for (int i = 0; i < K; i++)
+			for (int j = 0; j < DIMS; j++)
+				centroids.centroids[i][j] = (byte) rng.nextInt(128);
+
+		centroidsFile = folder.newFile("centroids.bin");
+		IOUtils.writeBinary(centroidsFile, centroids);
+
+		featuresFile = folder.newFile("features.seq");
+		featuresFile.delete();
+
+		// more features than the aggregating mapper's batch size, so that it
+		// has to flush more than once
+		features = new byte[NFEATURES][DIMS];
+		final TextBytesSequenceFileUtility seq = new TextBytesSequenceFileUtility(featuresFile.getAbsolutePath(),
+				CompressionType.NONE);
+		for (int i = 0; i < NFEATURES; i++) {
+			final byte[] centroid = centroids.centroids[rng.nextInt(K)];
+			for (int j = 0; j < DIMS; j++)
+				features[i][j] = (byte) Math.max(0, Math.min(127, centroid[j] + rng.nextInt(41) - 20));
+
+			seq.appendData(new Text("feature" + i), new BytesWritable(features[i]));
+		}
+		seq.close();
+	}
+
+	private File runJob(Class<? extends Mapper<Text, BytesWritable, IntWritable, BytesWritable>> mapper, String name)
+			throws Exception
+	{
+		final File out = folder.newFile(name);
+		out.delete();
+
+		final Job job = TextBytesJobUtil.createJob(new Path(featuresFile.getAbsolutePath()),
+				new Path(out.getAbsolutePath()), new HashMap<String, String>(), new Configuration());
+		job.setMapperClass(mapper);
+		job.setCombinerClass(AKMeans.Combine.class);
+		// use the combiner as the reducer too, so the output is the total
+		// (count, sums...) for each centroid
+		job.setReducerClass(AKMeans.Combine.class);
+		job.setOutputKeyClass(IntWritable.class);
+		job.setOutputValueClass(BytesWritable.class);
+		SequenceFileOutputFormat.setCompressOutput(job, false);
+
+		job.getConfiguration().setStrings(AKMeans.CENTROIDS_PATH, centroidsFile.getAbsolutePath());
+		job.getConfiguration().setStrings(AKMeans.CENTROIDS_K, K + "");
+		job.getConfiguration().setStrings(AKMeans.CENTROIDS_EXACT, "true");
+		job.getConfiguration().setInt(AKMeans.AggregatingMap.THREADS, 3);
+		job.waitForCompletion(true);
+
+		return new File(out, "part-r-00000");
+	}
+
+	/**
+	 * Read the per-centroid counts (in the first column) and sums from the
+	 * output of a job. The random fallback emissions are ignored.
+	 */
+	private int[][] readSums(File file) throws IOException {
+		final int[][] sums = new int[K][DIMS + 1];
+
+		final Configuration conf = new Configuration();
+		final SequenceFile.Reader reader = new SequenceFile.Reader(FileSystem.getLocal(conf),
+				new Path(file.getAbsolutePath()), conf);
+		try {
+			final IntWritable key = new IntWritable();
+			final BytesWritable value = new BytesWritable();
+			while (reader.next(key, value)) {
+				if (key.get() >= K)
+					continue;
+
+				final DataInputStream dis = new DataInputStream(new ByteArrayInputStream(value.getBytes(), 0,
+						value.getLength()));
+				for (int i = 0; i <= DIMS; i++)
+					sums[key.get()][i] += dis.readInt();
+			}
+		} finally {
+			reader.close();
+		}
+
+		return sums;
+	}
+
+	/**
+	 * Test that the in-mapper aggregation gives the same centroid sums and
+	 * counts as the per-record mapper with the combiner, and that both are
+	 * correct.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testInMapperAggregation() throws Exception {
+		final int[][] expected = new int[K][DIMS + 1];
+		final int[] assignments = new ExactByteAssigner(centroids).assign(features);
+		for (int i = 0; i < NFEATURES; i++) {
+			expected[assignments[i]][0]++;
+			for (int j = 0; j < DIMS; j++)
+				expected[assignments[i]][j + 1] += features[i][j];
+		}
+
+		final int[][] perRecord = readSums(runJob(AKMeans.Map.class, "per-record"));
+		final int[][] aggregated = readSums(runJob(AKMeans.AggregatingMap.class, "aggregated"));
+
+		int total = 0;
+		for (int i = 0; i < K; i++) {
+			assertArrayEquals(expected[i], perRecord[i]);
+			assertArrayEquals(expected[i], aggregated[i]);
+			total += aggregated[i][0];
+		}
+		assertEquals(NFEATURES, total);
+	}
+}
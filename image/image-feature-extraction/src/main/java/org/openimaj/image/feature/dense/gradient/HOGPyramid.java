@@ -0,0 +1,433 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.dense.gradient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.citation.annotation.Reference;
+import org.openimaj.citation.annotation.ReferenceType;
+import org.openimaj.image.FImage;
+import org.openimaj.image.analyser.ImageAnalyser;
+import org.openimaj.image.analysis.algorithm.histogram.GradientOrientationHistogramExtractor;
+import org.openimaj.image.feature.dense.gradient.binning.FixedHOGStrategy;
+import org.openimaj.image.processing.convolution.FImageGradients;
+import org.openimaj.image.processing.resize.ResizeProcessor;
+import org.openimaj.math.statistics.distribution.Histogram;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+/**
+ * A multi-scale pyramid of Dalal and Triggs style HOG features. Rather than
+ * computing the HOG descriptor of every window independently (as
+ * {@link HOG#getFeatureVector(org.openimaj.math.geometry.shape.Rectangle)}
+ * does), the pyramid computes the cell histograms of a whole image once per
+ * scale, and the normalised block histograms once per block position. The HOG
+ * descriptor of any cell-aligned window at any level is then just the
+ * concatenation of the blocks it covers, which means that windows can be
+ * scored with a linear classifier by treating the classifier weights as a
+ * filter over the grid of blocks.
+ * <p>
+ * The cell histograms are only computed exactly at each octave (every halving
+ * of the image size). Intermediate scales within an octave are approximated by
+ * resampling the cell histograms of the octave above in the style of the
+ * "fast feature pyramids" of Dollár et al. Dollár et al. also correct the
+ * magnitude of the resampled channels with a power law; this is not required
+ * here as every cell histogram is L2 normalised before the blocks are formed.
+ * The features at the first level (scale 1) are identical to those computed by
+ * {@link HOG} with the same {@link FixedHOGStrategy}.
+ * <p>
+ * The octaves, and subsequently the levels, are processed in parallel using
+ * the {@link GlobalExecutorPool} unless another pool (or null) is set with
+ * {@link #setThreadPool(ThreadPoolExecutor)}. The pyramid is not thread-safe,
+ * but can be reused.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+@Reference(
+		type = ReferenceType.Article,
+		author = { "Doll\\'ar, Piotr", "Appel, Ron", "Belongie, Serge", "Perona, Pietro" },
+		title = "Fast Feature Pyramids for Object Detection",
+		year = "2014",
+		journal = "IEEE Transactions on Pattern Analysis and Machine Intelligence",
+		volume = "36",
+		number = "8",
+		pages = { "1532", "1545" },
+		customData = {
+				"doi", "10.1109/TPAMI.2014.2300479"
+		})
+public class HOGPyramid implements ImageAnalyser<FImage> {
+	/**
+	 * A single level of a {@link HOGPyramid}. The normalised block histograms
+	 * are stored in a single array in row-major order of block position. Block
+	 * positions are spaced one cell apart, irrespective of the block step of
+	 * the {@link FixedHOGStrategy}.
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class Level {
+		/**
+		 * The scale of the level relative to the analysed image
+		 */
+		public final float scale;
+
+		/**
+		 * The number of cells in the x direction
+		 */
+		public final int cellsX;
+
+		/**
+		 * The number of cells in the y direction
+		 */
+		public final int cellsY;
+
+		/**
+		 * The number of block positions in the x direction
+		 */
+		public final int blocksX;
+
+		/**
+		 * The number of block positions in the y direction
+		 */
+		public final int blocksY;
+
+		/**
+		 * The length of each block histogram
+		 */
+		public final int blockLength;
+
+		/**
+		 * The normalised block histograms
+		 */
+		public final double[] blocks;
+
+		Level(float scale, int cellsX, int cellsY, int cellsPerBlockX, int cellsPerBlockY, int nbins) {
+			this.scale = scale;
+			this.cellsX = cellsX;
+			this.cellsY = cellsY;
+			this.blocksX = cellsX - cellsPerBlockX + 1;
+			this.blocksY = cellsY - cellsPerBlockY + 1;
+			this.blockLength = cellsPerBlockX * cellsPerBlockY * nbins;
+			this.blocks = new double[blocksX * blocksY * blockLength];
+		}
+
+		/**
+		 * Get the offset into {@link #blocks} of the block with its top-left
+		 * cell at the given position
+		 *
+		 * @param bx
+		 *            the x-ordinate of the block (in cells)
+		 * @param by
+		 *            the y-ordinate of the block (in cells)
+		 * @return the offset of the first element of the block
+		 */
+		public int offset(int bx, int by) {
+			return (by * blocksX + bx) * blockLength;
+		}
+	}
+
+	/**
+	 * Exact cell histograms of a single octave
+	 */
+	private static class Octave {
+		int cellsX;
+		int cellsY;
+		double[] cells;
+	}
+
+	protected int nbins;
+	protected boolean histogramInterpolation;
+	protected FImageGradients.Mode orientationMode;
+	protected FixedHOGStrategy strategy;
+	protected int scalesPerOctave = 5;
+	protected ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+
+	private List<Level> levels;
+
+	/**
+	 * Construct a new {@link HOGPyramid} with the 9 bins, using histogram
+	 * interpolation and unsigned gradients, and 5 scales per octave.
+	 *
+	 * @param strategy
+	 *            the {@link FixedHOGStrategy} defining the cells and blocks
+	 */
+	public HOGPyramid(FixedHOGStrategy strategy) {
+		this(9, true, FImageGradients.Mode.Unsigned, strategy, 5);
+	}
+
+	/**
+	 * Construct a new {@link HOGPyramid}.
+	 *
+	 * @param nbins
+	 *            number of bins
+	 * @param histogramInterpolation
+	 *            if true cyclic linear interpolation is used to share the
+	 *            magnitude across the two closest bins; if false only the
+	 *            closest bin will be filled.
+	 * @param orientationMode
+	 *            the range of orientations to extract
+	 * @param strategy
+	 *            the {@link FixedHOGStrategy} defining the cells and blocks
+	 * @param scalesPerOctave
+	 *            the number of levels per halving of the image size
+	 */
+	public HOGPyramid(int nbins, boolean histogramInterpolation, FImageGradients.Mode orientationMode,
+			FixedHOGStrategy strategy, int scalesPerOctave)
+	{
+		if (scalesPerOctave < 1)
+			throw new IllegalArgumentException("There must be at least one scale per octave");
+
+		this.nbins = nbins;
+		this.histogramInterpolation = histogramInterpolation;
+		this.orientationMode = orientationMode;
+		this.strategy = strategy;
+		this.scalesPerOctave = scalesPerOctave;
+	}
+
+	/**
+	 * Set the thread pool used to process the octaves and levels in parallel.
+	 * If the pool is null, all processing is performed in the calling thread.
+	 *
+	 * @param pool
+	 *            the thread pool; may be null
+	 */
+	public void setThreadPool(ThreadPoolExecutor pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Build the pyramid for the given image. Levels are added until a level
+	 * is too small to contain a single block.
+	 */
+	@Override
+	public void analyseImage(FImage image) {
+		analyseImage(image, strategy.getCellsPerBlockX(), strategy.getCellsPerBlockY());
+	}
+
+	/**
+	 * Build the pyramid for the given image. Levels are added until a level
+	 * has fewer than the given number of cells in either direction (for
+	 * example, the number of cells in a detection window).
+	 *
+	 * @param image
+	 *            the image to analyse
+	 * @param minCellsX
+	 *            the minimum number of cells in the x direction
+	 * @param minCellsY
+	 *            the minimum number of cells in the y direction
+	 */
+	public void analyseImage(FImage image, int minCellsX, int minCellsY) {
+		final int cellWidth = strategy.getCellWidth();
+		final int cellHeight = strategy.getCellHeight();
+		minCellsX = Math.max(minCellsX, strategy.getCellsPerBlockX());
+		minCellsY = Math.max(minCellsY, strategy.getCellsPerBlockY());
+
+		// the octave images
+		final List<FImage> images = new ArrayList<FImage>();
+		FImage current = image;
+		while (current.width / cellWidth >= minCellsX && current.height / cellHeight >= minCellsY) {
+			images.add(current);
+			current = ResizeProcessor.downsample(current, 2);
+		}
+
+		// the exact cell histograms of each octave
+		final Octave[] octaves = new Octave[images.size()];
+		if (pool == null) {
+			for (int i = 0; i < octaves.length; i++)
+				octaves[i] = computeOctave(images.get(i));
+		} else {
+			Parallel.forRangeCallerRuns(0, octaves.length, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					for (int i = range.start; i < range.stop; i++)
+						octaves[i] = computeOctave(images.get(i));
+				}
+			}, pool);
+		}
+
+		// the levels; the first level of each octave is exact, the others are
+		// resampled from it
+		final List<Level> levels = new ArrayList<Level>();
+		final List<Octave> sources = new ArrayList<Octave>();
+		for (int o = 0; o < octaves.length; o++) {
+			for (int s = 0; s < scalesPerOctave; s++) {
+				final float relativeScale = (float) Math.pow(2, -(double) s / scalesPerOctave);
+				final int cellsX = s == 0 ? octaves[o].cellsX : (int) (images.get(o).width * relativeScale) / cellWidth;
+				final int cellsY = s == 0 ? octaves[o].cellsY : (int) (images.get(o).height * relativeScale)
+						/ cellHeight;
+
+				if (cellsX < minCellsX || cellsY < minCellsY)
+					break;
+
+				levels.add(new Level((float) Math.pow(2, -o) * relativeScale, cellsX, cellsY,
+						strategy.getCellsPerBlockX(), strategy.getCellsPerBlockY(), nbins));
+				sources.add(octaves[o]);
+			}
+		}
+
+		if (pool == null) {
+			for (int i = 0; i < levels.size(); i++)
+				computeBlocks(levels.get(i), sources.get(i));
+		} else {
+			Parallel.forRangeCallerRuns(0, levels.size(), 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					for (int i = range.start; i < range.stop; i++)
+						computeBlocks(levels.get(i), sources.get(i));
+				}
+			}, pool);
+		}
+
+		this.levels = levels;
+	}
+
+	private Octave computeOctave(FImage image) {
+		final GradientOrientationHistogramExtractor extractor = new GradientOrientationHistogramExtractor(nbins,
+				histogramInterpolation, orientationMode);
+		extractor.analyseImage(image);
+
+		final int cellWidth = strategy.getCellWidth();
+		final int cellHeight = strategy.getCellHeight();
+
+		final Octave octave = new Octave();
+		octave.cellsX = image.width / cellWidth;
+		octave.cellsY = image.height / cellHeight;
+		octave.cells = new double[octave.cellsX * octave.cellsY * nbins];
+
+		for (int j = 0, k = 0; j < octave.cellsY; j++) {
+			for (int i = 0; i < octave.cellsX; i++, k += nbins) {
+				final Histogram h = extractor.computeHistogram(i * cellWidth, j * cellHeight, cellWidth, cellHeight);
+				System.arraycopy(h.values, 0, octave.cells, k, nbins);
+			}
+		}
+
+		return octave;
+	}
+
+	/*
+	 * Compute the (L2 normalised) cell histograms of the level from the octave,
+	 * bilinearly resampling the octave cells if the sizes differ, and then form
+	 * and normalise every block.
+	 */
+	private void computeBlocks(Level level, Octave octave) {
+		final Histogram[] cells = new Histogram[level.cellsX * level.cellsY];
+
+		if (level.cellsX == octave.cellsX && level.cellsY == octave.cellsY) {
+			for (int k = 0; k < cells.length; k++) {
+				cells[k] = new Histogram(nbins);
+				System.arraycopy(octave.cells, k * nbins, cells[k].values, 0, nbins);
+			}
+		} else {
+			final float sx = (float) octave.cellsX / level.cellsX;
+			final float sy = (float) octave.cellsY / level.cellsY;
+
+			for (int j = 0, k = 0; j < level.cellsY; j++) {
+				final float v = clamp((j + 0.5f) * sy - 0.5f, octave.cellsY - 1);
+				final int y0 = (int) v;
+				final int y1 = Math.min(y0 + 1, octave.cellsY - 1);
+				final float fy = v - y0;
+
+				for (int i = 0; i < level.cellsX; i++, k++) {
+					final float u = clamp((i + 0.5f) * sx - 0.5f, octave.cellsX - 1);
+					final int x0 = (int) u;
+					final int x1 = Math.min(x0 + 1, octave.cellsX - 1);
+					final float fx = u - x0;
+
+					final int o00 = (y0 * octave.cellsX + x0) * nbins;
+					final int o01 = (y0 * octave.cellsX + x1) * nbins;
+					final int o10 = (y1 * octave.cellsX + x0) * nbins;
+					final int o11 = (y1 * octave.cellsX + x1) * nbins;
+
+					final double[] values = new double[nbins];
+					for (int b = 0; b < nbins; b++) {
+						values[b] = (1 - fy) * ((1 - fx) * octave.cells[o00 + b] + fx * octave.cells[o01 + b]) +
+								fy * ((1 - fx) * octave.cells[o10 + b] + fx * octave.cells[o11 + b]);
+					}
+					cells[k] = new Histogram(values);
+				}
+			}
+		}
+
+		for (final Histogram h : cells)
+			h.normaliseL2();
+
+		final int cellsPerBlockX = strategy.getCellsPerBlockX();
+		final int cellsPerBlockY = strategy.getCellsPerBlockY();
+		final int blockArea = cellsPerBlockX * cellsPerBlockY;
+		final FixedHOGStrategy.BlockNormalisation norm = strategy.getBlockNormalisation();
+		final Histogram[] blockData = new Histogram[blockArea];
+
+		for (int by = 0; by < level.blocksY; by++) {
+			for (int bx = 0; bx < level.blocksX; bx++) {
+				for (int j = 0, k = 0; j < cellsPerBlockY; j++) {
+					for (int i = 0; i < cellsPerBlockX; i++) {
+						blockData[k++] = cells[(by + j) * level.cellsX + bx + i];
+					}
+				}
+
+				final Histogram block = new Histogram(blockData);
+				norm.normalise(block, blockArea);
+				System.arraycopy(block.values, 0, level.blocks, level.offset(bx, by), level.blockLength);
+			}
+		}
+	}
+
+	private static float clamp(float v, int max) {
+		return v < 0 ? 0 : (v > max ? max : v);
+	}
+
+	/**
+	 * Get the levels computed by the last call to {@link #analyseImage(FImage)}
+	 * or {@link #analyseImage(FImage, int, int)}, ordered from the largest
+	 * (scale 1) to the smallest.
+	 *
+	 * @return the levels
+	 */
+	public List<Level> getLevels() {
+		return levels;
+	}
+
+	/**
+	 * @return the {@link FixedHOGStrategy} defining the cells and blocks
+	 */
+	public FixedHOGStrategy getStrategy() {
+		return strategy;
+	}
+
+	/**
+	 * @return the number of orientation bins
+	 */
+	public int getNumBins() {
+		return nbins;
+	}
+}
@@ -77,7 +77,7 @@ public class FixedHOGStrategy implements SpatialBinningStrategy {
 		 */
 		L1 {
 			@Override
-			final void normalise(Histogram h, int blockArea) {
+			public final void normalise(Histogram h, int blockArea) {
 				h.normaliseL1();
 			}
 		},
@@ -86,7 +86,7 @@ public class FixedHOGStrategy implements SpatialBinningStrategy {
 		 */
 		L2 {
 			@Override
-			final void normalise(Histogram h, int blockArea) {
+			public final void normalise(Histogram h, int blockArea) {
 				// each cell is l2 normed, so it follows that the l2 norm of the
 				// block is simply the values divided by the area
 				ArrayUtils.divide(h.values, blockArea);
@@ -97,7 +97,7 @@ public class FixedHOGStrategy implements SpatialBinningStrategy {
 		 */
 		L1sqrt {
 			@Override
-			final void normalise(Histogram h, int blockArea) {
+			public final void normalise(Histogram h, int blockArea) {
 				h.normaliseL1();
 
 				for (int x = 0; x < h.values.length; x++)
@@ -109,7 +109,7 @@ public class FixedHOGStrategy implements SpatialBinningStrategy {
 		 */
 		L2clip {
 			@Override
-			final void normalise(Histogram h, int blockArea) {
+			public final void normalise(Histogram h, int blockArea) {
 				// each cell is l2 normed, so it follows that the l2 norm of the
 				// block is simply the values divided by the area
 				double sumsq = 0;
@@ -127,7 +127,16 @@ public class FixedHOGStrategy implements SpatialBinningStrategy {
 			}
 		};
 
-		abstract void normalise(Histogram h, int blockArea);
+		/**
+		 * Normalise a block histogram in-place. The block histogram must be
+		 * the concatenation of L2 normalised cell histograms.
+		 * 
+		 * @param h
+		 *            the block histogram
+		 * @param blockArea
+		 *            the number of cells in the block
+		 */
+		public abstract void normalise(Histogram h, int blockArea);
 	}
 
 	int cellWidth = 6;
@@ -262,4 +271,53 @@ public class FixedHOGStrategy implements SpatialBinningStrategy {
 
 		return cells;
 	}
+
+	/**
+	 * @return the width of the cells in pixels
+	 */
+	public int getCellWidth() {
+		return cellWidth;
+	}
+
+	/**
+	 * @return the height of the cells in pixels
+	 */
+	public int getCellHeight() {
+		return cellHeight;
+	}
+
+	/**
+	 * @return the number of cells per block in the x direction
+	 */
+	public int getCellsPerBlockX() {
+		return cellsPerBlockX;
+	}
+
+	/**
+	 * @return the number of cells per block in the y direction
+	 */
+	public int getCellsPerBlockY() {
+		return cellsPerBlockY;
+	}
+
+	/**
+	 * @return the amount each block is shifted in the x direction (in cells)
+	 */
+	public int getBlockStepX() {
+		return blockStepX;
+	}
+
+	/**
+	 * @return the amount each block is shifted in the y direction (in cells)
+	 */
+	public int getBlockStepY() {
+		return blockStepY;
+	}
+
+	/**
+	 * @return the block normalisation scheme
+	 */
+	public BlockNormalisation getBlockNormalisation() {
+		return norm;
+	}
 }
@@ -178,13 +178,19 @@ public class ApproximateDenseSIFT extends DenseSIFT {
 	}
 
 	@Override
-	protected void extractFeatures() {
+	protected void extractFeatures(FImage[] gradientMagnitudes, int startOri, int stopOri) {
 		final int frameSizeX = binWidth * (numBinsX - 1) + 1;
 		final int frameSizeY = binHeight * (numBinsY - 1) + 1;
 
-		for (int bint = 0; bint < numOriBins; bint++) {
-			final FImage conv = data.gradientMagnitudes[bint].process(new FTriangleFilter(binWidth, binHeight));
-			final float[][] src = conv.pixels;
+		final FTriangleFilter filter = new FTriangleFilter(binWidth, binHeight);
+		final FImage conv = new FImage(gradientMagnitudes[0].width, gradientMagnitudes[0].height);
+		final float[][] src = conv.pixels;
+
+		for (int bint = startOri; bint < stopOri; bint++) {
+			// the triangular filter is computed with a cascade of running
+			// sums, so its cost is independent of the bin size
+			copy(gradientMagnitudes[bint], conv);
+			filter.processImage(conv);
 
 			for (int biny = 0; biny < numBinsY; biny++) {
 
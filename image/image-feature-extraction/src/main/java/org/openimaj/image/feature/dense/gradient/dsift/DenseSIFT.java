@@ -29,6 +29,8 @@
  */
 package org.openimaj.image.feature.dense.gradient.dsift;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 import org.openimaj.feature.local.list.LocalFeatureList;
 import org.openimaj.feature.local.list.MemoryLocalFeatureList;
 import org.openimaj.image.FImage;
@@ -36,6 +38,10 @@ import org.openimaj.image.processing.convolution.FImageConvolveSeparable;
 import org.openimaj.image.processing.convolution.FImageGradients;
 import org.openimaj.math.geometry.shape.Rectangle;
 import org.openimaj.util.array.ArrayUtils;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 /**
  * Implementation of a dense SIFT feature extractor for {@link FImage}s.
@@ -50,7 +56,11 @@ import org.openimaj.util.array.ArrayUtils;
  * instance must be made for each thread. Internally, this implementation
  * allocates memory for the gradient images, and if possible re-uses these
  * between calls. Re-use requires that the input image is the same size between
- * calls to the analyser.
+ * calls to the analyser. The orientation planes are processed in parallel using
+ * the {@link GlobalExecutorPool} unless another pool (or null) is set with
+ * {@link #setThreadPool(ThreadPoolExecutor)}. The gradient planes can also be
+ * computed once and shared between extractors with different bin sizes using
+ * {@link #analyseGradients(FImage[], Rectangle)}.
  *
  * @see "http://www.vlfeat.org/api/dsift.html#dsift-usage"
  *
@@ -105,6 +115,16 @@ public class DenseSIFT extends AbstractDenseSIFT<FImage> {
 					gradientMagnitudes[i] = new FImage(image.width, image.height);
 			}
 
+			setupDescriptors(dsift);
+		}
+
+		/**
+		 * Setup the required space for holding the descriptors
+		 *
+		 * @param dsift
+		 *            the extractor
+		 */
+		protected void setupDescriptors(DenseSIFT dsift) {
 			final int rangeX = boundMaxX - boundMinX - (dsift.numBinsX - 1) * dsift.binWidth;
 			final int rangeY = boundMaxY - boundMinY - (dsift.numBinsY - 1) * dsift.binHeight;
 
@@ -165,6 +185,11 @@ public class DenseSIFT extends AbstractDenseSIFT<FImage> {
 
 	protected volatile WorkingData data = new WorkingData();
 
+	/**
+	 * Thread pool used to process the orientation planes; may be null
+	 */
+	protected ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+
 	/**
 	 * Extracted descriptors
 	 */
@@ -302,20 +327,78 @@ public class DenseSIFT extends AbstractDenseSIFT<FImage> {
 	}
 
 	/**
-	 * Extract the DSIFT features
+	 * Extract the DSIFT features from the gradient planes in the working data.
+	 *
+	 * @deprecated use {@link #extractFeatures(FImage[])} or override
+	 *             {@link #extractFeatures(FImage[], int, int)}; overriding this
+	 *             method no longer affects {@link #analyseImage(FImage, Rectangle)}
 	 */
+	@Deprecated
 	protected void extractFeatures() {
+		extractFeatures(data.gradientMagnitudes);
+	}
+
+	/**
+	 * Extract the DSIFT features from the given orientation planes. Each
+	 * orientation plane is independent, so if a thread pool has been set the
+	 * planes are processed in parallel.
+	 *
+	 * @param gradientMagnitudes
+	 *            the quantised orientation/gradient magnitude planes
+	 */
+	protected void extractFeatures(final FImage[] gradientMagnitudes) {
+		if (pool == null) {
+			extractFeatures(gradientMagnitudes, 0, numOriBins);
+		} else {
+			Parallel.forRangeCallerRuns(0, numOriBins, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					extractFeatures(gradientMagnitudes, range.start, range.stop);
+				}
+			}, pool);
+		}
+	}
+
+	/**
+	 * Extract the DSIFT features for the orientation bins in the given range.
+	 * Implementations must only write to the descriptor elements of their own
+	 * orientation bins, as this method may be called concurrently for
+	 * different ranges.
+	 *
+	 * @param gradientMagnitudes
+	 *            the quantised orientation/gradient magnitude planes
+	 * @param startOri
+	 *            the first orientation bin (inclusive)
+	 * @param stopOri
+	 *            the last orientation bin (exclusive)
+	 */
+	protected void extractFeatures(FImage[] gradientMagnitudes, int startOri, int stopOri) {
 		final int frameSizeX = binWidth * (numBinsX - 1) + 1;
 		final int frameSizeY = binHeight * (numBinsY - 1) + 1;
 
-		for (int biny = 0; biny < numBinsY; biny++) {
-			final float[] yker = buildKernel(binHeight, numBinsY, biny, gaussianWindowSize);
+		final float[][] xkers = new float[numBinsX][];
+		for (int binx = 0; binx < numBinsX; binx++)
+			xkers[binx] = buildKernel(binWidth, numBinsX, binx, gaussianWindowSize);
 
-			for (int binx = 0; binx < numBinsX; binx++) {
-				final float[] xker = buildKernel(binWidth, numBinsX, binx, gaussianWindowSize);
+		final float[][] ykers = new float[numBinsY][];
+		for (int biny = 0; biny < numBinsY; biny++)
+			ykers[biny] = buildKernel(binHeight, numBinsY, biny, gaussianWindowSize);
 
-				for (int bint = 0; bint < numOriBins; bint++) {
-					final FImage conv = data.gradientMagnitudes[bint].process(new FImageConvolveSeparable(xker, yker));
+		final int width = gradientMagnitudes[0].width;
+		final int height = gradientMagnitudes[0].height;
+		final FImage hconv = new FImage(width, height);
+		final FImage conv = new FImage(width, height);
+
+		for (int bint = startOri; bint < stopOri; bint++) {
+			for (int binx = 0; binx < numBinsX; binx++) {
+				// the horizontal pass only depends on the x-bin, so is shared
+				// by all the y-bins
+				copy(gradientMagnitudes[bint], hconv);
+				FImageConvolveSeparable.convolveHorizontal(hconv, xkers[binx]);
+
+				for (int biny = 0; biny < numBinsY; biny++) {
+					copy(hconv, conv);
+					FImageConvolveSeparable.convolveVertical(conv, ykers[biny]);
 					final float[][] src = conv.pixels;
 
 					final int descriptorOffset = bint + binx * numOriBins + biny * (numBinsX * numOriBins);
@@ -333,25 +416,76 @@ public class DenseSIFT extends AbstractDenseSIFT<FImage> {
 		}
 	}
 
+	static void copy(FImage from, FImage to) {
+		for (int y = 0; y < from.height; y++)
+			System.arraycopy(from.pixels[y], 0, to.pixels[y], 0, from.width);
+	}
+
 	@Override
 	public void analyseImage(FImage image, Rectangle bounds) {
 		if (data == null)
 			data = new WorkingData();
 
-		data.boundMinX = (int) bounds.x;
-		data.boundMaxX = (int) (bounds.width - 1);
-		data.boundMinY = (int) bounds.y;
-		data.boundMaxY = (int) (bounds.height - 1);
+		setBounds(bounds);
 
 		data.setupWorkingSpace(image, this);
 
 		FImageGradients.gradientMagnitudesAndQuantisedOrientations(image, data.gradientMagnitudes);
 
-		extractFeatures();
+		extractFeatures(data.gradientMagnitudes);
 
 		normaliseDescriptors();
 	}
 
+	/**
+	 * Extract the dense SIFT features from precomputed quantised
+	 * orientation/gradient magnitude planes (as computed by
+	 * {@link FImageGradients#gradientMagnitudesAndQuantisedOrientations(FImage, FImage[])}
+	 * ) rather than from an image. This allows the gradients of an image to be
+	 * computed once and shared between extractors working at different bin
+	 * sizes. The planes are not modified.
+	 *
+	 * @param gradientMagnitudes
+	 *            the gradient magnitude planes; there must be one per
+	 *            orientation bin.
+	 * @param bounds
+	 *            the bounds within which to sample the features
+	 */
+	public void analyseGradients(FImage[] gradientMagnitudes, Rectangle bounds) {
+		if (gradientMagnitudes.length != numOriBins)
+			throw new IllegalArgumentException("Expected " + numOriBins + " gradient planes, but got "
+					+ gradientMagnitudes.length);
+
+		if (data == null)
+			data = new WorkingData();
+
+		setBounds(bounds);
+
+		data.setupDescriptors(this);
+
+		extractFeatures(gradientMagnitudes);
+
+		normaliseDescriptors();
+	}
+
+	private void setBounds(Rectangle bounds) {
+		data.boundMinX = (int) bounds.x;
+		data.boundMaxX = (int) (bounds.width - 1);
+		data.boundMinY = (int) bounds.y;
+		data.boundMaxY = (int) (bounds.height - 1);
+	}
+
+	/**
+	 * Set the thread pool used to process the orientation planes in parallel.
+	 * If the pool is null, all processing is performed in the calling thread.
+	 *
+	 * @param pool
+	 *            the thread pool; may be null
+	 */
+	public void setThreadPool(ThreadPoolExecutor pool) {
+		this.pool = pool;
+	}
+
 	private void normaliseDescriptors() {
 		final int frameSizeX = binWidth * (numBinsX - 1) + 1;
 		final int frameSizeY = binHeight * (numBinsY - 1) + 1;
@@ -37,6 +37,7 @@ import org.openimaj.feature.local.list.MemoryLocalFeatureList;
 import org.openimaj.image.FImage;
 import org.openimaj.image.Image;
 import org.openimaj.image.processing.convolution.FGaussianConvolve;
+import org.openimaj.image.processing.convolution.FImageGradients;
 import org.openimaj.image.processor.SinglebandImageProcessor;
 import org.openimaj.math.geometry.shape.Rectangle;
 import org.openimaj.util.array.ArrayUtils;
@@ -47,6 +48,10 @@ import org.openimaj.util.pair.IntObjectPair;
  * are extracted for the given bin sizes (scales). The image is optionally
  * smoothed with a Gaussian before each scale.
  * <p>
+ * If no smoothing is applied and the underlying extractor is a
+ * {@link DenseSIFT}, the quantised gradient planes are computed only once per
+ * image and shared by all the scales.
+ * <p>
  * The {@link PyramidDenseSIFT} is not thread safe, but is reusable like the
  * {@link DenseSIFT} analyser.
  * 
@@ -101,29 +106,59 @@ public class PyramidDenseSIFT<IMAGE extends Image<?, IMAGE> & SinglebandImagePro
 
 	@Override
 	public void analyseImage(IMAGE image, Rectangle originalBounds) {
-		final Rectangle bounds = originalBounds;
+		// without smoothing every level sees the same image, so the gradient
+		// planes can be computed once and shared by all the levels
+		final FImage[] gradientMagnitudes = canShareGradients(image) ? computeGradients((FImage) image) : null;
 
 		for (int i = 0; i < sizes.length; i++) {
 			final int size = sizes[i];
 			final int offset = (int) Math.floor(3f / 2f * (ArrayUtils.maxValue(sizes) - size));
 
-			final IMAGE smoothed;
-			if (magnificationFactor == 0) {
-				smoothed = image;
-			} else {
-				final float sigma = size / magnificationFactor;
-				smoothed = image.process(new FGaussianConvolve(sigma));
-			}
-
 			// extract DSIFT
+			final Rectangle bounds = new Rectangle(originalBounds);
 			bounds.x = originalBounds.x + offset;
 			bounds.y = originalBounds.y + offset;
 
 			final AbstractDenseSIFT<IMAGE> dsift = levels.get(i);
 			dsift.setBinWidth(size);
 			dsift.setBinHeight(size);
-			dsift.analyseImage(smoothed, bounds);
+
+			if (gradientMagnitudes != null) {
+				((DenseSIFT) dsift).analyseGradients(gradientMagnitudes, bounds);
+			} else {
+				final IMAGE smoothed;
+				if (magnificationFactor == 0) {
+					smoothed = image;
+				} else {
+					final float sigma = size / magnificationFactor;
+					smoothed = image.process(new FGaussianConvolve(sigma));
+				}
+
+				dsift.analyseImage(smoothed, bounds);
+			}
+		}
+	}
+
+	private boolean canShareGradients(IMAGE image) {
+		if (magnificationFactor != 0 || !(image instanceof FImage))
+			return false;
+
+		for (final AbstractDenseSIFT<IMAGE> dsift : levels) {
+			if (!(dsift instanceof DenseSIFT) || dsift.getNumOriBins() != getNumOriBins())
+				return false;
 		}
+
+		return true;
+	}
+
+	private FImage[] computeGradients(FImage image) {
+		final FImage[] gradientMagnitudes = new FImage[getNumOriBins()];
+		for (int i = 0; i < gradientMagnitudes.length; i++)
+			gradientMagnitudes[i] = new FImage(image.width, image.height);
+
+		FImageGradients.gradientMagnitudesAndQuantisedOrientations(image, gradientMagnitudes);
+
+		return gradientMagnitudes;
 	}
 
 	@Override
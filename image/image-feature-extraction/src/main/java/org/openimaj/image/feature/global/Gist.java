@@ -29,6 +29,14 @@
  */
 package org.openimaj.image.feature.global;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+
 import org.openimaj.citation.annotation.Reference;
 import org.openimaj.citation.annotation.ReferenceType;
 import org.openimaj.feature.FloatFV;
@@ -44,6 +52,10 @@ import org.openimaj.image.processing.convolution.FourierConvolve;
 import org.openimaj.image.processing.convolution.GaborFilters;
 import org.openimaj.image.processing.resize.ResizeProcessor;
 import org.openimaj.image.processor.SinglebandImageProcessor;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 import edu.emory.mathcs.jtransforms.fft.FloatFFT_2D;
 
@@ -67,6 +79,12 @@ import edu.emory.mathcs.jtransforms.fft.FloatFFT_2D;
  * if the image size changes. For computing features to compare images, fixed
  * size mode makes more sense.
  * <p>
+ * The spectra of the Gabor filters are cached and shared between all
+ * instances, so only the first image of a given (padded) size and set of
+ * orientations pays for their construction. The Gabor filtering of each image
+ * is performed in parallel across the filters; sets of images can be processed
+ * in parallel with {@link #analyseImages(List)}.
+ * <p>
  * <b>Example usage for image comparison:</b><br>
  * </br> <code>
  * <pre>
@@ -158,12 +176,69 @@ ImageAnalyser<IMAGE>
 	 */
 	public static final int DEFAULT_SIZE = 128;
 
+	/**
+	 * The maximum number of filter banks held by the cache
+	 */
+	private static final int MAX_CACHED_FILTER_BANKS = 8;
+
+	/**
+	 * Cache of Gabor filter spectra, keyed by the size and orientations
+	 */
+	private static final Map<String, FImage[]> FILTER_CACHE = Collections
+			.synchronizedMap(new LinkedHashMap<String, FImage[]>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, FImage[]> eldest) {
+					return size() > MAX_CACHED_FILTER_BANKS;
+				}
+			});
+
+	/**
+	 * Per-thread FFT plan and working space for the Gabor filtering
+	 */
+	private static final ThreadLocal<Workspace> WORKSPACE = new ThreadLocal<Workspace>() {
+		@Override
+		protected Workspace initialValue() {
+			return new Workspace();
+		}
+	};
+
+	private static class Workspace {
+		int rows;
+		int cols;
+		FloatFFT_2D fft;
+		float[][] data;
+		FImage magnitude;
+
+		/**
+		 * Get the workspace for images of the given size (padded size for the
+		 * FFT, and unpadded size for the magnitude)
+		 */
+		static Workspace get(int rows, int cols, int width, int height) {
+			final Workspace ws = WORKSPACE.get();
+
+			if (ws.fft == null || ws.rows != rows || ws.cols != cols) {
+				ws.rows = rows;
+				ws.cols = cols;
+				ws.fft = new FloatFFT_2D(rows, cols);
+				ws.data = new float[rows][cols * 2];
+			}
+
+			if (ws.magnitude == null || ws.magnitude.width != width || ws.magnitude.height != height)
+				ws.magnitude = new FImage(width, height);
+
+			return ws;
+		}
+	}
+
 	protected FImage[] gaborFilters;
 	protected FloatFV response;
 	protected int[] orientationsPerScale;
 	protected boolean fixedSize;
 	protected int imageWidth;
 	protected int imageHeight;
+	protected ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
 
 	/**
 	 * Construct a fixed size Gist extractor using the default values.
@@ -245,29 +320,96 @@ ImageAnalyser<IMAGE>
 		this.imageHeight = height;
 
 		if (fixedSize)
-			this.gaborFilters = GaborFilters.createGaborJets(width + 2 * this.boundaryExtension, height + 2
-					* this.boundaryExtension, orientationsPerScale);
+			this.gaborFilters = getGaborFilters(width, height);
+	}
+
+	/**
+	 * Get the (cached) Gabor filter spectra for images of the given size
+	 */
+	private FImage[] getGaborFilters(int width, int height) {
+		final int fw = width + 2 * this.boundaryExtension;
+		final int fh = height + 2 * this.boundaryExtension;
+		final String key = fw + "x" + fh + Arrays.toString(orientationsPerScale);
+
+		FImage[] filters = FILTER_CACHE.get(key);
+		if (filters == null) {
+			filters = GaborFilters.createGaborJets(fw, fh, orientationsPerScale);
+			FILTER_CACHE.put(key, filters);
+		}
+
+		return filters;
+	}
+
+	/**
+	 * Set the thread pool used to apply the Gabor filters (or to process the
+	 * images in {@link #analyseImages(List)}) in parallel. If the pool is
+	 * null, all processing is performed in the calling thread.
+	 *
+	 * @param pool
+	 *            the thread pool; may be null
+	 */
+	public void setThreadPool(ThreadPoolExecutor pool) {
+		this.pool = pool;
 	}
 
 	@Override
 	public void analyseImage(IMAGE image) {
+		final FImage[] filters = getFilters(image);
+
+		this.response = computeGist(image, filters, pool);
+		this.gaborFilters = filters;
+	}
+
+	/**
+	 * Compute the Gist features of a set of images. The images are processed
+	 * in parallel using the thread pool set with
+	 * {@link #setThreadPool(ThreadPoolExecutor)}. The state of this extractor
+	 * (e.g. the response returned by {@link #getResponse()}) is not changed.
+	 *
+	 * @param images
+	 *            the images
+	 * @return the Gist features of each image (in the same order as the
+	 *         images)
+	 */
+	public List<FloatFV> analyseImages(final List<IMAGE> images) {
+		final FloatFV[] features = new FloatFV[images.size()];
+
+		if (pool == null) {
+			for (int i = 0; i < features.length; i++)
+				features[i] = computeGist(images.get(i), getFilters(images.get(i)), null);
+		} else {
+			Parallel.forRangeCallerRuns(0, features.length, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					// the images are already processed in parallel, so filter
+					// each image in the current thread
+					for (int i = range.start; i < range.stop; i++)
+						features[i] = computeGist(images.get(i), getFilters(images.get(i)), null);
+				}
+			}, pool);
+		}
+
+		return new ArrayList<FloatFV>(Arrays.asList(features));
+	}
+
+	private FImage[] getFilters(IMAGE image) {
+		if (fixedSize)
+			return gaborFilters;
+
+		return getGaborFilters(image.getWidth(), image.getHeight());
+	}
+
+	private FloatFV computeGist(IMAGE image, FImage[] filters, ThreadPoolExecutor pool) {
 		if (fixedSize) {
 			final double sc = Math.max((double) imageWidth / (double) image.getWidth(), (double) imageHeight
 					/ (double) image.getHeight());
 
 			final IMAGE resized = image.process(new ResizeProcessor((float) sc));
 			final IMAGE roi = resized.extractCenter(imageWidth, imageHeight);
-			extractGist(roi);
+			return extractGist(roi, filters, pool);
 		} else {
-			if (gaborFilters == null || gaborFilters[0].width != image.getWidth()
-					|| gaborFilters[0].height != image.getHeight())
-			{
-				gaborFilters = GaborFilters.createGaborJets(image.getWidth() + 2 * this.boundaryExtension,
-						image.getHeight() + 2 * this.boundaryExtension, orientationsPerScale);
-			}
-
-			extractGist(image.clone()); // clone to stop side effects from
-			// normalisation further down
+			return extractGist(image.clone(), filters, pool); // clone to stop
+			// side effects from normalisation further down
 		}
 	}
 
@@ -276,6 +418,10 @@ ImageAnalyser<IMAGE>
 	}
 
 	protected void extractGist(IMAGE image) {
+		this.response = extractGist(image, this.gaborFilters, pool);
+	}
+
+	private FloatFV extractGist(IMAGE image, FImage[] filters, ThreadPoolExecutor pool) {
 		MBFImage mbfimage;
 		if (image instanceof FImage) {
 			mbfimage = new MBFImage((FImage) image);
@@ -287,7 +433,7 @@ ImageAnalyser<IMAGE>
 		}
 
 		final MBFImage o = prefilter(mbfimage.normalise());
-		this.response = gistGabor(o);
+		return gistGabor(o, filters, pool);
 	}
 
 	private MBFImage prefilter(MBFImage img) {
@@ -337,44 +483,62 @@ ImageAnalyser<IMAGE>
 		return output.extractROI(w, w, sw - w - w, sh - w - w);
 	}
 
-	private FloatFV gistGabor(MBFImage img) {
+	private FloatFV gistGabor(MBFImage img, final FImage[] filters, ThreadPoolExecutor pool) {
 		final int blocksPerFilter = computeNumberOfSamplingBlocks();
-		final int nFeaturesPerBand = gaborFilters.length * blocksPerFilter;
-		final int nFilters = this.gaborFilters.length;
+		final int nFeaturesPerBand = filters.length * blocksPerFilter;
+		final int nFilters = filters.length;
+
+		final int width = img.getWidth();
+		final int height = img.getHeight();
 
 		// pad the image
 		img = img.paddingSymmetric(boundaryExtension, boundaryExtension, boundaryExtension, boundaryExtension);
 
 		final int cols = img.getCols();
 		final int rows = img.getRows();
-		final FloatFFT_2D fft = new FloatFFT_2D(rows, cols);
-
-		final float[][] workingSpace = new float[rows][cols * 2];
 		final FloatFV fv = new FloatFV(nFeaturesPerBand * img.numBands());
 
 		for (int b = 0; b < img.numBands(); b++) {
 			final FImage band = img.bands.get(b);
 
+			// the spectrum of each band is computed once and shared by all the
+			// filters
 			final float[][] preparedImage =
 					FourierTransform.prepareData(band.pixels, rows, cols, true);
-			fft.complexForward(preparedImage);
-
-			for (int i = 0; i < nFilters; i++) {
-				// convolve with the filter
-				FImage ig = performConv(fft, preparedImage, workingSpace, this.gaborFilters[i], rows, cols);
-
-				// remove padding
-				ig = ig.extractROI(boundaryExtension, boundaryExtension, band.width - 2 * boundaryExtension, band.height
-						- 2
-						* boundaryExtension);
-
-				sampleResponses(ig, fv.values, b * nFeaturesPerBand + i * blocksPerFilter);
+			Workspace.get(rows, cols, width, height).fft.complexForward(preparedImage);
+
+			final int offset = b * nFeaturesPerBand;
+			if (pool == null) {
+				applyFilters(preparedImage, filters, 0, nFilters, fv.values, offset, width, height);
+			} else {
+				Parallel.forRangeCallerRuns(0, nFilters, 1, new Operation<IntRange>() {
+					@Override
+					public void perform(IntRange range) {
+						applyFilters(preparedImage, filters, range.start, range.stop, fv.values, offset, width, height);
+					}
+				}, pool);
 			}
 		}
 
 		return fv;
 	}
 
+	/*
+	 * Apply the filters in the given range to the spectrum of a padded band
+	 * and sample their responses into the vector
+	 */
+	private void applyFilters(float[][] preparedImage, FImage[] filters, int start, int stop, float[] v, int offset,
+			int width, int height)
+	{
+		final Workspace ws = Workspace.get(preparedImage.length, preparedImage[0].length / 2, width, height);
+		final int blocksPerFilter = computeNumberOfSamplingBlocks();
+
+		for (int i = start; i < stop; i++) {
+			filter(ws, preparedImage, filters[i]);
+			sampleResponses(ws.magnitude, v, offset + i * blocksPerFilter);
+		}
+	}
+
 	/**
 	 * Compute the number of sampling blocks that are used for every filter. The
 	 * default implementation returns {@link #numberOfBlocks}*
@@ -429,41 +593,39 @@ ImageAnalyser<IMAGE>
 	}
 
 	/*
-	 * Perform convolution in the frequency domain an reconstruct the resultant
-	 * image as the magnitudes of the complex components from the ifft.
+	 * Perform convolution in the frequency domain and reconstruct the resultant
+	 * image (without the padding) as the magnitudes of the complex components
+	 * from the ifft. The Gabor filter spectra are purely real, so only their
+	 * real parts are used.
 	 */
-	private FImage performConv(FloatFFT_2D fft, float[][] preparedImage, float[][] workingSpace, FImage filterfft,
-			int rows, int cols)
-	{
+	private void filter(Workspace ws, float[][] preparedImage, FImage filterfft) {
 		final float[][] preparedKernel = filterfft.pixels;
+		final float[][] data = ws.data;
 
-		for (int y = 0; y < rows; y++) {
-			for (int x = 0; x < cols; x++) {
-				final float reImage = preparedImage[y][x * 2];
-				final float imImage = preparedImage[y][1 + x * 2];
+		for (int y = 0; y < ws.rows; y++) {
+			final float[] imageRow = preparedImage[y];
+			final float[] kernelRow = preparedKernel[y];
+			final float[] dataRow = data[y];
 
-				final float reKernel = preparedKernel[y][x * 2];
-				final float imKernel = preparedKernel[y][1 + x * 2];
+			for (int x = 0; x < ws.cols * 2; x += 2) {
+				final float k = kernelRow[x];
 
-				final float re = reImage * reKernel - imImage * imKernel;
-				final float im = reImage * imKernel + imImage * reKernel;
-
-				workingSpace[y][x * 2] = re;
-				workingSpace[y][1 + x * 2] = im;
+				dataRow[x] = imageRow[x] * k;
+				dataRow[x + 1] = imageRow[x + 1] * k;
 			}
 		}
 
-		fft.complexInverse(workingSpace, true);
+		ws.fft.complexInverse(data, true);
+
+		final FImage out = ws.magnitude;
+		for (int r = 0; r < out.height; r++) {
+			final float[] dataRow = data[r + boundaryExtension];
+			final float[] outRow = out.pixels[r];
 
-		final FImage out = new FImage(cols, rows);
-		for (int r = 0; r < rows; r++) {
-			for (int c = 0; c < cols; c++) {
-				out.pixels[r][c] = (float) Math.sqrt(workingSpace[r][c * 2] * workingSpace[r][c * 2]
-						+ workingSpace[r][1 + c * 2]
-								* workingSpace[r][1 + c * 2]);
+			for (int c = 0, i = 2 * boundaryExtension; c < out.width; c++, i += 2) {
+				outRow[c] = (float) Math.sqrt(dataRow[i] * dataRow[i] + dataRow[i + 1] * dataRow[i + 1]);
 			}
 		}
-		return out;
 	}
 
 	/**
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.dense.gradient;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.OpenIMAJ;
+import org.openimaj.image.FImage;
+import org.openimaj.image.ImageUtilities;
+import org.openimaj.image.feature.dense.gradient.HOGPyramid.Level;
+import org.openimaj.image.feature.dense.gradient.binning.FixedHOGStrategy;
+import org.openimaj.image.feature.dense.gradient.binning.FixedHOGStrategy.BlockNormalisation;
+import org.openimaj.image.processing.convolution.FImageGradients;
+import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.math.statistics.distribution.Histogram;
+
+/**
+ * Tests for {@link HOGPyramid}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class HOGPyramidTest {
+	private FImage image;
+	private FixedHOGStrategy strategy;
+
+	/**
+	 * Setup
+	 * 
+	 * @throws IOException
+	 */
+	@Before
+	public void setup() throws IOException {
+		image = ImageUtilities.readF(OpenIMAJ.getLogoAsStream());
+		strategy = new FixedHOGStrategy(8, 2, BlockNormalisation.L2clip);
+	}
+
+	/**
+	 * Test that windows at the first level have the same features as those
+	 * computed by {@link HOG}
+	 */
+	@Test
+	public void testFirstLevel() {
+		final HOGPyramid pyramid = new HOGPyramid(9, false, FImageGradients.Mode.Unsigned, strategy, 3);
+		pyramid.analyseImage(image);
+
+		final HOG hog = new HOG(9, false, FImageGradients.Mode.Unsigned, strategy);
+		hog.analyseImage(image);
+
+		final Level level = pyramid.getLevels().get(0);
+		assertEquals(1f, level.scale, 0f);
+		assertEquals(image.width / 8, level.cellsX);
+		assertEquals(image.height / 8, level.cellsY);
+
+		// a 4x3 cell window at a few positions
+		final int blocksX = 3;
+		final int blocksY = 2;
+		for (int cy = 0; cy + 3 <= level.cellsY; cy += 5) {
+			for (int cx = 0; cx + 4 <= level.cellsX; cx += 7) {
+				final Histogram expected = hog.getFeatureVector(new Rectangle(cx * 8, cy * 8, 32, 24));
+				final double[] actual = new double[expected.values.length];
+
+				for (int by = 0, k = 0; by < blocksY; by++) {
+					for (int bx = 0; bx < blocksX; bx++, k += level.blockLength) {
+						System.arraycopy(level.blocks, level.offset(cx + bx, cy + by), actual, k, level.blockLength);
+					}
+				}
+
+				assertArrayEquals(expected.values, actual, 1e-10);
+			}
+		}
+	}
+
+	/**
+	 * Test the structure of the pyramid and that the parallel and sequential
+	 * versions agree
+	 */
+	@Test
+	public void testLevels() {
+		final HOGPyramid pyramid = new HOGPyramid(9, false, FImageGradients.Mode.Unsigned, strategy, 3);
+		pyramid.analyseImage(image, 4, 4);
+		final List<Level> levels = pyramid.getLevels();
+
+		final HOGPyramid sequential = new HOGPyramid(9, false, FImageGradients.Mode.Unsigned, strategy, 3);
+		sequential.setThreadPool(null);
+		sequential.analyseImage(image, 4, 4);
+
+		assertEquals(levels.size(), sequential.getLevels().size());
+		assertTrue(levels.size() > 3);
+
+		for (int i = 0; i < levels.size(); i++) {
+			final Level level = levels.get(i);
+
+			assertTrue(level.cellsX >= 4 && level.cellsY >= 4);
+			if (i > 0)
+				assertTrue(level.scale < levels.get(i - 1).scale);
+
+			assertTrue(Arrays.equals(level.blocks, sequential.getLevels().get(i).blocks));
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.dense.gradient.dsift;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.OpenIMAJ;
+import org.openimaj.image.FImage;
+import org.openimaj.image.ImageUtilities;
+import org.openimaj.math.geometry.shape.Rectangle;
+
+/**
+ * Tests for {@link PyramidDenseSIFT}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class PyramidDenseSIFTTest {
+	private FImage image;
+
+	/**
+	 * Load the test image
+	 * 
+	 * @throws IOException
+	 */
+	@Before
+	public void setup() throws IOException {
+		image = ImageUtilities.readF(OpenIMAJ.getLogoAsStream());
+	}
+
+	/**
+	 * Test that the levels computed from the shared gradients match
+	 * independently computed dense SIFT features
+	 */
+	@Test
+	public void testSharedGradients() {
+		testLevels(new DenseSIFT(3, 4), 4, 6, 8);
+	}
+
+	/**
+	 * Test that the levels computed from the shared gradients match
+	 * independently computed approximate dense SIFT features
+	 */
+	@Test
+	public void testSharedGradientsApproximate() {
+		testLevels(new ApproximateDenseSIFT(3, 4), 4, 6, 8);
+	}
+
+	private void testLevels(DenseSIFT dsift, int... sizes) {
+		final PyramidDenseSIFT<FImage> pdsift = new PyramidDenseSIFT<FImage>(dsift, 0, sizes);
+		pdsift.analyseImage(image);
+
+		final float[][][] levels = pdsift.getLevelDescriptors();
+		assertEquals(sizes.length, levels.length);
+
+		for (int i = 0; i < sizes.length; i++) {
+			final int offset = (int) Math.floor(3f / 2f * (sizes[sizes.length - 1] - sizes[i]));
+			final Rectangle bounds = image.getBounds();
+			bounds.x += offset;
+			bounds.y += offset;
+
+			final DenseSIFT single = dsift.clone();
+			single.setThreadPool(null);
+			single.setBinWidth(sizes[i]);
+			single.setBinHeight(sizes[i]);
+			single.analyseImage(image, bounds);
+
+			final float[][] expected = single.getDescriptors();
+			assertEquals(expected.length, levels[i].length);
+			for (int j = 0; j < expected.length; j++)
+				assertArrayEquals(expected[j], levels[i][j], 0f);
+		}
+	}
+}
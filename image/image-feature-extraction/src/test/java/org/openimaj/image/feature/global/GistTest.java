@@ -33,6 +33,8 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
 import org.openimaj.feature.FloatFV;
@@ -230,4 +232,27 @@ public class GistTest {
 		final double d = FloatFVComparison.SUM_SQUARE.compare(f1, f2);
 		assertEquals(d, 0.8960182, 0.005);
 	}
+
+	/**
+	 * Test that sequential, parallel and batch extraction give the same
+	 * features
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testBatchAndSequential() throws Exception {
+		final Gist<FImage> fsg = new Gist<FImage>(256, 256);
+		final List<FloatFV> batch = fsg.analyseImages(Arrays.asList(demo1, demo2));
+
+		fsg.setThreadPool(null);
+		fsg.analyseImage(demo1);
+		final FloatFV f1 = fsg.getResponse();
+		fsg.analyseImage(demo2);
+		final FloatFV f2 = fsg.getResponse();
+
+		assertEquals(2, batch.size());
+		assertArrayEquals(f1.values, batch.get(0).values, 1e-6f);
+		assertArrayEquals(f2.values, batch.get(1).values, 1e-6f);
+		assertArrayEquals(f1.values, F1_EXPECTED_256.values, 0.01f);
+	}
 }
@@ -0,0 +1,496 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.analysis.algorithm;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.analyser.ImageAnalyser;
+import org.openimaj.image.analysis.algorithm.TemplateMatcher.Mode;
+import org.openimaj.image.pixel.FValuePixel;
+import org.openimaj.image.processing.algorithm.FourierTransform;
+import org.openimaj.image.processing.algorithm.MeanCenter;
+import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+import edu.emory.mathcs.jtransforms.fft.FloatFFT_2D;
+
+/**
+ * Template matching for {@link FImage}s that automatically chooses between
+ * computing the cross-correlation in the spatial domain and computing it with
+ * an FFT, based on the sizes of the template and the region being searched.
+ * This supports all of the {@link TemplateMatcher.Mode}s, and produces the
+ * same response maps and offsets as a {@link TemplateMatcher}.
+ * <p>
+ * For every mode, the raw cross-correlation between the image and the
+ * template is computed first; the normalised and difference based modes are
+ * then computed from the correlation using a {@link SummedSqAreaTable} to get
+ * the energy of each image window in constant time. Spatial correlation is
+ * parallelised over bands of the search region with
+ * {@link Parallel#forRangeCallerRuns(int, int, int, Operation, ThreadPoolExecutor)},
+ * so matching from within tasks on the global pool is safe. The spectrum of the template
+ * is cached, so repeatedly matching the same template against images (or
+ * search regions) of the same size only requires two FFTs per image.
+ * <p>
+ * Working buffers (including the response map) are reused between calls that
+ * search regions of the same size, so instances are not thread-safe.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class AdaptiveTemplateMatcher implements ImageAnalyser<FImage> {
+	/**
+	 * Methods for computing the correlation between the template and image
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public enum Method {
+		/**
+		 * Automatically choose based on the estimated cost
+		 */
+		AUTO,
+		/**
+		 * Compute the correlation directly in the spatial domain
+		 */
+		SPATIAL,
+		/**
+		 * Compute the correlation using an FFT
+		 */
+		FOURIER
+	}
+
+	/**
+	 * Estimated cost of the FFT based correlation per element per log2(size),
+	 * relative to the cost of a single multiply-add in the spatial domain.
+	 */
+	private static final double FOURIER_COST = 4;
+
+	/**
+	 * Minimum number of multiply-adds before spatial correlation is
+	 * parallelised
+	 */
+	private static final double PARALLEL_THRESHOLD = 1 << 16;
+
+	private final FImage template;
+	private final Mode mode;
+	private final float templateSumSq;
+	private Rectangle searchBounds;
+	private Method method = Method.AUTO;
+	private Method lastMethod;
+	private ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+	private FImage responseMap;
+	private FImage region;
+	private SummedSqAreaTable sat;
+	private float[][] data;
+
+	private FloatFFT_2D fft;
+	private float[][] templateSpectrum;
+	private int fftRows;
+	private int fftCols;
+
+	/**
+	 * Construct with the template to match and the mode with which to estimate
+	 * template responses. When matching is performed by
+	 * {@link #analyseImage(FImage)}, the whole image will be searched.
+	 *
+	 * @param template
+	 *            The template
+	 * @param mode
+	 *            The mode.
+	 */
+	public AdaptiveTemplateMatcher(FImage template, Mode mode) {
+		this.mode = mode;
+
+		if (mode == Mode.CORRELATION_COEFFICIENT || mode == Mode.NORM_CORRELATION_COEFFICIENT)
+			this.template = template.process(new MeanCenter());
+		else
+			this.template = template;
+
+		float sumsq = 0;
+		for (int y = 0; y < this.template.height; y++)
+			for (int x = 0; x < this.template.width; x++)
+				sumsq += this.template.pixels[y][x] * this.template.pixels[y][x];
+		this.templateSumSq = sumsq;
+	}
+
+	/**
+	 * Construct with the template to match, the mode with which to estimate
+	 * template responses and the bounds rectangle in which to search. The
+	 * search bounds rectangle is defined with respect to the centre of the
+	 * template.
+	 *
+	 * @param template
+	 *            The template
+	 * @param mode
+	 *            The mode.
+	 * @param bounds
+	 *            The bounding box for search.
+	 */
+	public AdaptiveTemplateMatcher(FImage template, Mode mode, Rectangle bounds) {
+		this(template, mode);
+		this.searchBounds = bounds;
+	}
+
+	/**
+	 * @return the search bound rectangle
+	 */
+	public Rectangle getSearchBounds() {
+		return searchBounds;
+	}
+
+	/**
+	 * Set the search bounds rectangle. The search bounds rectangle is defined
+	 * with respect to the centre of the template. Setting to <code>null</code>
+	 * results in the entire image being searched.
+	 *
+	 * @param searchBounds
+	 *            the search bounds to set
+	 */
+	public void setSearchBounds(Rectangle searchBounds) {
+		this.searchBounds = searchBounds;
+	}
+
+	/**
+	 * Set the method used to compute the correlation. Defaults to
+	 * {@link Method#AUTO}.
+	 *
+	 * @param method
+	 *            the method
+	 */
+	public void setMethod(Method method) {
+		this.method = method;
+	}
+
+	/**
+	 * @return the method used to compute the correlation during the last call
+	 *         to {@link #analyseImage(FImage)} (either {@link Method#SPATIAL}
+	 *         or {@link Method#FOURIER}), or null if no image has been
+	 *         analysed.
+	 */
+	public Method getLastMethod() {
+		return lastMethod;
+	}
+
+	/**
+	 * Set the thread pool used to parallelise spatial correlation. Defaults to
+	 * the {@link GlobalExecutorPool}.
+	 *
+	 * @param pool
+	 *            the pool
+	 */
+	public void setThreadPool(ThreadPoolExecutor pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Perform template matching. If a bounds rectangle is has not been set or
+	 * is null, then the whole image will be searched. Otherwise the area of the
+	 * image which lies in the previously set search bounds will be searched.
+	 *
+	 * @see org.openimaj.image.analyser.ImageAnalyser#analyseImage(org.openimaj.image.Image)
+	 */
+	@Override
+	public void analyseImage(FImage image) {
+		final Rectangle searchSpace = TemplateMatcher.computeSearchSpace(searchBounds, image.width, image.height,
+				template.width, template.height);
+
+		final int scanX = (int) searchSpace.x;
+		final int scanY = (int) searchSpace.y;
+		final int scanWidth = (int) searchSpace.width;
+		final int scanHeight = (int) searchSpace.height;
+
+		if (responseMap == null || responseMap.width != scanWidth || responseMap.height != scanHeight)
+			responseMap = new FImage(scanWidth, scanHeight);
+		else
+			responseMap.zero();
+
+		if (scanWidth <= 0 || scanHeight <= 0)
+			return;
+
+		final int regionWidth = scanWidth + template.width - 1;
+		final int regionHeight = scanHeight + template.height - 1;
+
+		lastMethod = method;
+		if (lastMethod == Method.AUTO)
+			lastMethod = selectMethod(scanWidth, scanHeight, regionWidth, regionHeight);
+
+		if (lastMethod == Method.FOURIER)
+			correlateFourier(image.pixels, scanX, scanY, regionWidth, regionHeight);
+		else
+			correlateSpatial(image.pixels, scanX, scanY);
+
+		normalise(image.pixels, scanX, scanY, regionWidth, regionHeight);
+	}
+
+	/**
+	 * Choose the method with the lower estimated cost
+	 */
+	private Method selectMethod(int scanWidth, int scanHeight, int regionWidth, int regionHeight) {
+		final double spatialCost = (double) scanWidth * scanHeight * template.width * template.height;
+
+		final double n = (double) fastFFTSize(regionWidth) * fastFFTSize(regionHeight);
+		final boolean cached = templateSpectrum != null && fftCols == fastFFTSize(regionWidth)
+				&& fftRows == fastFFTSize(regionHeight);
+		final double fourierCost = FOURIER_COST * (cached ? 2 : 3) * n * (Math.log(n) / Math.log(2));
+
+		return fourierCost < spatialCost ? Method.FOURIER : Method.SPATIAL;
+	}
+
+	/**
+	 * Get the smallest size greater than or equal to n that only has factors
+	 * of 2, 3 and 5, for which the FFT is efficient.
+	 */
+	static int fastFFTSize(int n) {
+		for (int size = n;; size++) {
+			int m = size;
+			while (m % 2 == 0)
+				m /= 2;
+			while (m % 3 == 0)
+				m /= 3;
+			while (m % 5 == 0)
+				m /= 5;
+
+			if (m == 1)
+				return size;
+		}
+	}
+
+	private void correlateSpatial(final float[][] image, final int scanX, final int scanY) {
+		final double work = (double) responseMap.width * responseMap.height * template.width * template.height;
+
+		if (work < PARALLEL_THRESHOLD || responseMap.height == 1) {
+			correlateRows(image, scanX, scanY, 0, responseMap.height);
+		} else {
+			Parallel.forRangeCallerRuns(0, responseMap.height, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					correlateRows(image, scanX, scanY, range.start, range.stop);
+				}
+			}, pool);
+		}
+	}
+
+	private void correlateRows(float[][] image, int scanX, int scanY, int startRow, int stopRow) {
+		final float[][] out = responseMap.pixels;
+		final float[][] tpix = template.pixels;
+		final int width = responseMap.width;
+
+		for (int y = startRow; y < stopRow; y++) {
+			final float[] outRow = out[y];
+
+			for (int j = 0; j < template.height; j++) {
+				final float[] imgRow = image[scanY + y + j];
+				final float[] tRow = tpix[j];
+
+				for (int i = 0; i < template.width; i++) {
+					final float t = tRow[i];
+					final int offset = scanX + i;
+
+					for (int x = 0; x < width; x++)
+						outRow[x] += t * imgRow[offset + x];
+				}
+			}
+		}
+	}
+
+	private void correlateFourier(float[][] image, int scanX, int scanY, int regionWidth, int regionHeight) {
+		final int rows = fastFFTSize(regionHeight);
+		final int cols = fastFFTSize(regionWidth);
+
+		if (templateSpectrum == null || rows != fftRows || cols != fftCols) {
+			fft = new FloatFFT_2D(rows, cols);
+			templateSpectrum = FourierTransform.prepareData(template.pixels, rows, cols, false);
+			fft.complexForward(templateSpectrum);
+			fftRows = rows;
+			fftCols = cols;
+		}
+
+		if (data == null || data.length != rows || data[0].length != cols * 2)
+			data = new float[rows][cols * 2];
+		else
+			for (final float[] row : data)
+				Arrays.fill(row, 0);
+
+		for (int y = 0; y < regionHeight; y++) {
+			final float[] imgRow = image[scanY + y];
+			final float[] dataRow = data[y];
+
+			for (int x = 0; x < regionWidth; x++)
+				dataRow[x * 2] = imgRow[scanX + x];
+		}
+
+		fft.complexForward(data);
+
+		// multiply by the conjugate of the template spectrum
+		for (int y = 0; y < rows; y++) {
+			final float[] dataRow = data[y];
+			final float[] tRow = templateSpectrum[y];
+
+			for (int x = 0; x < cols * 2; x += 2) {
+				final float reImage = dataRow[x];
+				final float imImage = dataRow[x + 1];
+				final float reTemplate = tRow[x];
+				final float imTemplate = -tRow[x + 1];
+
+				dataRow[x] = reImage * reTemplate - imImage * imTemplate;
+				dataRow[x + 1] = reImage * imTemplate + imImage * reTemplate;
+			}
+		}
+
+		fft.complexInverse(data, true);
+
+		final float[][] out = responseMap.pixels;
+		for (int y = 0; y < responseMap.height; y++)
+			for (int x = 0; x < responseMap.width; x++)
+				out[y][x] = data[y][x * 2];
+	}
+
+	/**
+	 * Convert the correlation in the response map to the score for the mode
+	 */
+	private void normalise(float[][] image, int scanX, int scanY, int regionWidth, int regionHeight) {
+		if (mode == Mode.CORRELATION || mode == Mode.CORRELATION_COEFFICIENT)
+			return; // the correlation with the (centred) template is the score
+
+		if (region == null || region.width != regionWidth || region.height != regionHeight)
+			region = new FImage(regionWidth, regionHeight);
+		for (int y = 0; y < regionHeight; y++)
+			System.arraycopy(image[scanY + y], scanX, region.pixels[y], 0, regionWidth);
+
+		if (mode == Mode.NORM_CORRELATION_COEFFICIENT) {
+			// the window variance is shift invariant; removing the mean
+			// reduces the loss of precision in the tables
+			region.subtractInplace(region.sum() / (regionWidth * regionHeight));
+		}
+
+		if (sat == null)
+			sat = new SummedSqAreaTable();
+		sat.analyseImage(region);
+		final float[][] out = responseMap.pixels;
+		final int tw = template.width;
+		final int th = template.height;
+		final float area = tw * th;
+
+		for (int y = 0; y < responseMap.height; y++) {
+			for (int x = 0; x < responseMap.width; x++) {
+				final float corr = out[y][x];
+				final float wndSumSq = sat.calculateSqSumArea(x, y, x + tw, y + th);
+
+				switch (mode) {
+				case SUM_SQUARED_DIFFERENCE:
+					out[y][x] = Math.max(0, wndSumSq - 2 * corr + templateSumSq);
+					break;
+				case NORM_SUM_SQUARED_DIFFERENCE:
+					out[y][x] = (float) (Math.max(0, wndSumSq - 2 * corr + templateSumSq) / Math
+							.sqrt(wndSumSq * templateSumSq));
+					break;
+				case NORM_CORRELATION:
+					out[y][x] = (float) (corr / Math.sqrt(wndSumSq * templateSumSq));
+					break;
+				case NORM_CORRELATION_COEFFICIENT:
+					final float wndSum = sat.calculateSumArea(x, y, x + tw, y + th);
+					final double norm = Math.sqrt(Math.max(0, wndSumSq - wndSum * wndSum / area) * templateSumSq);
+
+					out[y][x] = norm == 0 ? 0 : (float) (corr / norm);
+					break;
+				default:
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the top-N "best" responses found by the template matcher.
+	 *
+	 * @param numResponses
+	 *            The number of responses
+	 * @return the best responses found
+	 */
+	public FValuePixel[] getBestResponses(int numResponses) {
+		final Comparator<FValuePixel> comparator = mode.scoresAscending() ? FValuePixel.ReverseValueComparator.INSTANCE
+				: FValuePixel.ValueComparator.INSTANCE;
+
+		return TemplateMatcher.getBestResponses(numResponses, responseMap, getXOffset(), getYOffset(), comparator);
+	}
+
+	/**
+	 * @return The x-offset of the top-left of the response map returned by
+	 *         {@link #getResponseMap()} to the original image analysed by
+	 *         {@link #analyseImage(FImage)}.
+	 */
+	public int getXOffset() {
+		final int halfWidth = template.width / 2;
+
+		if (this.searchBounds == null)
+			return halfWidth;
+		else
+			return (int) Math.max(searchBounds.x, halfWidth);
+	}
+
+	/**
+	 * @return The y-offset of the top-left of the response map returned by
+	 *         {@link #getResponseMap()} to the original image analysed by
+	 *         {@link #analyseImage(FImage)}.
+	 */
+	public int getYOffset() {
+		final int halfHeight = template.height / 2;
+
+		if (this.searchBounds == null)
+			return halfHeight;
+		else
+			return (int) Math.max(searchBounds.y, halfHeight);
+	}
+
+	/**
+	 * Get the response map generated by the last call to
+	 * {@link #analyseImage(FImage)}. The map is reused (and overwritten) by
+	 * subsequent calls that search a region of the same size, so it should be
+	 * cloned if it needs to be retained.
+	 *
+	 * @return The responseMap generated from the last call to
+	 *         {@link #analyseImage(FImage)}
+	 */
+	public FImage getResponseMap() {
+		return responseMap;
+	}
+
+	/**
+	 * @return the template held by the matcher; this might be different to the
+	 *         image used in construction as it might have been pre-processed.
+	 */
+	public FImage getTemplate() {
+		return template;
+	}
+}
@@ -43,6 +43,12 @@ import org.openimaj.math.util.FloatArrayStatsUtils;
  * performed in the frequency domain using an FFT. 
  * <p>
  * The implementation is heavily inspired by the OpenCV code. 
+ * <p>
+ * {@link AdaptiveTemplateMatcher} supports the same modes (through
+ * {@link TemplateMatcher.Mode}), caches the template spectrum between calls
+ * and falls back to spatial correlation for small templates; it is a better
+ * choice for new code. This class is retained because its {@link Mode}s are
+ * part of the public API.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
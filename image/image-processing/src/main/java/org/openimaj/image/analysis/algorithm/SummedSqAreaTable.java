@@ -74,8 +74,12 @@ public class SummedSqAreaTable implements ImageAnalyser<FImage> {
 	}
 
 	protected void computeTable(FImage image) {
-		sum = new FImage(image.getWidth() + 1, image.getHeight() + 1);
-		sqSum = new FImage(image.getWidth() + 1, image.getHeight() + 1);
+		// the first row and column are always zero and everything else is
+		// overwritten, so the tables can be reused for images of the same size
+		if (sum == null || sum.width != image.width + 1 || sum.height != image.height + 1) {
+			sum = new FImage(image.getWidth() + 1, image.getHeight() + 1);
+			sqSum = new FImage(image.getWidth() + 1, image.getHeight() + 1);
+		}
 
 		for (int y = 0; y < image.height; y++) {
 			for (int x = 0; x < image.width; x++) {
@@ -564,31 +564,63 @@ public class TemplateMatcher implements ImageAnalyser<FImage> {
 	 */
 	@Override
 	public void analyseImage(FImage image) {
-		Rectangle searchSpace = null;
+		final Rectangle searchSpace = computeSearchSpace(searchBounds, image.width, image.height, template.width,
+				template.height);
 
-		if (this.searchBounds != null) {
-			final int halfWidth = template.width / 2;
-			final int halfHeight = template.height / 2;
+		final int scanX = (int) searchSpace.x;
+		final int scanY = (int) searchSpace.y;
+		final int scanWidth = (int)searchSpace.width;
+		final int scanHeight = (int)searchSpace.height;
+
+		responseMap = new FImage(scanWidth, scanHeight);
+		final float[][] responseMapData = responseMap.pixels;
+
+		for (int y=0; y<scanHeight; y++) {
+			for (int x=0; x<scanWidth; x++) {
+				responseMapData[y][x] = mode.computeMatchScore(image, template, x+scanX, y+scanY, workingSpace);
+			}
+		}
+	}
+
+	/**
+	 * Compute the region of top-left template positions that will be searched
+	 * for the given search bounds (defined with respect to the centre of the
+	 * template). If the bounds are <code>null</code> all positions where the
+	 * template fits within the image are searched.
+	 *
+	 * @param searchBounds the search bounds; can be null
+	 * @param imageWidth the width of the image
+	 * @param imageHeight the height of the image
+	 * @param templateWidth the width of the template
+	 * @param templateHeight the height of the template
+	 * @return the rectangle of top-left positions to search
+	 */
+	static Rectangle computeSearchSpace(Rectangle searchBounds, int imageWidth, int imageHeight, int templateWidth,
+			int templateHeight)
+	{
+		if (searchBounds != null) {
+			final int halfWidth = templateWidth / 2;
+			final int halfHeight = templateHeight / 2;
 
 			float x = Math.max(searchBounds.x - halfWidth, 0);
-			x = Math.min(x, image.width-template.width);
+			x = Math.min(x, imageWidth-templateWidth);
 			float width = searchBounds.width;
 			if (searchBounds.x - halfWidth < 0) {
 				width += (searchBounds.x - halfWidth);
 			}
-			if (x + width > image.width - template.width)
-				width += (image.width - template.width) - (x+width);
+			if (x + width > imageWidth - templateWidth)
+				width += (imageWidth - templateWidth) - (x+width);
 
 			float y = Math.max(searchBounds.y - halfHeight, 0);
-			y = Math.min(y, image.height - template.height);
+			y = Math.min(y, imageHeight - templateHeight);
 			float height = searchBounds.height;
 			if (searchBounds.y - halfHeight < 0) {
 				height += (searchBounds.y - halfHeight);
 			}
-			if (y + height > image.height - template.height)
-				height += (image.height - template.height) - (y+height);
+			if (y + height > imageHeight - templateHeight)
+				height += (imageHeight - templateHeight) - (y+height);
 
-			searchSpace = new Rectangle(
+			return new Rectangle(
 					x,
 					y,
 					width,
@@ -596,27 +628,13 @@ public class TemplateMatcher implements ImageAnalyser<FImage> {
 			);
 
 		} else {
-			searchSpace = new Rectangle(
+			return new Rectangle(
 					0,
 					0,
-					image.width - template.width + 1,
-					image.height - template.height + 1
+					imageWidth - templateWidth + 1,
+					imageHeight - templateHeight + 1
 			);
 		}
-
-		final int scanX = (int) searchSpace.x;
-		final int scanY = (int) searchSpace.y;
-		final int scanWidth = (int)searchSpace.width;
-		final int scanHeight = (int)searchSpace.height;
-
-		responseMap = new FImage(scanWidth, scanHeight);
-		final float[][] responseMapData = responseMap.pixels;
-
-		for (int y=0; y<scanHeight; y++) {
-			for (int x=0; x<scanWidth; x++) {
-				responseMapData[y][x] = mode.computeMatchScore(image, template, x+scanX, y+scanY, workingSpace);
-			}
-		}
 	}
 
 	/**
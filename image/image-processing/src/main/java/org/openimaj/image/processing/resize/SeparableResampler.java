@@ -0,0 +1,470 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.resize;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.MBFImage;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+/**
+ * The resampling engine behind {@link ResizeProcessor}. Images are resized
+ * with two separable passes (horizontal into a flat intermediate buffer, then
+ * vertical) using pre-computed tables of filter contributions. The tables are
+ * cached for each combination of source size, destination size and filter, so
+ * resizing many images of the same size only computes them once. Large images
+ * are processed in parallel bands of rows.
+ * <p>
+ * The results are identical to the original (column-by-column) zoom algorithm
+ * used by {@link ResizeProcessor}.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+final class SeparableResampler {
+	/**
+	 * The maximum number of contribution tables held by the cache
+	 */
+	private static final int MAX_CACHED_TABLES = 64;
+
+	/**
+	 * Minimum number of multiply-adds before a pass is parallelised
+	 */
+	private static final int PARALLEL_THRESHOLD = 1 << 18;
+
+	/**
+	 * Images with fewer than twice this number of rows are processed as a
+	 * single band
+	 */
+	private static final int MIN_BAND_HEIGHT = 16;
+
+	private static final Map<Key, Contributions> CACHE = Collections
+			.synchronizedMap(new LinkedHashMap<Key, Contributions>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Key, Contributions> eldest) {
+					return size() > MAX_CACHED_TABLES;
+				}
+			});
+
+	private SeparableResampler() {
+	}
+
+	/**
+	 * The filter contributions for every destination pixel along one axis,
+	 * stored in flat arrays. The contributions of destination pixel
+	 * <code>i</code> are in the range <code>[start[i], start[i+1])</code>.
+	 */
+	static final class Contributions {
+		final int[] start;
+		final int[] pixels;
+		final double[] weights;
+
+		Contributions(int[] start, int[] pixels, double[] weights) {
+			this.start = start;
+			this.pixels = pixels;
+			this.weights = weights;
+		}
+	}
+
+	/**
+	 * Cache key for the contribution tables. The horizontal and vertical
+	 * tables are computed slightly differently (as they were in the original
+	 * implementation), so the axis forms part of the key.
+	 */
+	private static final class Key {
+		final int srcSize;
+		final int dstSize;
+		final ResizeFilterFunction filter;
+		final boolean vertical;
+
+		Key(int srcSize, int dstSize, ResizeFilterFunction filter, boolean vertical) {
+			this.srcSize = srcSize;
+			this.dstSize = dstSize;
+			this.filter = filter;
+			this.vertical = vertical;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = 31 * srcSize + dstSize;
+			hash = 31 * hash + filter.hashCode();
+			return 2 * hash + (vertical ? 1 : 0);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+
+			final Key k = (Key) obj;
+			return srcSize == k.srcSize && dstSize == k.dstSize && vertical == k.vertical && filter.equals(k.filter);
+		}
+	}
+
+	/**
+	 * Get the (cached) contributions for resampling between the given sizes
+	 *
+	 * @param srcSize
+	 *            the source size
+	 * @param dstSize
+	 *            the destination size
+	 * @param filter
+	 *            the filter
+	 * @param vertical
+	 *            true for the vertical pass; false for the horizontal
+	 * @return the contributions
+	 */
+	static Contributions getContributions(int srcSize, int dstSize, ResizeFilterFunction filter, boolean vertical) {
+		final Key key = new Key(srcSize, dstSize, filter, vertical);
+
+		Contributions c = CACHE.get(key);
+		if (c == null) {
+			c = computeContributions(srcSize, dstSize, filter, vertical);
+			CACHE.put(key, c);
+		}
+
+		return c;
+	}
+
+	private static Contributions computeContributions(int srcSize, int dstSize, ResizeFilterFunction filterf,
+			boolean vertical)
+	{
+		final double scale = (double) dstSize / (double) srcSize;
+		final double fwidth = filterf.getSupport();
+
+		double width = fwidth;
+		double fscale = 1.0;
+		final boolean shrinking = scale < 1.0;
+		if (shrinking) {
+			width = fwidth / scale;
+			fscale = 1.0 / scale;
+
+			if (width <= .5) {
+				// Reduce to point sampling.
+				width = .5 + 1.0e-6;
+				fscale = 1.0;
+			}
+		}
+
+		final int maxContributors = (int) (width * 2.0 + 1.0);
+		final int[] start = new int[dstSize + 1];
+		final int[] pixels = new int[dstSize * maxContributors];
+		final double[] weights = new double[dstSize * maxContributors];
+
+		int k = 0;
+		for (int i = 0; i < dstSize; i++) {
+			start[i] = k;
+
+			final double center = i / scale;
+			final int left = (int) Math.ceil(center - width);
+			final int right = vertical ? left + maxContributors - 1 : (int) Math.floor(center + width);
+
+			double density = 0.0;
+			for (int j = left; j <= right; j++) {
+				final double weight = shrinking ? filterf.filter((center - j) / fscale) / fscale : filterf
+						.filter(center - j);
+
+				pixels[k] = reflect(j, srcSize);
+				weights[k] = weight;
+				k++;
+
+				density += weight;
+			}
+
+			if (shrinking && (density != 0.0) && (density != 1.0)) {
+				// Normalize.
+				density = 1.0 / density;
+				for (int l = start[i]; l < k; l++)
+					weights[l] *= density;
+			}
+		}
+		start[dstSize] = k;
+
+		return new Contributions(start, pixels, weights);
+	}
+
+	private static int reflect(int j, int size) {
+		int n;
+		if (j < 0) {
+			n = -j;
+		} else if (j >= size) {
+			n = (size - j) + size - 1;
+		} else {
+			n = j;
+		}
+
+		if (n >= size) {
+			n = n % size;
+		} else if (n < 0) {
+			n = size - 1;
+		}
+
+		return n;
+	}
+
+	/**
+	 * Resize the source image into the destination image
+	 *
+	 * @param in
+	 *            the source image
+	 * @param dst
+	 *            the destination image
+	 * @param filterf
+	 *            the filter
+	 * @return the destination image
+	 */
+	static FImage zoom(FImage in, FImage dst, ResizeFilterFunction filterf) {
+		zoom(new FImage[] { in }, new FImage[] { dst }, filterf);
+		return dst;
+	}
+
+	/**
+	 * Resize all the bands of the source image into the destination image in a
+	 * single pass, sharing the contribution tables and working buffers between
+	 * the bands.
+	 *
+	 * @param in
+	 *            the source image
+	 * @param dst
+	 *            the destination image
+	 * @param filterf
+	 *            the filter
+	 * @return the destination image
+	 */
+	static MBFImage zoom(MBFImage in, MBFImage dst, ResizeFilterFunction filterf) {
+		if (in.numBands() != dst.numBands())
+			throw new IllegalArgumentException("The images must have the same number of bands");
+
+		zoom(in.bands.toArray(new FImage[in.numBands()]), dst.bands.toArray(new FImage[dst.numBands()]), filterf);
+		return dst;
+	}
+
+	private static void zoom(final FImage[] in, final FImage[] dst, ResizeFilterFunction filterf) {
+		final int srcWidth = in[0].width;
+		final int srcHeight = in[0].height;
+		final int dstWidth = dst[0].width;
+		final int dstHeight = dst[0].height;
+
+		final Contributions contribX = getContributions(srcWidth, dstWidth, filterf, false);
+		final Contributions contribY = getContributions(srcHeight, dstHeight, filterf, true);
+
+		final float[] maxValues = new float[in.length];
+		final float[][] work = new float[in.length][srcHeight * dstWidth];
+		for (int b = 0; b < in.length; b++)
+			maxValues[b] = in[b].max();
+
+		// horizontal pass, from the source rows into the intermediate buffer
+		final long hwork = (long) srcHeight * contribX.pixels.length * in.length;
+		runBands(srcHeight, hwork, new Band() {
+			@Override
+			public void run(int startRow, int stopRow) {
+				for (int b = 0; b < in.length; b++)
+					horizontal(in[b].pixels, work[b], startRow, stopRow, dstWidth, contribX, maxValues[b]);
+			}
+		});
+
+		// vertical pass, from the intermediate buffer into the destination
+		final long vwork = (long) dstWidth * contribY.pixels.length * in.length;
+		runBands(dstHeight, vwork, new Band() {
+			@Override
+			public void run(int startRow, int stopRow) {
+				final double[] acc = new double[dstWidth];
+				final float[] first = new float[dstWidth];
+				final boolean[] delta = new boolean[dstWidth];
+
+				for (int b = 0; b < in.length; b++)
+					vertical(work[b], dst[b].pixels, startRow, stopRow, dstWidth, contribY, maxValues[b], acc,
+							first, delta);
+			}
+		});
+	}
+
+	private static void horizontal(float[][] src, float[] work, int startRow, int stopRow, int dstWidth,
+			Contributions contrib, float maxValue)
+	{
+		final int[] start = contrib.start;
+		final int[] pixels = contrib.pixels;
+		final double[] weights = contrib.weights;
+
+		for (int k = startRow; k < stopRow; k++) {
+			final float[] row = src[k];
+			final int offset = k * dstWidth;
+
+			for (int x = 0; x < dstWidth; x++) {
+				final int s = start[x];
+				final int e = start[x + 1];
+
+				final double pel = row[pixels[s]];
+				double weight = 0.0;
+				boolean bPelDelta = false;
+
+				for (int j = s; j < e; j++) {
+					final double pel2 = j == s ? pel : row[pixels[j]];
+					if (pel2 != pel)
+						bPelDelta = true;
+					weight += pel2 * weights[j];
+				}
+				weight = bPelDelta ? Math.round(weight * 255) / 255f : pel;
+
+				if (weight < 0) {
+					weight = 0;
+				} else if (weight > maxValue) {
+					weight = maxValue;
+				}
+
+				work[offset + x] = (float) weight;
+			}
+		}
+	}
+
+	private static void vertical(float[] work, float[][] dst, int startRow, int stopRow, int dstWidth,
+			Contributions contrib, float maxValue, double[] acc, float[] first, boolean[] delta)
+	{
+		final int[] start = contrib.start;
+		final int[] pixels = contrib.pixels;
+		final double[] weights = contrib.weights;
+
+		for (int i = startRow; i < stopRow; i++) {
+			final int s = start[i];
+			final int e = start[i + 1];
+
+			// accumulate whole rows at a time, so the intermediate buffer is
+			// read sequentially
+			final int firstOffset = pixels[s] * dstWidth;
+			for (int x = 0; x < dstWidth; x++) {
+				first[x] = work[firstOffset + x];
+				acc[x] = 0.0;
+				delta[x] = false;
+			}
+
+			for (int j = s; j < e; j++) {
+				final int offset = pixels[j] * dstWidth;
+				final double w = weights[j];
+
+				for (int x = 0; x < dstWidth; x++) {
+					final double pel2 = work[offset + x];
+					if (pel2 != first[x])
+						delta[x] = true;
+					acc[x] += pel2 * w;
+				}
+			}
+
+			final float[] dstRow = dst[i];
+			for (int x = 0; x < dstWidth; x++) {
+				double weight = delta[x] ? Math.round(acc[x] * 255) / 255f : first[x];
+
+				if (weight < 0) {
+					weight = 0;
+				} else if (weight > maxValue) {
+					weight = maxValue;
+				}
+
+				dstRow[x] = (float) weight;
+			}
+		}
+	}
+
+	/**
+	 * Downsample an image by an integer factor by averaging each block of
+	 * factor x factor pixels. Any pixels at the right and bottom edges that do
+	 * not fill a complete block are discarded.
+	 *
+	 * @param in
+	 *            the source image
+	 * @param factor
+	 *            the downsampling factor
+	 * @return a new image
+	 */
+	static FImage downsample(final FImage in, final int factor) {
+		if (factor < 1)
+			throw new IllegalArgumentException("The factor must be positive");
+
+		final FImage dst = new FImage(in.width / factor, in.height / factor);
+		final float norm = 1f / (factor * factor);
+
+		runBands(dst.height, (long) in.width * in.height, new Band() {
+			@Override
+			public void run(int startRow, int stopRow) {
+				final float[][] src = in.pixels;
+
+				for (int y = startRow; y < stopRow; y++) {
+					final float[] out = dst.pixels[y];
+
+					for (int yy = y * factor; yy < (y + 1) * factor; yy++) {
+						final float[] row = src[yy];
+
+						for (int x = 0, xx = 0; x < out.length; x++) {
+							float sum = 0;
+							for (int i = 0; i < factor; i++, xx++)
+								sum += row[xx];
+							out[x] += sum;
+						}
+					}
+
+					for (int x = 0; x < out.length; x++)
+						out[x] *= norm;
+				}
+			}
+		});
+
+		return dst;
+	}
+
+	/**
+	 * A band of rows to process
+	 */
+	private interface Band {
+		void run(int startRow, int stopRow);
+	}
+
+	/**
+	 * Process the rows in bands, in parallel if there is enough work. The
+	 * calling thread takes part in the work, so resizing from within tasks
+	 * already running on the global pool can't deadlock.
+	 */
+	private static void runBands(int rows, long work, final Band band) {
+		if (work < PARALLEL_THRESHOLD || rows < 2 * MIN_BAND_HEIGHT) {
+			band.run(0, rows);
+		} else {
+			Parallel.forRangeCallerRuns(0, rows, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					band.run(range.start, range.stop);
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.analysis.algorithm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.image.analysis.algorithm.AdaptiveTemplateMatcher.Method;
+import org.openimaj.image.pixel.FValuePixel;
+import org.openimaj.math.geometry.shape.Rectangle;
+
+/**
+ * Tests for the {@link AdaptiveTemplateMatcher}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class AdaptiveTemplateMatcherTest {
+	FImage image;
+	FImage template;
+
+	/**
+	 * Setup the test data
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(42);
+
+		image = new FImage(120, 90);
+		for (int y = 0; y < image.height; y++)
+			for (int x = 0; x < image.width; x++)
+				image.pixels[y][x] = rng.nextFloat();
+
+		template = image.extractROI(40, 30, 17, 13);
+	}
+
+	/**
+	 * Compare both correlation methods against the spatial
+	 * {@link TemplateMatcher} for every mode, including repeated matching
+	 */
+	@Test
+	public void compareTest() {
+		for (final TemplateMatcher.Mode mode : TemplateMatcher.Mode.values()) {
+			final TemplateMatcher sMatcher = new TemplateMatcher(template, mode);
+			sMatcher.analyseImage(image);
+
+			for (final Method method : new Method[] { Method.SPATIAL, Method.FOURIER }) {
+				final AdaptiveTemplateMatcher aMatcher = new AdaptiveTemplateMatcher(template, mode);
+				aMatcher.setMethod(method);
+
+				// the second pass reuses the working buffers
+				for (int i = 0; i < 2; i++) {
+					aMatcher.analyseImage(image);
+
+					assertEquals(method, aMatcher.getLastMethod());
+					compare(sMatcher.getResponseMap(), aMatcher.getResponseMap());
+					compare(sMatcher.getBestResponses(3), aMatcher.getBestResponses(3));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test matching within search bounds, and repeated matching with a cached
+	 * template spectrum
+	 */
+	@Test
+	public void boundsTest() {
+		final Rectangle bounds = new Rectangle(30, 20, 40, 30);
+
+		final TemplateMatcher sMatcher = new TemplateMatcher(template, TemplateMatcher.Mode.NORM_CORRELATION_COEFFICIENT,
+				bounds);
+		sMatcher.analyseImage(image);
+
+		final AdaptiveTemplateMatcher aMatcher = new AdaptiveTemplateMatcher(template,
+				TemplateMatcher.Mode.NORM_CORRELATION_COEFFICIENT, bounds);
+		aMatcher.setMethod(Method.FOURIER);
+
+		for (int i = 0; i < 2; i++) {
+			aMatcher.analyseImage(image);
+
+			assertEquals(sMatcher.getXOffset(), aMatcher.getXOffset());
+			assertEquals(sMatcher.getYOffset(), aMatcher.getYOffset());
+			compare(sMatcher.getResponseMap(), aMatcher.getResponseMap());
+
+			final FValuePixel best = aMatcher.getBestResponses(1)[0];
+			assertEquals(40 + template.width / 2, best.x);
+			assertEquals(30 + template.height / 2, best.y);
+			assertEquals(1, best.value, 1e-3);
+		}
+	}
+
+	/**
+	 * Test the automatic selection of the correlation method
+	 */
+	@Test
+	public void autoSelectionTest() {
+		final AdaptiveTemplateMatcher small = new AdaptiveTemplateMatcher(new FImage(3, 3),
+				TemplateMatcher.Mode.CORRELATION);
+		small.analyseImage(image);
+		assertEquals(Method.SPATIAL, small.getLastMethod());
+
+		final AdaptiveTemplateMatcher large = new AdaptiveTemplateMatcher(new FImage(60, 45),
+				TemplateMatcher.Mode.CORRELATION);
+		large.analyseImage(image);
+		assertEquals(Method.FOURIER, large.getLastMethod());
+	}
+
+	private void compare(FImage expected, FImage actual) {
+		assertEquals(expected.width, actual.width);
+		assertEquals(expected.height, actual.height);
+
+		final float tol = 1e-3f * Math.max(1, Math.abs(expected.max()));
+		for (int y = 0; y < expected.height; y++)
+			for (int x = 0; x < expected.width; x++)
+				assertEquals(expected.pixels[y][x], actual.pixels[y][x], tol);
+	}
+
+	private void compare(FValuePixel[] expected, FValuePixel[] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i].x, actual[i].x);
+			assertEquals(expected[i].y, actual[i].y);
+		}
+	}
+}
@@ -29,13 +29,23 @@
  */
 package org.openimaj.image.processing.resize;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Random;
+
 import org.junit.Test;
 import org.openimaj.image.FImage;
 import org.openimaj.image.ImageUtilities;
+import org.openimaj.image.MBFImage;
+import org.openimaj.image.processing.resize.ResizeProcessor.PixelContribution;
+import org.openimaj.image.processing.resize.ResizeProcessor.PixelContributions;
 import org.openimaj.image.processing.resize.filters.BSplineFilter;
+import org.openimaj.image.processing.resize.filters.BoxFilter;
+import org.openimaj.image.processing.resize.filters.Lanczos3Filter;
+import org.openimaj.image.processing.resize.filters.MitchellFilter;
+import org.openimaj.image.processing.resize.filters.TriangleFilter;
 import org.openimaj.math.geometry.shape.Rectangle;
 
 /**
@@ -142,4 +152,282 @@ public class ResizeProcessorTest {
 		assertTrue(3700000 > image.height * image.width);
 		assertEquals(2687.0 / 3356.0, (double) image.width / (double) image.height, 0.001);
 	}
+
+	/**
+	 * Test that resizing all the bands of an {@link MBFImage} in one pass is
+	 * the same as resizing each band, and that repeated resizing (with cached
+	 * filter contributions) is consistent
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testMultibandZoom() throws Exception {
+		final MBFImage image = ImageUtilities.readMBF(ResizeProcessorTest.class
+				.getResourceAsStream("/org/openimaj/image/data/sinaface.jpg"));
+
+		final MBFImage out = new MBFImage(97, 83, image.numBands());
+		ResizeProcessor.zoom(image, out, Lanczos3Filter.INSTANCE);
+
+		for (int i = 0; i < 2; i++) {
+			for (int b = 0; b < image.numBands(); b++) {
+				final FImage band = new FImage(97, 83);
+				ResizeProcessor.zoom(image.getBand(b), band, Lanczos3Filter.INSTANCE);
+
+				for (int y = 0; y < band.height; y++)
+					assertArrayEquals(band.pixels[y], out.getBand(b).pixels[y], 0f);
+			}
+		}
+	}
+
+	/**
+	 * Test integer-factor downsampling
+	 */
+	@Test
+	public void testDownsample() {
+		final FImage image = new FImage(9, 7);
+		for (int y = 0; y < image.height; y++)
+			for (int x = 0; x < image.width; x++)
+				image.pixels[y][x] = y * image.width + x;
+
+		final FImage out = ResizeProcessor.downsample(image, 2);
+
+		assertEquals(4, out.width);
+		assertEquals(3, out.height);
+		assertEquals((0 + 1 + 9 + 10) / 4f, out.pixels[0][0], 1e-6);
+		assertEquals((42 + 43 + 51 + 52) / 4f, out.pixels[2][3], 1e-6);
+	}
+
+	/**
+	 * The filters that are compared against the original implementation
+	 */
+	private static final ResizeFilterFunction[] FILTERS = {
+			TriangleFilter.INSTANCE, Lanczos3Filter.INSTANCE, MitchellFilter.INSTANCE, BoxFilter.INSTANCE
+	};
+
+	/**
+	 * Create a random image with values quantised to 1/255, and some constant
+	 * regions
+	 */
+	private static FImage randomImage(Random rng, int width, int height) {
+		final FImage image = new FImage(width, height);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if ((x / 8 + y / 8) % 3 == 0)
+					image.pixels[y][x] = 0.5f;
+				else
+					image.pixels[y][x] = rng.nextInt(256) / 255f;
+			}
+		}
+		return image;
+	}
+
+	private static void assertImageEquals(FImage expected, FImage actual) {
+		assertEquals(expected.width, actual.width);
+		assertEquals(expected.height, actual.height);
+		for (int y = 0; y < expected.height; y++)
+			assertArrayEquals(expected.pixels[y], actual.pixels[y], 0f);
+	}
+
+	/**
+	 * Test that zooming gives exactly the same pixels as the original
+	 * column-by-column implementation, for up- and down-scaling, odd sizes,
+	 * and images large enough to be resampled in parallel
+	 */
+	@Test
+	public void testZoomMatchesOriginal() {
+		final Random rng = new Random(42);
+		final int[][] sizes = {
+				// srcWidth, srcHeight, dstWidth, dstHeight
+				{ 37, 23, 61, 45 },
+				{ 37, 23, 17, 11 },
+				{ 37, 23, 19, 50 },
+				{ 64, 48, 64, 48 },
+				{ 64, 48, 32, 24 },
+				{ 801, 601, 1203, 901 },
+				{ 801, 601, 333, 251 },
+				{ 801, 601, 1601, 301 },
+		};
+
+		for (final int[] size : sizes) {
+			final FImage image = randomImage(rng, size[0], size[1]);
+
+			for (final ResizeFilterFunction filter : FILTERS) {
+				final FImage expected = originalZoom(image, new FImage(size[2], size[3]), filter);
+
+				// twice, so the cached contributions are used the second time
+				for (int i = 0; i < 2; i++) {
+					final FImage actual = ResizeProcessor.zoom(image, new FImage(size[2], size[3]), filter);
+					assertImageEquals(expected, actual);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test that zooming all the bands of a large {@link MBFImage} gives exactly
+	 * the same pixels as the original implementation applied to each band
+	 */
+	@Test
+	public void testMultibandZoomMatchesOriginal() {
+		final Random rng = new Random(7);
+		final MBFImage image = new MBFImage(randomImage(rng, 641, 479), randomImage(rng, 641, 479),
+				randomImage(rng, 641, 479));
+
+		for (final ResizeFilterFunction filter : FILTERS) {
+			final MBFImage up = ResizeProcessor.zoom(image, new MBFImage(999, 777, 3), filter);
+			final MBFImage down = ResizeProcessor.zoom(image, new MBFImage(211, 157, 3), filter);
+
+			for (int b = 0; b < 3; b++) {
+				assertImageEquals(originalZoom(image.getBand(b), new FImage(999, 777), filter), up.getBand(b));
+				assertImageEquals(originalZoom(image.getBand(b), new FImage(211, 157), filter), down.getBand(b));
+			}
+		}
+	}
+
+	/**
+	 * Map an index outside the source onto a source pixel, as the original
+	 * implementation did
+	 */
+	private static int originalClamp(int j, int size) {
+		int n;
+		if (j < 0) {
+			n = -j;
+		} else if (j >= size) {
+			n = (size - j) + size - 1;
+		} else {
+			n = j;
+		}
+
+		if (n >= size) {
+			n = n % size;
+		} else if (n < 0) {
+			n = size - 1;
+		}
+
+		return n;
+	}
+
+	/**
+	 * The filter weights of a single destination pixel, as computed by the
+	 * original implementation. The rows were computed with a fixed number of
+	 * contributors, whereas the columns were bounded by the filter support.
+	 */
+	private static PixelContributions originalContributions(int i, double scale, double fwidth, int srcSize,
+			ResizeFilterFunction filterf, boolean fixedLength)
+	{
+		final PixelContributions contrib = new PixelContributions();
+		contrib.numberOfContributors = 0;
+
+		if (scale < 1.0) {
+			double width = fwidth / scale;
+			double fscale = 1.0 / scale;
+
+			if (width <= .5) {
+				// Reduce to point sampling.
+				width = .5 + 1.0e-6;
+				fscale = 1.0;
+			}
+
+			contrib.contributions = new PixelContribution[(int) (width * 2.0 + 1.0)];
+
+			final double center = i / scale;
+			final int left = (int) Math.ceil(center - width);
+			final int right = fixedLength ? left + contrib.contributions.length - 1 : (int) Math
+					.floor(center + width);
+
+			double density = 0.0;
+			for (int j = left; j <= right; j++) {
+				final double weight = filterf.filter((center - j) / fscale) / fscale;
+
+				final int k = contrib.numberOfContributors++;
+				contrib.contributions[k] = new PixelContribution();
+				contrib.contributions[k].pixel = originalClamp(j, srcSize);
+				contrib.contributions[k].weight = weight;
+
+				density += weight;
+			}
+
+			if ((density != 0.0) && (density != 1.0)) {
+				// Normalize.
+				density = 1.0 / density;
+				for (int k = 0; k < contrib.numberOfContributors; k++) {
+					contrib.contributions[k].weight *= density;
+				}
+			}
+		} else {
+			contrib.contributions = new PixelContribution[(int) (fwidth * 2.0 + 1.0)];
+
+			final double center = i / scale;
+			final int left = (int) Math.ceil(center - fwidth);
+			final int right = fixedLength ? left + contrib.contributions.length - 1 : (int) Math
+					.floor(center + fwidth);
+
+			for (int j = left; j <= right; j++) {
+				final int k = contrib.numberOfContributors++;
+				contrib.contributions[k] = new PixelContribution();
+				contrib.contributions[k].pixel = originalClamp(j, srcSize);
+				contrib.contributions[k].weight = filterf.filter(center - j);
+			}
+		}
+
+		return contrib;
+	}
+
+	/**
+	 * Apply the weights to the given values, rounding and clipping the result
+	 * as the original implementation did
+	 */
+	private static float originalFilter(PixelContributions contrib, float[] values, float maxValue) {
+		double weight = 0.0;
+		boolean bPelDelta = false;
+		final double pel = values[contrib.contributions[0].pixel];
+		for (int j = 0; j < contrib.numberOfContributors; j++) {
+			final double pel2 = j == 0 ? pel : values[contrib.contributions[j].pixel];
+			if (pel2 != pel) {
+				bPelDelta = true;
+			}
+			weight += pel2 * contrib.contributions[j].weight;
+		}
+		weight = bPelDelta ? Math.round(weight * 255) / 255f : pel;
+
+		if (weight < 0) {
+			weight = 0;
+		} else if (weight > maxValue) {
+			weight = maxValue;
+		}
+
+		return (float) weight;
+	}
+
+	/**
+	 * A copy of the original column-by-column implementation of
+	 * {@link ResizeProcessor#zoom(FImage, FImage, ResizeFilterFunction)}, which
+	 * the resampler must reproduce exactly
+	 */
+	private static FImage originalZoom(FImage in, FImage dst, ResizeFilterFunction filterf) {
+		final double xscale = (double) dst.width / (double) in.width;
+		final double yscale = (double) dst.height / (double) in.height;
+		final double fwidth = filterf.getSupport();
+		final float maxValue = in.max();
+
+		final PixelContributions[] contribY = new PixelContributions[dst.height];
+		for (int i = 0; i < dst.height; i++)
+			contribY[i] = originalContributions(i, yscale, fwidth, in.height, filterf, true);
+
+		/* create intermediate column to hold horizontal dst column zoom */
+		final float[] work = new float[in.height];
+		for (int xx = 0; xx < dst.width; xx++) {
+			final PixelContributions contribX = originalContributions(xx, xscale, fwidth, in.width, filterf, false);
+
+			/* Apply horiz filter to make dst column in tmp. */
+			for (int k = 0; k < in.height; k++)
+				work[k] = originalFilter(contribX, in.pixels[k], maxValue);
+
+			/* Now stretch the temp column vertically into the dst column. */
+			for (int i = 0; i < dst.height; i++)
+				dst.pixels[i][xx] = originalFilter(contribY[i], work, maxValue);
+		}
+
+		return dst;
+	}
 }
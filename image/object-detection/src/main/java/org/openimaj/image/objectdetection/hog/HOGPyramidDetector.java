@@ -0,0 +1,232 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.objectdetection.hog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.feature.dense.gradient.HOG;
+import org.openimaj.image.feature.dense.gradient.HOGPyramid;
+import org.openimaj.image.feature.dense.gradient.HOGPyramid.Level;
+import org.openimaj.image.feature.dense.gradient.binning.FixedHOGStrategy;
+import org.openimaj.image.objectdetection.AbstractMultiScaleObjectDetector;
+import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+/**
+ * A multi-scale HOG detector for linear classifiers built on a
+ * {@link HOGPyramid}. The cell and block histograms are computed once per
+ * pyramid level rather than once per window, and the classifier is applied as
+ * a dense linear filter over the grid of normalised blocks at each level.
+ * Windows are placed on the cell grid of each level, so the spatial step is
+ * one cell.
+ * <p>
+ * The weight vector must be laid out in the same way as the features produced
+ * by {@link HOG#getFeatureVector(Rectangle)} with the same
+ * {@link FixedHOGStrategy} for a window of the detector size (i.e. the weights
+ * of a linear SVM trained on those features). A window is detected if the dot
+ * product of its features with the weights plus the bias exceeds the
+ * threshold.
+ * <p>
+ * The levels are processed in parallel using the {@link GlobalExecutorPool}
+ * unless another pool (or null) is set with
+ * {@link #setThreadPool(ThreadPoolExecutor)}. The detector is not thread-safe.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class HOGPyramidDetector extends AbstractMultiScaleObjectDetector<FImage, Rectangle> {
+	protected HOGPyramid pyramid;
+	protected int windowWidth;
+	protected int windowHeight;
+	protected double[] weights;
+	protected double bias;
+	protected double threshold = 0;
+	protected ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+
+	private int windowCellsX;
+	private int windowCellsY;
+	private int windowBlocksX;
+	private int windowBlocksY;
+
+	/**
+	 * Construct the detector.
+	 *
+	 * @param pyramid
+	 *            the pyramid used to compute the features
+	 * @param windowWidth
+	 *            the width of the detection window (in pixels)
+	 * @param windowHeight
+	 *            the height of the detection window (in pixels)
+	 * @param weights
+	 *            the weights of the linear classifier
+	 * @param bias
+	 *            the bias of the linear classifier
+	 */
+	public HOGPyramidDetector(HOGPyramid pyramid, int windowWidth, int windowHeight, double[] weights, double bias) {
+		super(0, 0);
+
+		final FixedHOGStrategy strategy = pyramid.getStrategy();
+
+		// this follows the cell layout of FixedHOGStrategy
+		this.windowCellsX = (windowWidth + strategy.getCellWidth() / 2) / strategy.getCellWidth();
+		this.windowCellsY = (windowHeight + strategy.getCellHeight() / 2) / strategy.getCellHeight();
+		this.windowBlocksX = 1 + (windowCellsX - strategy.getCellsPerBlockX()) / strategy.getBlockStepX();
+		this.windowBlocksY = 1 + (windowCellsY - strategy.getCellsPerBlockY()) / strategy.getBlockStepY();
+
+		final int blockLength = strategy.getCellsPerBlockX() * strategy.getCellsPerBlockY() * pyramid.getNumBins();
+		if (weights.length != windowBlocksX * windowBlocksY * blockLength)
+			throw new IllegalArgumentException("Expected " + (windowBlocksX * windowBlocksY * blockLength)
+					+ " weights for a " + windowWidth + "x" + windowHeight + " window, but got " + weights.length);
+
+		this.pyramid = pyramid;
+		this.windowWidth = windowWidth;
+		this.windowHeight = windowHeight;
+		this.weights = weights;
+		this.bias = bias;
+	}
+
+	/**
+	 * Set the threshold on the classifier output above which a window is
+	 * considered a detection. Defaults to 0.
+	 *
+	 * @param threshold
+	 *            the threshold
+	 */
+	public void setThreshold(double threshold) {
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Set the thread pool used to process the pyramid levels in parallel. If
+	 * the pool is null, all processing is performed in the calling thread.
+	 *
+	 * @param pool
+	 *            the thread pool; may be null
+	 */
+	public void setThreadPool(ThreadPoolExecutor pool) {
+		this.pool = pool;
+		this.pyramid.setThreadPool(pool);
+	}
+
+	@Override
+	public List<Rectangle> detect(FImage image) {
+		pyramid.analyseImage(image, windowCellsX, windowCellsY);
+
+		final List<Level> levels = pyramid.getLevels();
+		final List<List<Rectangle>> levelResults = new ArrayList<List<Rectangle>>(levels.size());
+		for (int i = 0; i < levels.size(); i++)
+			levelResults.add(new ArrayList<Rectangle>());
+
+		if (pool == null) {
+			for (int i = 0; i < levels.size(); i++)
+				detectAtLevel(levels.get(i), levelResults.get(i));
+		} else {
+			Parallel.forRangeCallerRuns(0, levels.size(), 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					for (int i = range.start; i < range.stop; i++)
+						detectAtLevel(levels.get(i), levelResults.get(i));
+				}
+			}, pool);
+		}
+
+		final List<Rectangle> results = new ArrayList<Rectangle>();
+		for (final List<Rectangle> r : levelResults)
+			results.addAll(r);
+
+		return results;
+	}
+
+	/**
+	 * Score every window at the given level and record the detections. Window
+	 * sizes outside the minimum and maximum detection sizes are skipped, and
+	 * only windows entirely within the region of interest (if set) are
+	 * considered.
+	 *
+	 * @param level
+	 *            the level
+	 * @param results
+	 *            the list to store detection results in
+	 */
+	protected void detectAtLevel(Level level, List<Rectangle> results) {
+		final FixedHOGStrategy strategy = pyramid.getStrategy();
+		final int cellWidth = strategy.getCellWidth();
+		final int cellHeight = strategy.getCellHeight();
+		final int blockStepX = strategy.getBlockStepX();
+		final int blockStepY = strategy.getBlockStepY();
+		final int blockLength = level.blockLength;
+		final double[] blocks = level.blocks;
+
+		final float width = windowWidth / level.scale;
+		final float height = windowHeight / level.scale;
+		if (width < minSize || height < minSize)
+			return;
+		if (maxSize > 0 && (width > maxSize || height > maxSize))
+			return;
+
+		// determine the range of window positions (in cells), taking into
+		// account any ROI
+		int startX = 0;
+		int startY = 0;
+		int stopX = level.cellsX - windowCellsX;
+		int stopY = level.cellsY - windowCellsY;
+		if (roi != null) {
+			startX = Math.max(startX, (int) Math.ceil(roi.x * level.scale / cellWidth));
+			startY = Math.max(startY, (int) Math.ceil(roi.y * level.scale / cellHeight));
+			stopX = Math.min(stopX, (int) Math.floor(((roi.x + roi.width) * level.scale - windowWidth) / cellWidth));
+			stopY = Math.min(stopY, (int) Math.floor(((roi.y + roi.height) * level.scale - windowHeight) / cellHeight));
+		}
+
+		for (int cy = startY; cy <= stopY; cy++) {
+			for (int cx = startX; cx <= stopX; cx++) {
+				double score = bias;
+
+				for (int by = 0, w = 0; by < windowBlocksY; by++) {
+					for (int bx = 0; bx < windowBlocksX; bx++) {
+						final int offset = level.offset(cx + bx * blockStepX, cy + by * blockStepY);
+
+						for (int k = 0; k < blockLength; k++, w++)
+							score += weights[w] * blocks[offset + k];
+					}
+				}
+
+				if (score > threshold) {
+					results.add(new Rectangle(cx * cellWidth / level.scale, cy * cellHeight / level.scale, width,
+							height));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.objectdetection.hog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.OpenIMAJ;
+import org.openimaj.image.FImage;
+import org.openimaj.image.ImageUtilities;
+import org.openimaj.image.feature.dense.gradient.HOG;
+import org.openimaj.image.feature.dense.gradient.HOGPyramid;
+import org.openimaj.image.feature.dense.gradient.binning.FixedHOGStrategy;
+import org.openimaj.image.feature.dense.gradient.binning.FixedHOGStrategy.BlockNormalisation;
+import org.openimaj.image.processing.convolution.FImageGradients;
+import org.openimaj.math.geometry.shape.Rectangle;
+
+/**
+ * Tests for {@link HOGPyramidDetector}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class HOGPyramidDetectorTest {
+	private static final double EPS = 1e-8;
+
+	private FImage image;
+
+	/**
+	 * Setup. Noise is added to the logo so that no cell is empty (the
+	 * normalised histogram of an empty cell is undefined).
+	 * 
+	 * @throws IOException
+	 */
+	@Before
+	public void setup() throws IOException {
+		image = ImageUtilities.readF(OpenIMAJ.getLogoAsStream());
+
+		final Random rng = new Random(0);
+		for (int y = 0; y < image.height; y++)
+			for (int x = 0; x < image.width; x++)
+				image.pixels[y][x] = 0.9f * image.pixels[y][x] + 0.1f * rng.nextFloat();
+	}
+
+	private static double score(HOG hog, Rectangle window, double[] weights, double bias) {
+		final double[] features = hog.getFeatureVector(window).values;
+		assertEquals(weights.length, features.length);
+
+		double score = bias;
+		for (int i = 0; i < features.length; i++)
+			score += weights[i] * features[i];
+
+		return score;
+	}
+
+	/**
+	 * Test that the score of windows at the first level is the dot product of
+	 * the weights with the features computed by {@link HOG} plus the bias, for
+	 * block steps of one and two cells
+	 */
+	@Test
+	public void testFirstLevelScores() {
+		checkScores(new FixedHOGStrategy(8, 2, BlockNormalisation.L2clip), 32, 24);
+		checkScores(new FixedHOGStrategy(8, 2, 2, BlockNormalisation.L2clip), 48, 32);
+	}
+
+	private void checkScores(FixedHOGStrategy strategy, int windowWidth, int windowHeight) {
+		final HOG hog = new HOG(9, false, FImageGradients.Mode.Unsigned, strategy);
+		hog.analyseImage(image);
+
+		final Random rng = new Random(1);
+		final int length = hog.getFeatureVector(new Rectangle(0, 0, windowWidth, windowHeight)).values.length;
+		final double[] weights = new double[length];
+		for (int i = 0; i < length; i++)
+			weights[i] = rng.nextGaussian();
+		final double bias = -0.5;
+
+		final HOGPyramidDetector detector = new HOGPyramidDetector(new HOGPyramid(9, false,
+				FImageGradients.Mode.Unsigned, strategy, 3), windowWidth, windowHeight, weights, bias);
+		detector.setThreadPool(null);
+
+		for (int y = 0; y + windowHeight <= image.height; y += 5 * 8) {
+			for (int x = 0; x + windowWidth <= image.width; x += 7 * 8) {
+				final Rectangle window = new Rectangle(x, y, windowWidth, windowHeight);
+				final double expected = score(hog, window, weights, bias);
+
+				// the window is detected if and only if its score is above the
+				// threshold
+				detector.setThreshold(expected - EPS);
+				assertTrue(detector.detect(image).contains(window));
+
+				detector.setThreshold(expected + EPS);
+				assertFalse(detector.detect(image).contains(window));
+			}
+		}
+	}
+
+	/**
+	 * Test that a window the size of the detector is detected when the weights
+	 * match its features, and that the parallel and sequential detectors agree
+	 */
+	@Test
+	public void testNativeSizeDetection() {
+		final FixedHOGStrategy strategy = new FixedHOGStrategy(8, 2, BlockNormalisation.L2clip);
+		final HOG hog = new HOG(9, false, FImageGradients.Mode.Unsigned, strategy);
+		hog.analyseImage(image);
+
+		final Rectangle window = new Rectangle(64, 40, 32, 24);
+		final double[] weights = hog.getFeatureVector(window).values;
+		final double bias = 0.01 - score(hog, window, weights, 0);
+
+		final HOGPyramidDetector detector = new HOGPyramidDetector(new HOGPyramid(9, false,
+				FImageGradients.Mode.Unsigned, strategy, 3), 32, 24, weights, bias);
+		final List<Rectangle> parallel = detector.detect(image);
+		assertTrue(parallel.contains(window));
+
+		detector.setThreadPool(null);
+		assertEquals(parallel, detector.detect(image));
+	}
+}
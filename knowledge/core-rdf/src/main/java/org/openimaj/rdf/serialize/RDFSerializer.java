@@ -31,6 +31,9 @@ package org.openimaj.rdf.serialize;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -69,6 +72,8 @@ import org.openrdf.repository.sail.SailRepository;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFParseException;
 import org.openrdf.sail.memory.MemoryStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.core.ResolvableType;
 
 import javassist.Modifier;
@@ -197,6 +202,135 @@ public class RDFSerializer {
 	/** Whether to output class names */
 	protected boolean outputClassNames = true;
 
+	/** Value factory used for creating typed literals */
+	private static final ValueFactoryImpl VALUE_FACTORY = new ValueFactoryImpl();
+
+	/** Predicate URI for the class name triples */
+	private static final URIImpl CLASSNAME_PREDICATE = new URIImpl(RDFSerializer.RDF_OPENIMAJ_P_CLASSNAME);
+
+	private static final Logger logger = LoggerFactory.getLogger(RDFSerializer.class);
+
+	/**
+	 * The serialisation plans for each class that has been seen. The plans
+	 * don't depend on the configuration of the serialiser, so are shared
+	 * between all instances. A {@link ClassValue} is used rather than a static
+	 * map keyed on the class so that a cached plan doesn't stop its class (and
+	 * the class loader that loaded it) from being unloaded.
+	 */
+	private static final ClassValue<ClassPlan> PLANS = new ClassValue<ClassPlan>() {
+		@Override
+		protected ClassPlan computeValue(final Class<?> type) {
+			return new ClassPlan(type);
+		}
+	};
+
+	/**
+	 * The reflective information needed to serialise a field, computed once
+	 * per class.
+	 */
+	private static class FieldPlan {
+		final Field field;
+		final String name;
+		final MethodHandle getter;
+		final URIImpl predicate;
+		final String autoPredicateSuffix;
+		final boolean asCollection;
+		final boolean tripleList;
+		final boolean relationList;
+
+		FieldPlan(final Field field, final MethodHandle getter) {
+			this.field = field;
+			this.name = field.getName();
+			this.getter = getter;
+
+			final Predicate predicateAnnotation = field.getAnnotation(Predicate.class);
+			this.predicate = predicateAnnotation == null ? null : new URIImpl(predicateAnnotation.value());
+			this.autoPredicateSuffix = "_has" + this.name.substring(0, 1).toUpperCase() + this.name.substring(1);
+
+			this.asCollection = field.getAnnotation(RDFCollection.class) != null;
+			this.tripleList = field.getAnnotation(TripleList.class) != null;
+			this.relationList = field.getAnnotation(RelationList.class) != null;
+		}
+	}
+
+	/**
+	 * The reflective information needed to serialise an instance of a class:
+	 * its class name literal, its {@link RDFType}, its getURI() method and the
+	 * plans for all its non-static fields.
+	 */
+	private static class ClassPlan {
+		final Value className;
+		final URIImpl type;
+		final Method uriMethod;
+		final List<FieldPlan> fields = new ArrayList<FieldPlan>();
+
+		ClassPlan(final Class<?> clazz) {
+			this.className = new LiteralImpl(clazz.getName());
+
+			final RDFType typeAnnotation = clazz.getAnnotation(RDFType.class);
+			this.type = typeAnnotation == null ? null : new URIImpl(typeAnnotation.value());
+
+			Method m = null;
+			try {
+				m = clazz.getMethod("getURI");
+			} catch (final NoSuchMethodException e) {
+			} catch (final SecurityException e) {
+				RDFSerializer.logger.warn("Error reflecting getURI() of " + clazz, e);
+			}
+			this.uriMethod = m;
+
+			final MethodHandles.Lookup lookup = MethodHandles.lookup();
+			final MethodType getterType = MethodType.methodType(Object.class, Object.class);
+			for (final Field field : RDFSerializer.getAllFields(clazz)) {
+				// We won't output static members
+				if (Modifier.isStatic(field.getModifiers()))
+					continue;
+
+				try {
+					field.setAccessible(true);
+					final MethodHandle getter = lookup.unreflectGetter(field).asType(getterType);
+					this.fields.add(new FieldPlan(field, getter));
+				} catch (final Exception e) {
+					RDFSerializer.logger.warn("Error reflecting " + field, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the (cached) serialisation plan for the given class
+	 *
+	 * @param clazz
+	 *            the class
+	 * @return the plan
+	 */
+	private static ClassPlan getPlan(final Class<?> clazz) {
+		return RDFSerializer.PLANS.get(clazz);
+	}
+
+	/**
+	 * Read the value of a field through its cached getter
+	 *
+	 * @param field
+	 *            the field plan
+	 * @param object
+	 *            the object to read from
+	 * @return the value of the field
+	 * @throws Exception
+	 *             if the value cannot be read
+	 */
+	private static Object getFieldValue(final FieldPlan field, final Object object) throws Exception {
+		try {
+			return (Object) field.getter.invokeExact(object);
+		} catch (final Exception e) {
+			throw e;
+		} catch (final Error e) {
+			throw e;
+		} catch (final Throwable e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	/**
 	 * During a serialization, this field contains all the graphs which have already
 	 * been written, avoiding duplicate entries in the output as well as avoiding
@@ -268,36 +402,29 @@ public class RDFSerializer {
 	public URI serializeAux(final Object objectToSerialize, final String uri,
 			final boolean outputCollectionObjects)
 	{
+		// Get the (cached) reflection information for the object
+		final ClassPlan plan = RDFSerializer.getPlan(objectToSerialize.getClass());
+
 		// The subject (the object to serialize) won't change, so
 		// we'll just create the URI node once.
 		URIImpl subject = new URIImpl(uri);
 
 		// Find the object URI
-		subject = this.getObjectURI(objectToSerialize, subject);
+		subject = this.getObjectURI(objectToSerialize, plan, subject);
 
 		// Check whether we've already serialized this object. If we have
 		// we just return, otherwise we add it to our memory of serialized
 		// objects so that we won't try again.
-		if (this.knownGraphs.contains(subject))
+		if (!this.knownGraphs.add(subject))
 			return subject;
 
-		this.knownGraphs.add(subject);
-
 		// Output the class name of the object to serialise
 		if (this.outputClassNames)
-			this.addTriple(new StatementImpl(subject, new URIImpl(
-					RDFSerializer.RDF_OPENIMAJ_P_CLASSNAME),
-					this
-							.checkPrimitive(objectToSerialize.getClass().getName())));
-
-		// Check whether there's a semantic type for this object
-		final RDFType typeAnnotation = objectToSerialize.getClass()
-				.getAnnotation(RDFType.class);
+			this.addTriple(new StatementImpl(subject, RDFSerializer.CLASSNAME_PREDICATE, plan.className));
 
 		// If there is a type anotation, add it as a triple in the graph.
-		if (typeAnnotation != null)
-			this.addTriple(new StatementImpl(subject, RDF.TYPE, new URIImpl(
-					typeAnnotation.value())));
+		if (plan.type != null)
+			this.addTriple(new StatementImpl(subject, RDF.TYPE, plan.type));
 
 		// If this top-level object is a collection, we obviously
 		// have no predicate for all the items in the collection,
@@ -316,21 +443,11 @@ public class RDFSerializer {
 			// of this object...
 		}
 
-		// Get all the fields
-		final List<Field> fields = this.getAllFields(objectToSerialize);
-
-		// Loop through the fields and output them one at a time
-		for (final Field field : fields) {
-			// We won't output static members
-			if (Modifier.isStatic(field.getModifiers()))
-				continue;
-
-			// System.out.println( "====== Field "+field+" ============");
-
+		// Loop through the (non-static) fields and output them one at a time
+		for (final FieldPlan field : plan.fields) {
 			try {
 				// Get the value of the field
-				field.setAccessible(true);
-				final Object oo = field.get(objectToSerialize);
+				final Object oo = RDFSerializer.getFieldValue(field, objectToSerialize);
 
 				// Special fields have annotations which mean they will be
 				// output in some other way, as defined in the outputSpecial()
@@ -340,17 +457,17 @@ public class RDFSerializer {
 					// Get the predicate name (may be null if if cannot be
 					// created either due to a lack of the @Predicate
 					// annotation or because autoPredicate is false
-					final URIImpl predicate = this.getPredicateName(field, uri);
+					URIImpl predicate = field.predicate;
+					if (predicate == null && this.autoPredicate)
+						predicate = new URIImpl(uri + field.autoPredicateSuffix);
 
 					// If the predicate is null, we can't output this object.
 					// Otherwise, we'll go ahead and output it.
 					if (predicate != null)
-						this.processObject(subject, predicate, field.getName(), oo,
-								field.getAnnotation(RDFCollection.class) != null);
+						this.processObject(subject, predicate, field.name, oo, field.asCollection);
 				}
 			} catch (final Exception e) {
-				System.out.println("Error reflecting " + field);
-				e.printStackTrace();
+				RDFSerializer.logger.warn("Error reflecting " + field.field, e);
 			}
 		}
 
@@ -625,13 +742,13 @@ public class RDFSerializer {
 			return new LiteralImpl(o.toString());
 
 		if (o instanceof Integer)
-			return new ValueFactoryImpl().createLiteral((Integer) o);
+			return RDFSerializer.VALUE_FACTORY.createLiteral((Integer) o);
 
 		if (o instanceof Float)
-			return new ValueFactoryImpl().createLiteral((Float) o);
+			return RDFSerializer.VALUE_FACTORY.createLiteral((Float) o);
 
 		if (o instanceof Double)
-			return new ValueFactoryImpl().createLiteral((Double) o);
+			return RDFSerializer.VALUE_FACTORY.createLiteral((Double) o);
 
 		if (o instanceof URI || o instanceof URL || o instanceof java.net.URI)
 			return new URIImpl(o.toString());
@@ -640,20 +757,20 @@ public class RDFSerializer {
 	}
 
 	/**
-	 * Returns a list of declared fields from the whole object tree.
+	 * Returns a list of declared fields from the whole class tree.
 	 *
-	 * @param o
-	 *            The object
+	 * @param clazz
+	 *            The class
 	 * @return A list of fields
 	 */
-	private List<Field> getAllFields(final Object o) {
+	private static List<Field> getAllFields(final Class<?> clazz) {
 		final ArrayList<Field> fields = new ArrayList<Field>();
-		Class<?> objectToGetFieldsFrom = o.getClass();
-		do {
+		Class<?> objectToGetFieldsFrom = clazz;
+		while (objectToGetFieldsFrom != null && objectToGetFieldsFrom != Object.class) {
 			fields.addAll(Arrays.asList(objectToGetFieldsFrom
 					.getDeclaredFields()));
 			objectToGetFieldsFrom = objectToGetFieldsFrom.getSuperclass();
-		} while (!objectToGetFieldsFrom.getSimpleName().equals("Object"));
+		}
 
 		return fields;
 	}
@@ -1437,22 +1554,24 @@ public class RDFSerializer {
 	 * @return A URI for the object
 	 */
 	public URIImpl getObjectURI(final Object obj, final URIImpl defaultURI) {
+		return this.getObjectURI(obj, RDFSerializer.getPlan(obj.getClass()), defaultURI);
+	}
+
+	private URIImpl getObjectURI(final Object obj, final ClassPlan plan, final URIImpl defaultURI) {
 		// Check whether the object has a getURI() method. If so, then
 		// what we'll do is this: we'll call the getURI() method to retrieve the
 		// URI of the object and use that as the subject URI instead of the
 		// uri that's passed in via the method parameters.
-		try {
-			final Method method = obj.getClass().getMethod("getURI");
+		if (plan.uriMethod == null)
+			return defaultURI;
 
+		try {
 			// We'll call the method and use the toString() method to
 			// get the URI as a string. We'll instantiate a new URIImpl with it.
-			final URIImpl subject = new URIImpl(method.invoke(obj,
+			final URIImpl subject = new URIImpl(plan.uriMethod.invoke(obj,
 					(Object[]) null).toString());
 
 			return subject;
-		} catch (final NoSuchMethodException e1) {
-		} catch (final SecurityException e1) {
-			e1.printStackTrace();
 		} catch (final IllegalAccessException e) {
 			e.printStackTrace();
 		} catch (final IllegalArgumentException e) {
@@ -1481,13 +1600,13 @@ public class RDFSerializer {
 	 *            The field definition
 	 * @return
 	 */
-	private boolean outputSpecial(final Object fieldValue, final Field field,
+	private boolean outputSpecial(final Object fieldValue, final FieldPlan field,
 			final URIImpl subjectURI)
 	{
 		// Check whether this field is a triple list. If it is, we'll take
 		// the triples from the field (assuming it's the right type) and
 		// bang them into the triple store.
-		if (field.getAnnotation(TripleList.class) != null) {
+		if (field.tripleList) {
 			if (fieldValue instanceof Collection) {
 				for (final Object o : (Collection<?>) fieldValue) {
 					if (o instanceof Statement)
@@ -1497,7 +1616,7 @@ public class RDFSerializer {
 			return true; // stop the main loop processing this field
 		} else
 		// If the field is a relation list, process each in turn
-		if (field.getAnnotation(RelationList.class) != null) {
+		if (field.relationList) {
 			if (fieldValue instanceof Collection) {
 				int count = 0;
 				for (final Object o : (Collection<?>) fieldValue) {
@@ -1513,7 +1632,7 @@ public class RDFSerializer {
 						else {
 							final URI subjU = this.serializeAux(
 									ip.getSecondObject(), subjectURI + "_"
-											+ field.getName() + "_" + count++);
+											+ field.name + "_" + count++);
 							this.addTriple(new StatementImpl(
 									subjectURI,
 									new URIImpl(ip.getFirstObject().toString()),
@@ -1521,7 +1640,7 @@ public class RDFSerializer {
 						}
 					} else
 						this.serializeAux(o,
-								subjectURI + "_" + field.getName() + "_"
+								subjectURI + "_" + field.name + "_"
 										+ count++);
 				}
 			}
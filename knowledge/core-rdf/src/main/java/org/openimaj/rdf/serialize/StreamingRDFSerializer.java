@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.rdf.serialize;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.Rio;
+
+/**
+ * An {@link RDFSerializer} that streams the triples it produces straight to an
+ * OpenRDF {@link RDFHandler} (for example an N-Triples or Turtle writer) as
+ * they are generated, rather than requiring them to be collected first. Any
+ * number of objects can be serialised into the same output; the output is
+ * started before the first object is serialised and must be finished by
+ * calling {@link #close()}.
+ * <p>
+ * <code><pre>
+ * 		final StreamingRDFSerializer rs = new StreamingRDFSerializer( out, RDFFormat.NTRIPLES );
+ * 		for( final MyObject o : objects )
+ * 			rs.serialize( o, o.getURI() );
+ * 		rs.close();
+ * </pre></code>
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class StreamingRDFSerializer extends RDFSerializer implements Closeable {
+	private final RDFHandler handler;
+	private boolean started = false;
+
+	/**
+	 * Construct a serializer that passes triples to the given handler.
+	 *
+	 * @param handler
+	 *            the handler for the triples
+	 * @param autoPredicate
+	 *            Whether to automatically create predicates
+	 */
+	public StreamingRDFSerializer(final RDFHandler handler, final boolean autoPredicate) {
+		super(autoPredicate);
+		this.handler = handler;
+	}
+
+	/**
+	 * Construct a serializer that passes triples to the given handler. Only
+	 * fields annotated with {@link Predicate} will be serialised.
+	 *
+	 * @param handler
+	 *            the handler for the triples
+	 */
+	public StreamingRDFSerializer(final RDFHandler handler) {
+		this(handler, false);
+	}
+
+	/**
+	 * Construct a serializer that writes triples to the given stream in the
+	 * given format. Only fields annotated with {@link Predicate} will be
+	 * serialised.
+	 *
+	 * @param out
+	 *            the output stream
+	 * @param format
+	 *            the RDF format (i.e. {@link RDFFormat#NTRIPLES} or
+	 *            {@link RDFFormat#TURTLE})
+	 */
+	public StreamingRDFSerializer(final OutputStream out, final RDFFormat format) {
+		this(Rio.createWriter(format, out), false);
+	}
+
+	/**
+	 * Construct a serializer that writes triples to the given writer in the
+	 * given format. Only fields annotated with {@link Predicate} will be
+	 * serialised.
+	 *
+	 * @param out
+	 *            the writer
+	 * @param format
+	 *            the RDF format (i.e. {@link RDFFormat#NTRIPLES} or
+	 *            {@link RDFFormat#TURTLE})
+	 */
+	public StreamingRDFSerializer(final Writer out, final RDFFormat format) {
+		this(Rio.createWriter(format, out), false);
+	}
+
+	@Override
+	public URI serialize(final Object objectToSerialize, final String uri) {
+		if (!this.started) {
+			try {
+				this.handler.startRDF();
+			} catch (final RDFHandlerException e) {
+				throw new RuntimeException(e);
+			}
+			this.started = true;
+		}
+
+		return super.serialize(objectToSerialize, uri);
+	}
+
+	@Override
+	public void addTriple(final Statement t) {
+		try {
+			this.handler.handleStatement(t);
+		} catch (final RDFHandlerException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Finish the output. This does not close the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (!this.started)
+				this.handler.startRDF();
+			this.started = false;
+
+			this.handler.endRDF();
+		} catch (final RDFHandlerException e) {
+			throw new IOException(e);
+		}
+	}
+}
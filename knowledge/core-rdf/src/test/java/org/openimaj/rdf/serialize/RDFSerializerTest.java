@@ -0,0 +1,252 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.rdf.serialize;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.StatementCollector;
+
+/**
+ * Tests for the {@link RDFSerializer} (and its cached serialisation plans) and
+ * the {@link StreamingRDFSerializer}.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class RDFSerializerTest {
+	private static final String NS = "http://example.org/";
+
+	/**
+	 * Simple annotated class for testing
+	 */
+	@RDFType(NS + "Person")
+	public static class Person {
+		@Predicate(NS + "name")
+		String name;
+
+		@Predicate(NS + "age")
+		int age;
+
+		@Predicate(NS + "height")
+		double height;
+
+		@Predicate(NS + "friend")
+		Person friend;
+
+		@Predicate(NS + "tags")
+		List<String> tags;
+
+		String unannotated = "hidden";
+
+		static String ignoredStatic = "static";
+	}
+
+	/**
+	 * Serialiser that collects all the triples in order
+	 */
+	static class CollectingSerializer extends RDFSerializer {
+		final List<Statement> statements = new ArrayList<Statement>();
+
+		CollectingSerializer(boolean autoPredicate) {
+			super(autoPredicate);
+		}
+
+		@Override
+		public void addTriple(Statement t) {
+			statements.add(t);
+		}
+	}
+
+	private static Person createPerson(String name, int age) {
+		final Person p = new Person();
+		p.name = name;
+		p.age = age;
+		p.height = 1.5 + age / 100.0;
+		return p;
+	}
+
+	private static Person createGraph() {
+		final Person alice = createPerson("Alice", 30);
+		final Person bob = createPerson("Bob", 40);
+		alice.friend = bob;
+		bob.friend = alice;
+		alice.tags = new ArrayList<String>(Arrays.asList("a", "b", "c"));
+		return alice;
+	}
+
+	/**
+	 * Test that the triples produced through the cached plan of a class are
+	 * exactly those produced by direct reflection on the object.
+	 */
+	@Test
+	public void testPlanMatchesReflection() {
+		final Person p = createPerson("Alice", 30);
+		final String uri = NS + "alice";
+
+		final CollectingSerializer rs = new CollectingSerializer(false);
+		rs.serialize(p, uri);
+
+		final ValueFactoryImpl vf = new ValueFactoryImpl();
+		final URIImpl subject = new URIImpl(uri);
+		final HashSet<Statement> expected = new HashSet<Statement>();
+		expected.add(new StatementImpl(subject, new URIImpl(RDFSerializer.RDF_OPENIMAJ_P_CLASSNAME),
+				new LiteralImpl(Person.class.getName())));
+		expected.add(new StatementImpl(subject, RDF.TYPE, new URIImpl(NS + "Person")));
+		expected.add(new StatementImpl(subject, new URIImpl(NS + "name"), new LiteralImpl("Alice")));
+		expected.add(new StatementImpl(subject, new URIImpl(NS + "age"), vf.createLiteral(30)));
+		expected.add(new StatementImpl(subject, new URIImpl(NS + "height"), vf.createLiteral(p.height)));
+
+		assertEquals(expected.size(), rs.statements.size());
+		assertEquals(expected, new HashSet<Statement>(rs.statements));
+	}
+
+	/**
+	 * Test that the automatically created predicates are built from the
+	 * subject URI and the field name
+	 */
+	@Test
+	public void testAutoPredicate() {
+		final Person p = createPerson("Alice", 30);
+		final String uri = NS + "alice";
+
+		final CollectingSerializer rs = new CollectingSerializer(true);
+		rs.serialize(p, uri);
+
+		assertTrue(rs.statements.contains(new StatementImpl(new URIImpl(uri),
+				new URIImpl(uri + "_hasUnannotated"), new LiteralImpl("hidden"))));
+
+		for (final Statement s : rs.statements)
+			assertFalse(s.getPredicate().stringValue().endsWith("_hasIgnoredStatic"));
+	}
+
+	/**
+	 * Test that serialising with an already cached plan (from the same or a
+	 * different serialiser) gives the same triples in the same order
+	 */
+	@Test
+	public void testCachedPlanIsConsistent() {
+		final Person p = createGraph();
+
+		final CollectingSerializer first = new CollectingSerializer(false);
+		first.serialize(p, NS + "alice");
+
+		final CollectingSerializer second = new CollectingSerializer(false);
+		second.serialize(p, NS + "alice");
+		second.serialize(p, NS + "alice");
+
+		assertTrue(first.statements.size() > 0);
+		assertEquals(2 * first.statements.size(), second.statements.size());
+		assertEquals(first.statements, second.statements.subList(0, first.statements.size()));
+		assertEquals(first.statements,
+				second.statements.subList(first.statements.size(), second.statements.size()));
+	}
+
+	/**
+	 * Test that a serialised object can be read back
+	 */
+	@Test
+	public void testRoundTrip() {
+		final Person p = createPerson("Alice", 30);
+		p.friend = createPerson("Bob", 40);
+
+		final StringWriter sw = new StringWriter();
+		final StreamingRDFSerializer rs = new StreamingRDFSerializer(sw, RDFFormat.NTRIPLES);
+		rs.serialize(p, NS + "alice");
+		rs.close();
+
+		final Person read = new RDFSerializer().unserialize(new Person(), NS + "alice", sw.toString(),
+				RDFFormat.NTRIPLES);
+
+		assertEquals(p.name, read.name);
+		assertEquals(p.age, read.age);
+		assertEquals(p.height, read.height, 0);
+		assertEquals(p.friend.name, read.friend.name);
+		assertEquals(p.friend.age, read.friend.age);
+	}
+
+	/**
+	 * Test that the streaming serialiser writes valid RDF containing exactly
+	 * the triples produced by the base serialiser
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testStreamingOutput() throws Exception {
+		final Person[] people = { createGraph(), createPerson("Carol", 50), createPerson("Dave", 60) };
+
+		final CollectingSerializer reference = new CollectingSerializer(false);
+		for (int i = 0; i < people.length; i++)
+			reference.serialize(people[i], NS + "person" + i);
+
+		for (final RDFFormat format : new RDFFormat[] { RDFFormat.NTRIPLES, RDFFormat.TURTLE }) {
+			final StringWriter sw = new StringWriter();
+			final StreamingRDFSerializer streaming = new StreamingRDFSerializer(sw, format);
+			final List<URI> uris = new ArrayList<URI>();
+			for (int i = 0; i < people.length; i++)
+				uris.add(streaming.serialize(people[i], NS + "person" + i));
+			streaming.close();
+
+			for (int i = 0; i < people.length; i++)
+				assertEquals(NS + "person" + i, uris.get(i).stringValue());
+
+			final RDFParser parser = Rio.createParser(format);
+			final StatementCollector collector = new StatementCollector();
+			parser.setRDFHandler(collector);
+			parser.parse(new StringReader(sw.toString()), NS);
+
+			// Turtle may abbreviate the lexical form of typed literals, so
+			// only N-Triples can be compared triple-for-triple
+			final HashSet<Statement> parsed = new HashSet<Statement>(collector.getStatements());
+			if (format == RDFFormat.NTRIPLES)
+				assertEquals(new HashSet<Statement>(reference.statements), parsed);
+			else
+				assertEquals(new HashSet<Statement>(reference.statements).size(), parsed.size());
+		}
+	}
+}
@@ -29,36 +29,59 @@
  */
 package org.openimaj.ml.clustering.dbscan;
 
-import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
-import gnu.trove.map.hash.TIntObjectHashMap;
-import gnu.trove.procedure.TIntObjectProcedure;
-import gnu.trove.procedure.TIntProcedure;
-import gnu.trove.set.hash.TIntHashSet;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.ml.clustering.dbscan.neighbourhood.RegionMode;
+import org.openimaj.util.function.Operation;
 import org.openimaj.util.pair.IntDoublePair;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 /**
  * Implementation of DBSCAN (http://en.wikipedia.org/wiki/DBSCAN) using
- * a
+ * a {@link RegionMode} to find the neighbourhood of each point.
+ * <p>
+ * Rather than growing each cluster from a queue of neighbourhoods, the
+ * clustering is performed in three passes, each of which runs its region
+ * queries in parallel: the core points are identified; the core points are
+ * joined with their core neighbours in a union-find forest, whose trees are
+ * the clusters; and finally each remaining point is attached to a cluster
+ * containing one of its core neighbours, or marked as noise. At most one
+ * block of neighbourhoods is held in memory at a time. The result is the
+ * same as that of the classic algorithm: clusters are numbered in order of
+ * their lowest-indexed core point, and a border point reachable from several
+ * clusters belongs to the lowest-numbered one. The {@link RegionMode} must be
+ * safe to query from multiple threads unless the thread pool is set to null.
+ * <p>
+ * The neighbourhood relation is assumed to be symmetric. If it is not (for
+ * example an asymmetric {@link ch.akuhn.matrix.SparseMatrix} given to a
+ * {@link SparseMatrixDBSCAN}), the region of each point still decides whether
+ * it is a core point, but two core points are placed in the same cluster if
+ * either is in the region of the other, and a non-core point only joins a
+ * cluster if one of its core points is in its own region. The classic
+ * algorithm instead follows the links out of the core points, and the
+ * clusters it finds depend on the order of the points; symmetrise the
+ * neighbourhoods first if neither behaviour is wanted.
+ * 
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
  *
  */
 public class DBSCAN {
+	private static final int BLOCK_SIZE = 4096;
+
 	protected boolean noiseAsClusters = false;
+	protected ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+
 	/**
 	 *
 	 * @author Sina Samangooei (ss@ecs.soton.ac.uk)
 	 */
 	public static class State{
-
-		TIntHashSet visited = new TIntHashSet();
-		TIntHashSet noise = new TIntHashSet();
-		TIntHashSet addedToCluster = new TIntHashSet();
-		TIntObjectHashMap<TIntList> clusters = new TIntObjectHashMap<TIntList>();
 		private RegionMode<IntDoublePair> regionMode;
 		private int length;
 		private boolean noiseAsClusters;
@@ -85,75 +108,177 @@ public class DBSCAN {
 		}
 	}
 
+	/**
+	 * Something to do with the region of each point in a block
+	 */
+	private static interface RegionProcessor {
+		void process(int index, List<IntDoublePair> region);
+	}
+
 	DoubleDBSCANClusters dbscan(final State state) {
-		final int[] clusterIndex = new int[]{0};
-		for (int p = 0; p < state.length; p++) {
-			if(state.visited.contains(p))continue;
-			state.visited.add(p);
-			List<IntDoublePair> region = state.regionMode.regionQuery(p);
-			if(!state.regionMode.validRegion(region)){
-				state.noise.add(p);
+		final int n = state.length;
+		final RegionMode<IntDoublePair> regionMode = state.regionMode;
+
+		// pass 1: find the core points
+		final boolean[] core = new boolean[n];
+		forEachRegion(state, null, new RegionProcessor() {
+			@Override
+			public void process(int index, List<IntDoublePair> region) {
+				core[index] = regionMode.validRegion(region);
 			}
-			else{
-				TIntList cluster = new TIntArrayList();
-				state.clusters.put(clusterIndex[0], cluster);
-				expandCluster(p,region,cluster,state);
-				clusterIndex[0]++;
+		}, false);
+
+		// pass 2: join neighbouring core points; the root of each tree is its
+		// lowest-indexed point
+		final int[] parent = new int[n];
+		for (int i = 0; i < n; i++)
+			parent[i] = i;
+
+		forEachRegion(state, core, new RegionProcessor() {
+			@Override
+			public void process(int index, List<IntDoublePair> region) {
+				for (final IntDoublePair neighbour : region) {
+					if (core[neighbour.first])
+						union(parent, index, neighbour.first);
+				}
 			}
-		}
-		
-		if(state.noiseAsClusters){
-			state.noise.forEach(new TIntProcedure() {
-				
-				@Override
-				public boolean execute(int value) {
-					TIntArrayList arr = new TIntArrayList();
-					arr.add(value);
-					state.clusters.put(clusterIndex[0]++, arr);
-					return true;
+		}, true);
+
+		// number the clusters in order of their lowest-indexed point
+		final int[] clusterOf = new int[n];
+		final List<TIntArrayList> clusters = new ArrayList<TIntArrayList>();
+		for (int i = 0; i < n; i++) {
+			if (core[i]) {
+				final int root = find(parent, i);
+				if (root == i) {
+					clusterOf[i] = clusters.size();
+					clusters.add(new TIntArrayList());
+				} else {
+					clusterOf[i] = clusterOf[root];
 				}
-			});
+			} else {
+				clusterOf[i] = -1;
+			}
 		}
-		final int[][] clusterMembers = new int[state.clusters.size()][];
-		final int[] nEntries = new int[1];
-		state.clusters.forEachEntry(new TIntObjectProcedure<TIntList>() {
+
+		// pass 3: attach the border points to the first of their neighbouring
+		// clusters
+		final boolean[] notCore = new boolean[n];
+		for (int i = 0; i < n; i++)
+			notCore[i] = !core[i];
+
+		forEachRegion(state, notCore, new RegionProcessor() {
 			@Override
-			public boolean execute(int cluster, TIntList b) {
-				clusterMembers[cluster] = b.toArray();
-				nEntries[0] += clusterMembers[cluster].length; 
-				return true;
+			public void process(int index, List<IntDoublePair> region) {
+				int best = -1;
+				for (final IntDoublePair neighbour : region) {
+					final int c = core[neighbour.first] ? clusterOf[neighbour.first] : -1;
+					if (c >= 0 && (best < 0 || c < best))
+						best = c;
+				}
+				clusterOf[index] = best;
 			}
-		});
-		int[] noise = state.noise.toArray();
-		
-		final DoubleDBSCANClusters dbscanClusters = new DoubleDBSCANClusters(noise, clusterMembers);
-		return dbscanClusters;
+		}, false);
+
+		final TIntArrayList noise = new TIntArrayList();
+		for (int i = 0; i < n; i++) {
+			if (clusterOf[i] >= 0)
+				clusters.get(clusterOf[i]).add(i);
+			else
+				noise.add(i);
+		}
+
+		if (state.noiseAsClusters) {
+			for (int i = 0; i < noise.size(); i++) {
+				final TIntArrayList arr = new TIntArrayList();
+				arr.add(noise.get(i));
+				clusters.add(arr);
+			}
+		}
+
+		final int[][] clusterMembers = new int[clusters.size()][];
+		for (int i = 0; i < clusterMembers.length; i++)
+			clusterMembers[i] = clusters.get(i).toArray();
+
+		return new DoubleDBSCANClusters(noise.toArray(), clusterMembers);
 	}
 
-	private void expandCluster(int p, List<IntDoublePair> region, TIntList cluster, State state) {
-		addToCluster(p,cluster,state);
-		for (int regionIndex = 0; regionIndex < region.size(); regionIndex++) {
-			int pprime = region.get(regionIndex).first;
-			if (!state.visited.contains(pprime)){
-				state.visited.add(pprime);
-				List<IntDoublePair> regionPrime = state.regionMode.regionQuery(pprime);
-				if(state.regionMode.validRegion(regionPrime)) 
-					region.addAll(regionPrime);
-				else
-					state.noise.add(pprime);
+	/**
+	 * Query the regions of the selected points (or all points if selected is
+	 * null) a block at a time, in parallel, and pass them to the processor.
+	 * If sequential is true, the processor is called from a single thread in
+	 * index order; otherwise it is called from the query threads.
+	 */
+	private void forEachRegion(final State state, final boolean[] selected, final RegionProcessor processor,
+			boolean sequential)
+	{
+		final int n = state.length;
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		final List<IntDoublePair>[] regions = sequential ? new List[BLOCK_SIZE] : null;
+
+		for (int blockStart = 0; blockStart < n; blockStart += BLOCK_SIZE) {
+			final int start = blockStart;
+			final int stop = Math.min(n, blockStart + BLOCK_SIZE);
+
+			if (pool == null) {
+				queryRegions(state, selected, start, stop, regions, start, processor);
+			} else {
+				Parallel.forRangeCallerRuns(start, stop, 1, new Operation<IntRange>() {
+					@Override
+					public void perform(IntRange range) {
+						queryRegions(state, selected, range.start, range.stop, regions, start, processor);
+					}
+				}, pool);
+			}
+
+			if (regions != null) {
+				for (int i = start; i < stop; i++) {
+					if (regions[i - start] != null) {
+						processor.process(i, regions[i - start]);
+						regions[i - start] = null;
+					}
+				}
 			}
+		}
+	}
+
+	/**
+	 * Query the regions of the selected points in [start, stop), and either
+	 * store them in the regions array (offset by the given amount) or, if the
+	 * array is null, pass them straight to the processor.
+	 */
+	private static void queryRegions(State state, boolean[] selected, int start, int stop,
+			List<IntDoublePair>[] regions, int offset, RegionProcessor processor)
+	{
+		for (int i = start; i < stop; i++) {
+			if (selected != null && !selected[i])
+				continue;
 
-			addToCluster(pprime, cluster, state);
+			final List<IntDoublePair> region = state.regionMode.regionQuery(i);
+			if (regions != null)
+				regions[i - offset] = region;
+			else
+				processor.process(i, region);
 		}
 	}
 
-	private void addToCluster(int p, TIntList cluster, State state) {
-		if(!state.addedToCluster.contains(p)){
-			// This point is now certainly at the very least DENSITY reachable and must not be noise
-			state.noise.remove(p); 
-			cluster.add(p);
-			state.addedToCluster.add(p);
+	private static int find(int[] parent, int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
 		}
+		return i;
+	}
+
+	private static void union(int[] parent, int a, int b) {
+		final int ra = find(parent, a);
+		final int rb = find(parent, b);
+
+		if (ra < rb)
+			parent[rb] = ra;
+		else if (rb < ra)
+			parent[ra] = rb;
 	}
 	
 	/**
@@ -163,4 +288,15 @@ public class DBSCAN {
 	public void setNoiseAsClusters(boolean b) {
 		this.noiseAsClusters  = b;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Set the thread pool used to perform the region queries in parallel. If
+	 * null, the queries are performed in the calling thread.
+	 * 
+	 * @param pool
+	 *            the thread pool
+	 */
+	public void setThreadPool(ThreadPoolExecutor pool) {
+		this.pool = pool;
+	}
+}
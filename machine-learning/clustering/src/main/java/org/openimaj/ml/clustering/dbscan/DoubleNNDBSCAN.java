@@ -44,7 +44,17 @@ import org.openimaj.util.pair.IntDoublePair;
 
 /**
  * Implementation of DBSCAN (http://en.wikipedia.org/wiki/DBSCAN) using
- * a
+ * a {@link DoubleNearestNeighbours} to answer the region queries. Each
+ * region query is a fixed-radius search
+ * ({@link DoubleNearestNeighbours#searchWithinDistance(double[], double)}),
+ * so the cost of a query depends on the index built by the factory:
+ * {@link DoubleNearestNeighboursExact} scans all the points, whilst
+ * {@link org.openimaj.knn.DoubleNearestNeighboursExactKDTree} and
+ * {@link org.openimaj.knn.DoubleNearestNeighboursGrid} only visit the part of
+ * the space near the query. Note that the distances of the nearest neighbour
+ * implementations are squared Euclidean, so eps is a squared distance; a
+ * {@link org.openimaj.knn.DoubleNearestNeighboursGrid} works best with a
+ * cell size of <code>Math.sqrt(eps)</code>.
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
  *
  */
@@ -82,11 +92,10 @@ public class DoubleNNDBSCAN extends DBSCAN implements SpatialClusterer<DoubleDBS
 		}
 		@Override
 		public List<IntDoublePair> regionQuery(int index) {
-			List<IntDoublePair> res = nn.searchKNN(data[index], data.length);
-			List<IntDoublePair> ret = new ArrayList<IntDoublePair>();
+			List<IntDoublePair> res = nn.searchWithinDistance(data[index], eps);
+			List<IntDoublePair> ret = new ArrayList<IntDoublePair>(res.size());
 			for (IntDoublePair intFloatPair : res) {
 				if(intFloatPair.second<eps)ret.add(intFloatPair);
-				else break;
 			}
 			return ret;
 		}
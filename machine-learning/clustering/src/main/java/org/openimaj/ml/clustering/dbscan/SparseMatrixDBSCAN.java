@@ -42,7 +42,10 @@ import ch.akuhn.matrix.Vector.Entry;
 
 /**
  * Implementation of DBSCAN (http://en.wikipedia.org/wiki/DBSCAN) using
- * a
+ * a {@link SparseMatrix}; the region of each point is read from its row.
+ * The matrix should be symmetric; see {@link DBSCAN} for how links are
+ * treated if it is not.
+ * 
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
  *
  */
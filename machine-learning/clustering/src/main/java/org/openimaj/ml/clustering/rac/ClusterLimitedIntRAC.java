@@ -102,6 +102,7 @@ public class ClusterLimitedIntRAC extends IntRAC {
 	public ClusterLimitedIntRAC(int[][] bKeys, int subSamples, int nClusters) {
 		super(bKeys, subSamples, nClusters);
 		this.expectedClusters = (int) ((((float) nClusters) / subSamples) * bKeys.length);
+		thresholdOvershots = new TreeMap<Float, Integer>();
 	}
 
 	@Override
@@ -117,22 +118,66 @@ public class ClusterLimitedIntRAC extends IntRAC {
 			if (foundLength != entry.length) {
 				throw new RuntimeException();
 			}
+		}
+
+		for (int start = 0; start < data.length; start += BATCH_SIZE)
+			clusterBatch(data, start, Math.min(data.length, start + BATCH_SIZE));
+
+		this.nDims = foundLength;
 
-			boolean found = false;
-			float minDiff = 0;
+		return this;
+	}
 
-			for (final int[] existing : this.codebook) {
-				float distance = distanceEuclidianSquared(entry, existing);
-				if (distance < threshold) {
-					found = true;
-					break;
+	/**
+	 * As with {@link IntRAC}, the points of the batch are compared to the
+	 * existing centroids in parallel, recording either a centroid within the
+	 * threshold or the smallest overshoot of the threshold. The points are
+	 * then processed in order. Once a centroid has been replaced, the
+	 * recorded results for the remaining points are only reused if they found
+	 * a centroid that has not been replaced; otherwise the point is compared
+	 * to all the centroids again.
+	 */
+	@Override
+	protected void clusterBatch(final int[][] data, final int start, final int stop) {
+		final int existing = this.codebook.size();
+		final int[] found = new int[stop - start];
+		final float[] minDiffs = new float[stop - start];
+
+		forEachInBatch(start, stop, new BatchOperation() {
+			@Override
+			public void perform(int from, int to) {
+				for (int i = from; i < to; i++) {
+					final int position = findCentroid(data[i], existing);
+					found[i - start] = position;
+
+					if (position < 0)
+						minDiffs[i - start] = minThresholdOvershoot(data[i], 0, existing, 0);
 				}
-				distance = (float) (distance - threshold);
-				if (minDiff == 0 || distance < minDiff)
-					minDiff = distance;
+			}
+		});
+
+		final boolean[] replaced = new boolean[existing];
+		boolean anyReplaced = false;
+
+		for (int i = start; i < stop; i++) {
+			final int[] entry = data[i];
+			final int position = found[i - start];
+			float minDiff = minDiffs[i - start];
+			boolean isFound;
+
+			if (position >= 0 && !replaced[position]) {
+				isFound = true;
+			} else if (!anyReplaced) {
+				isFound = scanCentroids(entry, existing, this.numClusters()) >= 0;
+				if (!isFound)
+					minDiff = minThresholdOvershoot(entry, existing, this.numClusters(), minDiff);
+			} else {
+				isFound = scanCentroids(entry, 0, this.numClusters()) >= 0;
+				if (!isFound)
+					minDiff = minThresholdOvershoot(entry, 0, this.numClusters(), 0);
 			}
 
-			if (!found) {
+			if (!isFound) {
 				if (this.numClusters() >= this.expectedClusters) {
 					// Remove the current smallest distance with this centroid
 					final Float smallestDistance = this.thresholdOvershots.firstKey();
@@ -143,11 +188,17 @@ public class ClusterLimitedIntRAC extends IntRAC {
 						this.codebook.add(index, entry);
 						this.thresholdOvershots.remove(smallestDistance);
 						this.thresholdOvershots.put(minDiff, this.numClusters() - 1);
+						addToIndex(index);
+
+						if (index < existing)
+							replaced[index] = true;
+						anyReplaced = true;
 						// System.out.println("I have replaced a less significant distance, new least significant distance is "
 						// + this.thresholdOvershots.firstKey());
 					}
 				} else {
 					this.codebook.add(entry);
+					addToIndex(this.numClusters() - 1);
 					if (this.numClusters() % 1000 == 0) {
 						System.out.println("Codebook increased to size " + this.numClusters());
 						System.out.println("with nSamples = " + this.totalSamples);
@@ -158,8 +209,20 @@ public class ClusterLimitedIntRAC extends IntRAC {
 			}
 			this.totalSamples += 1;
 		}
-		this.nDims = foundLength;
+	}
 
-		return this;
+	/**
+	 * Compute the smallest amount by which the distance from the given point
+	 * to the centroids in the given range of positions exceeds the threshold,
+	 * continuing from a previously computed value.
+	 */
+	private float minThresholdOvershoot(int[] entry, int from, int to, float minDiff) {
+		for (int j = from; j < to; j++) {
+			final float distance = (float) ((float) distanceEuclidianSquared(entry, this.codebook.get(j)) - threshold);
+
+			if (minDiff == 0 || distance < minDiff)
+				minDiff = distance;
+		}
+		return minDiff;
 	}
 }
@@ -29,6 +29,8 @@
  */
 package org.openimaj.ml.clustering.rac;
 
+import gnu.trove.list.array.TIntArrayList;
+
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
@@ -36,6 +38,7 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.commons.math.FunctionEvaluationException;
 import org.apache.commons.math.MaxIterationsExceededException;
@@ -45,12 +48,17 @@ import org.openimaj.citation.annotation.Reference;
 import org.openimaj.citation.annotation.ReferenceType;
 import org.openimaj.data.DataSource;
 import org.openimaj.data.RandomData;
+import org.openimaj.knn.IncrementalNearestNeighbours;
 import org.openimaj.ml.clustering.CentroidsProvider;
 import org.openimaj.ml.clustering.IndexClusters;
 import org.openimaj.ml.clustering.SpatialClusterer;
 import org.openimaj.ml.clustering.SpatialClusters;
 import org.openimaj.ml.clustering.assignment.HardAssigner;
+import org.openimaj.util.function.Operation;
 import org.openimaj.util.pair.IntFloatPair;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 /**
  * An implementation of the RAC algorithm proposed by <a
@@ -73,6 +81,17 @@ import org.openimaj.util.pair.IntFloatPair;
  * "frozen" by manually constructing an assigner that takes a
  * {@link CentroidsProvider} (or the centroids provided by calling
  * {@link #getCentroids()}) as an argument.
+ * <p>
+ * Data is clustered in batches. The points of a batch are compared against
+ * the existing centroids in parallel, and then the points that were not
+ * within the threshold of any existing centroid are compared in order against
+ * the centroids created earlier in the same batch. The result is identical to
+ * processing the points one at a time. The comparison against the existing
+ * centroids can optionally be accelerated by an
+ * {@link IncrementalNearestNeighbours} index (such as an LSH index) that
+ * suggests a candidate centroid; the suggestion is always checked exactly,
+ * with a linear scan as the fallback, so an approximate index cannot change
+ * the result.
  * 
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
@@ -112,12 +131,16 @@ public class IntRAC
 	}
 
 	private static final String HEADER = SpatialClusters.CLUSTER_HEADER + "RAIC";
+	protected static final int BATCH_SIZE = 1024;
 
 	protected ArrayList<int[]> codebook;
 	protected double threshold;
 	protected int nDims;
 	protected static int[][] distances;
 	protected long totalSamples;
+	protected ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+	protected IncrementalNearestNeighbours<int[], float[], IntFloatPair> index;
+	protected TIntArrayList indexPositions;
 
 	/**
 	 * Sets the threshold to 128
@@ -177,18 +200,36 @@ public class IntRAC
 	}
 
 	@SuppressWarnings("deprecation")
-	protected static double calculateThreshold(int[][] samples, int nClusters) throws MaxIterationsExceededException,
+	protected static double calculateThreshold(final int[][] samples, int nClusters)
+			throws MaxIterationsExceededException,
 			FunctionEvaluationException
 	{
-		int maxDistance = 0;
-		for (int i = 0; i < samples.length; i++) {
-			for (int j = i + 1; j < samples.length; j++) {
-				distances[i][j] = distanceEuclidianSquared(samples[i], samples[j]);
-				distances[j][i] = distances[i][j];
-				if (distances[i][j] > maxDistance)
-					maxDistance = distances[i][j];
+		// the rows are interleaved between the threads to balance the work of
+		// filling the upper triangle
+		final int nThreads = Math.max(1, Math.min(samples.length, GlobalExecutorPool.getPool().getMaximumPoolSize()));
+		final int[] maxDistances = new int[nThreads];
+
+		Parallel.forRangeCallerRuns(0, nThreads, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				for (int t = range.start; t < range.stop; t += range.incr) {
+					for (int i = t; i < samples.length; i += nThreads) {
+						for (int j = i + 1; j < samples.length; j++) {
+							final int d = distanceEuclidianSquared(samples[i], samples[j]);
+							distances[i][j] = d;
+							distances[j][i] = d;
+							if (d > maxDistances[t])
+								maxDistances[t] = d;
+						}
+					}
+				}
 			}
-		}
+		});
+
+		int maxDistance = 0;
+		for (final int d : maxDistances)
+			maxDistance = Math.max(maxDistance, d);
+
 		System.out.println("Distance matrix calculated");
 		final BisectionSolver b = new BisectionSolver();
 		b.setAbsoluteAccuracy(100.0);
@@ -225,6 +266,54 @@ public class IntRAC
 		return 0;
 	}
 
+	/**
+	 * Set the thread pool used to compare batches of data against the
+	 * centroids. If the pool is null, the data is processed in the calling
+	 * thread.
+	 * 
+	 * @param pool
+	 *            the pool
+	 */
+	public void setThreadPool(ThreadPoolExecutor pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Set an index that suggests a nearby centroid for each new data point
+	 * before the centroids are scanned. The index should be empty; all the
+	 * current centroids are added to it, as are any centroids created
+	 * subsequently. The ordering of the index's distance should agree with
+	 * the Euclidean distance, but its results are only used as hints, so an
+	 * approximate index (such as an
+	 * {@link org.openimaj.knn.lsh.LSHNearestNeighbours}) can be used.
+	 * 
+	 * @param index
+	 *            the index; null to always scan the centroids
+	 */
+	public void setIndex(IncrementalNearestNeighbours<int[], float[], IntFloatPair> index) {
+		this.index = index;
+		this.indexPositions = new TIntArrayList();
+
+		if (index != null) {
+			for (int i = 0; i < codebook.size(); i++)
+				addToIndex(i);
+		}
+	}
+
+	/**
+	 * Add the centroid at the given position in the codebook to the index
+	 * (if there is one).
+	 * 
+	 * @param position
+	 *            the position
+	 */
+	protected void addToIndex(int position) {
+		if (index != null) {
+			index.add(codebook.get(position));
+			indexPositions.add(position);
+		}
+	}
+
 	@Override
 	public IntRAC cluster(int[][] data) {
 		int foundLength = -1;
@@ -239,29 +328,145 @@ public class IntRAC
 				this.codebook = new ArrayList<int[]>();
 				throw new RuntimeException();
 			}
-			boolean found = false;
-			for (final int[] existing : this.codebook) {
-				if (distanceEuclidianSquared(entry, existing) < threshold) {
-					found = true;
-					break;
-				}
-			}
-			if (!found) {
-				this.codebook.add(entry);
-				if (this.codebook.size() % 1000 == 0) {
-					System.out.println("Codebook increased to size " + this.codebook.size());
-				}
-			}
 		}
 
+		for (int start = 0; start < data.length; start += BATCH_SIZE)
+			clusterBatch(data, start, Math.min(data.length, start + BATCH_SIZE));
+
+		if (foundLength != -1)
+			this.nDims = foundLength;
+
 		return this;
 	}
 
 	@Override
 	public IntRAC cluster(DataSource<int[]> data) {
-		final int[][] dataArr = new int[data.size()][data.numDimensions()];
+		final int size = data.size();
+
+		// a new array is used for each batch, as new centroids reference the
+		// data rows
+		for (int start = 0; start < size; start += BATCH_SIZE) {
+			final int stop = Math.min(size, start + BATCH_SIZE);
+			final int[][] batch = data.createTemporaryArray(stop - start);
+
+			data.getData(start, stop, batch);
+			cluster(batch);
+		}
+
+		return this;
+	}
+
+	/**
+	 * Cluster a batch of data. The data is compared to the existing centroids
+	 * in parallel; the points not within the threshold of any of them are
+	 * then compared in order with the centroids created from earlier points
+	 * in the batch.
+	 * 
+	 * @param data
+	 *            the data
+	 * @param start
+	 *            the index of the first point of the batch
+	 * @param stop
+	 *            the index after the last point of the batch
+	 */
+	protected void clusterBatch(final int[][] data, final int start, final int stop) {
+		final int existing = this.codebook.size();
+		final boolean[] found = new boolean[stop - start];
+
+		forEachInBatch(start, stop, new BatchOperation() {
+			@Override
+			public void perform(int from, int to) {
+				for (int i = from; i < to; i++)
+					found[i - start] = findCentroid(data[i], existing) >= 0;
+			}
+		});
+
+		for (int i = start; i < stop; i++) {
+			if (found[i - start] || scanCentroids(data[i], existing, this.codebook.size()) >= 0)
+				continue;
+
+			this.codebook.add(data[i]);
+			addToIndex(this.codebook.size() - 1);
+			if (this.codebook.size() % 1000 == 0) {
+				System.out.println("Codebook increased to size " + this.codebook.size());
+			}
+		}
+	}
+
+	/**
+	 * An operation on a contiguous range of a batch
+	 */
+	interface BatchOperation {
+		void perform(int from, int to);
+	}
+
+	/**
+	 * Perform an operation on the range of a batch, split between the threads
+	 * if there is a thread pool.
+	 */
+	void forEachInBatch(int start, int stop, final BatchOperation op) {
+		if (pool == null) {
+			op.perform(start, stop);
+		} else {
+			Parallel.forRangeCallerRuns(start, stop, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					op.perform(range.start, range.stop);
+				}
+			}, pool);
+		}
+	}
+
+	/**
+	 * Find the position of a centroid that is within the threshold of the
+	 * given point from the first <code>count</code> centroids, using the
+	 * index (if there is one) as a hint.
+	 * 
+	 * @param entry
+	 *            the point
+	 * @param count
+	 *            the number of centroids to consider
+	 * @return the position of a centroid within the threshold, or -1
+	 */
+	protected int findCentroid(int[] entry, int count) {
+		if (index != null) {
+			final IntFloatPair candidate = index.searchNN(entry);
+
+			if (candidate != null) {
+				final int position = indexPositions.get(candidate.first);
+
+				if (position < count && withinThreshold(entry, this.codebook.get(position)))
+					return position;
+			}
+		}
+
+		return scanCentroids(entry, 0, count);
+	}
+
+	/**
+	 * Find the first centroid in the given range of positions that is within
+	 * the threshold of the given point
+	 * 
+	 * @param entry
+	 *            the point
+	 * @param from
+	 *            the first position
+	 * @param to
+	 *            the position after the last
+	 * @return the position of the centroid, or -1 if there isn't one
+	 */
+	protected int scanCentroids(int[] entry, int from, int to) {
+		for (int j = from; j < to; j++) {
+			if (withinThreshold(entry, this.codebook.get(j)))
+				return j;
+		}
+		return -1;
+	}
+
+	private boolean withinThreshold(int[] entry, int[] centroid) {
+		final int bound = (int) Math.min(Integer.MAX_VALUE, Math.ceil(threshold));
 
-		return cluster(dataArr);
+		return distanceEuclidianSquared(entry, centroid, bound) < threshold;
 	}
 
 	static int distanceEuclidianSquared(int[] a, int[] b) {
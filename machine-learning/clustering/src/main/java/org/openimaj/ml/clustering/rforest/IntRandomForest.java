@@ -33,13 +33,15 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.citation.annotation.Reference;
 import org.openimaj.citation.annotation.ReferenceType;
@@ -48,8 +50,12 @@ import org.openimaj.ml.clustering.IndexClusters;
 import org.openimaj.ml.clustering.SpatialClusterer;
 import org.openimaj.ml.clustering.SpatialClusters;
 import org.openimaj.ml.clustering.assignment.HardAssigner;
+import org.openimaj.util.function.Operation;
 import org.openimaj.util.hash.HashCodeUtil;
 import org.openimaj.util.pair.IntFloatPair;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 /**
  * An implementation of the RandomForest clustering algorithm proposed by <a
@@ -62,6 +68,13 @@ import org.openimaj.util.pair.IntFloatPair;
  * N decision trees are constructed each with M decisions (see
  * {@link RandomDecisionTree}). In the clustering phase each feature projected
  * is assigned a letter for each decision tree.
+ * <p>
+ * For assignment, the decisions of all the trees are held in flat arrays of
+ * feature indices and thresholds. Batches of data are assigned in parallel:
+ * the words of all the points are computed and looked up concurrently, and
+ * only the words that haven't been seen before are numbered (in the order of
+ * the data), so the numbering is the same as assigning the points one at a
+ * time.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
@@ -91,6 +104,13 @@ public class IntRandomForest
 	private HashMap<Word, Integer> wordToInt;
 	private int currentWordInt = 0;
 	private int randomSeed = -1;
+	private ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+
+	// the decisions of all the trees; the decisions of tree i are at
+	// [treeOffsets[i], treeOffsets[i+1])
+	int[] treeOffsets;
+	int[] features;
+	int[] thresholds;
 
 	private Word wordFromString(String str) {
 		final String[] values = str.split("_");
@@ -114,6 +134,7 @@ public class IntRandomForest
 
 	class Word {
 		private Letter[] letters;
+		private int hash;
 
 		Word(Letter[] value) {
 			letters = value;
@@ -121,11 +142,14 @@ public class IntRandomForest
 
 		@Override
 		public int hashCode() {
-			int result = HashCodeUtil.SEED;
-			for (final Letter l : letters) {
-				result = HashCodeUtil.hash(result, l);
+			if (hash == 0) {
+				int result = HashCodeUtil.SEED;
+				for (final Letter l : letters) {
+					result = HashCodeUtil.hash(result, l);
+				}
+				hash = result;
 			}
-			return result;
+			return hash;
 		}
 
 		@Override
@@ -169,6 +193,7 @@ public class IntRandomForest
 	class Letter {
 		boolean[] value;
 		int treeIndex;
+		private int hash;
 
 		public Letter(boolean[] value, int treeIndex) {
 			this.value = value;
@@ -177,10 +202,13 @@ public class IntRandomForest
 
 		@Override
 		public int hashCode() {
-			int result = HashCodeUtil.SEED;
-			result = HashCodeUtil.hash(result, this.value);
-			result = HashCodeUtil.hash(result, this.treeIndex);
-			return result;
+			if (hash == 0) {
+				int result = HashCodeUtil.SEED;
+				result = HashCodeUtil.hash(result, this.value);
+				result = HashCodeUtil.hash(result, this.treeIndex);
+				hash = result;
+			}
+			return hash;
 		}
 
 		public int getTreeIndex() {
@@ -247,25 +275,35 @@ public class IntRandomForest
 		this.wordToInt = new HashMap<Word, Integer>();
 	}
 
-	private void initMinMax(int[][] data) {
-		final int[] min = new int[this.featureLength];
-		final int[] max = new int[this.featureLength];
-		boolean isSet = false;
-		for (int i = 0; i < data.length; i++) {
-			for (int j = 0; j < this.featureLength; j++) {
-				final int val = data[i][j];
-				if (!isSet) {
-					min[j] = val;
-					max[j] = val;
-				} else {
-					if (max[j] < val)
-						max[j] = val;
-					else if (min[j] > val)
-						min[j] = val;
+	private void initMinMax(final int[][] data) {
+		final int[] min = Arrays.copyOf(data[0], this.featureLength);
+		final int[] max = Arrays.copyOf(data[0], this.featureLength);
+
+		forEach(data.length, new RangeOperation() {
+			@Override
+			public void perform(int from, int to) {
+				final int[] rangeMin = Arrays.copyOf(data[from], featureLength);
+				final int[] rangeMax = Arrays.copyOf(data[from], featureLength);
+
+				for (int i = from + 1; i < to; i++) {
+					for (int j = 0; j < featureLength; j++) {
+						final int val = data[i][j];
+						if (rangeMax[j] < val)
+							rangeMax[j] = val;
+						else if (rangeMin[j] > val)
+							rangeMin[j] = val;
+					}
+				}
+
+				synchronized (min) {
+					for (int j = 0; j < featureLength; j++) {
+						min[j] = Math.min(min[j], rangeMin[j]);
+						max[j] = Math.max(max[j], rangeMax[j]);
+					}
 				}
 			}
-			isSet = true;
-		}
+		});
+
 		setMinMax(min, max);
 	}
 
@@ -283,7 +321,7 @@ public class IntRandomForest
 	}
 
 	private void initTrees() {
-		this.trees = new LinkedList<RandomDecisionTree>();
+		this.trees = new ArrayList<RandomDecisionTree>(nTrees);
 		Random r = new Random();
 		if (this.randomSeed != -1)
 			r = new Random(this.randomSeed);
@@ -292,6 +330,64 @@ public class IntRandomForest
 					this.maxVal, r);
 			this.trees.add(tree);
 		}
+		flattenTrees();
+	}
+
+	/**
+	 * Copy the decisions of the trees into the flat arrays used for
+	 * assignment
+	 */
+	private void flattenTrees() {
+		treeOffsets = new int[trees.size() + 1];
+		for (int i = 0; i < trees.size(); i++)
+			treeOffsets[i + 1] = treeOffsets[i] + trees.get(i).decisions.size();
+
+		features = new int[treeOffsets[trees.size()]];
+		thresholds = new int[features.length];
+		int k = 0;
+		for (final RandomDecisionTree tree : trees) {
+			for (final RandomDecision decision : tree.decisions) {
+				features[k] = decision.feature;
+				thresholds[k] = decision.threshold;
+				k++;
+			}
+		}
+	}
+
+	/**
+	 * Set the thread pool used to find the limits of the data and to assign
+	 * batches of data. If the pool is null, the work is performed in the
+	 * calling thread.
+	 * 
+	 * @param pool
+	 *            the pool
+	 */
+	public void setThreadPool(ThreadPoolExecutor pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * An operation on a contiguous range of indices
+	 */
+	private interface RangeOperation {
+		void perform(int from, int to);
+	}
+
+	/**
+	 * Perform an operation on the indices [0, n), split between the threads if
+	 * there is a thread pool.
+	 */
+	private void forEach(int n, final RangeOperation op) {
+		if (pool == null) {
+			op.perform(0, n);
+		} else {
+			Parallel.forRangeCallerRuns(0, n, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					op.perform(range.start, range.stop);
+				}
+			}, pool);
+		}
 	}
 
 	@Override
@@ -306,7 +402,8 @@ public class IntRandomForest
 
 	@Override
 	public IntRandomForest cluster(DataSource<int[]> data) {
-		final int[][] dataArr = new int[data.size()][data.numDimensions()];
+		final int[][] dataArr = data.createTemporaryArray(data.size());
+		data.getData(0, dataArr.length, dataArr);
 
 		return cluster(dataArr);
 	}
@@ -322,12 +419,32 @@ public class IntRandomForest
 	}
 
 	@Override
-	public int[] assign(int[][] data) {
+	public int[] assign(final int[][] data) {
 		final int[] proj = new int[data.length];
+		final Word[] words = new Word[data.length];
+
+		// words that have already been seen can be looked up concurrently as
+		// long as nothing is added to the map
+		forEach(data.length, new RangeOperation() {
+			@Override
+			public void perform(int from, int to) {
+				for (int i = from; i < to; i++) {
+					words[i] = computeWord(data[i]);
+					final Integer index = wordToInt.get(words[i]);
+					proj[i] = index == null ? -1 : index;
+				}
+			}
+		});
 
+		// the letters of a word that has been seen are already numbered, so
+		// only the new words need to be numbered (in order)
 		for (int i = 0; i < data.length; i++) {
-			proj[i] = this.assign(data[i]);
+			if (proj[i] == -1) {
+				hashLetters(words[i]);
+				proj[i] = words[i].hashedWord();
+			}
 		}
+
 		return proj;
 	}
 
@@ -338,13 +455,19 @@ public class IntRandomForest
 	 * @param data
 	 * @return A word per data point
 	 */
-	public Word[] assignLetters(int[][] data) {
+	public Word[] assignLetters(final int[][] data) {
 		final Word[] pushedLetters = new Word[data.length];
 
-		int i = 0;
-		for (final int[] k : data) {
-			pushedLetters[i++] = this.assignWord(k);
-		}
+		forEach(data.length, new RangeOperation() {
+			@Override
+			public void perform(int from, int to) {
+				for (int i = from; i < to; i++)
+					pushedLetters[i] = computeWord(data[i]);
+			}
+		});
+
+		for (final Word word : pushedLetters)
+			hashLetters(word);
 
 		return pushedLetters;
 	}
@@ -362,16 +485,34 @@ public class IntRandomForest
 	 *         made on each tree
 	 */
 	public Word assignWord(int[] data) {
+		final Word word = computeWord(data);
+		hashLetters(word);
+		return word;
+	}
+
+	/**
+	 * Compute the word for a data point from the flattened decisions without
+	 * numbering its letters.
+	 */
+	private Word computeWord(int[] data) {
 		final Letter[] pushed = new Letter[this.nTrees];
 		for (int i = 0; i < this.nTrees; i++) {
-			final boolean[] justLetter = this.trees.get(i).getLetter(data);
-			final Letter letter = new Letter(justLetter, i);
-			letter.hashedLetter();
-			pushed[i] = letter;
+			final int start = treeOffsets[i];
+			final boolean[] justLetter = new boolean[treeOffsets[i + 1] - start];
+
+			for (int j = 0; j < justLetter.length; j++)
+				justLetter[j] = data[features[start + j]] > thresholds[start + j];
+
+			pushed[i] = new Letter(justLetter, i);
 		}
 		return new Word(pushed);
 	}
 
+	private void hashLetters(Word word) {
+		for (final Letter letter : word.letters)
+			letter.hashedLetter();
+	}
+
 	/**
 	 * Uses the {@link #assignWord(int[])} function to construct the word
 	 * representing this data point. If this exact word has been seen before
@@ -423,7 +564,7 @@ public class IntRandomForest
 		same &= this.getNDecisions() == that.getNDecisions();
 
 		for (int i = 0; i < that.trees.size(); i++) {
-			this.trees.get(i).equals(that.trees.get(i));
+			same &= this.trees.get(i).equals(that.trees.get(i));
 		}
 
 		for (final Entry<Letter, Integer> a : that.letterToInt.entrySet()) {
@@ -452,10 +593,11 @@ public class IntRandomForest
 		nDecisions = Integer.parseInt(br.nextLine());
 		nTrees = Integer.parseInt(br.nextLine());
 		this.letterToInt = new HashMap<Letter, Integer>();
+		this.wordToInt = new HashMap<Word, Integer>();
 		featureLength = Integer.parseInt(br.nextLine());
 
 		if (this.trees == null || this.trees.size() != nTrees) {
-			trees = new LinkedList<RandomDecisionTree>();
+			trees = new ArrayList<RandomDecisionTree>(nTrees);
 			for (int i = 0; i < nTrees; i++)
 				trees.add(new RandomDecisionTree().readASCII(br));
 		} else {
@@ -464,6 +606,7 @@ public class IntRandomForest
 				rt.readASCII(br);
 			}
 		}
+		flattenTrees();
 
 		// Only rebuild an array of the wrong size
 		String[] line = br.nextLine().split(" ");
@@ -497,14 +640,50 @@ public class IntRandomForest
 		}
 	}
 
+	/**
+	 * Read a letter, reusing the instance of an identical letter that has
+	 * already been read
+	 */
+	private Letter readLetter(DataInput dis, Map<Letter, Letter> letters) throws IOException {
+		final byte[] bytes = new byte[dis.readInt()];
+		dis.readFully(bytes);
+
+		final boolean[] value = new boolean[bytes.length];
+		for (int i = 0; i < bytes.length; i++)
+			value[i] = bytes[i] != 0;
+
+		final Letter letter = new Letter(value, dis.readInt());
+		final Letter existing = letters.get(letter);
+		if (existing != null)
+			return existing;
+
+		letters.put(letter, letter);
+		return letter;
+	}
+
+	/**
+	 * Write a letter in the same format as {@link DataOutput#writeBoolean}
+	 * would for each of the decisions
+	 */
+	private void writeLetter(DataOutput o, Letter letter) throws IOException {
+		final byte[] bytes = new byte[letter.value.length];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte) (letter.value[i] ? 1 : 0);
+
+		o.writeInt(bytes.length);
+		o.write(bytes);
+		o.writeInt(letter.treeIndex);
+	}
+
 	@Override
 	public void readBinary(DataInput dis) throws IOException {
 		nDecisions = dis.readInt();
 		nTrees = dis.readInt();
 		this.letterToInt = new HashMap<Letter, Integer>();
+		this.wordToInt = new HashMap<Word, Integer>();
 		featureLength = dis.readInt();
 		if (this.trees == null || this.trees.size() != nTrees) {
-			trees = new LinkedList<RandomDecisionTree>();
+			trees = new ArrayList<RandomDecisionTree>(nTrees);
 			for (int i = 0; i < nTrees; i++)
 				trees.add(new RandomDecisionTree().readBinary(dis));
 		} else {
@@ -513,6 +692,7 @@ public class IntRandomForest
 				rt.readBinary(dis);
 			}
 		}
+		flattenTrees();
 
 		if (maxVal == null || maxVal.length != featureLength)
 			maxVal = new int[featureLength];
@@ -524,30 +704,22 @@ public class IntRandomForest
 		for (int i = 0; i < featureLength; i++)
 			minVal[i] = dis.readInt();
 
+		// the words share the letter instances
+		final Map<Letter, Letter> letters = new HashMap<Letter, Letter>();
+
 		currentInt = dis.readInt();
 		for (int i = 0; i < currentInt; i++) {
-			final int letterLen = dis.readInt();
-			final boolean[] stringBytes = new boolean[letterLen];
-			// dis.read(stringBytes, 0, stringBytes .length); // Entry key
-			for (int j = 0; j < letterLen; j++)
-				stringBytes[j] = dis.readBoolean();
-			letterToInt.put(new Letter(stringBytes, dis.readInt()), dis.readInt());
+			letterToInt.put(readLetter(dis, letters), dis.readInt());
 		}
 
 		currentWordInt = dis.readInt();
 		if (currentWordInt != 0) {
 			for (int i = 0; i < currentWordInt; i++) {
-				final Letter[] letters = new Letter[dis.readInt()];
-				// dis.read(stringBytes, 0, stringBytes .length); // Entry key
-				for (int j = 0; j < letters.length; j++) {
-					final int letterLen = dis.readInt();
-					final boolean[] stringBytes = new boolean[letterLen];
-					for (int k = 0; k < stringBytes.length; k++) {
-						stringBytes[k] = dis.readBoolean();
-					}
-					letters[j] = new Letter(stringBytes, dis.readInt());
+				final Letter[] wordLetters = new Letter[dis.readInt()];
+				for (int j = 0; j < wordLetters.length; j++) {
+					wordLetters[j] = readLetter(dis, letters);
 				}
-				wordToInt.put(new Word(letters), dis.readInt());
+				wordToInt.put(new Word(wordLetters), dis.readInt());
 			}
 		}
 	}
@@ -596,20 +768,14 @@ public class IntRandomForest
 
 		o.writeInt(currentInt);
 		for (final Entry<Letter, Integer> p : letterToInt.entrySet()) {
-			o.writeInt(p.getKey().value.length);
-			for (final boolean i : p.getKey().value)
-				o.writeBoolean(i);
-			o.writeInt(p.getKey().treeIndex);
+			writeLetter(o, p.getKey());
 			o.writeInt(p.getValue());
 		}
 		o.writeInt(currentWordInt);
 		for (final Entry<Word, Integer> p : wordToInt.entrySet()) {
 			o.writeInt(p.getKey().letters.length);
 			for (final Letter i : p.getKey().letters) {
-				o.writeInt(i.value.length);
-				for (final boolean j : i.value)
-					o.writeBoolean(j);
-				o.writeInt(i.treeIndex);
+				writeLetter(o, i);
 			}
 			o.writeInt(p.getValue());
 		}
@@ -33,7 +33,7 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.Scanner;
@@ -77,7 +77,7 @@ public class RandomDecisionTree {
 	}
 	
 	private void initDecisions(int nDecisions, int featureLength, int[] minVal,int[] maxVal) {
-		decisions = new LinkedList<RandomDecision>();
+		decisions = new ArrayList<RandomDecision>();
 		for(int i = 0; i < nDecisions; i++){
 			RandomDecision dec = new RandomDecision(featureLength,minVal,maxVal,this.random);
 			decisions.add(dec);
@@ -88,7 +88,7 @@ public class RandomDecisionTree {
 	 * A convenience function allowing the RandomDecisionTree to be written and read.
 	 */
 	public RandomDecisionTree() {
-		decisions = new LinkedList<RandomDecision>();
+		decisions = new ArrayList<RandomDecision>();
 	}
 
 	/**
@@ -143,7 +143,7 @@ public class RandomDecisionTree {
 	public RandomDecisionTree readBinary(DataInput dis) throws IOException {
 		int nDecisions = dis.readInt();
 		if(this.decisions.size() != nDecisions){
-			this.decisions = new LinkedList<RandomDecision>();
+			this.decisions = new ArrayList<RandomDecision>();
 			for(int i = 0 ; i < nDecisions; i ++){
 				RandomDecision r = new RandomDecision().readBinary(dis);
 				this.decisions.add(r);
@@ -166,7 +166,7 @@ public class RandomDecisionTree {
 	public RandomDecisionTree readASCII(Scanner br) throws IOException {
 		String[] lines = br.nextLine().split(" ");
 		if(this.decisions.size() != lines.length){
-			this.decisions = new LinkedList<RandomDecision>();
+			this.decisions = new ArrayList<RandomDecision>();
 			for(String line : lines){
 				this.decisions.add(new RandomDecision().readString(line));
 			}
@@ -33,6 +33,7 @@ import java.util.Iterator;
 
 import org.openimaj.util.pair.DoubleObjectPair;
 
+import ch.akuhn.matrix.Matrix;
 import ch.akuhn.matrix.SparseMatrix;
 import ch.akuhn.matrix.Vector;
 import ch.akuhn.matrix.eigenvalues.FewEigenvalues;
@@ -84,6 +85,11 @@ public class AbsoluteValueEigenChooser extends EigenChooser{
 
 	@Override
 	public FewEigenvalues prepare(final SparseMatrix laplacian) {
+		return prepare((Matrix) laplacian);
+	}
+
+	@Override
+	public FewEigenvalues prepare(final Matrix laplacian) {
 		int total = laplacian.columnCount();
 		FewEigenvalues eig = FewEigenvalues.of(laplacian);
 		return eig.greatest((int) (total*maxSelect));
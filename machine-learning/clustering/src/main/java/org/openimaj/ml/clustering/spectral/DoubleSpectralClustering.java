@@ -31,8 +31,10 @@ package org.openimaj.ml.clustering.spectral;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
+import org.openimaj.math.matrix.CompressedSparseRowMatrix;
 import org.openimaj.ml.clustering.SimilarityClusterer;
 
+import ch.akuhn.matrix.Matrix;
 import ch.akuhn.matrix.SparseMatrix;
 import ch.akuhn.matrix.eigenvalues.Eigenvalues;
 
@@ -74,6 +76,23 @@ public class DoubleSpectralClustering implements SimilarityClusterer<SpectralInd
 	}
 
 	
+	/**
+	 * Cluster a similarity graph held in compressed sparse row form. The
+	 * Laplacian is computed in place, so the similarity matrix is
+	 * overwritten; the matrix-vector products of the eigen-solver are
+	 * performed in parallel. This is the preferred route for very large
+	 * graphs, which can be memory-mapped with
+	 * {@link CompressedSparseRowMatrix#map(java.io.File, java.nio.channels.FileChannel.MapMode)}.
+	 * 
+	 * @param data the similarity matrix
+	 * @return the clusters
+	 */
+	public SpectralIndexedClusters cluster(CompressedSparseRowMatrix data) {
+		final CompressedSparseRowMatrix laplacian = conf.laplacian.laplacianInplace(data);
+		Eigenvalues eig = laplacianEigenVectors(laplacian);
+		PreparedSpectralClustering prep = new PreparedSpectralClustering(conf);
+		return prep.cluster(eig);
+	}
 
 	protected Eigenvalues spectralCluster(SparseMatrix data) {
 		// Compute the laplacian of the graph
@@ -90,6 +109,13 @@ public class DoubleSpectralClustering implements SimilarityClusterer<SpectralInd
 		return eig;
 	}
 
+	protected Eigenvalues laplacianEigenVectors(final CompressedSparseRowMatrix laplacian) {
+		// Calculate the eigvectors
+		Eigenvalues eig = conf.eigenChooser.prepare((Matrix) laplacian);
+		eig.run();
+		return eig;
+	}
+
 	protected SparseMatrix laplacian(SparseMatrix data) {
 		return conf.laplacian.laplacian(data);
 	}
@@ -33,6 +33,7 @@ import java.util.Iterator;
 
 import org.openimaj.util.pair.DoubleObjectPair;
 
+import ch.akuhn.matrix.Matrix;
 import ch.akuhn.matrix.SparseMatrix;
 import ch.akuhn.matrix.Vector;
 import ch.akuhn.matrix.eigenvalues.Eigenvalues;
@@ -57,4 +58,29 @@ public abstract class EigenChooser{
 	 * @return the prepared eigen values
 	 */
 	public abstract Eigenvalues prepare(SparseMatrix laplacian) ;
+
+	/**
+	 * Make a coarse decision of the number of eigen vectors to extract from a
+	 * laplacian that isn't held in a {@link SparseMatrix} (for example a
+	 * {@link org.openimaj.math.matrix.CompressedSparseRowMatrix}). The default
+	 * implementation copies the laplacian into a {@link SparseMatrix} and calls
+	 * {@link #prepare(SparseMatrix)}; subclasses that can decompose any
+	 * {@link Matrix} directly should override this.
+	 * @param laplacian the matrix to be decomposed
+	 * @return the prepared eigen values
+	 */
+	public Eigenvalues prepare(Matrix laplacian) {
+		if (laplacian instanceof SparseMatrix)
+			return prepare((SparseMatrix) laplacian);
+
+		SparseMatrix sparse = new SparseMatrix(laplacian.rowCount(), laplacian.columnCount());
+		int i = 0;
+		for (Vector row : laplacian.rows()) {
+			for (Vector.Entry e : row.entries()) {
+				sparse.put(i, e.index, e.value);
+			}
+			i++;
+		}
+		return prepare(sparse);
+	}
 }
\ No newline at end of file
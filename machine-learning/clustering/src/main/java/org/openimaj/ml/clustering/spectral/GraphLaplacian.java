@@ -32,12 +32,14 @@ package org.openimaj.ml.clustering.spectral;
 
 import java.util.Iterator;
 
+import org.openimaj.math.matrix.CompressedSparseRowMatrix;
 import org.openimaj.math.matrix.DiagonalMatrix;
 import org.openimaj.math.matrix.MatlibMatrixUtils;
 import org.openimaj.util.pair.DoubleObjectPair;
 
 import ch.akuhn.matrix.SparseMatrix;
 import ch.akuhn.matrix.Vector;
+import ch.akuhn.matrix.Vector.Entry;
 import ch.akuhn.matrix.eigenvalues.Eigenvalues;
 
 /**
@@ -73,6 +75,58 @@ public abstract class GraphLaplacian{
 	 */
 	public abstract SparseMatrix laplacian(SparseMatrix adj, DiagonalMatrix degree);
 
+	/**
+	 * Compute the laplacian of a graph held in compressed sparse row form,
+	 * reusing the storage of the adjacency matrix where possible (so the
+	 * adjacency matrix is overwritten). All the operations are performed in
+	 * parallel over blocks of rows.
+	 * @param adj the adjacency matrix should be square and symmetric
+	 * @return the laplacian
+	 */
+	public CompressedSparseRowMatrix laplacianInplace(CompressedSparseRowMatrix adj){
+		return laplacianInplace(adj, adj.rowSums());
+	}
+
+	/**
+	 * The default implementation copies the adjacency matrix into a
+	 * {@link SparseMatrix} and calls {@link #laplacian(SparseMatrix, DiagonalMatrix)},
+	 * so the adjacency matrix is left unchanged; subclasses should override
+	 * this to work in place.
+	 * @param adj square and symmetric; overwritten with the result where possible
+	 * @param degree the sum of the adjacency for each node
+	 * @return the laplacian
+	 */
+	public CompressedSparseRowMatrix laplacianInplace(CompressedSparseRowMatrix adj, double[] degree){
+		SparseMatrix sparse = new SparseMatrix(adj.rowCount(), adj.columnCount());
+		int i = 0;
+		for (Vector row : adj.rows()) {
+			for (Entry e : row.entries()) {
+				sparse.put(i, e.index, e.value);
+			}
+			i++;
+		}
+
+		DiagonalMatrix diag = new DiagonalMatrix(degree.length);
+		for (i = 0; i < degree.length; i++) {
+			diag.put(i, i, degree[i]);
+		}
+
+		return new CompressedSparseRowMatrix(laplacian(sparse, diag));
+	}
+
+	/**
+	 * Raise each degree to the given power, replacing undefined results with 0
+	 */
+	private static double[] pow(double[] degree, double power) {
+		double[] ret = new double[degree.length];
+		for (int i = 0; i < degree.length; i++) {
+			ret[i] = Math.pow(degree[i], power);
+			if(Double.isNaN(ret[i]) || Double.isInfinite(ret[i]))
+				ret[i] = 0;
+		}
+		return ret;
+	}
+
 	/**
 	 * @param evd
 	 * @return provides an iterator over the (presumeably sorted)
@@ -99,6 +153,15 @@ public abstract class GraphLaplacian{
 			);
 			return ret;
 		}
+
+		@Override
+		public CompressedSparseRowMatrix laplacianInplace(CompressedSparseRowMatrix adj, double[] degree) {
+			double[] diag = new double[degree.length];
+			for (int i = 0; i < diag.length; i++) {
+				diag[i] = 1 + degree[i];
+			}
+			return adj.timesInplace(-1).plusDiagonal(diag);
+		}
 	}
 
 	/**
@@ -125,6 +188,12 @@ public abstract class GraphLaplacian{
 			return ret;
 		}
 
+		@Override
+		public CompressedSparseRowMatrix laplacianInplace(CompressedSparseRowMatrix adj, double[] degree) {
+			double[] invSqrtDegree = pow(degree, -1./2.);
+			return adj.scaleInplace(invSqrtDegree, invSqrtDegree);
+		}
+
 		@Override
 		public Iterator<DoubleObjectPair<Vector>> eigenIterator(Eigenvalues evd) {
 			return new FBEigenIterator(evd);
@@ -156,6 +225,12 @@ public abstract class GraphLaplacian{
 			return ret;
 		}
 
+		@Override
+		public CompressedSparseRowMatrix laplacianInplace(CompressedSparseRowMatrix adj, double[] degree) {
+			double[] invDegree = pow(degree, -1.);
+			return adj.scaleInplace(invDegree, invDegree);
+		}
+
 		@Override
 		public Iterator<DoubleObjectPair<Vector>> eigenIterator(Eigenvalues evd) {
 			return new FBEigenIterator(evd);
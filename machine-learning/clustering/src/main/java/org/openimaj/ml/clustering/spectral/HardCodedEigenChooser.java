@@ -34,6 +34,7 @@ import java.util.Iterator;
 
 import org.openimaj.util.pair.DoubleObjectPair;
 
+import ch.akuhn.matrix.Matrix;
 import ch.akuhn.matrix.SparseMatrix;
 import ch.akuhn.matrix.Vector;
 import ch.akuhn.matrix.eigenvalues.Eigenvalues;
@@ -59,6 +60,11 @@ public class HardCodedEigenChooser extends EigenChooser{
 	}
 	@Override
 	public Eigenvalues prepare(final SparseMatrix laplacian) {
+		return prepare((Matrix) laplacian);
+	}
+
+	@Override
+	public Eigenvalues prepare(final Matrix laplacian) {
 		FewEigenvalues eig = FewEigenvalues.of(laplacian);
 		return eig.greatest(count);
 	}
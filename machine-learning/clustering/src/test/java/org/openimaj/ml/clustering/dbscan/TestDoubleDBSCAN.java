@@ -29,16 +29,22 @@
  */
 package org.openimaj.ml.clustering.dbscan;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.openimaj.io.FileUtils;
+import org.openimaj.knn.DoubleNearestNeighbours;
 import org.openimaj.knn.DoubleNearestNeighboursExact;
+import org.openimaj.knn.DoubleNearestNeighboursExactKDTree;
+import org.openimaj.knn.DoubleNearestNeighboursGrid;
+import org.openimaj.knn.NearestNeighboursFactory;
 import org.openimaj.ml.clustering.dbscan.ClusterTestDataLoader.TestStats;
 
 import ch.akuhn.matrix.SparseMatrix;
@@ -71,10 +77,44 @@ public class TestDoubleDBSCAN {
 	 */
 	@Test
 	public void testDBSCAN(){
+		checkNNDBSCAN(new DoubleNearestNeighboursExact.Factory());
+	}
+
+	/**
+	 * Test DBSCAN with region queries answered by an exact KD-Tree
+	 */
+	@Test
+	public void testKDTreeDBSCAN(){
+		checkNNDBSCAN(new DoubleNearestNeighboursExactKDTree.Factory());
+	}
+
+	/**
+	 * Test DBSCAN with region queries answered by a uniform grid
+	 */
+	@Test
+	public void testGridDBSCAN(){
+		checkNNDBSCAN(new DoubleNearestNeighboursGrid.Factory(Math.sqrt(this.testStats.eps)));
+	}
+
+	/**
+	 * Test that the sequential and parallel clusterings are the same
+	 */
+	@Test
+	public void testSequentialDBSCAN(){
+		DoubleNNDBSCAN dbscan = new DoubleNNDBSCAN(this.testStats.eps, this.testStats.minpts);
+		DoubleDBSCANClusters parallel = dbscan.cluster(testData);
+		dbscan.setThreadPool(null);
+		DoubleDBSCANClusters sequential = dbscan.cluster(testData);
+
+		assertTrue(Arrays.deepEquals(parallel.clusters(), sequential.clusters()));
+		assertTrue(Arrays.equals(parallel.getNoise(), sequential.getNoise()));
+	}
+
+	private void checkNNDBSCAN(NearestNeighboursFactory<? extends DoubleNearestNeighbours, double[]> factory){
 		DoubleNNDBSCAN dbscan = new DoubleNNDBSCAN(
 			this.testStats.eps,
 			this.testStats.minpts,
-			new DoubleNearestNeighboursExact.Factory()
+			factory
 		);
 		DoubleDBSCANClusters res = dbscan.cluster(testData);
 		for (int i = 0; i < res.getNoise().length; i++) {
@@ -113,6 +153,40 @@ public class TestDoubleDBSCAN {
 			assertTrue(toSet(this.testClusters[i]).equals(toSet(res.clusters()[i])));
 		}
 	}
+
+	/**
+	 * Test that a link between two core points in an asymmetric similarity
+	 * matrix joins their clusters whichever direction it is in
+	 */
+	@Test
+	public void testAsymmetricSimDBSCAN(){
+		// 0 and 1 are core points, each with two border points, linked in
+		// one direction only
+		SparseMatrix forward = borders();
+		forward.put(0, 1, 1);
+
+		SparseMatrix backward = borders();
+		backward.put(1, 0, 1);
+
+		SimilarityDBSCAN dbscan = new SimilarityDBSCAN(0.5, 3);
+		for (SparseMatrix mat : new SparseMatrix[] { forward, backward }) {
+			DoubleDBSCANClusters res = dbscan.cluster(mat);
+
+			assertEquals(1, res.clusters().length);
+			assertEquals(toSet(new int[] { 0, 1, 2, 3, 4, 5 }), toSet(res.clusters()[0]));
+			assertEquals(0, res.getNoise().length);
+		}
+	}
+
+	private SparseMatrix borders() {
+		SparseMatrix mat = new SparseMatrix(6, 6);
+		for (int i = 2; i < 6; i++) {
+			mat.put(i % 2, i, 1);
+			mat.put(i, i % 2, 1);
+		}
+		return mat;
+	}
+
 	private Set<Integer> toSet(int[] is) {
 		Set<Integer> set = new HashSet<Integer>();
 		for (int i = 0; i < is.length; i++) {
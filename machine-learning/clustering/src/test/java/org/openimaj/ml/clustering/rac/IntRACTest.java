@@ -0,0 +1,275 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.clustering.rac;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.data.IntArrayBackedDataSource;
+import org.openimaj.feature.IntFVComparison;
+import org.openimaj.knn.lsh.LSHNearestNeighbours;
+import org.openimaj.lsh.functions.IntGaussianFactory;
+import org.openimaj.util.comparator.DistanceComparator;
+import org.openimaj.util.hash.HashFunction;
+import org.openimaj.util.hash.HashFunctionFactory;
+import org.openimaj.util.hash.composition.SimpleComposition;
+
+import cern.jet.random.engine.MersenneTwister;
+
+/**
+ * Tests for {@link IntRAC} and {@link ClusterLimitedIntRAC}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class IntRACTest {
+	private static final int NDIMS = 32;
+	private static final double THRESHOLD = NDIMS * 30 * 30;
+
+	private int[][] data;
+	private ThreadPoolExecutor pool;
+
+	/**
+	 * Create some clustered data spanning several batches
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(0);
+
+		final int[][] centres = new int[300][NDIMS];
+		for (final int[] c : centres)
+			for (int i = 0; i < NDIMS; i++)
+				c[i] = rng.nextInt(256);
+
+		data = new int[3 * IntRAC.BATCH_SIZE + 17][NDIMS];
+		for (final int[] d : data) {
+			final int[] c = centres[rng.nextInt(centres.length)];
+			for (int i = 0; i < NDIMS; i++)
+				d[i] = Math.max(0, Math.min(255, c[i] + (int) (rng.nextGaussian() * 25)));
+		}
+
+		pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(4);
+	}
+
+	/**
+	 * Shutdown the pool
+	 */
+	@After
+	public void tearDown() {
+		pool.shutdownNow();
+	}
+
+	/**
+	 * The original one-point-at-a-time algorithm
+	 */
+	private int[][] sequentialRAC(int[][] data, double threshold) {
+		final List<int[]> codebook = new ArrayList<int[]>();
+
+		for (final int[] entry : data) {
+			boolean found = false;
+			for (final int[] existing : codebook) {
+				if (IntRAC.distanceEuclidianSquared(entry, existing) < threshold) {
+					found = true;
+					break;
+				}
+			}
+			if (!found)
+				codebook.add(entry);
+		}
+
+		return codebook.toArray(new int[codebook.size()][]);
+	}
+
+	/**
+	 * The original one-point-at-a-time cluster limited algorithm, which
+	 * replaces the centroid with the smallest threshold overshoot once the
+	 * expected number of clusters has been reached
+	 */
+	private int[][] sequentialClusterLimitedRAC(int[][] data, double threshold, int expectedClusters) {
+		final List<int[]> codebook = new ArrayList<int[]>();
+		final SortedMap<Float, Integer> thresholdOvershots = new TreeMap<Float, Integer>();
+
+		for (final int[] entry : data) {
+			boolean found = false;
+			float minDiff = 0;
+
+			for (final int[] existing : codebook) {
+				float distance = IntRAC.distanceEuclidianSquared(entry, existing);
+				if (distance < threshold) {
+					found = true;
+					break;
+				}
+				distance = (float) (distance - threshold);
+				if (minDiff == 0 || distance < minDiff)
+					minDiff = distance;
+			}
+
+			if (!found) {
+				if (codebook.size() >= expectedClusters) {
+					final Float smallestDistance = thresholdOvershots.firstKey();
+					if (smallestDistance < minDiff) {
+						final Integer index = thresholdOvershots.get(smallestDistance);
+						codebook.remove((int) index);
+						codebook.add(index, entry);
+						thresholdOvershots.remove(smallestDistance);
+						thresholdOvershots.put(minDiff, codebook.size() - 1);
+					}
+				} else {
+					codebook.add(entry);
+					thresholdOvershots.put(minDiff, codebook.size() - 1);
+				}
+			}
+		}
+
+		return codebook.toArray(new int[codebook.size()][]);
+	}
+
+	private LSHNearestNeighbours<int[]> createIndex() {
+		final IntGaussianFactory gauss = new IntGaussianFactory(NDIMS, new MersenneTwister(1), Math.sqrt(THRESHOLD));
+		final HashFunctionFactory<int[]> factory = new HashFunctionFactory<int[]>() {
+			@Override
+			public HashFunction<int[]> create() {
+				return new SimpleComposition<int[]>(gauss, 4);
+			}
+		};
+
+		return new LSHNearestNeighbours<int[]>(factory, 4, new DistanceComparator<int[]>() {
+			@Override
+			public double compare(int[] o1, int[] o2) {
+				return IntFVComparison.EUCLIDEAN.compare(o1, o2);
+			}
+
+			@Override
+			public boolean isDistance() {
+				return true;
+			}
+		});
+	}
+
+	/**
+	 * Batched clustering must give the same centroids (in the same order) as
+	 * clustering one point at a time, with and without threads
+	 */
+	@Test
+	public void testBatches() {
+		final int[][] expected = sequentialRAC(data, THRESHOLD);
+		assertTrue(expected.length > 100);
+
+		final IntRAC seq = new IntRAC(THRESHOLD);
+		seq.setThreadPool(null);
+		assertArrayEquals(expected, seq.cluster(data).getCentroids());
+
+		final IntRAC par = new IntRAC(THRESHOLD);
+		par.setThreadPool(pool);
+		assertArrayEquals(expected, par.cluster(data).getCentroids());
+		assertEquals(NDIMS, par.numDimensions());
+	}
+
+	/**
+	 * Using an approximate index must not change the result
+	 */
+	@Test
+	public void testIndex() {
+		final IntRAC rac = new IntRAC(THRESHOLD);
+		rac.setThreadPool(pool);
+		rac.setIndex(createIndex());
+
+		assertArrayEquals(sequentialRAC(data, THRESHOLD), rac.cluster(data).getCentroids());
+	}
+
+	/**
+	 * Clustering a {@link org.openimaj.data.DataSource} must use its data
+	 */
+	@Test
+	public void testDataSource() {
+		final IntRAC rac = new IntRAC(THRESHOLD);
+		rac.setThreadPool(pool);
+
+		assertArrayEquals(sequentialRAC(data, THRESHOLD),
+				rac.cluster(new IntArrayBackedDataSource(data)).getCentroids());
+	}
+
+	/**
+	 * The cluster limited variant must give the same centroids as clustering
+	 * one point at a time, regardless of the batching, threads and index
+	 */
+	@Test
+	public void testClusterLimited() {
+		final int[][] expected = sequentialClusterLimitedRAC(data, THRESHOLD, 100);
+		assertEquals(100, expected.length);
+		// some centroids must have been replaced
+		assertFalse(Arrays.deepEquals(Arrays.copyOf(sequentialRAC(data, THRESHOLD), 100), expected));
+
+		final ClusterLimitedIntRAC seq = new ClusterLimitedIntRAC(THRESHOLD);
+		seq.setThreadPool(null);
+		assertArrayEquals(expected, seq.cluster(data).getCentroids());
+
+		final ClusterLimitedIntRAC par = new ClusterLimitedIntRAC(THRESHOLD);
+		par.setThreadPool(pool);
+		assertArrayEquals(expected, par.cluster(data).getCentroids());
+
+		final ClusterLimitedIntRAC indexed = new ClusterLimitedIntRAC(THRESHOLD);
+		indexed.setThreadPool(pool);
+		indexed.setIndex(createIndex());
+		assertArrayEquals(expected, indexed.cluster(data).getCentroids());
+	}
+
+	/**
+	 * The distance matrix used to estimate the threshold must be complete
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testThresholdDistances() throws Exception {
+		final int n = 200;
+		final int[][] samples = new int[n][];
+		System.arraycopy(data, 0, samples, 0, n);
+
+		IntRAC.distances = new int[n][n];
+		IntRAC.calculateThreshold(samples, 50);
+
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++)
+				assertEquals(i == j ? 0 : IntRAC.distanceEuclidianSquared(samples[i], samples[j]), IntRAC.distances[i][j]);
+	}
+}
@@ -29,6 +29,7 @@
  */
 package org.openimaj.ml.clustering.rforest;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -37,6 +38,8 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -193,6 +196,62 @@ public class RandomForestTest {
 		return out;
 	}
 	
+	/**
+	 * Assigning a batch of data in parallel must number the words in the same
+	 * way as assigning the points one at a time
+	 */
+	@Test public void testParallelAssignment() {
+		int [][] data = RandomData.getRandomIntArray(5000, 64, 0, 8, randomSeed);
+		
+		IntRandomForest seq = new IntRandomForest(8, 4);
+		seq.setRandomSeed(randomSeed);
+		seq.setThreadPool(null);
+		seq.cluster(data);
+		
+		int [] expected = new int[data.length];
+		for (int i = 0; i < data.length; i++)
+			expected[i] = seq.assign(data[i]);
+		
+		ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(4);
+		try {
+			IntRandomForest par = new IntRandomForest(8, 4);
+			par.setRandomSeed(randomSeed);
+			par.setThreadPool(pool);
+			par.cluster(data);
+			
+			assertArrayEquals(expected, par.assign(data));
+			assertArrayEquals(expected, par.assign(data));
+			assertEquals(seq.numClusters(), par.numClusters());
+			assertTrue(par.equals(seq));
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * A forest read from a binary file must carry on numbering words from
+	 * where the saved forest stopped
+	 * 
+	 * @throws IOException
+	 */
+	@Test public void testBinaryAssignment() throws IOException {
+		int [][] data = RandomData.getRandomIntArray(2000, 32, 0, 16, randomSeed);
+		int [][] newData = RandomData.getRandomIntArray(2000, 32, 0, 16, randomSeed + 1);
+		
+		IntRandomForest rdf = new IntRandomForest(4, 6);
+		rdf.setRandomSeed(randomSeed);
+		rdf.cluster(data);
+		rdf.assign(data);
+		
+		File file = folder.newFile("rdf.bin");
+		IOUtils.writeBinary(file, rdf);
+		IntRandomForest read = IOUtils.read(file, IntRandomForest.class);
+		
+		assertTrue(read.equals(rdf));
+		assertArrayEquals(rdf.assign(data), read.assign(data));
+		assertArrayEquals(rdf.assign(newData), read.assign(newData));
+	}
+	
 	/**
 	 * Test the hashcode of letters and words
 	 */
@@ -29,20 +29,26 @@
  */
 package org.openimaj.ml.clustering.spectral;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Set;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.netlib.arpack.Dgetv0;
 import org.openimaj.feature.DoubleFVComparison;
 import org.openimaj.io.FileUtils;
 import org.openimaj.knn.DoubleNearestNeighboursExact;
 import org.openimaj.logger.LoggerUtils;
+import org.openimaj.math.matrix.CompressedSparseRowMatrix;
+import org.openimaj.math.matrix.DiagonalMatrix;
 import org.openimaj.math.matrix.MatlibMatrixUtils;
 import org.openimaj.ml.clustering.IndexClusters;
 import org.openimaj.ml.clustering.SpatialClusterer;
@@ -50,8 +56,11 @@ import org.openimaj.ml.clustering.dbscan.ClusterTestDataLoader;
 import org.openimaj.ml.clustering.dbscan.ClusterTestDataLoader.TestStats;
 import org.openimaj.ml.clustering.dbscan.DoubleDBSCANClusters;
 import org.openimaj.ml.clustering.dbscan.DoubleNNDBSCAN;
+import org.openimaj.util.pair.DoubleObjectPair;
 
 import ch.akuhn.matrix.SparseMatrix;
+import ch.akuhn.matrix.Vector;
+import ch.akuhn.matrix.eigenvalues.Eigenvalues;
 
 import com.jmatio.types.MLArray;
 
@@ -79,6 +88,16 @@ public class TestDoubleNormalisedSpecralClustering {
 		this.testClusters = loader.readTestClusters(data);
 	}
 
+	/**
+	 * Reset the seed ARPACK uses to generate its random starting vector, so
+	 * the eigenvectors (and hence the clusters) don't depend on the solves
+	 * performed by earlier tests
+	 */
+	@Before
+	public void resetStartingVector(){
+		Dgetv0.inits = true;
+	}
+
 
 
 	/**
@@ -118,6 +137,126 @@ public class TestDoubleNormalisedSpecralClustering {
 	}
 
 
+	/**
+	 * Test that each in-place laplacian of a {@link CompressedSparseRowMatrix}
+	 * (including the default implementation) matches the {@link SparseMatrix}
+	 * laplacian
+	 */
+	@Test
+	public void testLaplacianInplace(){
+		GraphLaplacian[] laplacians = {
+			new GraphLaplacian.Unnormalised(),
+			new GraphLaplacian.Normalised(),
+			new GraphLaplacian.Warped(),
+			// only implements the SparseMatrix laplacian
+			new GraphLaplacian() {
+				@Override
+				public SparseMatrix laplacian(SparseMatrix adj, DiagonalMatrix degree) {
+					return new GraphLaplacian.Normalised().laplacian(adj, degree);
+				}
+			}
+		};
+
+		for (GraphLaplacian laplacian : laplacians) {
+			double[][] expected = laplacian.laplacian(normalisedSimilarity()).asArray();
+
+			CompressedSparseRowMatrix csr = new CompressedSparseRowMatrix(normalisedSimilarity());
+			double[][] actual = laplacian.laplacianInplace(csr).asArray();
+
+			assertEquals(expected.length, actual.length);
+			for (int i = 0; i < expected.length; i++) {
+				assertArrayEquals(expected[i], actual[i], 1e-6);
+			}
+		}
+	}
+
+	/**
+	 * Test that clustering a {@link CompressedSparseRowMatrix} gives the same
+	 * clusters as the {@link SparseMatrix}. The graph is made of weakly
+	 * linked blocks so that the leading eigenvalues are well separated; the
+	 * result then doesn't depend on the random starting vector of the
+	 * eigen-solver.
+	 */
+	@Test
+	public void testCompressedSparseRowCluster(){
+		final int[] sizes = {20, 30, 40};
+		checkCompressedSparseRowCluster(sizes, new HardCodedEigenChooser(sizes.length));
+	}
+
+	/**
+	 * Test that clustering a {@link CompressedSparseRowMatrix} works with an
+	 * {@link EigenChooser} that only implements
+	 * {@link EigenChooser#prepare(SparseMatrix)}
+	 */
+	@Test
+	public void testCompressedSparseRowClusterSparseChooser(){
+		final int[] sizes = {20, 30, 40};
+		final HardCodedEigenChooser hardcoded = new HardCodedEigenChooser(sizes.length);
+		checkCompressedSparseRowCluster(sizes, new EigenChooser() {
+			@Override
+			public int nEigenVectors(Iterator<DoubleObjectPair<Vector>> vals, int totalEigenVectors) {
+				return hardcoded.nEigenVectors(vals, totalEigenVectors);
+			}
+
+			@Override
+			public Eigenvalues prepare(SparseMatrix laplacian) {
+				return hardcoded.prepare(laplacian);
+			}
+		});
+	}
+
+	private void checkCompressedSparseRowCluster(int[] sizes, EigenChooser chooser){
+		SpatialClusterer<DoubleDBSCANClusters,double[]> inner = new DoubleNNDBSCAN(
+			0.5, 3, new DoubleNearestNeighboursExact.Factory(DoubleFVComparison.EUCLIDEAN)
+		);
+		SpectralClusteringConf<double[]> conf = new SpectralClusteringConf<double[]>(inner, new GraphLaplacian.Normalised());
+		conf.eigenChooser = chooser;
+		DoubleSpectralClustering clust = new DoubleSpectralClustering(conf);
+
+		IndexClusters expected = clust.cluster(blockSimilarity(sizes));
+		IndexClusters res = clust.cluster(new CompressedSparseRowMatrix(blockSimilarity(sizes)));
+
+		assertEquals(sizes.length, expected.clusters().length);
+		assertEquals(sizes.length, res.clusters().length);
+		int start = 0;
+		for (int i = 0; i < sizes.length; i++) {
+			Set<Integer> block = new HashSet<Integer>();
+			for (int j = start; j < start + sizes[i]; j++)
+				block.add(j);
+			start += sizes[i];
+
+			assertEquals(block, toSet(expected.clusters()[i]));
+			assertEquals(block, toSet(res.clusters()[i]));
+		}
+	}
+
+	/**
+	 * Fully connected blocks of the given sizes, each linked to the next by
+	 * a single weak edge
+	 */
+	private SparseMatrix blockSimilarity(int[] sizes) {
+		int n = 0;
+		for (int size : sizes)
+			n += size;
+
+		SparseMatrix mat = new SparseMatrix(n, n);
+		int start = 0;
+		for (int size : sizes) {
+			for (int i = start; i < start + size; i++) {
+				for (int j = start; j < start + size; j++) {
+					if (i != j)
+						mat.put(i, j, 1);
+				}
+			}
+			if (start + size < n) {
+				mat.put(start, start + size, 0.01);
+				mat.put(start + size, start, 0.01);
+			}
+			start += size;
+		}
+		return mat;
+	}
+
 	private void confirmClusters(IndexClusters res) {
 		for (int i = 0; i < this.testClusters.length; i++) {
 			System.err.println(toSet(this.testClusters[i]));
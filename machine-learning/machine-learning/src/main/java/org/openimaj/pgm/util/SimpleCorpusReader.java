@@ -72,7 +72,7 @@ public class SimpleCorpusReader implements CorpusReader {
 				if ((value = vocabulary.get(word)) == null) {
 					vocabulary.put(word, value = vocabulary.size());
 				}
-				d.adjustValue(value, 1);
+				d.adjustOrPutValue(value, 1, 1);
 			}
 			docs.add(d);
 		}
@@ -29,17 +29,36 @@
  */
 package org.openimaj.pgm.vb.lda.mle;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.commons.math.special.Gamma;
 import org.openimaj.math.util.MathUtils;
 import org.openimaj.pgm.util.Corpus;
 import org.openimaj.pgm.util.Document;
 import org.openimaj.util.array.SparseIntArray.Entry;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+import org.openimaj.util.stream.Stream;
 
 /**
  * An implementation of variational inference LDA which can be saved and loaded
+ * <p>
+ * The E-step is performed in parallel: the documents are partitioned between
+ * the threads of the pool, each of which accumulates its own sufficient
+ * statistics, and these are summed for the M-step. As well as batch EM over a
+ * {@link Corpus}, the model can be learnt online from a {@link Stream} of
+ * documents (for example read from disk) using
+ * {@link #estimate(Stream, int, int)}, which processes the documents in
+ * mini-batches and moves the sufficient statistics towards those of each
+ * mini-batch with a decreasing step size. Only a single mini-batch needs to be
+ * held in memory.
  * 
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
  * 
@@ -47,26 +66,47 @@ import org.openimaj.util.array.SparseIntArray.Entry;
 public class LDALearner {
 	private int ntopics;
 	private Map<LDAConfig, Object> config = new HashMap<LDAConfig, Object>();
+	private ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+	private LDAModel model;
+	private int onlineUpdates;
 
-	enum LDAConfig {
+	/**
+	 * Configuration parameters of the {@link LDALearner}
+	 * 
+	 * @author Sina Samangooei (ss@ecs.soton.ac.uk)
+	 */
+	public enum LDAConfig {
+		/**
+		 * Maximum number of EM iterations
+		 */
 		MAX_ITERATIONS {
 			@Override
 			public Integer defaultValue() {
 				return 10;
 			}
 		},
+		/**
+		 * Parameter of the topic dirichlet prior
+		 */
 		ALPHA {
 			@Override
 			public Double defaultValue() {
 				return 0.3d;
 			}
 		},
+		/**
+		 * Maximum number of iterations of the variational inference for each
+		 * document
+		 */
 		VAR_MAX_ITERATIONS {
 			@Override
 			public Integer defaultValue() {
 				return 10;
 			}
 		},
+		/**
+		 * The {@link LDABetaInitStrategy}
+		 */
 		INIT_STRATEGY {
 
 			@Override
@@ -75,6 +115,9 @@ public class LDALearner {
 			}
 
 		},
+		/**
+		 * Relative change in likelihood at which EM is considered converged
+		 */
 		EM_CONVERGED {
 
 			@Override
@@ -83,6 +126,10 @@ public class LDALearner {
 			}
 
 		},
+		/**
+		 * Relative change in likelihood at which the variational inference for
+		 * a document is considered converged
+		 */
 		VAR_EM_CONVERGED {
 
 			@Override
@@ -90,7 +137,45 @@ public class LDALearner {
 				return 1e-5;
 			}
 
+		},
+		/**
+		 * Number of documents in each mini-batch of online learning
+		 */
+		ONLINE_BATCH_SIZE {
+
+			@Override
+			public Integer defaultValue() {
+				return 256;
+			}
+
+		},
+		/**
+		 * Delay of online learning; larger values down-weight the early
+		 * mini-batches
+		 */
+		ONLINE_TAU0 {
+
+			@Override
+			public Double defaultValue() {
+				return 1024d;
+			}
+
+		},
+		/**
+		 * Forgetting rate of online learning, in (0.5, 1]; the weight of the
+		 * t'th mini-batch is <code>(tau0 + t)^-kappa</code>
+		 */
+		ONLINE_KAPPA {
+
+			@Override
+			public Double defaultValue() {
+				return 0.7d;
+			}
+
 		};
+		/**
+		 * @return the default value of the parameter
+		 */
 		public abstract Object defaultValue();
 	}
 
@@ -113,6 +198,34 @@ public class LDALearner {
 		return val;
 	}
 
+	/**
+	 * @param key
+	 * @param value
+	 *            the new value of the configuration parameter
+	 */
+	public void setConfig(LDAConfig key, Object value) {
+		this.config.put(key, value);
+	}
+
+	/**
+	 * Set the thread pool used for the E-step. If the pool is null, documents
+	 * are processed in the calling thread.
+	 * 
+	 * @param pool
+	 *            the pool
+	 */
+	public void setThreadPool(ThreadPoolExecutor pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * @return the model learnt by the last call to an estimate method; null
+	 *         if nothing has been learnt
+	 */
+	public LDAModel getModel() {
+		return model;
+	}
+
 	/**
 	 * initiates the EM algorithm on documents in the corpus
 	 * 
@@ -122,47 +235,159 @@ public class LDALearner {
 		performEM(corpus);
 	}
 
-	private void performEM(Corpus corpus) {
-		// some variables
+	/**
+	 * Update the model online from the documents in the given {@link Stream}
+	 * (which must be finite), processing them in mini-batches of
+	 * {@link LDAConfig#ONLINE_BATCH_SIZE}. If a model has already been learnt
+	 * (with either this method or {@link #estimate(Corpus)}) it is updated,
+	 * so this method can be called repeatedly as new documents arrive.
+	 * 
+	 * @param documents
+	 *            the documents
+	 * @param numDocuments
+	 *            the (estimated) total number of documents in the corpus,
+	 *            used to scale the statistics of each mini-batch
+	 * @param vocabularySize
+	 *            the size of the vocabulary
+	 */
+	public void estimate(Stream<Document> documents, int numDocuments, int vocabularySize) {
+		final int batchSize = (Integer) this.getConfig(LDAConfig.ONLINE_BATCH_SIZE);
+		final double tau0 = (Double) this.getConfig(LDAConfig.ONLINE_TAU0);
+		final double kappa = (Double) this.getConfig(LDAConfig.ONLINE_KAPPA);
+
+		if (model == null || model.topicWord[0].length != vocabularySize) {
+			model = initialModel(new Corpus(vocabularySize));
+			onlineUpdates = 0;
+		}
+
+		final Iterator<Document> iter = documents.iterator();
+		final List<Document> batch = new ArrayList<Document>(batchSize);
+		while (iter.hasNext()) {
+			batch.clear();
+			while (batch.size() < batchSize && iter.hasNext())
+				batch.add(iter.next());
+
+			final LDAModel batchState = model.newInstance();
+			batchState.setAlpha(model.alpha);
+			performE(batch, model, batchState);
+
+			final double rho = Math.pow(tau0 + onlineUpdates, -kappa);
+			model.interpolate(batchState, rho, (double) numDocuments / batch.size());
+			onlineUpdates++;
+		}
+	}
+
+	/**
+	 * Compute the lower bound on the log likelihood of all the documents in
+	 * the given corpus under the current model, without changing the model.
+	 * This allows models learnt in different ways (for example online and in
+	 * batch) to be compared on the same documents.
+	 *
+	 * @param corpus
+	 *            the documents
+	 * @return the likelihood of the documents
+	 */
+	public double computeLikelihood(Corpus corpus) {
+		final LDAModel stats = model.newInstance();
+		stats.setAlpha(model.alpha);
+		performE(corpus.getDocuments(), model, stats);
+
+		return stats.likelihood;
+	}
+
+	private LDAModel initialModel(Corpus corpus) {
 		final double initialAlpha = (Double) this.getConfig(LDAConfig.ALPHA);
 		final LDABetaInitStrategy initStrat = this.getConfig(LDAConfig.INIT_STRATEGY);
 
-		// initialise the first state
 		final LDAModel state = new LDAModel(this.ntopics);
 		state.prepare(corpus);
 		state.setAlpha(initialAlpha);
 		initStrat.initModel(state, corpus);
 
-		final LDAVariationlState vstate = new LDAVariationlState(state);
-		while (modelConverged(vstate.state)) {
-			final LDAModel nextState = vstate.state.newInstance();
-			nextState.setAlpha(initialAlpha);
-			for (final Document doc : corpus.getDocuments()) {
-				vstate.prepare(doc);
-				performE(doc, vstate); // updates the variation parameters given
-										// the current Beta
-				performM(doc, vstate, nextState); // updates the nextState given
-													// the variational
-													// parameters
-				nextState.likelihood += vstate.likelihood;
-			}
+		return state;
+	}
+
+	private void performEM(Corpus corpus) {
+		// initialise the first state
+		LDAModel state = initialModel(corpus);
+
+		while (!modelConverged(state)) {
+			final LDAModel nextState = state.newInstance();
+			nextState.setAlpha(state.alpha);
+
+			// updates the variation parameters given the current Beta, and
+			// accumulates the nextState given the variational parameters
+			performE(corpus.getDocuments(), state, nextState);
+
 			nextState.iteration++;
-			vstate.state = nextState;
+			state = nextState;
+		}
+
+		model = state;
+		onlineUpdates = 0;
+	}
+
+	/**
+	 * Perform the E-step for each document in parallel, accumulating the
+	 * sufficient statistics and likelihood of all the documents into
+	 * nextState
+	 */
+	private void performE(final List<Document> docs, final LDAModel state, final LDAModel nextState) {
+		final int nThreads = pool == null ? 1 : Math.max(1, Math.min(docs.size(), pool.getMaximumPoolSize()));
+
+		if (nThreads == 1) {
+			performE(docs, 0, docs.size(), new LDAVariationlState(state), nextState);
+			return;
+		}
+
+		final LDAModel[] partial = new LDAModel[nThreads];
+		final int chunk = (docs.size() + nThreads - 1) / nThreads;
+
+		Parallel.forRangeCallerRuns(0, nThreads, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				for (int t = range.start; t < range.stop; t += range.incr) {
+					final LDAModel stats = new LDAModel(ntopics);
+					stats.prepare(state.topicWord[0].length);
+
+					performE(docs, t * chunk, Math.min(docs.size(), (t + 1) * chunk),
+							new LDAVariationlState(state), stats);
+					partial[t] = stats;
+				}
+			}
+		}, pool);
+
+		for (final LDAModel stats : partial)
+			nextState.add(stats);
+	}
+
+	private void performE(List<Document> docs, int start, int stop, LDAVariationlState vstate, LDAModel nextState) {
+		for (int i = start; i < stop; i++) {
+			final Document doc = docs.get(i);
+
+			performE(doc, vstate); // updates the variation parameters given
+									// the current Beta
+			performM(doc, vstate, nextState); // updates the nextState given
+												// the variational
+												// parameters
+			nextState.likelihood += vstate.likelihood;
 		}
 	}
 
 	private LDAVariationlState performE(Document doc, LDAVariationlState vstate) {
 		vstate.prepare(doc);
+		MathUtils.digamma(vstate.varGamma, vstate.digamma);
+
 		while (!variationalStateConverged(vstate)) {
 			int docWordIndex = 0;
 			for (final Entry wordCount : doc.getVector().entries()) {
 				double phiSum = 0;
 				final int word = wordCount.index;
 				final int count = wordCount.value;
-				for (int topicIndex = 0; topicIndex < vstate.phi.length; topicIndex++) {
+				for (int topicIndex = 0; topicIndex < ntopics; topicIndex++) {
 					vstate.oldphi[topicIndex] = vstate.phi[docWordIndex][topicIndex];
 					// If this word has been seen in this class before
-					if (vstate.state.topicWord[topicIndex][docWordIndex] > 0) {
+					if (vstate.state.topicWord[topicIndex][word] > 0) {
 						// Update phi
 						// Remember this phi is actually the same value for
 						// every instance of thisparticular word.
@@ -177,11 +402,11 @@ public class LDALearner {
 										Math.log(vstate.state.topicTotal[topicIndex]);
 						vstate.phi[docWordIndex][topicIndex] =
 								logBeta +
-										Gamma.digamma(vstate.varGamma[topicIndex]);
+										vstate.digamma[topicIndex];
 					} else {
 						// if not, \Beta_wi = ETA (very small) so log \Beta_wi
 						// ~= -100 (ETA = 10-34)
-						vstate.phi[docWordIndex][topicIndex] = Gamma.digamma(vstate.varGamma[topicIndex]) - 100;
+						vstate.phi[docWordIndex][topicIndex] = vstate.digamma[topicIndex] - 100;
 					}
 					if (topicIndex == 0) {
 						phiSum = vstate.phi[docWordIndex][topicIndex];
@@ -195,7 +420,7 @@ public class LDALearner {
 								vstate.phi[docWordIndex][topicIndex]);
 					}
 				}
-				for (int topicIndex = 0; topicIndex < vstate.phi.length; topicIndex++) {
+				for (int topicIndex = 0; topicIndex < ntopics; topicIndex++) {
 					// Replace log phi with the normalised phi
 					// normalise a given word's phi summing over all i in eqn 16
 					vstate.phi[docWordIndex][topicIndex] = Math.exp(
@@ -208,6 +433,7 @@ public class LDALearner {
 					// word appears in this document
 					vstate.varGamma[topicIndex] += count
 							* (vstate.phi[docWordIndex][topicIndex] - vstate.oldphi[topicIndex]);
+					vstate.digamma[topicIndex] = MathUtils.digamma(vstate.varGamma[topicIndex]);
 				}
 				docWordIndex++;
 			}
@@ -221,9 +447,10 @@ public class LDALearner {
 	private boolean modelConverged(LDAModel model) {
 		final double EM_CONVERGED = (Double) this.getConfig(LDAConfig.EM_CONVERGED);
 		final int MAX_ITER = (Integer) this.getConfig(LDAConfig.MAX_ITERATIONS);
-		// if likelihood ~= oldLikelihood then this value will approach 0.
-		final double converged = (model.likelihood - model.oldLikelihood) / model.oldLikelihood;
-		final boolean liklihoodSettled = ((converged < EM_CONVERGED) || (model.iteration <= 2));
+		// if likelihood ~= oldLikelihood then this value will approach 0; it
+		// is negative if the likelihood went down.
+		final double converged = (model.oldLikelihood - model.likelihood) / model.oldLikelihood;
+		final boolean liklihoodSettled = converged >= 0 && converged < EM_CONVERGED && model.iteration > 2;
 		final boolean maxIterExceeded = model.iteration > MAX_ITER;
 
 		return liklihoodSettled || maxIterExceeded;
@@ -233,8 +460,8 @@ public class LDALearner {
 		final double EM_CONVERGED = (Double) this.getConfig(LDAConfig.VAR_EM_CONVERGED);
 		final int MAX_ITER = (Integer) this.getConfig(LDAConfig.VAR_MAX_ITERATIONS);
 		// if likelihood ~= oldLikelihood then this value will approach 0.
-		final double converged = (vstate.likelihood - vstate.oldLikelihood) / vstate.oldLikelihood;
-		final boolean liklihoodSettled = ((converged < EM_CONVERGED) || (vstate.iteration <= 2));
+		final double converged = (vstate.oldLikelihood - vstate.likelihood) / vstate.oldLikelihood;
+		final boolean liklihoodSettled = converged < EM_CONVERGED;
 		final boolean maxIterExceeded = vstate.iteration > MAX_ITER;
 
 		return liklihoodSettled || maxIterExceeded;
@@ -249,14 +476,15 @@ public class LDALearner {
 	 * @param nextState
 	 */
 	private void performM(Document d, LDAVariationlState vstate, LDAModel nextState) {
-
+		int docWordIndex = 0;
 		for (final Entry entry : d.values.entries()) {
 			for (int topicIndex = 0; topicIndex < ntopics; topicIndex++) {
 				final int wordIndex = entry.index;
-				final int count = entry.value;
-				nextState.incTopicWord(topicIndex, wordIndex, count * vstate.phi[wordIndex][topicIndex]);
+				final double count = entry.value * vstate.phi[docWordIndex][topicIndex];
+				nextState.incTopicWord(topicIndex, wordIndex, count);
 				nextState.incTopicTotal(topicIndex, count);
 			}
+			docWordIndex++;
 		}
 	}
 
@@ -276,13 +504,11 @@ public class LDALearner {
 
 		// Prepare some variables we need
 		double sumVarGamma = 0;
-		double sumDiGamma = 0;
+		MathUtils.digamma(vstate.varGamma, vstate.digamma);
 		for (int topicIndex = 0; topicIndex < ntopics; topicIndex++) {
 			sumVarGamma += vstate.varGamma[topicIndex];
-			vstate.digamma[topicIndex] = Gamma
-					.digamma(vstate.varGamma[topicIndex]);
-			sumDiGamma += vstate.digamma[topicIndex];
 		}
+		final double digammaSum = MathUtils.digamma(sumVarGamma);
 		// first we sum the parameters which don't rely on iteration through the
 		// classes or
 		// iteration through the documents
@@ -290,40 +516,46 @@ public class LDALearner {
 		likelihood += Gamma.logGamma(vstate.state.alpha * ntopics) - // eqn (15)
 																		// line
 																		// 1
-				Gamma.logGamma(vstate.state.alpha) * ntopics + // eqn (15) line
+				Gamma.logGamma(vstate.state.alpha) * ntopics - // eqn (15) line
 																// 1
 				Gamma.logGamma(sumVarGamma); // eqn (15) line 4
 		for (int topicIndex = 0; topicIndex < ntopics; topicIndex++) {
 			// Now add the things that just need an interation over k
-			// eqn (15) line 4
-			final double topicGammaDiff = vstate.digamma[topicIndex] - sumDiGamma;
-			likelihood += Gamma.logGamma(vstate.varGamma[topicIndex]) - (vstate.varGamma[topicIndex] - 1)
+			// eqn (15) lines 1 and 4
+			final double topicGammaDiff = vstate.digamma[topicIndex] - digammaSum;
+			likelihood += (vstate.state.alpha - 1) * topicGammaDiff +
+					Gamma.logGamma(vstate.varGamma[topicIndex]) - (vstate.varGamma[topicIndex] - 1)
 					* topicGammaDiff;
 			int wordIndex = 0;
 			for (final Entry wordCount : doc.getVector().entries()) {
 				final int word = wordCount.index;
 				final int count = wordCount.value;
-				final double logBeta = Math.log(
+				final double phi = vstate.phi[wordIndex][topicIndex];
+				wordIndex++;
+
+				if (phi <= 0)
+					continue;
+
+				// as in the E-step, unseen words have log \Beta_wi ~= -100
+				final double logBeta = vstate.state.topicWord[topicIndex][word] > 0 ? Math.log(
 						vstate.state.topicWord[topicIndex][word]) -
 						Math.log(vstate.state.topicTotal[topicIndex]
-								);
+								) : -100;
 				likelihood +=
 						// Count because these sums are over N and
 						// the sum of the counts of each unique word is == N
 						count * (
 								// Each of these lines happens to multiply by
 								// the current word's phi
-								vstate.phi[wordIndex][topicIndex] * (
+								phi * (
 								// eqn (15) line 2
 								topicGammaDiff +
 										// eqn (15) line 3
-										count * logBeta -
+										logBeta -
 								// eqn (15) line 5
-								Math.log(vstate.phi[wordIndex][topicIndex]
-											)
+								Math.log(phi)
 								)
 								);
-				wordIndex++;
 			}
 		}
 		return likelihood;
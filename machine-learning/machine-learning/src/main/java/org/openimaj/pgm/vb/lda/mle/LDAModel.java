@@ -111,6 +111,44 @@ public class LDAModel{
 		this.topicTotal[topicIndex] += d;
 	}
 
+	/**
+	 * Add the sufficient statistics and likelihood of another model (for
+	 * example one accumulated over a different set of documents) to this one
+	 * @param other the model to add
+	 */
+	public void add(LDAModel other) {
+		for (int topicIndex = 0; topicIndex < ntopics; topicIndex++) {
+			final double[] tw = this.topicWord[topicIndex];
+			final double[] otw = other.topicWord[topicIndex];
+			for (int wordIndex = 0; wordIndex < tw.length; wordIndex++)
+				tw[wordIndex] += otw[wordIndex];
+			this.topicTotal[topicIndex] += other.topicTotal[topicIndex];
+		}
+		this.likelihood += other.likelihood;
+	}
+
+	/**
+	 * Move the sufficient statistics towards those of another model, such that
+	 * <code>this = (1 - weight) * this + weight * scale * other</code>. This is
+	 * the update used by online learning, where the other model holds the
+	 * statistics of a mini-batch, and the scale corrects for the size of the
+	 * mini-batch relative to the whole corpus.
+	 * @param other the model to move towards
+	 * @param weight the weight of the other model
+	 * @param scale the scaling of the other model's statistics
+	 */
+	public void interpolate(LDAModel other, double weight, double scale) {
+		final double otherWeight = weight * scale;
+		for (int topicIndex = 0; topicIndex < ntopics; topicIndex++) {
+			final double[] tw = this.topicWord[topicIndex];
+			final double[] otw = other.topicWord[topicIndex];
+			for (int wordIndex = 0; wordIndex < tw.length; wordIndex++)
+				tw[wordIndex] = (1 - weight) * tw[wordIndex] + otherWeight * otw[wordIndex];
+			this.topicTotal[topicIndex] = (1 - weight) * this.topicTotal[topicIndex] + otherWeight * other.topicTotal[topicIndex];
+		}
+		this.likelihood = other.likelihood;
+	}
+
 	/**
 	 * @param initialAlpha the alpha parameter for the topic multinomial dirichelet prior
 	 */
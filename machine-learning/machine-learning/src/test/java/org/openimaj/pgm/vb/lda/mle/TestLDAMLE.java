@@ -29,13 +29,22 @@
  */
 package org.openimaj.pgm.vb.lda.mle;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.openimaj.pgm.util.Document;
 import org.openimaj.pgm.util.SimpleCorpusReader;
 import org.openimaj.pgm.util.Corpus;
 import org.openimaj.pgm.util.CorpusReader;
+import org.openimaj.pgm.vb.lda.mle.LDALearner.LDAConfig;
+import org.openimaj.util.stream.CollectionStream;
 
 /**
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
@@ -55,4 +64,59 @@ public class TestLDAMLE {
 		LDALearner learner = new LDALearner(10);
 		learner.estimate(corpus);
 	}
+	
+	@Test
+	public void testParallelEstimation(){
+		LDALearner sequential = new LDALearner(10);
+		sequential.setConfig(LDAConfig.INIT_STRATEGY, new LDABetaInitStrategy.RandomBetaInit(1));
+		sequential.setThreadPool(null);
+		sequential.estimate(corpus);
+
+		ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(4);
+		LDALearner parallel = new LDALearner(10);
+		parallel.setConfig(LDAConfig.INIT_STRATEGY, new LDABetaInitStrategy.RandomBetaInit(1));
+		parallel.setThreadPool(pool);
+		parallel.estimate(corpus);
+		pool.shutdown();
+
+		LDAModel expected = sequential.getModel();
+		LDAModel actual = parallel.getModel();
+		assertEquals(expected.likelihood, actual.likelihood, 1e-6 * Math.abs(expected.likelihood));
+		for (int topic = 0; topic < 10; topic++)
+			assertArrayEquals(expected.topicWord[topic], actual.topicWord[topic], 1e-6);
+	}
+	
+	/**
+	 * Test that repeatedly learning online from mini-batches of the corpus
+	 * reaches a likelihood close to that of the batch estimate
+	 */
+	@Test
+	public void testOnlineEstimation(){
+		LDALearner batch = new LDALearner(10);
+		batch.setConfig(LDAConfig.INIT_STRATEGY, new LDABetaInitStrategy.RandomBetaInit(1));
+		batch.estimate(corpus);
+		double batchLikelihood = batch.computeLikelihood(corpus);
+
+		LDALearner online = new LDALearner(10);
+		online.setConfig(LDAConfig.INIT_STRATEGY, new LDABetaInitStrategy.RandomBetaInit(1));
+		online.setConfig(LDAConfig.ONLINE_BATCH_SIZE, 2);
+		online.setConfig(LDAConfig.ONLINE_TAU0, 1d);
+		// the corpus is tiny, so make several passes over it
+		for (int pass = 0; pass < 20; pass++)
+			online.estimate(new CollectionStream<Document>(corpus.getDocuments()), corpus.size(), corpus.vocabularySize());
+
+		LDAModel model = online.getModel();
+		for (int topic = 0; topic < 10; topic++) {
+			double total = 0;
+			for (double count : model.topicWord[topic]) {
+				assertTrue(count >= 0);
+				total += count;
+			}
+			assertEquals(total, model.topicTotal[topic], 1e-6 * total);
+		}
+
+		double onlineLikelihood = online.computeLikelihood(corpus);
+		assertTrue(onlineLikelihood < 0);
+		assertEquals(batchLikelihood, onlineLikelihood, 0.02 * Math.abs(batchLikelihood));
+	}
 }
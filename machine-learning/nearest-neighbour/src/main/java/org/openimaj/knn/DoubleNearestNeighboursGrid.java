@@ -0,0 +1,357 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.knn;
+
+import gnu.trove.map.hash.TLongIntHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openimaj.util.pair.IntDoublePair;
+import org.openimaj.util.queue.BoundedPriorityQueue;
+
+/**
+ * Exact nearest-neighbour and range search for low-dimensional data (for
+ * example geographic coordinates) using a uniform grid of hypercubic cells.
+ * Each point is assigned to the cell containing it, and only the non-empty
+ * cells are stored, so memory use is linear in the number of points
+ * regardless of the extent of the data. Distances are squared Euclidean, as
+ * for {@link DoubleNearestNeighboursExact}.
+ * <p>
+ * Range searches only visit the cells overlapping the query ball, so they are
+ * fastest when the search radius is comparable to the cell size; the
+ * k-nearest-neighbour searches perform range searches of doubling radius
+ * until at least <i>k</i> points are found. The number of cells visited
+ * grows exponentially with the dimensionality, so this class is only
+ * appropriate for data with a few dimensions; use a
+ * {@link DoubleNearestNeighboursExactKDTree} for higher-dimensional data.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class DoubleNearestNeighboursGrid extends DoubleNearestNeighbours {
+	/**
+	 * {@link NearestNeighboursFactory} for producing
+	 * {@link DoubleNearestNeighboursGrid}s.
+	 * 
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static final class Factory implements NearestNeighboursFactory<DoubleNearestNeighboursGrid, double[]> {
+		private final double cellSize;
+
+		/**
+		 * Construct the factory with the given cell size.
+		 * 
+		 * @param cellSize
+		 *            the length of the sides of the grid cells
+		 */
+		public Factory(double cellSize) {
+			this.cellSize = cellSize;
+		}
+
+		@Override
+		public DoubleNearestNeighboursGrid create(double[][] data) {
+			return new DoubleNearestNeighboursGrid(data, cellSize);
+		}
+	}
+
+	protected final double[][] pnts;
+	protected final double cellSize;
+
+	private final double[] origin;
+	private final int[] dims;
+	private final long[] strides;
+
+	/** maps the key of each non-empty cell to its number */
+	private final TLongIntHashMap cellNumbers;
+	/** the key of each non-empty cell */
+	private final long[] cellKeys;
+	/** offsets of the members of each cell in {@link #members} */
+	private final int[] cellStart;
+	/** point indices, grouped by cell */
+	private final int[] members;
+
+	/**
+	 * Construct the grid over the given data
+	 * 
+	 * @param pnts
+	 *            the data
+	 * @param cellSize
+	 *            the length of the sides of the grid cells; for range searches
+	 *            this is best set to approximately the search radius
+	 * @throws IllegalArgumentException
+	 *             if the data is too widely spread for the given cell size
+	 */
+	public DoubleNearestNeighboursGrid(double[][] pnts, double cellSize) {
+		if (!(cellSize > 0))
+			throw new IllegalArgumentException("cellSize must be positive");
+
+		this.pnts = pnts;
+		this.cellSize = cellSize;
+
+		final int D = pnts[0].length;
+		this.origin = new double[D];
+		this.dims = new int[D];
+		this.strides = new long[D];
+
+		for (int d = 0; d < D; d++) {
+			double min = Double.MAX_VALUE;
+			double max = -Double.MAX_VALUE;
+			for (final double[] p : pnts) {
+				min = Math.min(min, p[d]);
+				max = Math.max(max, p[d]);
+			}
+
+			final double n = Math.floor((max - min) / cellSize) + 1;
+			if (n > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("The grid is too large; increase the cell size");
+
+			origin[d] = min;
+			dims[d] = (int) n;
+		}
+
+		long stride = 1;
+		for (int d = 0; d < D; d++) {
+			strides[d] = stride;
+			if (stride > Long.MAX_VALUE / dims[d])
+				throw new IllegalArgumentException("The grid is too large; increase the cell size");
+			stride *= dims[d];
+		}
+
+		// count the members of each cell, numbering the cells as they are
+		// encountered
+		final long[] keys = new long[pnts.length];
+		final TLongIntHashMap numbers = new TLongIntHashMap();
+		final List<long[]> counts = new ArrayList<long[]>();
+		for (int i = 0; i < pnts.length; i++) {
+			keys[i] = key(pnts[i]);
+
+			final int cell = numbers.adjustOrPutValue(keys[i], 0, counts.size());
+			if (cell == counts.size())
+				counts.add(new long[] { keys[i], 0 });
+			counts.get(cell)[1]++;
+		}
+
+		final int ncells = counts.size();
+		this.cellNumbers = numbers;
+		this.cellKeys = new long[ncells];
+		this.cellStart = new int[ncells + 1];
+		for (int c = 0; c < ncells; c++) {
+			cellKeys[c] = counts.get(c)[0];
+			cellStart[c + 1] = cellStart[c] + (int) counts.get(c)[1];
+		}
+
+		this.members = new int[pnts.length];
+		final int[] fill = new int[ncells];
+		for (int i = 0; i < pnts.length; i++) {
+			final int cell = numbers.get(keys[i]);
+			members[cellStart[cell] + fill[cell]++] = i;
+		}
+	}
+
+	private int cellCoordinate(double value, int d) {
+		return (int) Math.min(dims[d] - 1, Math.max(0, Math.floor((value - origin[d]) / cellSize)));
+	}
+
+	private long key(double[] point) {
+		long key = 0;
+		for (int d = 0; d < point.length; d++)
+			key += cellCoordinate(point[d], d) * strides[d];
+		return key;
+	}
+
+	/**
+	 * Add the points of the given cell that are within the given distance to
+	 * the list
+	 */
+	private void scanCell(int cell, double[] query, double maxDistance, List<IntDoublePair> ret) {
+		for (int j = cellStart[cell]; j < cellStart[cell + 1]; j++) {
+			final int idx = members[j];
+			final double dist = distanceFunc(query, pnts[idx]);
+			if (dist <= maxDistance)
+				ret.add(new IntDoublePair(idx, dist));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Only the cells overlapping the bounding box of the query ball are
+	 * visited; the results are in no particular order.
+	 */
+	@Override
+	public List<IntDoublePair> searchWithinDistance(double[] query, double maxDistance) {
+		final List<IntDoublePair> ret = new ArrayList<IntDoublePair>();
+		final int D = dims.length;
+		final double radius = Math.sqrt(maxDistance);
+
+		final int[] lo = new int[D];
+		final int[] hi = new int[D];
+		double nBoxCells = 1;
+		for (int d = 0; d < D; d++) {
+			if (query[d] + radius < origin[d] || query[d] - radius >= origin[d] + dims[d] * cellSize)
+				return ret;
+
+			lo[d] = cellCoordinate(query[d] - radius, d);
+			hi[d] = cellCoordinate(query[d] + radius, d);
+			nBoxCells *= hi[d] - lo[d] + 1;
+		}
+
+		if (nBoxCells > cellKeys.length) {
+			// the box is larger than the occupied part of the grid
+			for (int c = 0; c < cellKeys.length; c++)
+				if (inBox(cellKeys[c], lo, hi))
+					scanCell(c, query, maxDistance, ret);
+			return ret;
+		}
+
+		// iterate over the cells of the box like an odometer
+		final int[] pos = lo.clone();
+		while (true) {
+			long key = 0;
+			for (int d = 0; d < D; d++)
+				key += pos[d] * strides[d];
+
+			if (cellNumbers.containsKey(key))
+				scanCell(cellNumbers.get(key), query, maxDistance, ret);
+
+			int d = 0;
+			while (d < D && pos[d] == hi[d]) {
+				pos[d] = lo[d];
+				d++;
+			}
+			if (d == D)
+				break;
+			pos[d]++;
+		}
+
+		return ret;
+	}
+
+	private boolean inBox(long key, int[] lo, int[] hi) {
+		for (int d = dims.length - 1; d >= 0; d--) {
+			final int c = (int) (key / strides[d]);
+			if (c < lo[d] || c > hi[d])
+				return false;
+			key -= c * strides[d];
+		}
+		return true;
+	}
+
+	@Override
+	public List<IntDoublePair> searchKNN(double[] query, int K) {
+		K = Math.min(K, pnts.length);
+
+		final BoundedPriorityQueue<IntDoublePair> queue = new BoundedPriorityQueue<IntDoublePair>(K,
+				IntDoublePair.SECOND_ITEM_ASCENDING_COMPARATOR);
+
+		// search balls of doubling radius; once a ball contains at least K
+		// points (or the whole grid) it must contain the K nearest
+		double radius = cellSize;
+		while (true) {
+			final List<IntDoublePair> candidates = searchWithinDistance(query, radius * radius);
+
+			if (candidates.size() >= K || coversGrid(query, radius)) {
+				for (final IntDoublePair p : candidates)
+					queue.add(p);
+
+				return queue.toOrderedListDestructive();
+			}
+
+			radius *= 2;
+		}
+	}
+
+	/**
+	 * Test whether the ball of the given radius around the query contains the
+	 * whole grid
+	 */
+	private boolean coversGrid(double[] query, double radius) {
+		double maxDistance = 0;
+		for (int d = 0; d < dims.length; d++) {
+			final double far = Math.max(Math.abs(query[d] - origin[d]),
+					Math.abs(origin[d] + dims[d] * cellSize - query[d]));
+			maxDistance += far * far;
+		}
+		return radius * radius >= maxDistance;
+	}
+
+	@Override
+	public IntDoublePair searchNN(double[] query) {
+		return searchKNN(query, 1).get(0);
+	}
+
+	@Override
+	public void searchNN(double[][] qus, int[] indices, double[] distances) {
+		for (int n = 0; n < qus.length; n++) {
+			final IntDoublePair p = searchNN(qus[n]);
+			indices[n] = p.first;
+			distances[n] = p.second;
+		}
+	}
+
+	@Override
+	public void searchKNN(double[][] qus, int K, int[][] indices, double[][] distances) {
+		for (int n = 0; n < qus.length; n++)
+			copy(searchKNN(qus[n], K), indices[n], distances[n]);
+	}
+
+	@Override
+	public void searchNN(List<double[]> qus, int[] indices, double[] distances) {
+		for (int n = 0; n < qus.size(); n++) {
+			final IntDoublePair p = searchNN(qus.get(n));
+			indices[n] = p.first;
+			distances[n] = p.second;
+		}
+	}
+
+	@Override
+	public void searchKNN(List<double[]> qus, int K, int[][] indices, double[][] distances) {
+		for (int n = 0; n < qus.size(); n++)
+			copy(searchKNN(qus.get(n), K), indices[n], distances[n]);
+	}
+
+	private static void copy(List<IntDoublePair> result, int[] indices, double[] distances) {
+		for (int k = 0; k < result.size(); ++k) {
+			final IntDoublePair p = result.get(k);
+			indices[k] = p.first;
+			distances[k] = p.second;
+		}
+	}
+
+	@Override
+	public int numDimensions() {
+		return pnts[0].length;
+	}
+
+	@Override
+	public int size() {
+		return pnts.length;
+	}
+}
@@ -33,7 +33,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.openimaj.image.FImage;
 import org.openimaj.image.Image;
@@ -46,6 +50,12 @@ import org.openimaj.util.stream.Stream;
 /**
  * This class implements a function that can read images from URLs. Use in
  * combination with a {@link Stream} to convert from URLs to {@link Image}s.
+ * <p>
+ * Optionally, the raw content can be fetched through a {@link URLFetchCache},
+ * so that repeated or redirected URLs referring to the same image are only
+ * downloaded once, and the most recently decoded images can be kept (keyed by
+ * content hash) so that hot images are only decoded once. Images returned from
+ * the decoded-image cache are copies, so may be freely modified.
  *
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  *
@@ -66,6 +76,10 @@ public class ImageFromURL<I extends Image<?, I>> implements MultiFunction<URL, I
 	public static ImageFromURL<MBFImage> MBFIMAGE_EXTRACTOR = new ImageFromURL<MBFImage>(ImageUtilities.MBFIMAGE_READER);
 
 	private ObjectReader<I, InputStream> reader;
+	private URLFetchCache fetchCache;
+	private Map<String, I> decodedCache;
+	private final AtomicLong decodedHits = new AtomicLong();
+	private final AtomicLong decodedMisses = new AtomicLong();
 
 	/**
 	 * Construct with the given image reader.
@@ -76,8 +90,53 @@ public class ImageFromURL<I extends Image<?, I>> implements MultiFunction<URL, I
 		this.reader = reader;
 	}
 
+	/**
+	 * Construct with the given image reader, fetching content through the
+	 * given cache and keeping up to the given number of decoded images.
+	 *
+	 * @param reader
+	 *            the image reader
+	 * @param fetchCache
+	 *            the cache through which content is fetched
+	 * @param maxDecodedImages
+	 *            the maximum number of decoded images to keep; zero disables
+	 *            the decoded-image cache
+	 */
+	public ImageFromURL(ObjectReader<I, InputStream> reader, URLFetchCache fetchCache, final int maxDecodedImages) {
+		this.reader = reader;
+		this.fetchCache = fetchCache;
+
+		if (maxDecodedImages > 0) {
+			this.decodedCache = Collections.synchronizedMap(new LinkedHashMap<String, I>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, I> eldest) {
+					return size() > maxDecodedImages;
+				}
+			});
+		}
+	}
+
+	/**
+	 * @return the number of images served from the decoded-image cache
+	 */
+	public long getDecodedHits() {
+		return decodedHits.get();
+	}
+
+	/**
+	 * @return the number of images that had to be decoded
+	 */
+	public long getDecodedMisses() {
+		return decodedMisses.get();
+	}
+
 	@Override
 	public List<I> apply(URL in) {
+		if (fetchCache != null)
+			return applyCached(in);
+
 		final List<I> images = new ArrayList<I>(1);
 		InputStream stream = null;
 		try {
@@ -99,4 +158,29 @@ public class ImageFromURL<I extends Image<?, I>> implements MultiFunction<URL, I
 
 		return images;
 	}
+
+	private List<I> applyCached(URL in) {
+		final List<I> images = new ArrayList<I>(1);
+
+		try {
+			final URLFetchCache.CachedContent content = fetchCache.fetch(in);
+
+			I im = decodedCache == null ? null : decodedCache.get(content.getContentHash());
+			if (im != null) {
+				decodedHits.incrementAndGet();
+			} else {
+				decodedMisses.incrementAndGet();
+				im = reader.read(content.openStream());
+
+				if (decodedCache != null)
+					decodedCache.put(content.getContentHash(), im);
+			}
+
+			images.add(decodedCache == null ? im : im.clone());
+		} catch (final IOException e) {
+			// silently ignore
+		}
+
+		return images;
+	}
 }
@@ -32,7 +32,10 @@ package org.openimaj.stream.functions;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.openimaj.util.function.MultiFunction;
@@ -42,6 +45,11 @@ import org.openimaj.web.scraping.SiteSpecificConsumer;
  * This class implements a function that will given an input URL outputs a list
  * of URLs based on applying a list of {@link SiteSpecificConsumer}s to the
  * input.
+ * <p>
+ * Optionally, the results can be cached (see {@link #setResultCacheSize(int)})
+ * against the {@linkplain URLFetchCache#canonicalise(URL) canonical form} of
+ * the input URL, so that URLs that are seen repeatedly (for example in a
+ * stream of tweets) are only resolved by the consumers once.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
@@ -53,6 +61,8 @@ public class SiteSpecificURLExtractor implements MultiFunction<URL, URL> {
 	 */
 	protected List<SiteSpecificConsumer> siteSpecific = new ArrayList<SiteSpecificConsumer>();
 
+	private Map<String, List<URL>> resultCache;
+
 	/**
 	 * Construct with the given list of consumers.
 	 * 
@@ -80,8 +90,46 @@ public class SiteSpecificURLExtractor implements MultiFunction<URL, URL> {
 		this.siteSpecific = new ArrayList<SiteSpecificConsumer>();
 	}
 
+	/**
+	 * Set the number of results to cache, keyed by canonical input URL. Empty
+	 * results are cached too. Setting the size to zero disables (and clears)
+	 * the cache.
+	 * 
+	 * @param size
+	 *            the maximum number of results to cache
+	 */
+	public void setResultCacheSize(final int size) {
+		if (size <= 0) {
+			resultCache = null;
+		} else {
+			resultCache = Collections.synchronizedMap(new LinkedHashMap<String, List<URL>>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, List<URL>> eldest) {
+					return size() > size;
+				}
+			});
+		}
+	}
+
 	@Override
 	public List<URL> apply(URL in) {
+		final Map<String, List<URL>> cache = resultCache;
+		if (cache == null)
+			return resolve(in);
+
+		final String key = URLFetchCache.canonicalise(in).toString();
+		List<URL> imageUrls = cache.get(key);
+		if (imageUrls == null) {
+			imageUrls = resolve(in);
+			cache.put(key, new ArrayList<URL>(imageUrls));
+		}
+
+		return new ArrayList<URL>(imageUrls);
+	}
+
+	private List<URL> resolve(URL in) {
 		final List<URL> imageUrls = processURLs(in);
 
 		if (imageUrls == null)
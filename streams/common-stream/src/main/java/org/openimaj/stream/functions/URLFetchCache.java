@@ -0,0 +1,768 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.stream.functions;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.openimaj.io.HttpUtils;
+
+/**
+ * A deduplicating cache for the raw content of URLs, intended for streams (such
+ * as those from Twitter) in which the same resource is referred to many times,
+ * often through different (shortened or otherwise redirected) URLs.
+ * <p>
+ * Every URL is first {@linkplain #canonicalise(URL) canonicalised}, and
+ * redirects are followed one hop at a time so that the canonical URL at each
+ * hop can be remembered as resolving to the final target; once a short link
+ * has been seen, later requests for it are answered without touching the
+ * network. Concurrent requests for the same URL are coalesced into a single
+ * download, as are concurrent requests that redirect to the same URL. Content
+ * is stored by its SHA-1 hash, so identical content served from different
+ * URLs is only held once, in a bounded in-memory LRU cache and, optionally, a
+ * bounded on-disk cache that persists between runs. The size of the disk
+ * cache includes the files that map URLs to content, and these are removed
+ * along with the content when the cache is trimmed.
+ * <p>
+ * Hit, miss and download statistics are available for monitoring.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class URLFetchCache {
+	private static final Logger logger = Logger.getLogger(URLFetchCache.class);
+
+	/**
+	 * The content of a URL fetched through a {@link URLFetchCache}.
+	 * 
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class CachedContent {
+		private final String url;
+		private final String hash;
+		private final byte[] bytes;
+
+		CachedContent(String url, String hash, byte[] bytes) {
+			this.url = url;
+			this.hash = hash;
+			this.bytes = bytes;
+		}
+
+		/**
+		 * @return the canonical URL that the content was read from (after any
+		 *         redirects)
+		 */
+		public String getURL() {
+			return url;
+		}
+
+		/**
+		 * @return the hex-encoded SHA-1 hash of the content
+		 */
+		public String getContentHash() {
+			return hash;
+		}
+
+		/**
+		 * Get the content. The returned array is shared with the cache and
+		 * must not be modified.
+		 * 
+		 * @return the content
+		 */
+		public byte[] getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * @return a stream over the content
+		 */
+		public InputStream openStream() {
+			return new ByteArrayInputStream(bytes);
+		}
+	}
+
+	/**
+	 * A download in progress. A download that reaches a redirect target that
+	 * another download is already fetching waits for it rather than fetching
+	 * the target again; {@link #waitingFor} records this so that downloads
+	 * never wait for each other in a cycle.
+	 */
+	private class Download implements Callable<CachedContent> {
+		final String key;
+		final FutureTask<CachedContent> task = new FutureTask<CachedContent>(this);
+		volatile Download waitingFor;
+
+		Download(String key) {
+			this.key = key;
+		}
+
+		@Override
+		public CachedContent call() throws Exception {
+			return download(key, this);
+		}
+	}
+
+	private static final String URL_SUFFIX = ".url";
+	private static final String TMP_SUFFIX = ".tmp";
+
+	private int maxRedirects = 10;
+	private int connectionTimeout = 15000;
+	private int readTimeout = 15000;
+	private String userAgent = HttpUtils.DEFAULT_USERAGENT;
+
+	private final Map<String, String> resolutions;
+	private final Map<String, String> contentHashes;
+
+	private final LinkedHashMap<String, byte[]> memoryCache = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+	private final long maxMemoryBytes;
+	private long memoryBytes;
+
+	private final File diskCacheDir;
+	private final long maxDiskBytes;
+	private final AtomicLong diskBytes = new AtomicLong();
+
+	private final ConcurrentHashMap<String, Download> inFlight = new ConcurrentHashMap<String, Download>();
+
+	private final AtomicLong memoryHits = new AtomicLong();
+	private final AtomicLong diskHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong bytesDownloaded = new AtomicLong();
+
+	/**
+	 * Construct an in-memory cache.
+	 * 
+	 * @param maxURLs
+	 *            the maximum number of URL resolutions and URL-to-content
+	 *            mappings to remember
+	 * @param maxMemoryBytes
+	 *            the maximum total size of the content held in memory
+	 */
+	public URLFetchCache(int maxURLs, long maxMemoryBytes) {
+		this(maxURLs, maxMemoryBytes, null, 0);
+	}
+
+	/**
+	 * Construct a cache backed by both memory and disk. Content already in the
+	 * disk cache directory (from a previous run) is reused.
+	 * 
+	 * @param maxURLs
+	 *            the maximum number of URL resolutions and URL-to-content
+	 *            mappings to remember in memory
+	 * @param maxMemoryBytes
+	 *            the maximum total size of the content held in memory
+	 * @param diskCacheDir
+	 *            the directory for the disk cache; if null, no disk cache is
+	 *            used
+	 * @param maxDiskBytes
+	 *            the maximum total size of the disk cache
+	 */
+	public URLFetchCache(int maxURLs, long maxMemoryBytes, File diskCacheDir, long maxDiskBytes) {
+		this.resolutions = createLRU(maxURLs);
+		this.contentHashes = createLRU(maxURLs);
+		this.maxMemoryBytes = maxMemoryBytes;
+		this.diskCacheDir = diskCacheDir;
+		this.maxDiskBytes = maxDiskBytes;
+
+		if (diskCacheDir != null) {
+			diskCacheDir.mkdirs();
+
+			final File[] files = diskCacheDir.listFiles();
+			if (files != null) {
+				for (final File f : files) {
+					// remove any partial writes from a previous run
+					if (f.getName().endsWith(TMP_SUFFIX))
+						f.delete();
+					else
+						diskBytes.addAndGet(f.length());
+				}
+			}
+		}
+	}
+
+	private static Map<String, String> createLRU(final int size) {
+		return Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				return size() > size;
+			}
+		});
+	}
+
+	/**
+	 * Canonicalise a URL: the scheme and host are lower-cased, default ports,
+	 * fragments and <tt>utm_*</tt> tracking parameters are removed, and an
+	 * empty path becomes <tt>/</tt>.
+	 * 
+	 * @param url
+	 *            the URL
+	 * @return the canonical form of the URL
+	 */
+	public static URL canonicalise(URL url) {
+		final String protocol = url.getProtocol().toLowerCase();
+		final String host = url.getHost() == null ? null : url.getHost().toLowerCase();
+		final int port = url.getPort() == url.getDefaultPort() ? -1 : url.getPort();
+
+		String path = url.getPath();
+		if (path == null || path.length() == 0)
+			path = "/";
+
+		final String query = url.getQuery();
+		if (query != null) {
+			final StringBuilder sb = new StringBuilder();
+			for (final String param : query.split("&")) {
+				if (param.length() == 0 || param.startsWith("utm_"))
+					continue;
+
+				sb.append(sb.length() == 0 ? '?' : '&');
+				sb.append(param);
+			}
+			path += sb;
+		}
+
+		try {
+			return new URL(protocol, host, port, path);
+		} catch (final MalformedURLException e) {
+			return url;
+		}
+	}
+
+	/**
+	 * Fetch the content of the given URL, from the cache if possible.
+	 * 
+	 * @param url
+	 *            the URL
+	 * @return the content
+	 * @throws IOException
+	 *             if the content could not be fetched
+	 */
+	public CachedContent fetch(URL url) throws IOException {
+		final String key = canonicalise(url).toString();
+
+		final String target = resolutions.get(key);
+		if (target != null) {
+			final CachedContent content = lookup(target);
+			if (content != null)
+				return content;
+		}
+
+		final CachedContent content = lookup(key);
+		if (content != null)
+			return content;
+
+		final Download download = new Download(key);
+		final Download existing = inFlight.putIfAbsent(key, download);
+		if (existing != null) {
+			coalesced.incrementAndGet();
+			return get(existing.task);
+		}
+
+		try {
+			download.task.run();
+			return get(download.task);
+		} finally {
+			inFlight.remove(key, download);
+		}
+	}
+
+	private static CachedContent get(FutureTask<CachedContent> task) throws IOException {
+		try {
+			return task.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Download the content of the URL, following redirects one hop at a time
+	 * and stopping early if a hop is already in the cache. Each redirect
+	 * target is registered as in flight before it is followed, so that other
+	 * requests for it wait for this download; if another download is already
+	 * fetching the target, this one waits for it instead.
+	 */
+	private CachedContent download(String key, Download self) throws IOException {
+		final List<String> chain = new ArrayList<String>();
+		final List<String> registered = new ArrayList<String>();
+		String current = key;
+
+		try {
+			for (int hop = 0; hop <= maxRedirects; hop++) {
+				if (hop > 0) {
+					final String target = resolutions.get(current);
+					if (target != null)
+						current = target;
+
+					final CachedContent content = lookup(current);
+					if (content != null) {
+						recordResolutions(chain, current);
+						return content;
+					}
+
+					final Download existing = inFlight.putIfAbsent(current, self);
+					if (existing == null) {
+						registered.add(current);
+					} else if (existing != self) {
+						final CachedContent shared = await(self, existing);
+						if (shared != null) {
+							recordResolutions(chain, shared.getURL());
+							return shared;
+						}
+					}
+				}
+
+				final URLConnection conn = new URL(current).openConnection();
+				conn.setConnectTimeout(connectionTimeout);
+				conn.setReadTimeout(readTimeout);
+				conn.setRequestProperty("User-Agent", userAgent);
+
+				if (conn instanceof HttpURLConnection) {
+					final HttpURLConnection hconn = (HttpURLConnection) conn;
+					hconn.setInstanceFollowRedirects(false);
+
+					final int code = hconn.getResponseCode();
+					if (code >= 300 && code < 400 && hconn.getHeaderField("Location") != null) {
+						final URL next = new URL(new URL(current), hconn.getHeaderField("Location"));
+						hconn.disconnect();
+
+						logger.debug("Redirect from " + current + " to " + next);
+						chain.add(current);
+						current = canonicalise(next).toString();
+						continue;
+					}
+
+					if (code >= 400) {
+						hconn.disconnect();
+						throw new IOException("Server returned HTTP response code " + code + " for URL: " + current);
+					}
+				}
+
+				final byte[] bytes;
+				final InputStream stream = conn.getInputStream();
+				try {
+					bytes = IOUtils.toByteArray(stream);
+				} finally {
+					stream.close();
+				}
+
+				misses.incrementAndGet();
+				bytesDownloaded.addAndGet(bytes.length);
+
+				final CachedContent content = new CachedContent(current, hash(bytes), bytes);
+				store(content);
+				recordResolutions(chain, current);
+
+				return content;
+			}
+		} finally {
+			for (final String k : registered)
+				inFlight.remove(k, self);
+		}
+
+		throw new IOException("Too many redirects for URL: " + key);
+	}
+
+	/**
+	 * Wait for another download that is fetching a redirect target of this
+	 * one. Returns null without waiting if the other download is (directly or
+	 * indirectly) waiting for this one, in which case this download must
+	 * fetch the target itself.
+	 */
+	private CachedContent await(Download self, Download other) throws IOException {
+		self.waitingFor = other;
+		try {
+			// the chain of waits can't be longer than the number of downloads
+			Download d = other;
+			for (int i = 0; d != null && i <= inFlight.size(); i++, d = d.waitingFor) {
+				if (d == self)
+					return null;
+			}
+
+			coalesced.incrementAndGet();
+			return get(other.task);
+		} finally {
+			self.waitingFor = null;
+		}
+	}
+
+	private void recordResolutions(List<String> chain, String target) {
+		for (final String from : chain) {
+			resolutions.put(from, target);
+
+			if (diskCacheDir != null)
+				writePointer(from, contentHashes.get(target));
+		}
+	}
+
+	/**
+	 * Look for the content of the given canonical URL in memory and then on
+	 * disk.
+	 */
+	private CachedContent lookup(String key) {
+		String hash = contentHashes.get(key);
+
+		if (hash == null && diskCacheDir != null) {
+			hash = readPointer(key);
+			if (hash != null)
+				contentHashes.put(key, hash);
+		}
+
+		if (hash == null)
+			return null;
+
+		byte[] bytes = memoryGet(hash);
+		if (bytes != null) {
+			memoryHits.incrementAndGet();
+			return new CachedContent(key, hash, bytes);
+		}
+
+		if (diskCacheDir != null) {
+			final File file = new File(diskCacheDir, hash);
+			try {
+				bytes = FileUtils.readFileToByteArray(file);
+				file.setLastModified(System.currentTimeMillis());
+				memoryPut(hash, bytes);
+				diskHits.incrementAndGet();
+				return new CachedContent(key, hash, bytes);
+			} catch (final IOException e) {
+				// fall through and fetch again
+			}
+		}
+
+		contentHashes.remove(key);
+		return null;
+	}
+
+	private void store(CachedContent content) {
+		contentHashes.put(content.url, content.hash);
+		memoryPut(content.hash, content.bytes);
+
+		if (diskCacheDir != null) {
+			final File file = new File(diskCacheDir, content.hash);
+			if (!file.exists())
+				write(file, content.bytes);
+			writePointer(content.url, content.hash);
+			trimDiskCache();
+		}
+	}
+
+	private synchronized byte[] memoryGet(String hash) {
+		return memoryCache.get(hash);
+	}
+
+	private synchronized void memoryPut(String hash, byte[] bytes) {
+		if (bytes.length > maxMemoryBytes)
+			return;
+
+		if (memoryCache.put(hash, bytes) == null)
+			memoryBytes += bytes.length;
+
+		final Iterator<byte[]> iter = memoryCache.values().iterator();
+		while (memoryBytes > maxMemoryBytes && iter.hasNext()) {
+			memoryBytes -= iter.next().length;
+			iter.remove();
+		}
+	}
+
+	private File pointerFile(String key) {
+		return new File(diskCacheDir, hash(key.getBytes()) + URL_SUFFIX);
+	}
+
+	private String readPointer(String key) {
+		final File file = pointerFile(key);
+		if (!file.exists())
+			return null;
+
+		final String[] parts = readPointerFile(file);
+		// guard against hash collisions between URLs
+		if (parts != null && parts[0].equals(key))
+			return parts[1];
+		return null;
+	}
+
+	/**
+	 * Read the URL and content hash from a URL file, returning null if it
+	 * can't be read
+	 */
+	private static String[] readPointerFile(File file) {
+		try {
+			final String[] parts = FileUtils.readFileToString(file, "UTF-8").split("\n");
+			if (parts.length == 2)
+				return parts;
+		} catch (final IOException e) {
+			// treat as absent
+		}
+		return null;
+	}
+
+	private void writePointer(String key, String hash) {
+		if (hash == null)
+			return;
+
+		try {
+			write(pointerFile(key), (key + "\n" + hash).getBytes("UTF-8"));
+		} catch (final IOException e) {
+			logger.warn("Unable to write disk cache entry for " + key, e);
+		}
+	}
+
+	/**
+	 * Write atomically (as far as the platform allows) via a temporary file, so
+	 * that concurrent readers never see partial content. The size of the disk
+	 * cache is updated by the change in size of the file.
+	 */
+	private void write(File file, byte[] bytes) {
+		try {
+			final File tmp = File.createTempFile("fetch", TMP_SUFFIX, diskCacheDir);
+			final OutputStream os = new FileOutputStream(tmp);
+			try {
+				os.write(bytes);
+			} finally {
+				os.close();
+			}
+
+			final long previous = file.length();
+			if (!tmp.renameTo(file)) {
+				file.delete();
+				if (!tmp.renameTo(file)) {
+					tmp.delete();
+					diskBytes.addAndGet(-previous);
+					return;
+				}
+			}
+			diskBytes.addAndGet(bytes.length - previous);
+		} catch (final IOException e) {
+			logger.warn("Unable to write disk cache file " + file, e);
+		}
+	}
+
+	/**
+	 * Delete the least recently used content files, together with the URL
+	 * files that point to them, until the disk cache is below 90% of its
+	 * maximum size. URL files pointing to content that no longer exists are
+	 * also deleted.
+	 */
+	private synchronized void trimDiskCache() {
+		if (diskBytes.get() <= maxDiskBytes)
+			return;
+
+		final File[] files = diskCacheDir.listFiles();
+		if (files == null)
+			return;
+
+		final Map<String, File> content = new HashMap<String, File>();
+		final Map<String, List<File>> pointers = new HashMap<String, List<File>>();
+		long total = 0;
+		for (final File f : files) {
+			if (f.getName().endsWith(TMP_SUFFIX))
+				continue;
+
+			total += f.length();
+
+			if (f.getName().endsWith(URL_SUFFIX)) {
+				final String[] pointer = readPointerFile(f);
+				final String hash = pointer == null ? null : pointer[1];
+
+				if (!pointers.containsKey(hash))
+					pointers.put(hash, new ArrayList<File>());
+				pointers.get(hash).add(f);
+			} else {
+				content.put(f.getName(), f);
+			}
+		}
+
+		for (final Map.Entry<String, List<File>> entry : pointers.entrySet()) {
+			if (!content.containsKey(entry.getKey()))
+				total -= delete(entry.getValue());
+		}
+
+		final List<File> lru = new ArrayList<File>(content.values());
+		Collections.sort(lru, new Comparator<File>() {
+			@Override
+			public int compare(File o1, File o2) {
+				final long m1 = o1.lastModified();
+				final long m2 = o2.lastModified();
+				return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+			}
+		});
+
+		final long target = (long) (0.9 * maxDiskBytes);
+		for (int i = 0; i < lru.size() && total > target; i++) {
+			final File f = lru.get(i);
+			final List<File> fp = pointers.get(f.getName());
+			if (fp != null)
+				total -= delete(fp);
+			total -= delete(Collections.singletonList(f));
+		}
+		diskBytes.set(total);
+	}
+
+	/**
+	 * Delete the given files, returning the number of bytes freed
+	 */
+	private static long delete(List<File> files) {
+		long freed = 0;
+		for (final File f : files) {
+			final long length = f.length();
+			if (f.delete())
+				freed += length;
+		}
+		return freed;
+	}
+
+	private static String hash(byte[] bytes) {
+		try {
+			final byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+			final StringBuilder sb = new StringBuilder(digest.length * 2);
+			for (final byte b : digest) {
+				sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+				sb.append(Character.forDigit(b & 0xf, 16));
+			}
+			return sb.toString();
+		} catch (final NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Set the maximum number of redirects that will be followed.
+	 * 
+	 * @param maxRedirects
+	 *            the maximum number of redirects
+	 */
+	public void setMaxRedirects(int maxRedirects) {
+		this.maxRedirects = maxRedirects;
+	}
+
+	/**
+	 * Set the connection and read timeouts.
+	 * 
+	 * @param connectionTimeout
+	 *            the connection timeout in milliseconds
+	 * @param readTimeout
+	 *            the read timeout in milliseconds
+	 */
+	public void setTimeouts(int connectionTimeout, int readTimeout) {
+		this.connectionTimeout = connectionTimeout;
+		this.readTimeout = readTimeout;
+	}
+
+	/**
+	 * Set the user-agent string sent with each request.
+	 * 
+	 * @param userAgent
+	 *            the user-agent
+	 */
+	public void setUserAgent(String userAgent) {
+		this.userAgent = userAgent;
+	}
+
+	/**
+	 * @return the number of requests answered from the in-memory cache
+	 */
+	public long getMemoryHits() {
+		return memoryHits.get();
+	}
+
+	/**
+	 * @return the number of requests answered from the disk cache
+	 */
+	public long getDiskHits() {
+		return diskHits.get();
+	}
+
+	/**
+	 * @return the number of requests that required content to be downloaded
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of requests that waited for an identical request (or
+	 *         a request redirected to the same URL) already in progress
+	 *         rather than making their own
+	 */
+	public long getCoalescedRequests() {
+		return coalesced.get();
+	}
+
+	/**
+	 * @return the total number of bytes of content downloaded
+	 */
+	public long getBytesDownloaded() {
+		return bytesDownloaded.get();
+	}
+
+	/**
+	 * @return the total size of the files in the disk cache (content and the
+	 *         files that map URLs to content), or 0 if there is no disk cache
+	 */
+	public long getDiskCacheSize() {
+		return diskBytes.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("URLFetchCache[memoryHits=%d, diskHits=%d, misses=%d, coalesced=%d, bytesDownloaded=%d]",
+				getMemoryHits(), getDiskHits(), getMisses(), getCoalescedRequests(), getBytesDownloaded());
+	}
+}
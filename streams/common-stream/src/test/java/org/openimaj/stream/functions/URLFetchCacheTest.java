@@ -0,0 +1,408 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.stream.functions;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.apache.commons.io.FileUtils;
+import org.junit.rules.TemporaryFolder;
+import org.openimaj.stream.functions.URLFetchCache.CachedContent;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests for the {@link URLFetchCache}, using a local HTTP server.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class URLFetchCacheTest {
+	private static final byte[] CONTENT = "the content".getBytes();
+	private static final int ITEM_SIZE = 1000;
+
+	/**
+	 * Temporary folder for the disk cache
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private HttpServer server;
+	private String base;
+	private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<String, AtomicInteger>();
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private class Handler implements HttpHandler {
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			final String path = exchange.getRequestURI().getPath();
+			requests.putIfAbsent(path, new AtomicInteger());
+			requests.get(path).incrementAndGet();
+
+			if (path.startsWith("/short")) {
+				redirect(exchange, "/content?utm_source=test");
+				return;
+			}
+
+			if (path.startsWith("/slowlink")) {
+				redirect(exchange, "/slow");
+				return;
+			}
+
+			if (path.startsWith("/itemlink")) {
+				redirect(exchange, "/item" + path.substring("/itemlink".length()));
+				return;
+			}
+
+			if (path.equals("/loopA") || path.equals("/loopB")) {
+				redirect(exchange, path.equals("/loopA") ? "/loopB" : "/loopA");
+				return;
+			}
+
+			if (path.startsWith("/item")) {
+				final byte[] item = new byte[ITEM_SIZE];
+				Arrays.fill(item, (byte) path.hashCode());
+				exchange.sendResponseHeaders(200, item.length);
+				final OutputStream os = exchange.getResponseBody();
+				os.write(item);
+				os.close();
+				return;
+			}
+
+			if (path.equals("/slow")) {
+				try {
+					release.await();
+				} catch (final InterruptedException e) {
+					// ignore
+				}
+			}
+
+			if (path.equals("/missing")) {
+				exchange.sendResponseHeaders(404, -1);
+				exchange.close();
+				return;
+			}
+
+			exchange.sendResponseHeaders(200, CONTENT.length);
+			final OutputStream os = exchange.getResponseBody();
+			os.write(CONTENT);
+			os.close();
+		}
+	}
+
+	private static void redirect(HttpExchange exchange, String location) throws IOException {
+		exchange.getResponseHeaders().add("Location", location);
+		exchange.sendResponseHeaders(302, -1);
+		exchange.close();
+	}
+
+	/**
+	 * Start the server
+	 * 
+	 * @throws IOException
+	 */
+	@Before
+	public void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new Handler());
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.start();
+		base = "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * Stop the server
+	 */
+	@After
+	public void teardown() {
+		release.countDown();
+		server.stop(0);
+	}
+
+	private int requests(String path) {
+		final AtomicInteger count = requests.get(path);
+		return count == null ? 0 : count.get();
+	}
+
+	/**
+	 * Test that repeated and equivalent URLs are only fetched once
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testRepeatedFetch() throws IOException {
+		final URLFetchCache cache = new URLFetchCache(100, 1 << 20);
+
+		final CachedContent c1 = cache.fetch(new URL(base + "/content"));
+		final CachedContent c2 = cache.fetch(new URL(base.toUpperCase().replace("HTTP", "http") + "/content#frag"));
+		final CachedContent c3 = cache.fetch(new URL(base + "/content?utm_campaign=x"));
+
+		assertArrayEquals(CONTENT, c1.getBytes());
+		assertEquals(c1.getContentHash(), c2.getContentHash());
+		assertEquals(c1.getContentHash(), c3.getContentHash());
+		assertEquals(1, requests("/content"));
+		assertEquals(1, cache.getMisses());
+		assertEquals(2, cache.getMemoryHits());
+	}
+
+	/**
+	 * Test that redirects are remembered
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testRedirects() throws IOException {
+		final URLFetchCache cache = new URLFetchCache(100, 1 << 20);
+
+		assertArrayEquals(CONTENT, cache.fetch(new URL(base + "/short1")).getBytes());
+		assertArrayEquals(CONTENT, cache.fetch(new URL(base + "/short1")).getBytes());
+		assertArrayEquals(CONTENT, cache.fetch(new URL(base + "/content")).getBytes());
+
+		// a different short link is resolved, but the target is not fetched
+		// again
+		final CachedContent c = cache.fetch(new URL(base + "/short2"));
+		assertEquals(base + "/content", c.getURL());
+
+		assertEquals(1, requests("/short1"));
+		assertEquals(1, requests("/short2"));
+		assertEquals(1, requests("/content"));
+		assertEquals(1, cache.getMisses());
+	}
+
+	/**
+	 * Test that concurrent requests for the same URL are coalesced
+	 * 
+	 * @throws Exception
+	 */
+	@Test(timeout = 10000)
+	public void testCoalescing() throws Exception {
+		final URLFetchCache cache = new URLFetchCache(100, 1 << 20);
+		final int nThreads = 8;
+		final List<Thread> threads = new ArrayList<Thread>();
+		final AtomicInteger ok = new AtomicInteger();
+
+		for (int i = 0; i < nThreads; i++) {
+			final Thread t = new Thread() {
+				@Override
+				public void run() {
+					try {
+						if (cache.fetch(new URL(base + "/slow")).getBytes().length == CONTENT.length)
+							ok.incrementAndGet();
+					} catch (final IOException e) {
+						// fail below
+					}
+				}
+			};
+			threads.add(t);
+			t.start();
+		}
+
+		while (cache.getCoalescedRequests() < nThreads - 1)
+			Thread.sleep(10);
+		release.countDown();
+
+		for (final Thread t : threads)
+			t.join();
+
+		assertEquals(nThreads, ok.get());
+		assertEquals(1, requests("/slow"));
+	}
+
+	/**
+	 * Test that the disk cache persists between instances
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testDiskCache() throws IOException {
+		final URLFetchCache cache1 = new URLFetchCache(100, 1 << 20, folder.getRoot(), 1 << 20);
+		cache1.fetch(new URL(base + "/short1"));
+
+		final URLFetchCache cache2 = new URLFetchCache(100, 1 << 20, folder.getRoot(), 1 << 20);
+		assertArrayEquals(CONTENT, cache2.fetch(new URL(base + "/short1")).getBytes());
+		assertArrayEquals(CONTENT, cache2.fetch(new URL(base + "/content")).getBytes());
+
+		assertEquals(1, requests("/short1"));
+		assertEquals(1, requests("/content"));
+		assertEquals(1, cache2.getDiskHits());
+		assertEquals(1, cache2.getMemoryHits());
+		assertEquals(0, cache2.getMisses());
+	}
+
+	/**
+	 * Test that errors are reported
+	 * 
+	 * @throws IOException
+	 */
+	@Test(expected = IOException.class)
+	public void testMissing() throws IOException {
+		new URLFetchCache(100, 1 << 20).fetch(new URL(base + "/missing"));
+	}
+
+	/**
+	 * Test that concurrent requests for different URLs that redirect to the
+	 * same URL are coalesced
+	 * 
+	 * @throws Exception
+	 */
+	@Test(timeout = 10000)
+	public void testRedirectCoalescing() throws Exception {
+		final URLFetchCache cache = new URLFetchCache(100, 1 << 20);
+		final int nThreads = 6;
+		final List<Thread> threads = new ArrayList<Thread>();
+		final AtomicInteger ok = new AtomicInteger();
+
+		for (int i = 0; i < nThreads; i++) {
+			final String path = "/slowlink" + i;
+			final Thread t = new Thread() {
+				@Override
+				public void run() {
+					try {
+						if (cache.fetch(new URL(base + path)).getBytes().length == CONTENT.length)
+							ok.incrementAndGet();
+					} catch (final IOException e) {
+						// fail below
+					}
+				}
+			};
+			threads.add(t);
+			t.start();
+		}
+
+		while (cache.getCoalescedRequests() < nThreads - 1)
+			Thread.sleep(10);
+		release.countDown();
+
+		for (final Thread t : threads)
+			t.join();
+
+		assertEquals(nThreads, ok.get());
+		assertEquals(1, requests("/slow"));
+		assertEquals(1, cache.getMisses());
+		for (int i = 0; i < nThreads; i++)
+			assertEquals(1, requests("/slowlink" + i));
+
+		// the links are remembered
+		assertEquals(base + "/slow", cache.fetch(new URL(base + "/slowlink0")).getURL());
+		assertEquals(1, requests("/slowlink0"));
+	}
+
+	/**
+	 * Test that concurrent requests in a redirect loop fail rather than
+	 * waiting for each other
+	 * 
+	 * @throws Exception
+	 */
+	@Test(timeout = 10000)
+	public void testConcurrentRedirectLoop() throws Exception {
+		final URLFetchCache cache = new URLFetchCache(100, 1 << 20);
+		final List<Thread> threads = new ArrayList<Thread>();
+		final AtomicInteger failed = new AtomicInteger();
+
+		for (int i = 0; i < 4; i++) {
+			final String path = i % 2 == 0 ? "/loopA" : "/loopB";
+			final Thread t = new Thread() {
+				@Override
+				public void run() {
+					try {
+						cache.fetch(new URL(base + path));
+					} catch (final IOException e) {
+						failed.incrementAndGet();
+					}
+				}
+			};
+			threads.add(t);
+			t.start();
+		}
+
+		for (final Thread t : threads)
+			t.join();
+
+		assertEquals(threads.size(), failed.get());
+	}
+
+	/**
+	 * Test that the size of the disk cache counts the content and URL files
+	 * in the same way when they are written and when the cache is reopened,
+	 * and that trimming removes the URL files along with their content
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testDiskCacheSize() throws IOException {
+		final File dir = folder.getRoot();
+		final long maxDiskBytes = 5 * ITEM_SIZE;
+		final URLFetchCache cache = new URLFetchCache(100, 1 << 20, dir, maxDiskBytes);
+
+		for (int i = 0; i < 15; i++) {
+			cache.fetch(new URL(base + "/itemlink" + i));
+
+			assertEquals(FileUtils.sizeOfDirectory(dir), cache.getDiskCacheSize());
+			assertTrue(cache.getDiskCacheSize() <= maxDiskBytes);
+
+			int content = 0;
+			for (final File f : dir.listFiles()) {
+				if (f.getName().endsWith(".url")) {
+					// every URL file points at content that exists
+					final String hash = FileUtils.readFileToString(f, "UTF-8").split("\n")[1];
+					assertTrue(new File(dir, hash).exists());
+				} else {
+					content++;
+				}
+			}
+			assertTrue(content >= 1);
+		}
+		assertEquals(15, cache.getMisses());
+		assertTrue(dir.listFiles().length < 3 * 15);
+
+		final URLFetchCache reopened = new URLFetchCache(100, 1 << 20, dir, maxDiskBytes);
+		assertEquals(cache.getDiskCacheSize(), reopened.getDiskCacheSize());
+	}
+}
@@ -50,11 +50,16 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Scanner;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.citation.annotation.Reference;
 import org.openimaj.citation.annotation.ReferenceType;
 import org.openimaj.image.FImage;
 import org.openimaj.math.matrix.MatrixUtils;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 import Jama.Matrix;
 
@@ -115,6 +120,7 @@ public class CLM {
 	private FImage[] prob_;
 	private FImage[] pmem_;
 	private FImage[] wmem_;
+	private ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
 
 	void calcSimT(Matrix src, Matrix dst, SimTData data) {
 		assert ((src.getRowDimension() == dst.getRowDimension())
@@ -380,10 +386,23 @@ public class CLM {
 				.copyOf(pmem_, pmem_.length, (new FImage[0]).getClass());
 		c.wmem_ = Arrays
 				.copyOf(wmem_, wmem_.length, (new FImage[0]).getClass());
+		c.pool = pool;
 
 		return c;
 	}
 
+	/**
+	 * Set the thread pool used to compute the responses of the patch experts
+	 * of the different points in parallel. If the pool is null, the responses
+	 * are computed sequentially in the calling thread.
+	 * 
+	 * @param pool
+	 *            the thread pool; may be null
+	 */
+	public void setThreadPool(ThreadPoolExecutor pool) {
+		this.pool = pool;
+	}
+
 	final int nViews() {
 		return _patch.length;
 	}
@@ -424,7 +443,7 @@ public class CLM {
 	 * @param fTol
 	 */
 	public void fit(FImage im, int[] wSize, int nIter, double clamp, double fTol) {
-		int i, idx, n = _pdm.nPoints();
+		int idx;
 
 		SimTData d1 = new SimTData();
 		SimTData d2 = new SimTData();
@@ -437,51 +456,73 @@ public class CLM {
 
 			idx = getViewIdx();
 
-			for (i = 0; i < n; i++) {
-				if (_visi[idx].getRowDimension() == n) {
-					if (_visi[idx].get(i, 0) == 0)
-						continue;
-				}
+			computeResponses(im, idx, wSize[witer], d1);
+
+			simT(cshape_, d2);
+			_pdm.applySimT(d2, _pglobl);
+			bshape_.setMatrix(0, cshape_.getRowDimension() - 1, 0,
+					cshape_.getColumnDimension() - 1, cshape_);
+
+			this.optimize(idx, wSize[witer], nIter, fTol, clamp, true);
+			this.optimize(idx, wSize[witer], nIter, fTol, clamp, false);
+
+			_pdm.applySimT(d1, _pglobl);
+		}
+	}
 
-				int w = wSize[witer] + _patch[idx][i]._w - 1;
-				int h = wSize[witer] + _patch[idx][i]._h - 1;
+	/**
+	 * Compute the patch responses for all the visible points. Each point only
+	 * touches its own patch experts and buffers, so the points are processed
+	 * in parallel.
+	 */
+	private void computeResponses(final FImage im, final int idx, final int wSize, final SimTData d1) {
+		final int n = _pdm.nPoints();
 
-				Matrix sim = new Matrix(new double[][] {
-						{ d1.a, -d1.b, cshape_.get(i, 0) },
-						{ d1.b, d1.a, cshape_.get(i + n, 0) } });
+		if (pool == null) {
+			for (int i = 0; i < n; i++)
+				computeResponse(im, idx, wSize, d1, i);
+		} else {
+			Parallel.forRangeCallerRuns(0, n, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					for (int i = range.start; i < range.stop; i++)
+						computeResponse(im, idx, wSize, d1, i);
+				}
+			}, pool);
+		}
+	}
 
-				if (wmem_[i] == null || (w > wmem_[i].width)
-						|| (h > wmem_[i].height))
-					wmem_[i] = new FImage(w, h);
+	private void computeResponse(FImage im, int idx, int wSize, SimTData d1, int i) {
+		final int n = _pdm.nPoints();
 
-				// gah, we need to get a subimage backed by the original;
-				// luckily its from the origin
-				FImage wimg = subImage(wmem_[i], w, h);
+		if (_visi[idx].getRowDimension() == n) {
+			if (_visi[idx].get(i, 0) == 0)
+				return;
+		}
 
-				FImage wimg_o = wimg; // why? is this supposed to clone?
-				Matrix sim_o = sim;
-				FImage im_o = im;
+		int w = wSize + _patch[idx][i]._w - 1;
+		int h = wSize + _patch[idx][i]._h - 1;
 
-				cvGetQuadrangleSubPix(im_o, wimg_o, sim_o);
+		Matrix sim = new Matrix(new double[][] {
+				{ d1.a, -d1.b, cshape_.get(i, 0) },
+				{ d1.b, d1.a, cshape_.get(i + n, 0) } });
 
-				if (pmem_[i] == null || wSize[witer] > pmem_[i].height)
-					pmem_[i] = new FImage(wSize[witer], wSize[witer]);
+		if (wmem_[i] == null || (w > wmem_[i].width)
+				|| (h > wmem_[i].height))
+			wmem_[i] = new FImage(w, h);
 
-				prob_[i] = subImage(pmem_[i], wSize[witer], wSize[witer]);
+		// gah, we need to get a subimage backed by the original;
+		// luckily its from the origin
+		FImage wimg = subImage(wmem_[i], w, h);
 
-				_patch[idx][i].response(wimg, prob_[i]);
-			}
+		cvGetQuadrangleSubPix(im, wimg, sim);
 
-			simT(cshape_, d2);
-			_pdm.applySimT(d2, _pglobl);
-			bshape_.setMatrix(0, cshape_.getRowDimension() - 1, 0,
-					cshape_.getColumnDimension() - 1, cshape_);
+		if (pmem_[i] == null || wSize > pmem_[i].height)
+			pmem_[i] = new FImage(wSize, wSize);
 
-			this.optimize(idx, wSize[witer], nIter, fTol, clamp, true);
-			this.optimize(idx, wSize[witer], nIter, fTol, clamp, false);
+		prob_[i] = subImage(pmem_[i], wSize, wSize);
 
-			_pdm.applySimT(d1, _pglobl);
-		}
+		_patch[idx][i].response(wimg, prob_[i]);
 	}
 
 	/**
@@ -72,6 +72,9 @@ public class MPatch {
 
 	private FImage res_;
 
+	/** Feature images for each patch type, shared by the patches */
+	private FImage[] features_ = new FImage[3];
+
 	MPatch(Patch[] p) {
 		_w = p[0].matcher.getTemplate().width;
 		_h = p[0].matcher.getTemplate().height;
@@ -148,7 +151,13 @@ public class MPatch {
 	}
 
 	final void sum2one(FImage M) {
-		M.divideInplace(M.sum());
+		// M might be a view on a larger buffer, so only sum within its bounds
+		float sum = 0;
+		for (int y = 0; y < M.height; y++)
+			for (int x = 0; x < M.width; x++)
+				sum += M.pixels[y][x];
+
+		M.divideInplace(sum);
 	}
 
 	void response(FImage im, FImage resp) {
@@ -159,19 +168,27 @@ public class MPatch {
 		if (resp.height != h || resp.width != w)
 			resp.internalAssign(new FImage(w, h));
 
-		if (res_ == null)
-			res_ = new FImage(w, h);
-		if (res_.height != h || res_.width != w)
-			res_.internalAssign(new FImage(w, h));
-
 		if (_p.length == 1) {
 			_p[0].response(im, resp);
 			sum2one(resp);
 		} else {
+			res_ = Patch.view(res_, w, h);
 			resp.fill(1);
 
+			// the feature images only depend on the patch type, so compute
+			// each once and share it between the patches
+			int computed = 0;
 			for (int i = 0; i < _p.length; i++) {
-				_p[i].response(im, res_);
+				final int t = _p[i]._t;
+				if (t < 0 || t >= features_.length)
+					throw new RuntimeException("ERROR: Unsupported patch type!\n");
+
+				if ((computed & (1 << t)) == 0) {
+					features_[t] = Patch.features(t, im, features_[t]);
+					computed |= 1 << t;
+				}
+
+				_p[i].featureResponse(features_[t], res_);
 				sum2one(res_);
 				resp.multiplyInplace(res_);
 			}
@@ -189,7 +206,7 @@ public class MPatch {
 		MPatch m = new MPatch();
 		m._w = _w;
 		m._h = _h;
-		m.res_ = res_;
+		m.res_ = new FImage(0, 0);
 		m._p = new Patch[_p.length];
 		for (int i = 0; i < _p.length; i++)
 			m._p[i] = _p[i].copy();
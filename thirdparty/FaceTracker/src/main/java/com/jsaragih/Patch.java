@@ -51,7 +51,7 @@ import java.io.IOException;
 import java.util.Scanner;
 
 import org.openimaj.image.FImage;
-import org.openimaj.image.analysis.algorithm.TemplateMatcher;
+import org.openimaj.image.analysis.algorithm.AdaptiveTemplateMatcher;
 import org.openimaj.image.analysis.algorithm.TemplateMatcher.Mode;
 
 /**
@@ -76,10 +76,17 @@ public class Patch {
 	public FImage _W;
 
 	protected FImage im_ = new FImage(0, 0);
-	protected TemplateMatcher matcher;
+	protected AdaptiveTemplateMatcher matcher;
 
 	FImage Grad(FImage im) {
-		FImage grad = new FImage(im.width, im.height);
+		return Grad(im, new FImage(im.width, im.height));
+	}
+
+	static FImage Grad(FImage im, FImage grad) {
+		for (int x = 0; x < im.width; x++) {
+			grad.pixels[0][x] = 0;
+			grad.pixels[im.height - 1][x] = 0;
+		}
 
 		for (int y = 1; y < im.height - 1; y++) {
 			for (int x = 1; x < im.width - 1; x++) {
@@ -87,16 +94,22 @@ public class Patch {
 				float vy = im.pixels[y + 1][x] - im.pixels[y - 1][x];
 				grad.pixels[y][x] = vx * vx + vy * vy;
 			}
+			grad.pixels[y][0] = 0;
+			grad.pixels[y][im.width - 1] = 0;
 		}
 		return grad;
 	}
 
-	final float SGN(float x) {
+	static final float SGN(float x) {
 		return (x < 0) ? 0 : 1;
 	}
 
 	FImage LBP(FImage im) {
-		FImage lp = new FImage(im.width, im.height);
+		return LBP(im, new FImage(im.width, im.height));
+	}
+
+	static FImage LBP(FImage im, FImage lp) {
+		lp.zero();
 
 		// float [] v = new float[9];
 		// for(int y = 1; y < im.height-1; y++) {
@@ -168,7 +181,7 @@ public class Patch {
 		p._a = s.nextDouble();
 		p._b = s.nextDouble();
 		p._W = IO.readImg(s);
-		p.matcher = new TemplateMatcher(p._W.clone(),
+		p.matcher = new AdaptiveTemplateMatcher(p._W.clone(),
 				Mode.NORM_CORRELATION_COEFFICIENT);
 
 		return p;
@@ -188,48 +201,88 @@ public class Patch {
 		_a = a;
 		_b = b;
 		_W = W;
-		matcher = new TemplateMatcher(W.clone(),
+		matcher = new AdaptiveTemplateMatcher(W.clone(),
 				Mode.NORM_CORRELATION_COEFFICIENT);
 	}
 
+	/**
+	 * Compute the feature image of the given type (0=raw, 1=grad, 2=lbp) for
+	 * the given image. The features are written into the given buffer, which
+	 * is reallocated if it is too small; the returned image is either the
+	 * input image (for raw patches) or a view on the buffer of the same size
+	 * as the input.
+	 * 
+	 * @param type
+	 *            the type of patch
+	 * @param im
+	 *            the image
+	 * @param buffer
+	 *            the buffer to write into; may be null
+	 * @return the feature image
+	 */
+	static FImage features(int type, FImage im, FImage buffer) {
+		if (type == 0)
+			return im;
+
+		final FImage I = view(buffer, im.width, im.height);
+
+		if (type == 1) {
+			return Grad(im, I);
+		} else if (type == 2) {
+			return LBP(im, I);
+		} else {
+			throw new RuntimeException("ERROR: Unsupported patch type!\n");
+		}
+	}
+
+	/**
+	 * Get a view on the top-left of a buffer image with the given size,
+	 * allocating a new buffer if the given one is null or too small. The
+	 * returned view can itself be passed back in as the buffer.
+	 */
+	static FImage view(FImage buffer, int width, int height) {
+		if (buffer == null || buffer.pixels.length < height || buffer.pixels[0].length < width)
+			buffer = new FImage(width, height);
+
+		final FImage img = new FImage(buffer.pixels);
+		img.width = width;
+		img.height = height;
+		return img;
+	}
+
 	void response(FImage im, FImage resp) {
 		assert ((im.height >= _W.height) && (im.width >= _W.width));
 
-		int h = im.height - _W.height + 1;
-		int w = im.width - _W.width + 1;
+		final FImage I = features(_t, im, im_);
+		if (_t != 0)
+			im_ = I;
 
-		if (resp.height != h || resp.width != w)
-			resp.internalAssign(new FImage(w, h));
+		featureResponse(I, resp);
+	}
 
-		FImage I;
-		if (_t == 0) {
-			I = im;
-		} else {
-			if (im_.height == im.height && im_.width == im.width) {
-				I = im_;
-			} else if (im_.height >= im.height && im_.width >= im.width) {
-				I = im_.extractROI(0, 0, im.width, im.height);
-			} else {
-				im_ = new FImage(im.width, im.height);
-				I = im_;
-			}
+	/**
+	 * Compute the response of this patch to a precomputed feature image of
+	 * the patch type (see {@link #features(int, FImage, FImage)}).
+	 * 
+	 * @param I
+	 *            the feature image
+	 * @param resp
+	 *            the response
+	 */
+	void featureResponse(FImage I, FImage resp) {
+		int h = I.height - _W.height + 1;
+		int w = I.width - _W.width + 1;
 
-			if (_t == 1) {
-				I = Grad(im);
-			} else if (_t == 2) {
-				I = LBP(im);
-			} else {
-				throw new RuntimeException("ERROR: Unsupported patch type!\n");
-			}
-		}
+		if (resp.height != h || resp.width != w)
+			resp.internalAssign(new FImage(w, h));
 
 		matcher.analyseImage(I);
-		FImage res = matcher.getResponseMap();
+		final float[][] res = matcher.getResponseMap().pixels;
 
 		for (int y = 0; y < resp.height; y++)
 			for (int x = 0; x < resp.width; x++)
 				resp.pixels[y][x] = (float) (1.0 / (1.0 + Math
-						.exp(res.pixels[y][x] * _a + _b)));
+						.exp(res[y][x] * _a + _b)));
 	}
 
 	/**
@@ -0,0 +1,129 @@
+/**
+ * FaceTracker Licence
+ * -------------------
+ * (Academic, non-commercial, not-for-profit licence)
+ *
+ * Copyright (c) 2010 Jason Mora Saragih
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * The software is provided under the terms of this licence stricly for
+ *       academic, non-commercial, not-for-profit purposes.
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions (licence) and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions (licence) and the following disclaimer
+ *       in the documentation and/or other materials provided with the
+ *       distribution.
+ *     * The name of the author may not be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *     * As this software depends on other libraries, the user must adhere to and
+ *       keep in place any licencing terms of those libraries.
+ *     * Any publications arising from the use of this software, including but
+ *       not limited to academic journal and conference publications, technical
+ *       reports and manuals, must cite the following work:
+ *
+ *       J. M. Saragih, S. Lucey, and J. F. Cohn. Face Alignment through Subspace
+ *       Constrained Mean-Shifts. International Journal of Computer Vision
+ *       (ICCV), September, 2009.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+ * EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ * OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jsaragih;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.image.ImageUtilities;
+import org.openimaj.math.geometry.shape.Rectangle;
+
+import Jama.Matrix;
+
+/**
+ * Tests for {@link CLM}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class CLMTest {
+	private static final int[] WSIZE = { 11, 9, 7 };
+	private static final int NITER = 5;
+	private static final double CLAMP = 3;
+	private static final double FTOL = 0.01;
+
+	private FImage image;
+	private CLM clm;
+
+	/**
+	 * Load the model and initialise the shape from the largest face detected
+	 * in a test image
+	 * 
+	 * @throws IOException
+	 */
+	@Before
+	public void setup() throws IOException {
+		image = ImageUtilities.readF(CLMTest.class.getResourceAsStream("/org/openimaj/image/data/sinaface.jpg"));
+
+		final Tracker tracker = Tracker.load(Tracker.class.getResourceAsStream("face2.tracker"));
+
+		final List<Rectangle> faces = tracker._fdet.detect(image);
+		assertFalse(faces.isEmpty());
+
+		Rectangle face = faces.get(0);
+		for (final Rectangle r : faces)
+			if (r.calculateArea() > face.calculateArea())
+				face = r;
+
+		final Matrix shape = new Matrix(2 * tracker._clm._pdm.nPoints(), 1);
+		tracker.initShape(face, shape);
+
+		clm = tracker._clm;
+		clm._pdm.calcParams(shape, clm._plocal, clm._pglobl);
+	}
+
+	/**
+	 * Fitting with the patch responses computed on a thread pool must give
+	 * exactly the same shape parameters as computing them sequentially
+	 */
+	@Test
+	public void testFitWithThreadPool() {
+		final CLM sequential = clm.copy();
+		sequential.setThreadPool(null);
+		sequential.fit(image, WSIZE, NITER, CLAMP, FTOL);
+
+		final ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(4);
+		try {
+			final CLM parallel = clm.copy();
+			parallel.setThreadPool(pool);
+			parallel.fit(image, WSIZE, NITER, CLAMP, FTOL);
+
+			assertArrayEquals(sequential._plocal.getColumnPackedCopy(), parallel._plocal.getColumnPackedCopy(), 0);
+			assertArrayEquals(sequential._pglobl.getColumnPackedCopy(), parallel._pglobl.getColumnPackedCopy(), 0);
+		} finally {
+			pool.shutdown();
+		}
+
+		// the fit must actually have moved the shape
+		assertFalse(Arrays.equals(clm._plocal.getColumnPackedCopy(),
+				sequential._plocal.getColumnPackedCopy()));
+	}
+}
@@ -33,6 +33,7 @@ import org.apache.commons.math.complex.Complex;
 import org.apache.commons.math.linear.Array2DRowFieldMatrix;
 import org.apache.commons.math.linear.FieldLUDecompositionImpl;
 import org.openimaj.image.FImage;
+import org.openimaj.image.analysis.algorithm.AdaptiveTemplateMatcher;
 import org.openimaj.image.analysis.algorithm.TemplateMatcher;
 import org.openimaj.image.analysis.algorithm.TemplateMatcher.Mode;
 import org.openimaj.image.pixel.FValuePixel;
@@ -109,7 +110,7 @@ public abstract class MotionEstimatorAlgorithm
 			// searchRectDraw.drawShape(searchRect, RGBColour.RED);
 			// searchRectDraw.drawPoint(img1sub.roi.getCOG(), RGBColour.GREEN,
 			// 3);
-			final TemplateMatcher matcher = new TemplateMatcher(current.frame, mode, searchRect);
+			final AdaptiveTemplateMatcher matcher = new AdaptiveTemplateMatcher(current.frame, mode, searchRect);
 			matcher.analyseImage(prev.frame);
 			final FValuePixel[] responses = matcher.getBestResponses(1);
 			final FValuePixel firstBest = responses[0];
@@ -0,0 +1,592 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.video.processing.shotdetector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.feature.DoubleFVComparison;
+import org.openimaj.image.FImage;
+import org.openimaj.image.MBFImage;
+import org.openimaj.math.statistics.distribution.Histogram;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.video.Video;
+import org.openimaj.video.timecode.HrsMinSecFrameTimecode;
+import org.openimaj.video.timecode.VideoTimecode;
+
+/**
+ * 	A histogram based shot detector designed for processing video much faster
+ * 	than real time. Unlike the {@link HistogramVideoShotDetector}, which
+ * 	computes the histogram of every full resolution frame on the thread that
+ * 	plays the video, this detector pipelines the work:
+ * 	<ul>
+ * 	<li>The calling thread only decodes frames, and immediately decimates
+ * 	each one by sampling every <code>n</code>th pixel in each direction
+ * 	(4 by default).</li>
+ * 	<li>The histograms of the decimated frames are computed on a thread pool
+ * 	(the {@link GlobalExecutorPool} by default). A histogram that is needed
+ * 	before the pool has started computing it is computed by the thread that
+ * 	needs it instead, so the pool may be saturated (for example, because
+ * 	{@link #process(Video)} is itself called from tasks running on the
+ * 	pool) without the detector deadlocking.</li>
+ * 	<li>Frames are examined coarse-to-fine: only every <code>k</code>th frame
+ * 	(8 by default) has its histogram computed initially. The frames inside an
+ * 	interval are only examined if the histograms of its end points differ by
+ * 	more than the threshold; otherwise the interval is assumed to contain no
+ * 	boundary.</li>
+ * 	<li>Intervals are resolved in order by a separate thread, which also
+ * 	fires the {@link ShotDetectedListener} events, so listeners never hold up
+ * 	decoding.</li>
+ * 	</ul>
+ * 	<p>
+ * 	The histograms are normalised to unit area, so the threshold is
+ * 	independent of the frame size and decimation. As with the
+ * 	{@link VideoShotDetector}, boundaries that are less than 4 frames apart
+ * 	are merged into a {@link FadeShotBoundary}, and a boundary is always
+ * 	generated for the first frame. Because merging needs to look ahead, the
+ * 	shot detected event for a boundary is fired once the following frames have
+ * 	been resolved. The keyframes attached to the boundaries are the decimated
+ * 	frames. Differential events are only fired for the consecutive frames that
+ * 	were actually compared.
+ * 	<p>
+ * 	Skipping frames means that a change that reverts within a single
+ * 	interval (for example, a flash) will not be detected; use a step of 1 to
+ * 	examine every frame.
+ *
+ *  @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *	@created 19 Oct 2026
+ */
+public class ParallelHistogramShotDetector
+{
+	/** A run of consecutive decimated frames; the first is the last of the previous run */
+	private static class Interval
+	{
+		/** The index of the first frame */
+		int start;
+
+		/** The frames */
+		List<MBFImage> frames;
+
+		/** The histogram of the first frame */
+		FutureTask<Histogram> startHistogram;
+
+		/** The histogram of the last frame */
+		FutureTask<Histogram> endHistogram;
+	}
+
+	/** Marker for the end of the video */
+	private static final Interval END = new Interval();
+
+	/** The number of histogram bins */
+	private int nbins = 64;
+
+	/** The decimation factor */
+	private int subsample = 4;
+
+	/** The number of frames between the coarsely examined frames */
+	private int step = 8;
+
+	/** The threshold on the distance between normalised histograms */
+	private double threshold = 0.02;
+
+	/** Whether to store keyframes */
+	private boolean findKeyframes = true;
+
+	/** The pool used to compute histograms */
+	private ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+
+	/** The listeners that want to know about new shots */
+	private final List<ShotDetectedListener<MBFImage>> listeners =
+		new ArrayList<ShotDetectedListener<MBFImage>>();
+
+	/** The shot boundaries found by the last call to process */
+	private List<ShotBoundary<MBFImage>> shotBoundaries =
+		new ArrayList<ShotBoundary<MBFImage>>();
+
+	/** The boundary waiting to be fired */
+	private ShotBoundary<MBFImage> pending;
+
+	/** The frame index of the last boundary (or end of fade) */
+	private int lastBoundaryFrame;
+
+	/** The frame rate of the video being processed */
+	private double fps;
+
+	/**
+	 * 	Process the given video, returning the shot boundaries. This method
+	 * 	blocks until the whole video has been processed, but the shot detected
+	 * 	events are fired (from another thread) as the boundaries are found.
+	 *
+	 *	@param video The video to process
+	 *	@return The shot boundaries
+	 */
+	public List<ShotBoundary<MBFImage>> process( final Video<MBFImage> video )
+	{
+		this.fps = video.getFPS();
+		this.shotBoundaries = new ArrayList<ShotBoundary<MBFImage>>();
+		this.pending = null;
+		this.lastBoundaryFrame = 0;
+
+		final int capacity = this.pool == null ? 2 : 2 * this.pool.getMaximumPoolSize() + 2;
+		final BlockingQueue<Interval> queue = new ArrayBlockingQueue<Interval>( capacity );
+		final Throwable[] error = new Throwable[1];
+
+		final Thread resolver = new Thread( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					Interval interval;
+					while( (interval = queue.take()) != END )
+					{
+						// keep consuming after a failure so the decoder
+						// can't block on a full queue
+						if( error[0] != null )
+							continue;
+
+						try
+						{
+							ParallelHistogramShotDetector.this.resolve( interval );
+						}
+						catch( final Throwable t )
+						{
+							error[0] = t;
+						}
+					}
+
+					if( error[0] == null )
+						ParallelHistogramShotDetector.this.flush();
+				}
+				catch( final InterruptedException e )
+				{
+					error[0] = e;
+				}
+			}
+		}, "shot-boundary-resolver" );
+		resolver.setDaemon( true );
+		resolver.start();
+
+		try
+		{
+			this.decode( video, queue );
+			queue.put( END );
+			resolver.join();
+		}
+		catch( final InterruptedException e )
+		{
+			resolver.interrupt();
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+
+		if( error[0] != null )
+			throw new RuntimeException( error[0] );
+
+		return this.shotBoundaries;
+	}
+
+	/**
+	 * 	Decode and decimate the frames, submitting the coarse histograms and
+	 * 	queuing the intervals.
+	 */
+	private void decode( final Video<MBFImage> video, final BlockingQueue<Interval> queue )
+		throws InterruptedException
+	{
+		Interval current = null;
+
+		while( video.hasNextFrame() )
+		{
+			final MBFImage frame = video.getNextFrame();
+			if( frame == null )
+				break;
+
+			final MBFImage small = this.decimate( frame );
+
+			if( current == null )
+			{
+				// the first frame always starts a shot
+				final Interval first = new Interval();
+				first.start = 0;
+				first.frames = new ArrayList<MBFImage>( 1 );
+				first.frames.add( small );
+				first.startHistogram = this.submit( small );
+				queue.put( first );
+
+				current = this.next( first, small );
+			}
+			else
+			{
+				current.frames.add( small );
+
+				if( current.frames.size() == this.step + 1 )
+				{
+					current.endHistogram = this.submit( small );
+					queue.put( current );
+					current = this.next( current, small );
+				}
+			}
+		}
+
+		// the remaining frames
+		if( current != null && current.frames.size() > 1 )
+		{
+			current.endHistogram = this.submit( current.frames.get( current.frames.size() - 1 ) );
+			queue.put( current );
+		}
+	}
+
+	/**
+	 * 	Create the interval following the given one.
+	 */
+	private Interval next( final Interval previous, final MBFImage last )
+	{
+		final Interval next = new Interval();
+		next.start = previous.start + previous.frames.size() - 1;
+		next.frames = new ArrayList<MBFImage>( this.step + 1 );
+		next.frames.add( last );
+		next.startHistogram = previous.endHistogram != null ? previous.endHistogram : previous.startHistogram;
+		return next;
+	}
+
+	/**
+	 * 	Examine an interval, refining it if the end points differ, and
+	 * 	generate any boundaries within it.
+	 */
+	private void resolve( final Interval interval ) throws InterruptedException, ExecutionException
+	{
+		final int n = interval.frames.size() - 1;
+
+		if( n == 0 )
+		{
+			this.boundary( interval.start, interval.frames.get( 0 ) );
+			return;
+		}
+
+		final Histogram first = this.get( interval.startHistogram );
+		final Histogram last = this.get( interval.endHistogram );
+
+		if( n == 1 || this.distance( first, last ) > this.threshold )
+		{
+			// refine: compute all the histograms in the interval
+			final List<FutureTask<Histogram>> histograms = new ArrayList<FutureTask<Histogram>>( n - 1 );
+			for( int i = 1; i < n; i++ )
+				histograms.add( this.submit( interval.frames.get( i ) ) );
+
+			Histogram previous = first;
+			for( int i = 1; i <= n; i++ )
+			{
+				final Histogram current = i == n ? last : this.get( histograms.get( i - 1 ) );
+				final double dist = this.distance( previous, current );
+				final int frameIndex = interval.start + i;
+
+				this.fireDifferentialCalculated( new HrsMinSecFrameTimecode( frameIndex, this.fps ),
+						dist, interval.frames.get( i ) );
+
+				if( dist > this.threshold )
+					this.boundary( frameIndex, interval.frames.get( i ) );
+
+				previous = current;
+			}
+		}
+
+		// a pending boundary can be fired once enough frames after it are
+		// known not to extend it
+		if( this.pending != null && interval.start + n - this.lastBoundaryFrame >= 4 )
+			this.flush();
+	}
+
+	/**
+	 * 	Record a boundary at the given frame, merging it into a fade if it
+	 * 	closely follows the previous one.
+	 */
+	private void boundary( final int frameIndex, final MBFImage frame )
+	{
+		final VideoTimecode tc = new HrsMinSecFrameTimecode( frameIndex, this.fps );
+
+		if( this.pending != null && frameIndex - this.lastBoundaryFrame < 4 )
+		{
+			if( !(this.pending instanceof FadeShotBoundary) )
+				this.pending = new FadeShotBoundary<MBFImage>( this.pending );
+
+			((FadeShotBoundary<MBFImage>)this.pending).setEndTimecode( tc );
+		}
+		else
+		{
+			this.flush();
+			this.pending = new ShotBoundary<MBFImage>( tc );
+		}
+
+		if( this.findKeyframes )
+			this.pending.setKeyframe( new VideoKeyframe<MBFImage>( tc, frame ) );
+
+		this.lastBoundaryFrame = frameIndex;
+	}
+
+	/**
+	 * 	Fire the pending boundary (if any).
+	 */
+	private void flush()
+	{
+		if( this.pending == null )
+			return;
+
+		this.shotBoundaries.add( this.pending );
+		this.fireShotDetected( this.pending, this.pending.getKeyframe() );
+		this.pending = null;
+	}
+
+	/**
+	 * 	Decimate a frame by sampling every nth pixel.
+	 */
+	private MBFImage decimate( final MBFImage frame )
+	{
+		final int width = (frame.getWidth() + this.subsample - 1) / this.subsample;
+		final int height = (frame.getHeight() + this.subsample - 1) / this.subsample;
+		final MBFImage small = new MBFImage( width, height, frame.numBands() );
+		small.colourSpace = frame.colourSpace;
+
+		for( int b = 0; b < frame.numBands(); b++ )
+		{
+			final float[][] src = frame.getBand( b ).pixels;
+			final float[][] dst = small.getBand( b ).pixels;
+
+			for( int y = 0, yy = 0; y < height; y++, yy += this.subsample )
+				for( int x = 0, xx = 0; x < width; x++, xx += this.subsample )
+					dst[y][x] = src[yy][xx];
+		}
+
+		return small;
+	}
+
+	/**
+	 * 	Compute the histogram of a decimated frame, on the pool if there is one.
+	 */
+	private FutureTask<Histogram> submit( final MBFImage frame )
+	{
+		final Callable<Histogram> task = new Callable<Histogram>()
+		{
+			@Override
+			public Histogram call()
+			{
+				return ParallelHistogramShotDetector.this.computeHistogram( frame.getBand( 0 ) );
+			}
+		};
+
+		final FutureTask<Histogram> f = new FutureTask<Histogram>( task );
+		if( this.pool != null )
+			this.pool.execute( f );
+		else
+			f.run();
+		return f;
+	}
+
+	/**
+	 * 	Get a histogram computed by {@link #submit(MBFImage)}. If the pool
+	 * 	hasn't started computing it yet, it is computed in the calling thread
+	 * 	(running a task that has already started or finished does nothing), so
+	 * 	this only ever waits for a histogram that is actually being computed.
+	 */
+	private Histogram get( final FutureTask<Histogram> histogram )
+		throws InterruptedException, ExecutionException
+	{
+		histogram.run();
+		return histogram.get();
+	}
+
+	/**
+	 * 	Compute the unit area histogram of the given image, which is assumed
+	 * 	to be in the range 0..1.
+	 *
+	 *	@param image The image
+	 *	@return The histogram
+	 */
+	protected Histogram computeHistogram( final FImage image )
+	{
+		final Histogram h = new Histogram( this.nbins );
+		for( int r = 0; r < image.height; r++ )
+		{
+			for( int c = 0; c < image.width; c++ )
+			{
+				int bin = (int)(image.pixels[r][c] * this.nbins);
+				if( bin > this.nbins - 1 )
+					bin = this.nbins - 1;
+				h.values[bin]++;
+			}
+		}
+		h.normalise();
+		return h;
+	}
+
+	private double distance( final Histogram a, final Histogram b )
+	{
+		return a.compare( b, DoubleFVComparison.EUCLIDEAN );
+	}
+
+	/**
+	 * 	Add the given shot detected listener. The listener methods are called
+	 * 	from the thread that resolves the boundaries, not the thread that
+	 * 	calls {@link #process(Video)}.
+	 *
+	 *  @param sdl The shot detected listener to add
+	 */
+	public void addShotDetectedListener( final ShotDetectedListener<MBFImage> sdl )
+	{
+		this.listeners.add( sdl );
+	}
+
+	/**
+	 * 	Remove the given shot detected listener from this object.
+	 *
+	 *  @param sdl The shot detected listener to remove
+	 */
+	public void removeShotDetectedListener( final ShotDetectedListener<MBFImage> sdl )
+	{
+		this.listeners.remove( sdl );
+	}
+
+	/**
+	 * 	Fire the event to the listeners that a new shot has been detected.
+	 *  @param sb The shot boundary defintion
+	 *  @param vk The video keyframe
+	 */
+	protected void fireShotDetected( final ShotBoundary<MBFImage> sb, final VideoKeyframe<MBFImage> vk )
+	{
+		for( final ShotDetectedListener<MBFImage> sdl : this.listeners )
+			sdl.shotDetected( sb, vk );
+	}
+
+	/**
+	 * 	Fired each time a differential is calculated between frames.
+	 *	@param vt The timecode of the differential
+	 *	@param d The differential value
+	 *	@param frame The different frame
+	 */
+	protected void fireDifferentialCalculated( final VideoTimecode vt, final double d, final MBFImage frame )
+	{
+		for( final ShotDetectedListener<MBFImage> sdl : this.listeners )
+			sdl.differentialCalculated( vt, d, frame );
+	}
+
+	/**
+	 * 	Get the shot boundaries found by the last call to
+	 * 	{@link #process(Video)}.
+	 *  @return The list of shot boundaries.
+	 */
+	public List<ShotBoundary<MBFImage>> getShotBoundaries()
+	{
+		return this.shotBoundaries;
+	}
+
+	/**
+	 * 	Set the threshold on the Euclidean distance between the unit area
+	 * 	histograms of two frames above which a boundary is detected.
+	 *
+	 *  @param threshold The new threshold.
+	 */
+	public void setThreshold( final double threshold )
+	{
+		this.threshold = threshold;
+	}
+
+	/**
+	 * 	Returns the current threshold value.
+	 *	@return The current threshold
+	 */
+	public double getThreshold()
+	{
+		return this.threshold;
+	}
+
+	/**
+	 * 	Set the number of frames between the frames that are examined
+	 * 	initially. A step of 1 examines every frame.
+	 *
+	 *	@param step The step
+	 */
+	public void setStep( final int step )
+	{
+		if( step < 1 )
+			throw new IllegalArgumentException( "Step must be at least 1" );
+		this.step = step;
+	}
+
+	/**
+	 * 	Set the decimation factor; every nth pixel of each row and column
+	 * 	is used. A factor of 1 uses the full resolution frames.
+	 *
+	 *	@param subsample The decimation factor
+	 */
+	public void setSubsample( final int subsample )
+	{
+		if( subsample < 1 )
+			throw new IllegalArgumentException( "Decimation factor must be at least 1" );
+		this.subsample = subsample;
+	}
+
+	/**
+	 * 	Set the number of histogram bins.
+	 *	@param nbins The number of bins
+	 */
+	public void setNumBins( final int nbins )
+	{
+		this.nbins = nbins;
+	}
+
+	/**
+	 * 	Set whether to store keyframes of boundaries when they
+	 * 	have been found.
+	 *
+	 *	@param k TRUE to store keyframes; FALSE otherwise
+	 */
+	public void setFindKeyframes( final boolean k )
+	{
+		this.findKeyframes = k;
+	}
+
+	/**
+	 * 	Set the thread pool used to compute the histograms. If the pool is
+	 * 	null, the histograms are computed by the thread that resolves the
+	 * 	boundaries or the decoding thread.
+	 *
+	 *	@param pool The thread pool; may be null
+	 */
+	public void setThreadPool( final ThreadPoolExecutor pool )
+	{
+		this.pool = pool;
+	}
+}
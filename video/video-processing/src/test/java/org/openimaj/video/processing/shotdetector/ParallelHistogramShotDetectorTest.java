@@ -0,0 +1,373 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.video.processing.shotdetector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.openimaj.image.MBFImage;
+import org.openimaj.image.colour.ColourSpace;
+import org.openimaj.video.Video;
+import org.openimaj.video.timecode.VideoTimecode;
+
+/**
+ * Tests for the {@link ParallelHistogramShotDetector}, checking that it finds
+ * the same boundaries as the {@link HistogramVideoShotDetector} on a synthetic
+ * video with known cuts and fades.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ParallelHistogramShotDetectorTest {
+	private static final int SIZE = 32;
+	private static final int STRIPE = 8;
+	private static final double THRESHOLD = 0.02;
+
+	/**
+	 * A video over a list of frames that (unlike a non-looping
+	 * {@link org.openimaj.video.ArrayBackedVideo}) reports the end of the
+	 * stream.
+	 */
+	private static class FiniteVideo extends Video<MBFImage> {
+		private final List<MBFImage> frames;
+		private int next = 0;
+
+		FiniteVideo(List<MBFImage> frames) {
+			this.frames = frames;
+		}
+
+		@Override
+		public MBFImage getNextFrame() {
+			if (next >= frames.size())
+				return null;
+			currentFrame = next;
+			return frames.get(next++);
+		}
+
+		@Override
+		public MBFImage getCurrentFrame() {
+			return frames.get(Math.max(0, next - 1));
+		}
+
+		@Override
+		public int getWidth() {
+			return SIZE;
+		}
+
+		@Override
+		public int getHeight() {
+			return SIZE;
+		}
+
+		@Override
+		public long getTimeStamp() {
+			return (long) (1000 * currentFrame / getFPS());
+		}
+
+		@Override
+		public double getFPS() {
+			return 25;
+		}
+
+		@Override
+		public boolean hasNextFrame() {
+			return next < frames.size();
+		}
+
+		@Override
+		public long countFrames() {
+			return frames.size();
+		}
+
+		@Override
+		public void reset() {
+			next = 0;
+		}
+	}
+
+	/**
+	 * Make a frame from four vertical stripes of the given grey levels. The
+	 * stripes are aligned to the decimation factor, so the decimated frame
+	 * has the same histogram proportions as the full frame.
+	 */
+	private static MBFImage frame(float... stripes) {
+		final MBFImage img = new MBFImage(SIZE, SIZE, ColourSpace.RGB);
+
+		for (int b = 0; b < img.numBands(); b++) {
+			final float[][] pix = img.getBand(b).pixels;
+			for (int y = 0; y < SIZE; y++)
+				for (int x = 0; x < SIZE; x++)
+					pix[y][x] = stripes[x / STRIPE];
+		}
+
+		return img;
+	}
+
+	private static void repeat(List<MBFImage> frames, int n, float... stripes) {
+		for (int i = 0; i < n; i++)
+			frames.add(frame(stripes));
+	}
+
+	/**
+	 * 67 frames (not a multiple of the step): a cut at 20, a fade over
+	 * 40-43, a cut on a step boundary at 56 and a cut in the final partial
+	 * interval at 65.
+	 */
+	private static List<MBFImage> cutsAndFades() {
+		final List<MBFImage> frames = new ArrayList<MBFImage>();
+
+		repeat(frames, 20, 0.1f, 0.1f, 0.3f, 0.3f);
+		repeat(frames, 20, 0.6f, 0.6f, 0.9f, 0.9f);
+
+		// fade: one stripe changes per frame over 40-43
+		frames.add(frame(0.45f, 0.6f, 0.9f, 0.9f));
+		frames.add(frame(0.45f, 0.45f, 0.9f, 0.9f));
+		frames.add(frame(0.45f, 0.45f, 0.2f, 0.9f));
+		repeat(frames, 13, 0.45f, 0.45f, 0.2f, 0.2f);
+
+		repeat(frames, 9, 0.75f, 0.05f, 0.75f, 0.05f);
+		repeat(frames, 2, 0.35f, 0.35f, 0.35f, 0.35f);
+
+		return frames;
+	}
+
+	/**
+	 * A video that ends part way through a fade.
+	 */
+	private static List<MBFImage> endsInFade() {
+		final List<MBFImage> frames = new ArrayList<MBFImage>();
+
+		repeat(frames, 11, 0.1f, 0.1f, 0.3f, 0.3f);
+		frames.add(frame(0.8f, 0.1f, 0.3f, 0.3f));
+		frames.add(frame(0.8f, 0.8f, 0.3f, 0.3f));
+		frames.add(frame(0.8f, 0.8f, 0.5f, 0.3f));
+
+		return frames;
+	}
+
+	private static List<ShotBoundary<MBFImage>> reference(List<MBFImage> frames) {
+		final HistogramVideoShotDetector sd = new HistogramVideoShotDetector(25);
+		sd.setThreshold(THRESHOLD * SIZE * SIZE);
+
+		final Video<MBFImage> video = new FiniteVideo(frames);
+		while (video.hasNextFrame())
+			sd.processFrame(video.getNextFrame());
+
+		return sd.getShotBoundaries();
+	}
+
+	private static void assertSameBoundaries(List<ShotBoundary<MBFImage>> expected,
+			List<ShotBoundary<MBFImage>> actual)
+	{
+		assertEquals(expected.toString(), expected.size(), actual.size());
+
+		for (int i = 0; i < expected.size(); i++) {
+			final ShotBoundary<MBFImage> e = expected.get(i);
+			final ShotBoundary<MBFImage> a = actual.get(i);
+
+			assertEquals(e.getClass(), a.getClass());
+			assertEquals(e.getTimecode().getFrameNumber(), a.getTimecode().getFrameNumber());
+
+			if (e instanceof FadeShotBoundary) {
+				assertEquals(((FadeShotBoundary<MBFImage>) e).getStartTimecode().getFrameNumber(),
+						((FadeShotBoundary<MBFImage>) a).getStartTimecode().getFrameNumber());
+				assertEquals(((FadeShotBoundary<MBFImage>) e).getEndTimecode().getFrameNumber(),
+						((FadeShotBoundary<MBFImage>) a).getEndTimecode().getFrameNumber());
+			}
+		}
+	}
+
+	private static boolean resolverAlive() {
+		for (final Thread t : Thread.getAllStackTraces().keySet())
+			if (t.isAlive() && "shot-boundary-resolver".equals(t.getName()))
+				return true;
+		return false;
+	}
+
+	private static void check(List<MBFImage> frames, ParallelHistogramShotDetector sd) {
+		final List<ShotBoundary<MBFImage>> fired =
+				Collections.synchronizedList(new ArrayList<ShotBoundary<MBFImage>>());
+
+		sd.addShotDetectedListener(new ShotDetectedListener<MBFImage>() {
+			@Override
+			public void shotDetected(ShotBoundary<MBFImage> sb, VideoKeyframe<MBFImage> vk) {
+				fired.add(sb);
+			}
+
+			@Override
+			public void differentialCalculated(VideoTimecode vt, double d, MBFImage frame) {
+			}
+		});
+
+		final List<ShotBoundary<MBFImage>> found = sd.process(new FiniteVideo(frames));
+
+		assertSameBoundaries(reference(frames), found);
+		assertSame(found, sd.getShotBoundaries());
+
+		// every boundary is fired exactly once, in order, before process returns
+		assertEquals(found.size(), fired.size());
+		for (int i = 0; i < found.size(); i++)
+			assertSame(found.get(i), fired.get(i));
+
+		assertFalse(resolverAlive());
+	}
+
+	/**
+	 * Check the expected boundaries of the synthetic video, so the
+	 * comparisons below are meaningful
+	 */
+	@Test
+	public void testReference() {
+		final List<ShotBoundary<MBFImage>> sb = reference(cutsAndFades());
+
+		assertEquals(5, sb.size());
+		assertEquals(0, sb.get(0).getTimecode().getFrameNumber());
+		assertEquals(20, sb.get(1).getTimecode().getFrameNumber());
+		assertTrue(sb.get(2) instanceof FadeShotBoundary);
+		assertEquals(40, ((FadeShotBoundary<MBFImage>) sb.get(2)).getStartTimecode().getFrameNumber());
+		assertEquals(43, ((FadeShotBoundary<MBFImage>) sb.get(2)).getEndTimecode().getFrameNumber());
+		assertEquals(56, sb.get(3).getTimecode().getFrameNumber());
+		assertEquals(65, sb.get(4).getTimecode().getFrameNumber());
+	}
+
+	/**
+	 * Test with the default settings and pool
+	 */
+	@Test(timeout = 20000)
+	public void testDefault() {
+		check(cutsAndFades(), new ParallelHistogramShotDetector());
+	}
+
+	/**
+	 * Test without a thread pool
+	 */
+	@Test(timeout = 20000)
+	public void testNoPool() {
+		final ParallelHistogramShotDetector sd = new ParallelHistogramShotDetector();
+		sd.setThreadPool(null);
+		check(cutsAndFades(), sd);
+	}
+
+	/**
+	 * Test with every frame examined at full resolution
+	 */
+	@Test(timeout = 20000)
+	public void testEveryFrame() {
+		final ParallelHistogramShotDetector sd = new ParallelHistogramShotDetector();
+		sd.setStep(1);
+		sd.setSubsample(1);
+		check(cutsAndFades(), sd);
+	}
+
+	/**
+	 * Test with a step that puts boundaries at different offsets within the
+	 * intervals
+	 */
+	@Test(timeout = 20000)
+	public void testOddStep() {
+		final ParallelHistogramShotDetector sd = new ParallelHistogramShotDetector();
+		sd.setStep(3);
+		check(cutsAndFades(), sd);
+	}
+
+	/**
+	 * Test that a fade still in progress at the end of the video is reported
+	 */
+	@Test(timeout = 20000)
+	public void testEndsInFade() {
+		final List<MBFImage> frames = endsInFade();
+
+		final List<ShotBoundary<MBFImage>> sb = reference(frames);
+		assertEquals(2, sb.size());
+		assertTrue(sb.get(1) instanceof FadeShotBoundary);
+
+		check(frames, new ParallelHistogramShotDetector());
+	}
+
+	/**
+	 * Test that the detector can be reused
+	 */
+	@Test(timeout = 20000)
+	public void testReuse() {
+		final ParallelHistogramShotDetector sd = new ParallelHistogramShotDetector();
+		check(cutsAndFades(), sd);
+		check(endsInFade(), sd);
+	}
+
+	/**
+	 * Test a video with a single frame and an empty video
+	 */
+	@Test(timeout = 20000)
+	public void testShortVideos() {
+		final List<MBFImage> one = new ArrayList<MBFImage>();
+		one.add(frame(0.1f, 0.2f, 0.3f, 0.4f));
+		check(one, new ParallelHistogramShotDetector());
+
+		final ParallelHistogramShotDetector sd = new ParallelHistogramShotDetector();
+		assertEquals(0, sd.process(new FiniteVideo(new ArrayList<MBFImage>())).size());
+		assertFalse(resolverAlive());
+	}
+
+	/**
+	 * Test that processing from within a task running on the (otherwise
+	 * saturated) pool used for the histograms doesn't deadlock
+	 *
+	 * @throws ExecutionException
+	 * @throws InterruptedException
+	 */
+	@Test(timeout = 20000)
+	public void testProcessOnPool() throws InterruptedException, ExecutionException {
+		final ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>());
+
+		try {
+			pool.submit(new Runnable() {
+				@Override
+				public void run() {
+					final ParallelHistogramShotDetector sd = new ParallelHistogramShotDetector();
+					sd.setThreadPool(pool);
+					check(cutsAndFades(), sd);
+				}
+			}).get();
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,560 @@
+/**
+ * Copyright (c) 2012, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.twitter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openimaj.twitter.USMFStatus.Link;
+import org.openimaj.twitter.USMFStatus.User;
+
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * A compact binary encoding of {@link USMFStatus} objects. Integers are written
+ * as (zig-zag) variable length integers, integral doubles (i.e. user ids and
+ * counts) as variable length integers, and strings as length-prefixed UTF-8.
+ * Low-cardinality string fields (the service, application, location,
+ * category, country code and the user language and location) can optionally
+ * be replaced by references into a {@link StringDictionary} that is shared
+ * between the records of a file.
+ * <p>
+ * The analysis of a status is stored as JSON, as its values are arbitrary.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public final class BinaryUSMFCodec {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final Type ANALYSIS_TYPE = new TypeToken<Map<String, Object>>() {
+	}.getType();
+
+	/*
+	 * String tags: 0 is null, 1 is an inline string; anything else is a
+	 * dictionary reference offset by 2
+	 */
+	private static final int NULL_TAG = 0;
+	private static final int INLINE_TAG = 1;
+	private static final int DICT_OFFSET = 2;
+
+	private BinaryUSMFCodec() {
+	}
+
+	/**
+	 * A dictionary of strings shared between encoded statuses. When writing,
+	 * strings are added to the dictionary on demand until the maximum size is
+	 * reached, after which new strings are written inline.
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class StringDictionary {
+		private final Map<String, Integer> ids = new HashMap<String, Integer>();
+		private final List<String> strings = new ArrayList<String>();
+		private final int maxSize;
+
+		/**
+		 * Construct an empty dictionary that can grow to the given size
+		 *
+		 * @param maxSize
+		 *            the maximum number of strings
+		 */
+		public StringDictionary(int maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		/**
+		 * @return the number of strings in the dictionary
+		 */
+		public int size() {
+			return strings.size();
+		}
+
+		/**
+		 * @param index
+		 *            the index
+		 * @return the string with the given index
+		 */
+		public String get(int index) {
+			return strings.get(index);
+		}
+
+		/**
+		 * Get the index of the given string, adding it if it isn't present
+		 * and there is room.
+		 *
+		 * @param s
+		 *            the string
+		 * @return the index, or -1 if the string isn't in the dictionary
+		 */
+		public int lookup(String s) {
+			final Integer id = ids.get(s);
+			if (id != null)
+				return id;
+
+			if (strings.size() >= maxSize)
+				return -1;
+
+			final int newId = strings.size();
+			ids.put(s, newId);
+			strings.add(s);
+			return newId;
+		}
+
+		/**
+		 * Write the dictionary
+		 *
+		 * @param out
+		 *            the output
+		 * @throws IOException
+		 */
+		public void write(DataOutput out) throws IOException {
+			writeVarInt(out, strings.size());
+			for (final String s : strings)
+				writeString(out, s);
+		}
+
+		/**
+		 * Read a dictionary written with {@link #write(DataOutput)}. The
+		 * returned dictionary is full, so will not accept any new strings.
+		 *
+		 * @param in
+		 *            the input
+		 * @return the dictionary
+		 * @throws IOException
+		 */
+		public static StringDictionary read(DataInput in) throws IOException {
+			final int size = readVarInt(in);
+			final StringDictionary dict = new StringDictionary(size);
+			for (int i = 0; i < size; i++)
+				dict.lookup(readString(in));
+			return dict;
+		}
+	}
+
+	/**
+	 * Write a status.
+	 *
+	 * @param status
+	 *            the status
+	 * @param out
+	 *            the output
+	 * @param dict
+	 *            the dictionary for low-cardinality strings; can be null, in
+	 *            which case all strings are written inline
+	 * @throws IOException
+	 */
+	public static void write(USMFStatus status, DataOutput out, StringDictionary dict) throws IOException {
+		writeDictString(out, status.service, dict);
+		writeVarLong(out, zigzag(status.id));
+		writeDoubles(out, status.geo);
+		writeDictString(out, status.application, dict);
+		writeDictString(out, status.location, dict);
+		writeString(out, status.date);
+		writeString(out, status.source);
+		writeString(out, status.text);
+		writeString(out, status.description);
+		writeStrings(out, status.keywords);
+		writeDictString(out, status.category, dict);
+		writeVarLong(out, zigzag(status.duration));
+		writeVarInt(out, zigzag(status.likes));
+		writeVarInt(out, zigzag(status.dislikes));
+		writeVarInt(out, zigzag(status.favorites));
+		writeVarInt(out, zigzag(status.comments));
+		writeVarInt(out, zigzag(status.rates));
+		writeVarInt(out, zigzag(status.rating));
+		writeVarInt(out, zigzag(status.min_rating));
+		writeVarInt(out, zigzag(status.max_rating));
+		writeUser(out, status.user, dict);
+		writeUsers(out, status.to_users, dict);
+		writeUser(out, status.reply_to, dict);
+		writeLinks(out, status.links);
+		writeDictString(out, status.country_code, dict);
+		out.writeBoolean(status.isInvalid());
+		writeString(out, status.analysis == null ? null : GeneralJSON.gson.toJson(status.analysis, ANALYSIS_TYPE));
+	}
+
+	/**
+	 * Read a status, overwriting all of its fields.
+	 *
+	 * @param status
+	 *            the status to fill
+	 * @param in
+	 *            the input
+	 * @param dict
+	 *            the dictionary that was used when writing
+	 * @throws IOException
+	 */
+	public static void read(USMFStatus status, DataInput in, StringDictionary dict) throws IOException {
+		status.service = readDictString(in, dict);
+		status.id = unzigzag(readVarLong(in));
+		status.geo = readDoubles(in);
+		status.application = readDictString(in, dict);
+		status.location = readDictString(in, dict);
+		status.date = readString(in);
+		status.source = readString(in);
+		status.text = readString(in);
+		status.description = readString(in);
+		status.keywords = readStrings(in);
+		status.category = readDictString(in, dict);
+		status.duration = unzigzag(readVarLong(in));
+		status.likes = unzigzag(readVarInt(in));
+		status.dislikes = unzigzag(readVarInt(in));
+		status.favorites = unzigzag(readVarInt(in));
+		status.comments = unzigzag(readVarInt(in));
+		status.rates = unzigzag(readVarInt(in));
+		status.rating = unzigzag(readVarInt(in));
+		status.min_rating = unzigzag(readVarInt(in));
+		status.max_rating = unzigzag(readVarInt(in));
+		status.user = readUser(in, dict);
+		status.to_users = readUsers(in, dict);
+		status.reply_to = readUser(in, dict);
+		status.links = readLinks(in);
+		status.country_code = readDictString(in, dict);
+		status.setInvalid(in.readBoolean());
+
+		final String analysis = readString(in);
+		status.analysis = analysis == null ? null : GeneralJSON.gson.<Map<String, Object>> fromJson(analysis,
+				ANALYSIS_TYPE);
+	}
+
+	private static void writeUser(DataOutput out, User user, StringDictionary dict) throws IOException {
+		out.writeBoolean(user != null);
+		if (user == null)
+			return;
+
+		writeString(out, user.name);
+		writeString(out, user.real_name);
+		writeCompactDouble(out, user.id);
+		writeDictString(out, user.language, dict);
+		writeCompactDouble(out, user.utc);
+		writeDoubles(out, user.geo);
+		writeString(out, user.description);
+		writeString(out, user.avatar);
+		writeDictString(out, user.location, dict);
+		writeCompactDouble(out, user.subscribers);
+		writeVarInt(out, zigzag(user.subscriptions));
+		writeCompactDouble(out, user.postings);
+		writeString(out, user.profile);
+		writeString(out, user.website);
+	}
+
+	private static User readUser(DataInput in, StringDictionary dict) throws IOException {
+		if (!in.readBoolean())
+			return null;
+
+		final User user = new User();
+		user.name = readString(in);
+		user.real_name = readString(in);
+		user.id = readCompactDouble(in);
+		user.language = readDictString(in, dict);
+		user.utc = readCompactDouble(in);
+		user.geo = readDoubles(in);
+		user.description = readString(in);
+		user.avatar = readString(in);
+		user.location = readDictString(in, dict);
+		user.subscribers = readCompactDouble(in);
+		user.subscriptions = unzigzag(readVarInt(in));
+		user.postings = readCompactDouble(in);
+		user.profile = readString(in);
+		user.website = readString(in);
+		return user;
+	}
+
+	private static void writeUsers(DataOutput out, List<User> users, StringDictionary dict) throws IOException {
+		if (users == null) {
+			writeVarInt(out, 0);
+			return;
+		}
+
+		writeVarInt(out, users.size() + 1);
+		for (final User u : users)
+			writeUser(out, u, dict);
+	}
+
+	private static ArrayList<User> readUsers(DataInput in, StringDictionary dict) throws IOException {
+		final int size = readVarInt(in) - 1;
+		if (size < 0)
+			return null;
+
+		final ArrayList<User> users = new ArrayList<User>(size);
+		for (int i = 0; i < size; i++)
+			users.add(readUser(in, dict));
+		return users;
+	}
+
+	private static void writeLinks(DataOutput out, List<Link> links) throws IOException {
+		if (links == null) {
+			writeVarInt(out, 0);
+			return;
+		}
+
+		writeVarInt(out, links.size() + 1);
+		for (final Link l : links) {
+			out.writeBoolean(l != null);
+			if (l != null) {
+				writeString(out, l.title);
+				writeString(out, l.thumbnail);
+				writeString(out, l.href);
+			}
+		}
+	}
+
+	private static ArrayList<Link> readLinks(DataInput in) throws IOException {
+		final int size = readVarInt(in) - 1;
+		if (size < 0)
+			return null;
+
+		final ArrayList<Link> links = new ArrayList<Link>(size);
+		for (int i = 0; i < size; i++) {
+			if (in.readBoolean()) {
+				final Link l = new Link();
+				l.title = readString(in);
+				l.thumbnail = readString(in);
+				l.href = readString(in);
+				links.add(l);
+			} else {
+				links.add(null);
+			}
+		}
+		return links;
+	}
+
+	private static void writeStrings(DataOutput out, List<String> strings) throws IOException {
+		if (strings == null) {
+			writeVarInt(out, 0);
+			return;
+		}
+
+		writeVarInt(out, strings.size() + 1);
+		for (final String s : strings)
+			writeString(out, s);
+	}
+
+	private static ArrayList<String> readStrings(DataInput in) throws IOException {
+		final int size = readVarInt(in) - 1;
+		if (size < 0)
+			return null;
+
+		final ArrayList<String> strings = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++)
+			strings.add(readString(in));
+		return strings;
+	}
+
+	private static void writeDoubles(DataOutput out, double[] values) throws IOException {
+		if (values == null) {
+			writeVarInt(out, 0);
+			return;
+		}
+
+		writeVarInt(out, values.length + 1);
+		for (final double d : values)
+			out.writeDouble(d);
+	}
+
+	private static double[] readDoubles(DataInput in) throws IOException {
+		final int size = readVarInt(in) - 1;
+		if (size < 0)
+			return null;
+
+		final double[] values = new double[size];
+		for (int i = 0; i < size; i++)
+			values[i] = in.readDouble();
+		return values;
+	}
+
+	/*
+	 * Doubles holding integral values (ids, counts, offsets) are written as a
+	 * shifted zig-zag varint with the low bit clear; anything else is written
+	 * as a marker followed by the raw bits.
+	 */
+	private static final long MAX_COMPACT = 1L << 53;
+
+	private static void writeCompactDouble(DataOutput out, double d) throws IOException {
+		final long l = (long) d;
+		if (l == d && l < MAX_COMPACT && l > -MAX_COMPACT && Double.doubleToRawLongBits(d) != Long.MIN_VALUE) {
+			writeVarLong(out, zigzag(l) << 1);
+		} else {
+			writeVarLong(out, 1);
+			out.writeDouble(d);
+		}
+	}
+
+	private static double readCompactDouble(DataInput in) throws IOException {
+		final long v = readVarLong(in);
+		if ((v & 1) == 0)
+			return unzigzag(v >>> 1);
+		return in.readDouble();
+	}
+
+	private static void writeDictString(DataOutput out, String s, StringDictionary dict) throws IOException {
+		if (s == null) {
+			writeVarInt(out, NULL_TAG);
+			return;
+		}
+
+		final int id = dict == null ? -1 : dict.lookup(s);
+		if (id < 0) {
+			writeVarInt(out, INLINE_TAG);
+			writeStringBytes(out, s);
+		} else {
+			writeVarInt(out, id + DICT_OFFSET);
+		}
+	}
+
+	private static String readDictString(DataInput in, StringDictionary dict) throws IOException {
+		final int tag = readVarInt(in);
+		if (tag == NULL_TAG)
+			return null;
+		if (tag == INLINE_TAG)
+			return readStringBytes(in);
+		if (dict == null)
+			throw new IOException("Encountered a dictionary string, but no dictionary is available");
+		return dict.get(tag - DICT_OFFSET);
+	}
+
+	private static void writeString(DataOutput out, String s) throws IOException {
+		writeDictString(out, s, null);
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		return readDictString(in, null);
+	}
+
+	private static void writeStringBytes(DataOutput out, String s) throws IOException {
+		final byte[] bytes = s.getBytes(UTF8);
+		writeVarInt(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readStringBytes(DataInput in) throws IOException {
+		final byte[] bytes = new byte[readVarInt(in)];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	private static int zigzag(int v) {
+		return (v << 1) ^ (v >> 31);
+	}
+
+	private static int unzigzag(int v) {
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	private static long zigzag(long v) {
+		return (v << 1) ^ (v >> 63);
+	}
+
+	private static long unzigzag(long v) {
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	/**
+	 * Write an unsigned variable length integer (7 bits per byte; the high
+	 * bit of each byte indicates that more bytes follow).
+	 *
+	 * @param out
+	 *            the output
+	 * @param v
+	 *            the value
+	 * @throws IOException
+	 */
+	public static void writeVarInt(DataOutput out, int v) throws IOException {
+		while ((v & ~0x7F) != 0) {
+			out.writeByte((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte(v);
+	}
+
+	/**
+	 * Read an unsigned variable length integer written by
+	 * {@link #writeVarInt(DataOutput, int)}
+	 *
+	 * @param in
+	 *            the input
+	 * @return the value
+	 * @throws IOException
+	 */
+	public static int readVarInt(DataInput in) throws IOException {
+		int v = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			final byte b = in.readByte();
+			v |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return v;
+		}
+		throw new IOException("Malformed variable length integer");
+	}
+
+	/**
+	 * Write an unsigned variable length long (7 bits per byte; the high bit of
+	 * each byte indicates that more bytes follow).
+	 *
+	 * @param out
+	 *            the output
+	 * @param v
+	 *            the value
+	 * @throws IOException
+	 */
+	public static void writeVarLong(DataOutput out, long v) throws IOException {
+		while ((v & ~0x7FL) != 0) {
+			out.writeByte((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.writeByte((int) v);
+	}
+
+	/**
+	 * Read an unsigned variable length long written by
+	 * {@link #writeVarLong(DataOutput, long)}
+	 *
+	 * @param in
+	 *            the input
+	 * @return the value
+	 * @throws IOException
+	 */
+	public static long readVarLong(DataInput in) throws IOException {
+		long v = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			final byte b = in.readByte();
+			v |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return v;
+		}
+		throw new IOException("Malformed variable length integer");
+	}
+}
@@ -210,4 +210,25 @@ public abstract class GeneralJSON implements ReadWriteable {
 	 */
 	public abstract GeneralJSON instanceFromString(String line);
 
+	/**
+	 * Optionally fill the given {@link USMFStatus} directly from a string in
+	 * the format represented by this class, without going via an intermediate
+	 * instance (see {@link #instanceFromString(String)} and
+	 * {@link #fillUSMF(USMFStatus)}). Formats that can be mapped directly
+	 * should override this; the default implementation does nothing and
+	 * returns false.
+	 *
+	 * @param line
+	 *            the string to parse
+	 * @param status
+	 *            the status to fill
+	 * @return true if the status was filled; false if direct filling isn't
+	 *         supported by this format
+	 * @throws IOException
+	 *             if the string couldn't be parsed
+	 */
+	public boolean fillUSMFFromString(String line, USMFStatus status) throws IOException {
+		return false;
+	}
+
 }
@@ -340,6 +340,12 @@ public class GeneralJSONTwitter extends GeneralJSON {
 		this.fromUSMF(status);
 	}
 
+	@Override
+	public boolean fillUSMFFromString(String line, USMFStatus status) throws IOException {
+		TwitterStatusJSONParser.parse(line, status);
+		return true;
+	}
+
 	@Override
 	public GeneralJSON instanceFromString(String line){
 		GeneralJSONTwitter jsonInstance = null;
@@ -47,6 +47,11 @@ public class GeneralJSONTwitterRawText extends GeneralJSONTwitter {
 		this.text = in.nextLine();
 	}
 
+	@Override
+	public boolean fillUSMFFromString(String line, USMFStatus status) {
+		return false;
+	}
+
 	@Override
 	public GeneralJSON instanceFromString(String line) {
 		GeneralJSONTwitterRawText ret = new GeneralJSONTwitterRawText();
@@ -0,0 +1,332 @@
+/**
+ * Copyright (c) 2012, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.twitter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+import org.openimaj.twitter.USMFStatus.Link;
+import org.openimaj.twitter.USMFStatus.User;
+
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * A streaming parser that maps the JSON of a raw Twitter status directly onto
+ * the fields of a {@link USMFStatus}. Unlike reading via
+ * {@link GeneralJSONTwitter#instanceFromString(String)} followed by
+ * {@link GeneralJSONTwitter#fillUSMF(USMFStatus)}, no intermediate object tree
+ * is built; fields that are not used by the USMF representation (i.e. the
+ * retweeted status) are skipped without being materialised. The mapping of
+ * fields is the same as that performed by {@link GeneralJSONTwitter}.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public final class TwitterStatusJSONParser {
+	private static final Type ANALYSIS_TYPE = new TypeToken<Map<String, Object>>() {
+	}.getType();
+
+	private TwitterStatusJSONParser() {
+	}
+
+	/**
+	 * Parse the given Twitter JSON string into the given status. Any existing
+	 * content of the status is discarded. If the JSON doesn't have a status id
+	 * (i.e. it is a raw text status), only the text is kept, as with
+	 * {@link GeneralJSONTwitterRawText}.
+	 *
+	 * @param json
+	 *            the json string
+	 * @param status
+	 *            the status to fill
+	 * @throws IOException
+	 *             if the json is malformed; the status will be left empty
+	 */
+	public static void parse(String json, USMFStatus status) throws IOException {
+		status.reset();
+
+		final JsonReader reader = new JsonReader(new StringReader(json));
+		reader.setLenient(true);
+		try {
+			readStatus(reader, status);
+
+			if (reader.peek() != JsonToken.END_DOCUMENT)
+				throw new IOException("JSON document was not fully consumed.");
+		} catch (final IOException e) {
+			status.reset();
+			throw e;
+		} catch (final RuntimeException e) {
+			status.reset();
+			throw e;
+		}
+	}
+
+	private static void readStatus(JsonReader reader, USMFStatus status) throws IOException {
+		long id = 0;
+		boolean hasEntities = false;
+		String replyName = null;
+		double replyId = 0;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final String name = reader.nextName();
+
+			if (reader.peek() == JsonToken.NULL) {
+				reader.skipValue();
+				continue;
+			}
+
+			if ("id".equals(name)) {
+				id = reader.nextLong();
+			} else if ("text".equals(name)) {
+				status.text = reader.nextString();
+			} else if ("created_at".equals(name)) {
+				status.date = reader.nextString();
+			} else if ("source".equals(name)) {
+				status.application = reader.nextString();
+			} else if ("coordinates".equals(name)) {
+				readCoordinates(reader, status);
+			} else if ("place".equals(name)) {
+				readPlace(reader, status);
+			} else if ("user".equals(name)) {
+				readUser(reader, status.user);
+			} else if ("entities".equals(name)) {
+				hasEntities = true;
+				readEntities(reader, status);
+			} else if ("in_reply_to_screen_name".equals(name)) {
+				replyName = reader.nextString();
+			} else if ("in_reply_to_user_id".equals(name)) {
+				replyId = reader.nextDouble();
+			} else if ("analysis".equals(name)) {
+				status.analysis = GeneralJSON.gson.fromJson(reader, ANALYSIS_TYPE);
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		if (id == 0) {
+			// not a status; treat as raw text
+			final String text = status.text;
+			status.reset();
+			status.text = text;
+		} else {
+			status.id = id;
+
+			if (hasEntities && replyName != null) {
+				status.reply_to = new User();
+				status.reply_to.name = replyName;
+				status.reply_to.id = replyId;
+			}
+		}
+		status.service = "Twitter";
+	}
+
+	private static void readCoordinates(JsonReader reader, USMFStatus status) throws IOException {
+		if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+			reader.skipValue();
+			return;
+		}
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if ("coordinates".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+				final double[] coords = new double[2];
+				reader.beginArray();
+				for (int i = 0; reader.hasNext(); i++) {
+					if (i < 2)
+						coords[i] = reader.nextDouble();
+					else
+						reader.skipValue();
+				}
+				reader.endArray();
+				status.geo = coords;
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+
+	private static void readPlace(JsonReader reader, USMFStatus status) throws IOException {
+		boolean hasName = false;
+		boolean hasCountryCode = false;
+		String placeName = null;
+		String countryCode = null;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final String name = reader.nextName();
+			if ("name".equals(name)) {
+				hasName = true;
+				placeName = nextStringOrNull(reader);
+			} else if ("country_code".equals(name)) {
+				hasCountryCode = true;
+				countryCode = nextStringOrNull(reader);
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		if (hasName && hasCountryCode) {
+			status.location = placeName;
+			status.country_code = countryCode;
+		}
+	}
+
+	private static void readUser(JsonReader reader, User user) throws IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final String name = reader.nextName();
+
+			if (reader.peek() == JsonToken.NULL) {
+				reader.skipValue();
+				continue;
+			}
+
+			if ("profile_image_url".equals(name))
+				user.avatar = reader.nextString();
+			else if ("description".equals(name))
+				user.description = reader.nextString();
+			else if ("id".equals(name))
+				user.id = reader.nextDouble();
+			else if ("lang".equals(name))
+				user.language = reader.nextString();
+			else if ("statuses_count".equals(name))
+				user.postings = reader.nextDouble();
+			else if ("name".equals(name))
+				user.real_name = reader.nextString();
+			else if ("screen_name".equals(name))
+				user.name = reader.nextString();
+			else if ("followers_count".equals(name))
+				user.subscribers = reader.nextDouble();
+			else if ("utc_offset".equals(name))
+				user.utc = reader.nextDouble();
+			else if ("url".equals(name))
+				user.website = reader.nextString();
+			else
+				reader.skipValue();
+		}
+		reader.endObject();
+	}
+
+	private static void readEntities(JsonReader reader, USMFStatus status) throws IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final String name = reader.nextName();
+
+			if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+				reader.skipValue();
+				continue;
+			}
+
+			reader.beginArray();
+			while (reader.hasNext()) {
+				if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+					reader.skipValue();
+				} else if ("urls".equals(name)) {
+					final String href = readStringField(reader, "expanded_url");
+					if (href != null) {
+						final Link l = new Link();
+						l.href = href;
+						status.links.add(l);
+					}
+				} else if ("hashtags".equals(name)) {
+					final String tag = readStringField(reader, "text");
+					if (tag != null)
+						status.keywords.add(tag);
+				} else if ("user_mentions".equals(name)) {
+					status.to_users.add(readMention(reader));
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endArray();
+		}
+		reader.endObject();
+	}
+
+	private static User readMention(JsonReader reader) throws IOException {
+		final User u = new User();
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final String name = reader.nextName();
+
+			if (reader.peek() == JsonToken.NULL) {
+				reader.skipValue();
+				continue;
+			}
+
+			if ("screen_name".equals(name))
+				u.name = reader.nextString();
+			else if ("name".equals(name))
+				u.real_name = reader.nextString();
+			else if ("id".equals(name))
+				u.id = reader.nextDouble();
+			else
+				reader.skipValue();
+		}
+		reader.endObject();
+
+		return u;
+	}
+
+	/*
+	 * Read an object, returning the value of the given field (or null if it is
+	 * not present)
+	 */
+	private static String readStringField(JsonReader reader, String field) throws IOException {
+		String value = null;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (field.equals(reader.nextName()))
+				value = nextStringOrNull(reader);
+			else
+				reader.skipValue();
+		}
+		reader.endObject();
+
+		return value;
+	}
+
+	private static String nextStringOrNull(JsonReader reader) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return null;
+		}
+		return reader.nextString();
+	}
+}
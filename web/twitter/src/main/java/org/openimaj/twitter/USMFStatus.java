@@ -29,12 +29,17 @@
  */
 package org.openimaj.twitter;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Scanner;
 
 import org.apache.log4j.Logger;
@@ -218,6 +223,44 @@ public class USMFStatus extends GeneralJSON implements Cloneable {
 		return invalid;
 	}
 
+	void setInvalid(boolean invalid) {
+		this.invalid = invalid;
+	}
+
+	/*
+	 * Reset all the fields of this status to the state they have after
+	 * construction.
+	 */
+	void reset() {
+		service = null;
+		id = 0;
+		geo = null;
+		application = null;
+		location = null;
+		date = null;
+		source = null;
+		text = null;
+		description = null;
+		keywords = new ArrayList<String>();
+		category = null;
+		duration = 0;
+		likes = 0;
+		dislikes = 0;
+		favorites = 0;
+		comments = 0;
+		rates = 0;
+		rating = 0;
+		min_rating = 0;
+		max_rating = 0;
+		user = new User();
+		to_users = new ArrayList<USMFStatus.User>();
+		reply_to = null;
+		links = new ArrayList<USMFStatus.Link>();
+		country_code = null;
+		invalid = false;
+		analysis = new HashMap<String, Object>();
+	}
+
 	@Override
 	public void readASCII(Scanner in) throws IOException {
 		final String line = (in.nextLine());
@@ -235,16 +278,20 @@ public class USMFStatus extends GeneralJSON implements Cloneable {
 	 */
 	public void fillFromString(String line) {
 		GeneralJSON jsonInstance = null;
+		boolean filled = false;
 		try {
 			jsonInstance = IOUtils.newInstance(generalJSONclass);
-			jsonInstance = jsonInstance.instanceFromString(line);
+			filled = jsonInstance.fillUSMFFromString(line, this);
+			if (!filled)
+				jsonInstance = jsonInstance.instanceFromString(line);
 		} catch (final Throwable e) {
 			logger.debug("Error parsing USMF: " + e.getMessage());
+			jsonInstance = null;
 		}
 
 		if (jsonInstance == null) {
 			this.text = line;
-		} else {
+		} else if (!filled) {
 			jsonInstance.fillUSMF(this);
 		}
 
@@ -268,20 +315,46 @@ public class USMFStatus extends GeneralJSON implements Cloneable {
 
 	/*
 	 * Helper method that populates this instance of a USMFStatus with the data
-	 * from a USMFStatus constructed from json
+	 * from a USMFStatus constructed from json. This is a shallow copy of the
+	 * public fields (including the analysis).
 	 */
 	private void fillFrom(USMFStatus read) {
-		for (final Field field : USMFStatus.class.getFields()) {
-			if (Modifier.isPublic(field.getModifiers())) {
-				try {
-					field.set(this, field.get(read));
-				} catch (final IllegalArgumentException e) {
-					e.printStackTrace();
-				} catch (final IllegalAccessException e) {
-					e.printStackTrace();
-				}
-			}
-		}
+		this.service = read.service;
+		this.id = read.id;
+		this.geo = read.geo;
+		this.application = read.application;
+		this.location = read.location;
+		this.date = read.date;
+		this.source = read.source;
+		this.text = read.text;
+		this.description = read.description;
+		this.keywords = read.keywords;
+		this.category = read.category;
+		this.duration = read.duration;
+		this.likes = read.likes;
+		this.dislikes = read.dislikes;
+		this.favorites = read.favorites;
+		this.comments = read.comments;
+		this.rates = read.rates;
+		this.rating = read.rating;
+		this.min_rating = read.min_rating;
+		this.max_rating = read.max_rating;
+		this.user = read.user;
+		this.to_users = read.to_users;
+		this.reply_to = read.reply_to;
+		this.links = read.links;
+		this.country_code = read.country_code;
+		this.analysis = read.analysis;
+	}
+
+	@Override
+	public void readBinary(DataInput in) throws IOException {
+		BinaryUSMFCodec.read(this, in, null);
+	}
+
+	@Override
+	public void writeBinary(DataOutput out) throws IOException {
+		BinaryUSMFCodec.write(this, out, null);
 	}
 
 	@Override
@@ -370,8 +443,84 @@ public class USMFStatus extends GeneralJSON implements Cloneable {
 	 * @param clazz
 	 * @return a clone of the status
 	 */
+	@SuppressWarnings("unchecked")
 	public <T extends USMFStatus> T clone(Class<T> clazz) {
-		return gson.fromJson(gson.toJson(this), clazz);
+		if (clazz != USMFStatus.class)
+			return gson.fromJson(gson.toJson(this), clazz);
+
+		// fast path: deep copy the fields directly rather than going via json
+		final USMFStatus clone = new USMFStatus();
+		clone.service = service;
+		clone.id = id;
+		clone.geo = geo == null ? null : geo.clone();
+		clone.application = application;
+		clone.location = location;
+		clone.date = date;
+		clone.source = source;
+		clone.text = text;
+		clone.description = description;
+		clone.keywords = keywords == null ? null : new ArrayList<String>(keywords);
+		clone.category = category;
+		clone.duration = duration;
+		clone.likes = likes;
+		clone.dislikes = dislikes;
+		clone.favorites = favorites;
+		clone.comments = comments;
+		clone.rates = rates;
+		clone.rating = rating;
+		clone.min_rating = min_rating;
+		clone.max_rating = max_rating;
+		clone.user = user == null ? null : user.clone();
+		clone.to_users = cloneUsers(to_users);
+		clone.reply_to = reply_to == null ? null : reply_to.clone();
+		clone.links = cloneLinks(links);
+		clone.country_code = country_code;
+		clone.invalid = invalid;
+		clone.analysis = analysis == null ? null : (Map<String, Object>) cloneAnalysisValue(analysis);
+
+		return (T) clone;
+	}
+
+	private static ArrayList<User> cloneUsers(ArrayList<User> users) {
+		if (users == null)
+			return null;
+
+		final ArrayList<User> ret = new ArrayList<User>(users.size());
+		for (final User u : users)
+			ret.add(u == null ? null : u.clone());
+		return ret;
+	}
+
+	private static ArrayList<Link> cloneLinks(ArrayList<Link> links) {
+		if (links == null)
+			return null;
+
+		final ArrayList<Link> ret = new ArrayList<Link>(links.size());
+		for (final Link l : links)
+			ret.add(l == null ? null : l.clone());
+		return ret;
+	}
+
+	/*
+	 * Copy the containers (maps and lists) in the analysis so that the clone
+	 * can be modified independently; the leaf values are (immutable) strings,
+	 * numbers and booleans and are shared.
+	 */
+	private static Object cloneAnalysisValue(Object value) {
+		if (value instanceof Map) {
+			final Map<?, ?> map = (Map<?, ?>) value;
+			final Map<String, Object> ret = new HashMap<String, Object>(map.size() * 2);
+			for (final Entry<?, ?> e : map.entrySet())
+				ret.put(String.valueOf(e.getKey()), cloneAnalysisValue(e.getValue()));
+			return ret;
+		} else if (value instanceof List) {
+			final List<?> list = (List<?>) value;
+			final List<Object> ret = new ArrayList<Object>(list.size());
+			for (final Object o : list)
+				ret.add(cloneAnalysisValue(o));
+			return ret;
+		}
+		return value;
 	}
 
 	/**
@@ -392,7 +541,7 @@ public class USMFStatus extends GeneralJSON implements Cloneable {
 	 * @author Laurence Willmore (lgw1e10@ecs.soton.ac.uk)
 	 *
 	 */
-	public static class User {
+	public static class User implements Cloneable {
 		/**
 		 * User Name
 		 */
@@ -476,6 +625,17 @@ public class USMFStatus extends GeneralJSON implements Cloneable {
 			return false;
 		}
 
+		@Override
+		public User clone() {
+			try {
+				final User clone = (User) super.clone();
+				if (geo != null)
+					clone.geo = geo.clone();
+				return clone;
+			} catch (final CloneNotSupportedException e) {
+				throw new RuntimeException(e);
+			}
+		}
 	}
 
 	/**
@@ -484,7 +644,7 @@ public class USMFStatus extends GeneralJSON implements Cloneable {
 	 * @author Laurence Willmore (lgw1e10@ecs.soton.ac.uk)
 	 *
 	 */
-	public static class Link {
+	public static class Link implements Cloneable {
 		/**
 		 * Title of item
 		 */
@@ -523,6 +683,15 @@ public class USMFStatus extends GeneralJSON implements Cloneable {
 			}
 			return false;
 		}
+
+		@Override
+		public Link clone() {
+			try {
+				return (Link) super.clone();
+			} catch (final CloneNotSupportedException e) {
+				throw new RuntimeException(e);
+			}
+		}
 	}
 
 	@Override
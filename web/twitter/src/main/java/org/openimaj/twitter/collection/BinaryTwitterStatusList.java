@@ -0,0 +1,486 @@
+/**
+ * Copyright (c) 2012, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.twitter.collection;
+
+import gnu.trove.list.array.TLongArrayList;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.openimaj.twitter.BinaryUSMFCodec;
+import org.openimaj.twitter.BinaryUSMFCodec.StringDictionary;
+import org.openimaj.twitter.USMFStatus;
+import org.openimaj.util.list.AbstractFileBackedList;
+import org.openimaj.util.list.RandomisableList;
+
+/**
+ * A list of {@link USMFStatus} instances backed by a file in the compact binary
+ * format produced by {@link BinaryUSMFCodec}. Unlike a
+ * {@link FileTwitterStatusList}, the statuses don't need to be parsed from JSON
+ * on access, and any status can be accessed directly by its index.
+ * <p>
+ * The file consists of a header, the variable length records, and a footer
+ * containing the string dictionary shared by the records and the offset of
+ * every record. Files can be created with a {@link Writer}.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <T>
+ *            the type of status
+ */
+public class BinaryTwitterStatusList<T extends USMFStatus> extends AbstractFileBackedList<T>
+		implements
+			TwitterStatusList<T>
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The header of the binary format
+	 */
+	public static final byte[] HEADER = "USMFB1".getBytes();
+
+	/**
+	 * The default maximum size of the string dictionary
+	 */
+	public static final int DEFAULT_MAX_DICTIONARY_SIZE = 1 << 16;
+
+	private final StringDictionary dictionary;
+	private final long[] offsets;
+	private final int start;
+
+	protected BinaryTwitterStatusList(File file, Class<T> clazz, StringDictionary dictionary, long[] offsets,
+			int start, int size)
+	{
+		super(size, true, HEADER.length, -1, file, clazz);
+		this.dictionary = dictionary;
+		this.offsets = offsets;
+		this.start = start;
+	}
+
+	/**
+	 * Open a file in the binary format.
+	 *
+	 * @param f
+	 *            the file
+	 * @return a status list backed by the file
+	 * @throws IOException
+	 */
+	public static BinaryTwitterStatusList<USMFStatus> read(File f) throws IOException {
+		return read(f, USMFStatus.class);
+	}
+
+	/**
+	 * Open a file in the binary format.
+	 *
+	 * @param f
+	 *            the file
+	 * @param clazz
+	 *            the type of status to create
+	 * @return a status list backed by the file
+	 * @throws IOException
+	 */
+	public static <T extends USMFStatus> BinaryTwitterStatusList<T> read(File f, Class<T> clazz) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(f, "r");
+		try {
+			final byte[] header = new byte[HEADER.length];
+			raf.readFully(header);
+			if (!Arrays.equals(header, HEADER))
+				throw new IOException("File is not in the binary USMF format");
+
+			raf.seek(raf.length() - 8);
+			final long footerOffset = raf.readLong();
+
+			final byte[] footer = new byte[(int) (raf.length() - 8 - footerOffset)];
+			raf.seek(footerOffset);
+			raf.readFully(footer);
+
+			final DataInputStream in = new DataInputStream(new ByteArrayInputStream(footer));
+			final StringDictionary dictionary = StringDictionary.read(in);
+			final int size = BinaryUSMFCodec.readVarInt(in);
+			final long[] offsets = new long[size + 1];
+			long offset = HEADER.length;
+			for (int i = 0; i < size; i++) {
+				offsets[i] = offset;
+				offset += BinaryUSMFCodec.readVarLong(in);
+			}
+			offsets[size] = offset;
+
+			return new BinaryTwitterStatusList<T>(f, clazz, dictionary, offsets, 0, size);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Write the given statuses to a file in the binary format.
+	 *
+	 * @param f
+	 *            the file
+	 * @param statuses
+	 *            the statuses
+	 * @throws IOException
+	 */
+	public static void write(File f, Iterable<? extends USMFStatus> statuses) throws IOException {
+		final Writer writer = new Writer(f);
+		try {
+			for (final USMFStatus s : statuses)
+				writer.write(s);
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Override
+	protected T readRecord(DataInput input) throws IOException {
+		final T status = newElementInstance();
+		BinaryUSMFCodec.read(status, input, dictionary);
+		return status;
+	}
+
+	@Override
+	protected long recordOffset(int index) {
+		return offsets[start + index];
+	}
+
+	@Override
+	public T get(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+		final long offset = recordOffset(index);
+		final byte[] record = new byte[(int) (recordOffset(index + 1) - offset)];
+
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(file, "r");
+			raf.seek(offset);
+			raf.readFully(record);
+
+			return readRecord(new DataInputStream(new ByteArrayInputStream(record)));
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			if (raf != null)
+				try {
+					raf.close();
+				} catch (final IOException e) {
+				}
+		}
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			int count = 0;
+			DataInputStream in;
+
+			{
+				try {
+					final InputStream fis = new FileInputStream(file);
+					in = new DataInputStream(new BufferedInputStream(fis));
+					skipFully(in, recordOffset(0));
+				} catch (final IOException e) {
+					close();
+					throw new RuntimeException(e);
+				}
+			}
+
+			@Override
+			public boolean hasNext() {
+				if (count < size)
+					return true;
+				close();
+				return false;
+			}
+
+			@Override
+			public T next() {
+				if (count >= size)
+					throw new NoSuchElementException();
+
+				try {
+					final T status = readRecord(in);
+					count++;
+					return status;
+				} catch (final IOException e) {
+					close();
+					throw new RuntimeException(e);
+				}
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("Modifying a BinaryTwitterStatusList isn't supported");
+			}
+
+			private void close() {
+				if (in != null) {
+					try {
+						in.close();
+					} catch (final IOException e) {
+					}
+					in = null;
+				}
+			}
+		};
+	}
+
+	private static void skipFully(InputStream in, long n) throws IOException {
+		while (n > 0) {
+			final long skipped = in.skip(n);
+			if (skipped <= 0)
+				throw new EOFException();
+			n -= skipped;
+		}
+	}
+
+	@Override
+	public RandomisableList<T> subList(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || fromIndex > size || toIndex < fromIndex || toIndex > size)
+			throw new IllegalArgumentException("bad offsets");
+
+		return new BinaryTwitterStatusList<T>(file, clz, dictionary, offsets, start + fromIndex, toIndex - fromIndex);
+	}
+
+	@Override
+	protected AbstractFileBackedList<T> newInstance(int newSize, boolean isBinary, int newHeaderLength,
+			int recordLength, File file)
+	{
+		// the records don't have a fixed length, so the new header length is
+		// only meaningful if it is the offset of one of our records
+		final int index = Arrays.binarySearch(offsets, start, start + size + 1, newHeaderLength);
+		if (index < 0 || index + newSize > start + size)
+			throw new IllegalArgumentException("Offset " + newHeaderLength + " is not the start of a record of this list");
+
+		return new BinaryTwitterStatusList<T>(file, clz, dictionary, offsets, index, newSize);
+	}
+
+	@Override
+	public void writeASCII(PrintWriter out) throws IOException {
+		for (final T status : this) {
+			status.writeASCII(out);
+			out.println();
+		}
+	}
+
+	@Override
+	public String asciiHeader() {
+		return "";
+	}
+
+	@Override
+	public void writeBinary(DataOutput out) throws IOException {
+		// the header has already been written by the caller (see
+		// binaryHeader())
+		final Writer writer = new Writer(new DataOutputAdapter(out), false, false, DEFAULT_MAX_DICTIONARY_SIZE);
+		for (final T status : this)
+			writer.write(status);
+		writer.finish();
+	}
+
+	@Override
+	public byte[] binaryHeader() {
+		return HEADER;
+	}
+
+	/**
+	 * Writer for the binary format. Statuses are written as they are
+	 * provided; the footer is written when the writer is closed.
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class Writer implements Closeable {
+		private final CountingOutputStream counter;
+		private final DataOutputStream out;
+		private final StringDictionary dictionary;
+		private final TLongArrayList lengths = new TLongArrayList();
+		private final boolean closeStream;
+		private boolean finished = false;
+
+		/**
+		 * Construct a writer that writes to the given file.
+		 *
+		 * @param f
+		 *            the file
+		 * @throws IOException
+		 */
+		public Writer(File f) throws IOException {
+			this(new BufferedOutputStream(new FileOutputStream(f)), true);
+		}
+
+		/**
+		 * Construct a writer that writes to the given stream.
+		 *
+		 * @param os
+		 *            the stream
+		 * @throws IOException
+		 */
+		public Writer(OutputStream os) throws IOException {
+			this(os, true);
+		}
+
+		/**
+		 * Construct a writer that writes to the given stream, with a
+		 * dictionary of the given maximum size.
+		 *
+		 * @param os
+		 *            the stream
+		 * @param maxDictionarySize
+		 *            the maximum number of strings in the dictionary
+		 * @throws IOException
+		 */
+		public Writer(OutputStream os, int maxDictionarySize) throws IOException {
+			this(os, true, maxDictionarySize);
+		}
+
+		Writer(OutputStream os, boolean closeStream) throws IOException {
+			this(os, closeStream, DEFAULT_MAX_DICTIONARY_SIZE);
+		}
+
+		Writer(OutputStream os, boolean closeStream, int maxDictionarySize) throws IOException {
+			this(os, closeStream, true, maxDictionarySize);
+		}
+
+		/**
+		 * Construct a writer. If the header isn't written, the stream is
+		 * assumed to already contain it, so that the offsets in the footer
+		 * are still relative to the start of the file.
+		 */
+		Writer(OutputStream os, boolean closeStream, boolean writeHeader, int maxDictionarySize) throws IOException {
+			this.counter = new CountingOutputStream(os);
+			this.out = new DataOutputStream(counter);
+			this.dictionary = new StringDictionary(maxDictionarySize);
+			this.closeStream = closeStream;
+
+			if (writeHeader)
+				out.write(HEADER);
+			else
+				counter.count = HEADER.length;
+		}
+
+		/**
+		 * Write a status
+		 *
+		 * @param status
+		 *            the status
+		 * @throws IOException
+		 */
+		public void write(USMFStatus status) throws IOException {
+			final long before = counter.count;
+			BinaryUSMFCodec.write(status, out, dictionary);
+			lengths.add(counter.count - before);
+		}
+
+		/**
+		 * @return the number of statuses written so far
+		 */
+		public int size() {
+			return lengths.size();
+		}
+
+		void finish() throws IOException {
+			if (finished)
+				return;
+			finished = true;
+
+			final long footerOffset = counter.count;
+			dictionary.write(out);
+			BinaryUSMFCodec.writeVarInt(out, lengths.size());
+			for (int i = 0; i < lengths.size(); i++)
+				BinaryUSMFCodec.writeVarLong(out, lengths.get(i));
+			out.writeLong(footerOffset);
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			finish();
+			if (closeStream)
+				out.close();
+		}
+	}
+
+	private static class CountingOutputStream extends FilterOutputStream {
+		long count = 0;
+
+		CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+
+	private static class DataOutputAdapter extends OutputStream {
+		private final DataOutput out;
+
+		DataOutputAdapter(DataOutput out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+	}
+}
@@ -34,6 +34,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.List;
+import java.util.Scanner;
 
 import org.openimaj.io.FileUtils;
 import org.openimaj.twitter.GeneralJSON;
@@ -91,6 +92,15 @@ public class FileTwitterStatusList<T extends USMFStatus> extends AbstractFileBac
 			return (T) new USMFStatus(seedClass);
 	}
 
+	/**
+	 * Statuses are stored one per line, so they can be skipped without being
+	 * parsed.
+	 */
+	@Override
+	protected void skipRecordASCII(Scanner br) throws IOException {
+		br.nextLine();
+	}
+
 	@Override
 	public String asciiHeader() {
 		return "";
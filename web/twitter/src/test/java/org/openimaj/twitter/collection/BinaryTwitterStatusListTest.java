@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) 2012, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.twitter.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openimaj.io.IOUtils;
+import org.openimaj.twitter.GeneralJSONTwitter;
+import org.openimaj.twitter.USMFStatus;
+import org.openimaj.util.list.AbstractFileBackedList;
+
+/**
+ * Tests for the streaming JSON parser and the {@link BinaryTwitterStatusList}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class BinaryTwitterStatusListTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private MemoryTwitterStatusList<USMFStatus> statuses;
+
+	/**
+	 * A {@link GeneralJSONTwitter} that doesn't support the streaming parser,
+	 * so statuses are filled via a {@link GeneralJSONTwitter} instance
+	 */
+	public static class NonStreamingJSONTwitter extends GeneralJSONTwitter {
+		@Override
+		public boolean fillUSMFFromString(String line, USMFStatus status) {
+			return false;
+		}
+	}
+
+	/**
+	 * Load the test tweets
+	 *
+	 * @throws IOException
+	 */
+	@Before
+	public void setup() throws IOException {
+		statuses = new MemoryTwitterStatusList<USMFStatus>();
+
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				USMFStatus.class.getResourceAsStream("/org/openimaj/twitter/json_tweets.txt"), "UTF-8"));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			final USMFStatus status = new USMFStatus(GeneralJSONTwitter.class);
+			status.fillFromString(line);
+			statuses.add(status);
+		}
+		reader.close();
+	}
+
+	/**
+	 * Test that the streaming parser gives the same result as going via a
+	 * {@link GeneralJSONTwitter} instance
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testStreamingParser() throws IOException {
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				USMFStatus.class.getResourceAsStream("/org/openimaj/twitter/json_tweets.txt"), "UTF-8"));
+		String line;
+		int i = 0;
+		while ((line = reader.readLine()) != null) {
+			final USMFStatus expected = new USMFStatus(NonStreamingJSONTwitter.class);
+			expected.fillFromString(line);
+
+			final USMFStatus actual = statuses.get(i++);
+			assertEquals(expected.isInvalid(), actual.isInvalid());
+			assertEquals(expected.toJson(), actual.toJson());
+		}
+		reader.close();
+	}
+
+	/**
+	 * Test that cloning is a deep copy
+	 */
+	@Test
+	public void testClone() {
+		for (final USMFStatus status : statuses) {
+			final USMFStatus clone = status.clone();
+			assertEquals(status.toJson(), clone.toJson());
+			assertTrue(status.equals(clone));
+
+			clone.keywords.add("#openimaj");
+			assertTrue(!status.keywords.contains("#openimaj"));
+		}
+	}
+
+	/**
+	 * Test writing and reading the binary format
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testReadWrite() throws IOException {
+		final File file = folder.newFile("tweets.usmfb");
+		BinaryTwitterStatusList.write(file, statuses);
+
+		final BinaryTwitterStatusList<USMFStatus> list = BinaryTwitterStatusList.read(file);
+		assertEquals(statuses.size(), list.size());
+
+		int i = 0;
+		for (final USMFStatus status : list)
+			assertEquals(statuses.get(i++).toJson(), status.toJson());
+
+		for (i = statuses.size() - 1; i >= 0; i -= 3)
+			assertEquals(statuses.get(i).toJson(), list.get(i).toJson());
+
+		final List<USMFStatus> sub = list.subList(5, 15);
+		assertEquals(10, sub.size());
+		for (i = 0; i < sub.size(); i++)
+			assertEquals(statuses.get(i + 5).toJson(), sub.get(i).toJson());
+	}
+
+	/**
+	 * Test writing the list with {@link IOUtils#writeBinary(File, org.openimaj.io.WriteableBinary)}
+	 * and reading it back
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testIOUtilsRoundTrip() throws IOException {
+		final File file = folder.newFile("tweets.usmfb");
+		BinaryTwitterStatusList.write(file, statuses);
+		final BinaryTwitterStatusList<USMFStatus> list = BinaryTwitterStatusList.read(file);
+
+		final File copy = folder.newFile("copy.usmfb");
+		IOUtils.writeBinary(copy, list);
+		final BinaryTwitterStatusList<USMFStatus> read = BinaryTwitterStatusList.read(copy);
+
+		assertEquals(file.length(), copy.length());
+		assertEquals(statuses.size(), read.size());
+		for (int i = 0; i < statuses.size(); i++)
+			assertEquals(statuses.get(i).toJson(), read.get(i).toJson());
+
+		final File subCopy = folder.newFile("sub.usmfb");
+		IOUtils.writeBinary(subCopy, (BinaryTwitterStatusList<USMFStatus>) list.subList(3, 9));
+		final BinaryTwitterStatusList<USMFStatus> sub = BinaryTwitterStatusList.read(subCopy);
+		assertEquals(6, sub.size());
+		for (int i = 0; i < sub.size(); i++)
+			assertEquals(statuses.get(i + 3).toJson(), sub.get(i).toJson());
+	}
+
+	/**
+	 * Test creating a sublist from the offset of a record
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testNewInstance() throws IOException {
+		final File file = folder.newFile("tweets.usmfb");
+		BinaryTwitterStatusList.write(file, statuses);
+		final BinaryTwitterStatusList<USMFStatus> list = BinaryTwitterStatusList.read(file);
+
+		final AbstractFileBackedList<USMFStatus> sub = list.newInstance(4, true, (int) list.recordOffset(7), -1, file);
+		assertEquals(4, sub.size());
+		for (int i = 0; i < sub.size(); i++)
+			assertEquals(statuses.get(i + 7).toJson(), sub.get(i).toJson());
+
+		try {
+			list.newInstance(1, true, (int) list.recordOffset(7) + 1, -1, file);
+			fail("expected IllegalArgumentException");
+		} catch (final IllegalArgumentException e) {
+			// expected
+		}
+	}
+}